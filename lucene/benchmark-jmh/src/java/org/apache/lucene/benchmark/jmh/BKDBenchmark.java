@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.benchmark.jmh;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.IntPoint;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.PointValues;
+import org.apache.lucene.index.PointValues.IntersectVisitor;
+import org.apache.lucene.index.PointValues.Relation;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@code BKDReader#intersect} through {@link PointValues#intersect} with boxes that match
+ * a given fraction of the points. Small boxes are dominated by the traversal of the index, large ones
+ * by the decoding of leaf blocks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BKDBenchmark {
+
+  private static final String FIELD = "p";
+
+  @Param({"1000000"})
+  public int numDocs;
+
+  @Param({"1", "2"})
+  public int numDims;
+
+  /** Fraction of the range of each dimension that the query box covers. */
+  @Param({"0.01", "0.5"})
+  public double width;
+
+  private Directory dir;
+  private DirectoryReader reader;
+  private PointValues points;
+  private byte[] lower;
+  private byte[] upper;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    dir = new ByteBuffersDirectory();
+    Random random = new Random(42);
+    try (IndexWriter w = new IndexWriter(dir, new IndexWriterConfig())) {
+      int[] values = new int[numDims];
+      for (int i = 0; i < numDocs; ++i) {
+        for (int d = 0; d < numDims; ++d) {
+          values[d] = random.nextInt();
+        }
+        Document doc = new Document();
+        doc.add(new IntPoint(FIELD, values));
+        w.addDocument(doc);
+      }
+      w.forceMerge(1);
+    }
+    reader = DirectoryReader.open(dir);
+    points = reader.leaves().get(0).reader().getPointValues(FIELD);
+
+    lower = new byte[numDims * Integer.BYTES];
+    upper = new byte[numDims * Integer.BYTES];
+    long span = (long) (width * (1L << 32));
+    for (int d = 0; d < numDims; ++d) {
+      int min = (int) (Integer.MIN_VALUE + (long) (random.nextDouble() * ((1L << 32) - span)));
+      IntPoint.encodeDimension(min, lower, d * Integer.BYTES);
+      IntPoint.encodeDimension((int) (min + span - 1), upper, d * Integer.BYTES);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    reader.close();
+    dir.close();
+  }
+
+  /** Visits every matching document, as a range query does to build its iterator. */
+  @Benchmark
+  public int intersect() throws IOException {
+    CountingVisitor visitor = new CountingVisitor();
+    points.intersect(visitor);
+    return visitor.count;
+  }
+
+  /** Only counts points, as the query box is checked against the leaf cells of the tree. */
+  @Benchmark
+  public long estimatePointCount() {
+    return points.estimatePointCount(new CountingVisitor());
+  }
+
+  private class CountingVisitor implements IntersectVisitor {
+
+    int count;
+
+    @Override
+    public void visit(int docID) {
+      count++;
+    }
+
+    @Override
+    public void visit(int docID, byte[] packedValue) {
+      for (int d = 0; d < numDims; ++d) {
+        int from = d * Integer.BYTES, to = from + Integer.BYTES;
+        if (Arrays.compareUnsigned(packedValue, from, to, lower, from, to) < 0
+            || Arrays.compareUnsigned(packedValue, from, to, upper, from, to) > 0) {
+          return;
+        }
+      }
+      count++;
+    }
+
+    @Override
+    public Relation compare(byte[] minPackedValue, byte[] maxPackedValue) {
+      boolean crosses = false;
+      for (int d = 0; d < numDims; ++d) {
+        int from = d * Integer.BYTES, to = from + Integer.BYTES;
+        if (Arrays.compareUnsigned(minPackedValue, from, to, upper, from, to) > 0
+            || Arrays.compareUnsigned(maxPackedValue, from, to, lower, from, to) < 0) {
+          return Relation.CELL_OUTSIDE_QUERY;
+        }
+        crosses |= Arrays.compareUnsigned(minPackedValue, from, to, lower, from, to) < 0
+            || Arrays.compareUnsigned(maxPackedValue, from, to, upper, from, to) > 0;
+      }
+      return crosses ? Relation.CELL_CROSSES_QUERY : Relation.CELL_INSIDE_QUERY;
+    }
+  }
+}
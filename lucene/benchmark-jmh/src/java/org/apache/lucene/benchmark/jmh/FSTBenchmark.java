@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.benchmark.jmh;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IntsRefBuilder;
+import org.apache.lucene.util.fst.BytesRefFSTEnum;
+import org.apache.lucene.util.fst.FST;
+import org.apache.lucene.util.fst.FSTCompiler;
+import org.apache.lucene.util.fst.PositiveIntOutputs;
+import org.apache.lucene.util.fst.Util;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures lookups in an {@link FST} that maps terms to their ordinals, as the terms index of the
+ * postings format does. Half of the looked up keys exist in the FST.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FSTBenchmark {
+
+  private static final int NUM_LOOKUPS = 1024;
+
+  @Param({"100000"})
+  public int numTerms;
+
+  /** Size of the alphabet terms are made of: small alphabets share more prefixes, large ones give wider nodes. */
+  @Param({"4", "26"})
+  public int alphabetSize;
+
+  private FST<Long> fst;
+  private BytesRef[] lookups;
+
+  @Setup
+  public void setup() throws IOException {
+    Random random = new Random(42);
+    TreeSet<BytesRef> terms = new TreeSet<>();
+    while (terms.size() < numTerms) {
+      terms.add(randomTerm(random));
+    }
+    FSTCompiler<Long> compiler = new FSTCompiler<>(FST.INPUT_TYPE.BYTE1, PositiveIntOutputs.getSingleton());
+    IntsRefBuilder scratch = new IntsRefBuilder();
+    long ord = 0;
+    for (BytesRef term : terms) {
+      compiler.add(Util.toIntsRef(term, scratch), ord++);
+    }
+    fst = compiler.compile();
+
+    BytesRef[] sortedTerms = terms.toArray(new BytesRef[0]);
+    lookups = new BytesRef[NUM_LOOKUPS];
+    for (int i = 0; i < NUM_LOOKUPS; ++i) {
+      lookups[i] = (i & 1) == 0 ? sortedTerms[random.nextInt(sortedTerms.length)] : randomTerm(random);
+    }
+  }
+
+  private BytesRef randomTerm(Random random) {
+    byte[] bytes = new byte[4 + random.nextInt(12)];
+    for (int i = 0; i < bytes.length; ++i) {
+      bytes[i] = (byte) ('a' + random.nextInt(alphabetSize));
+    }
+    return new BytesRef(bytes);
+  }
+
+  /** Exact lookups with {@link Util#get(FST, BytesRef)}. */
+  @Benchmark
+  @OperationsPerInvocation(NUM_LOOKUPS)
+  public void get(Blackhole bh) throws IOException {
+    for (BytesRef lookup : lookups) {
+      bh.consume(Util.get(fst, lookup));
+    }
+  }
+
+  /** Ceiling lookups, as done when seeking a terms enum. */
+  @Benchmark
+  @OperationsPerInvocation(NUM_LOOKUPS)
+  public void seekCeil(Blackhole bh) throws IOException {
+    BytesRefFSTEnum<Long> fstEnum = new BytesRefFSTEnum<>(fst);
+    for (BytesRef lookup : lookups) {
+      bh.consume(fstEnum.seekCeil(lookup));
+    }
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.benchmark.jmh;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.store.ByteArrayDataInput;
+import org.apache.lucene.store.ByteArrayDataOutput;
+import org.apache.lucene.util.compress.LZ4;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link LZ4} compression, with the hash tables of the fast and high compression modes, and
+ * decompression of blocks made of words drawn from a small vocabulary, which compress about as well
+ * as stored fields.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LZ4Benchmark {
+
+  /** Number of bytes to compress, 16kB is the block size of stored fields with BEST_SPEED. */
+  @Param({"16384", "61440"})
+  public int blockSize;
+
+  private final LZ4.FastCompressionHashTable fastHashTable = new LZ4.FastCompressionHashTable();
+  private final LZ4.HighCompressionHashTable highHashTable = new LZ4.HighCompressionHashTable();
+
+  private byte[] uncompressed;
+  private byte[] compressed;
+  private int compressedLength;
+  private byte[] restored;
+  private ByteArrayDataOutput out;
+
+  @Setup
+  public void setup() throws IOException {
+    Random random = new Random(42);
+    String[] vocabulary = new String[1000];
+    for (int i = 0; i < vocabulary.length; ++i) {
+      char[] chars = new char[2 + random.nextInt(10)];
+      for (int j = 0; j < chars.length; ++j) {
+        chars[j] = (char) ('a' + random.nextInt(26));
+      }
+      vocabulary[i] = new String(chars);
+    }
+    uncompressed = new byte[blockSize];
+    for (int i = 0; i < blockSize; ) {
+      // skew towards the first words of the vocabulary, like natural text
+      String word = vocabulary[(int) Math.pow(vocabulary.length, random.nextDouble()) - 1];
+      for (int j = 0; j < word.length() && i < blockSize; ++j) {
+        uncompressed[i++] = (byte) word.charAt(j);
+      }
+      if (i < blockSize) {
+        uncompressed[i++] = ' ';
+      }
+    }
+
+    // worst case: the whole input as literals, and a length byte for every 255 of them
+    compressed = new byte[blockSize + blockSize / 255 + 16];
+    out = new ByteArrayDataOutput(compressed);
+    LZ4.compress(uncompressed, 0, blockSize, out, fastHashTable);
+    compressedLength = out.getPosition();
+    restored = new byte[blockSize];
+  }
+
+  @Benchmark
+  public int compressFast() throws IOException {
+    out.reset(compressed);
+    LZ4.compress(uncompressed, 0, blockSize, out, fastHashTable);
+    return out.getPosition();
+  }
+
+  @Benchmark
+  public int compressHigh() throws IOException {
+    out.reset(compressed);
+    LZ4.compress(uncompressed, 0, blockSize, out, highHashTable);
+    return out.getPosition();
+  }
+
+  @Benchmark
+  public byte[] decompress() throws IOException {
+    LZ4.decompress(new ByteArrayDataInput(compressed, 0, compressedLength), blockSize, restored);
+    return restored;
+  }
+}
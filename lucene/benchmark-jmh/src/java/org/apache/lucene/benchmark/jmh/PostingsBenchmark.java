@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.benchmark.jmh;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopScoreDocCollector;
+import org.apache.lucene.search.TotalHitCountCollector;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how fast term and conjunction queries iterate postings, which is dominated by the decoding
+ * of doc id and frequency blocks. Terms are indexed with densities from 1/2 to 1/64 of the documents,
+ * so that doc deltas are packed with few bits per value.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PostingsBenchmark {
+
+  private static final String FIELD = "f";
+
+  @Param({"1000000"})
+  public int numDocs;
+
+  /** One of the terms: "2", "4", ..., "64", matches a document every that many documents on average. */
+  @Param({"2", "8", "64"})
+  public String term;
+
+  private Directory dir;
+  private DirectoryReader reader;
+  private IndexSearcher searcher;
+  private Query termQuery;
+  private Query conjunction;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    dir = new ByteBuffersDirectory();
+    Random random = new Random(42);
+    try (IndexWriter w = new IndexWriter(dir, new IndexWriterConfig())) {
+      for (int i = 0; i < numDocs; ++i) {
+        Document doc = new Document();
+        for (int density = 2; density <= 64; density *= 2) {
+          if (random.nextInt(density) == 0) {
+            doc.add(new StringField(FIELD, Integer.toString(density), Field.Store.NO));
+          }
+        }
+        w.addDocument(doc);
+      }
+      w.forceMerge(1);
+    }
+    reader = DirectoryReader.open(dir);
+    searcher = new IndexSearcher(reader);
+    termQuery = new TermQuery(new Term(FIELD, term));
+    conjunction = new BooleanQuery.Builder()
+        .add(new TermQuery(new Term(FIELD, "2")), Occur.MUST)
+        .add(termQuery, Occur.MUST)
+        .build();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    reader.close();
+    dir.close();
+  }
+
+  /** Iterates doc ids only. */
+  @Benchmark
+  public int termQueryCount() throws IOException {
+    TotalHitCountCollector collector = new TotalHitCountCollector();
+    searcher.search(termQuery, collector);
+    return collector.getTotalHits();
+  }
+
+  /** Iterates doc ids and frequencies to score every hit. */
+  @Benchmark
+  public int termQueryTopDocs() throws IOException {
+    TopScoreDocCollector collector = TopScoreDocCollector.create(10, Integer.MAX_VALUE);
+    searcher.search(termQuery, collector);
+    return collector.getTotalHits();
+  }
+
+  /** Leap-frogs between doc id blocks of two terms. */
+  @Benchmark
+  public int conjunctionCount() throws IOException {
+    TotalHitCountCollector collector = new TotalHitCountCollector();
+    searcher.search(conjunction, collector);
+    return collector.getTotalHits();
+  }
+
+  /** Leap-frogs between two terms and scores every hit. */
+  @Benchmark
+  public int conjunctionTopDocs() throws IOException {
+    TopScoreDocCollector collector = TopScoreDocCollector.create(10, Integer.MAX_VALUE);
+    searcher.search(conjunction, collector);
+    return collector.getTotalHits();
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.benchmark.jmh;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopScoreDocCollector;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link TopScoreDocCollector} on term and disjunction queries. With a total hits threshold,
+ * the collector lets the scorers skip non-competitive documents, without it every hit is scored and
+ * goes through the priority queue.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TopScoreDocCollectorBenchmark {
+
+  private static final String FIELD = "body";
+
+  @Param({"1000000"})
+  public int numDocs;
+
+  @Param({"10", "100"})
+  public int numHits;
+
+  /** 1000 is the default of {@link IndexSearcher#search(Query, int)}, MAX_VALUE counts hits exactly. */
+  @Param({"1000", "2147483647"})
+  public int totalHitsThreshold;
+
+  private Directory dir;
+  private DirectoryReader reader;
+  private IndexSearcher searcher;
+  private Query termQuery;
+  private Query disjunction;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    dir = new ByteBuffersDirectory();
+    Random random = new Random(42);
+    try (IndexWriter w = new IndexWriter(dir, new IndexWriterConfig())) {
+      StringBuilder body = new StringBuilder();
+      for (int i = 0; i < numDocs; ++i) {
+        body.setLength(0);
+        int length = 5 + random.nextInt(50);
+        for (int j = 0; j < length; ++j) {
+          // term "t<n>" appears with a frequency of about 1/n, so that scores vary across documents
+          body.append('t').append((int) Math.pow(1000, random.nextDouble())).append(' ');
+        }
+        Document doc = new Document();
+        doc.add(new TextField(FIELD, body.toString(), Field.Store.NO));
+        w.addDocument(doc);
+      }
+      w.forceMerge(1);
+    }
+    reader = DirectoryReader.open(dir);
+    searcher = new IndexSearcher(reader);
+    termQuery = new TermQuery(new Term(FIELD, "t3"));
+    disjunction = new BooleanQuery.Builder()
+        .add(new TermQuery(new Term(FIELD, "t3")), Occur.SHOULD)
+        .add(new TermQuery(new Term(FIELD, "t20")), Occur.SHOULD)
+        .add(new TermQuery(new Term(FIELD, "t100")), Occur.SHOULD)
+        .build();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    reader.close();
+    dir.close();
+  }
+
+  @Benchmark
+  public TopDocs term() throws IOException {
+    TopScoreDocCollector collector = TopScoreDocCollector.create(numHits, totalHitsThreshold);
+    searcher.search(termQuery, collector);
+    return collector.topDocs();
+  }
+
+  @Benchmark
+  public TopDocs disjunction() throws IOException {
+    TopScoreDocCollector collector = TopScoreDocCollector.create(numHits, totalHitsThreshold);
+    searcher.search(disjunction, collector);
+    return collector.topDocs();
+  }
+}
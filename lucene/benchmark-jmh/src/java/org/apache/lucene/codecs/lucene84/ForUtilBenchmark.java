@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.lucene84;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.store.ByteArrayDataInput;
+import org.apache.lucene.store.ByteBuffersDataOutput;
+import org.apache.lucene.util.packed.PackedInts;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the throughput of decoding blocks of 128 postings: packed doc deltas with their prefix sum
+ * ({@link ForDeltaUtil}), and patched frequencies ({@link PForUtil}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ForUtilBenchmark {
+
+  private static final int NUM_BLOCKS = 1024;
+
+  @Param({"1", "3", "5", "8", "9", "11", "12", "16", "20"})
+  public int bitsPerValue;
+
+  private final ForUtil forUtil = new ForUtil();
+  private final ForDeltaUtil forDeltaUtil = new ForDeltaUtil(forUtil);
+  private final PForUtil pforUtil = new PForUtil(forUtil);
+  private final long[] longs = new long[ForUtil.BLOCK_SIZE];
+
+  private byte[] forBlocks;
+  private byte[] deltaBlocks;
+  private byte[] pforBlocks;
+
+  @Setup
+  public void setup() throws IOException {
+    Random random = new Random(42);
+    ByteBuffersDataOutput forOut = new ByteBuffersDataOutput();
+    ByteBuffersDataOutput deltaOut = new ByteBuffersDataOutput();
+    ByteBuffersDataOutput pforOut = new ByteBuffersDataOutput();
+    final long maxValue = PackedInts.maxValue(bitsPerValue);
+    for (int i = 0; i < NUM_BLOCKS; ++i) {
+      for (int j = 0; j < ForUtil.BLOCK_SIZE; ++j) {
+        // deltas must be positive, make sure every block needs all bits
+        longs[j] = j == 0 ? maxValue : 1 + (random.nextLong() & Long.MAX_VALUE) % maxValue;
+      }
+      deltaOut.writeByte((byte) bitsPerValue);
+      forUtil.encode(longs.clone(), bitsPerValue, deltaOut);
+      forUtil.encode(longs.clone(), bitsPerValue, forOut);
+      pforUtil.encode(longs.clone(), pforOut);
+    }
+    forBlocks = forOut.toArrayCopy();
+    deltaBlocks = deltaOut.toArrayCopy();
+    pforBlocks = pforOut.toArrayCopy();
+  }
+
+  /** Unpacking only, as used for positions and for doc deltas that are skipped. */
+  @Benchmark
+  @OperationsPerInvocation(NUM_BLOCKS)
+  public void decode(Blackhole bh) throws IOException {
+    ByteArrayDataInput in = new ByteArrayDataInput(forBlocks);
+    for (int i = 0; i < NUM_BLOCKS; ++i) {
+      forUtil.decode(bitsPerValue, in, longs);
+      bh.consume(longs);
+    }
+  }
+
+  /** Doc ids: unpacking of the deltas followed by their prefix sum. */
+  @Benchmark
+  @OperationsPerInvocation(NUM_BLOCKS)
+  public void decodeAndPrefixSum(Blackhole bh) throws IOException {
+    ByteArrayDataInput in = new ByteArrayDataInput(deltaBlocks);
+    long base = 0;
+    for (int i = 0; i < NUM_BLOCKS; ++i) {
+      forDeltaUtil.decodeAndPrefixSum(in, base, longs);
+      base = longs[ForUtil.BLOCK_SIZE - 1];
+      bh.consume(longs);
+    }
+  }
+
+  /** Frequencies: unpacking followed by patching of the exceptions. */
+  @Benchmark
+  @OperationsPerInvocation(NUM_BLOCKS)
+  public void pforDecode(Blackhole bh) throws IOException {
+    ByteArrayDataInput in = new ByteArrayDataInput(pforBlocks);
+    for (int i = 0; i < NUM_BLOCKS; ++i) {
+      pforUtil.decode(in, longs);
+      bh.consume(longs);
+    }
+  }
+}
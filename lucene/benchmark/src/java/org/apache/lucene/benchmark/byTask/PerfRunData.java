@@ -44,6 +44,7 @@ import org.apache.lucene.facet.taxonomy.TaxonomyWriter;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.LRUQueryCache;
 import org.apache.lucene.store.ByteBuffersDirectory;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
@@ -72,6 +73,8 @@ import org.apache.lucene.util.IOUtils;
  *  <li><b>log.queries</b>=&lt;whether queries should be printed| Default: false&gt;
  *  <li><b>directory</b>=&lt;type of directory to use for the index| Default: ByteBuffersDirectory&gt;
  *  <li><b>taxonomy.directory</b>=&lt;type of directory for taxonomy index| Default: ByteBuffersDirectory&gt;
+ *  <li><b>query.cache.size</b>=&lt;max number of queries in the query cache of each opened reader, 0 to disable it| Default: 0&gt;
+ *  <li><b>query.cache.ram.mb</b>=&lt;max memory used by the query cache of each opened reader| Default: 32&gt;
  * </ul>
  */
 public class PerfRunData implements Closeable {
@@ -359,8 +362,14 @@ public class PerfRunData implements Closeable {
       // Hold reference to new IR
       indexReader.incRef();
       indexSearcher = new IndexSearcher(indexReader);
-      // TODO Some day we should make the query cache in this module configurable and control clearing the cache
-      indexSearcher.setQueryCache(null);
+      // each reader gets its own cache so that rounds do not share cached entries
+      final int queryCacheSize = config.get("query.cache.size", 0);
+      if (queryCacheSize > 0) {
+        final long maxRamBytesUsed = (long) (config.get("query.cache.ram.mb", 32.0) * 1024 * 1024);
+        indexSearcher.setQueryCache(new LRUQueryCache(queryCacheSize, maxRamBytesUsed));
+      } else {
+        indexSearcher.setQueryCache(null);
+      }
     } else {
       indexSearcher = null;
     }
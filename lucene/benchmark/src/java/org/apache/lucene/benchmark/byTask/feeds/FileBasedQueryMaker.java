@@ -19,6 +19,7 @@ package org.apache.lucene.benchmark.byTask.feeds;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.ConstantScoreQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.benchmark.byTask.tasks.NewAnalyzerTask;
 import org.apache.lucene.util.IOUtils;
@@ -40,6 +41,9 @@ import java.util.List;
  * file.query.maker.file=&lt;Full path to file containing queries&gt;
  * <br>
  * file.query.maker.default.field=&lt;Name of default field - Default value is "body"&gt;
+ * <br>
+ * file.query.maker.constant.score=&lt;Whether to wrap queries into a {@link ConstantScoreQuery}
+ * so that they can be served from the query cache - Default value is false&gt;
  *
  * Example:
  * file.query.maker.file=c:/myqueries.txt
@@ -56,6 +60,7 @@ public class FileBasedQueryMaker extends AbstractQueryMaker implements QueryMake
     String defaultField = config.get("file.query.maker.default.field", DocMaker.BODY_FIELD);
     QueryParser qp = new QueryParser(defaultField, anlzr);
     qp.setAllowLeadingWildcard(true);
+    boolean constantScore = config.get("file.query.maker.constant.score", false);
 
     List<Query> qq = new ArrayList<>();
     String fileName = config.get("file.query.maker.file", null);
@@ -82,7 +87,8 @@ public class FileBasedQueryMaker extends AbstractQueryMaker implements QueryMake
             line = line.trim();
             if (line.length() != 0 && !line.startsWith("#")) {
               try {
-                qq.add(qp.parse(line));
+                Query query = qp.parse(line);
+                qq.add(constantScore ? new ConstantScoreQuery(query) : query);
               } catch (ParseException e) {
                 System.err.println("Exception: " + e.getMessage() + " occurred while parsing line: " + lineNum + " Text: " + line);
               }
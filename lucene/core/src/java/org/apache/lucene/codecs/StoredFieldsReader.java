@@ -39,6 +39,16 @@ public abstract class StoredFieldsReader implements Cloneable, Closeable, Accoun
   /** Visit the stored fields for document <code>docID</code> */
   public abstract void visitDocument(int docID, StoredFieldVisitor visitor) throws IOException;
 
+  /**
+   * Expert: hint that the stored fields of document <code>docID</code> will be
+   * visited soon, so that their bytes may be loaded in the background. Calling this
+   * for several documents before visiting them allows their reads to overlap.
+   * <p>
+   * The default implementation does nothing.
+   * @see org.apache.lucene.store.IndexInput#prefetch(long, long)
+   */
+  public void prefetch(int docID) throws IOException {}
+
   @Override
   public abstract StoredFieldsReader clone();
   
@@ -89,6 +89,9 @@ public final class CompressingStoredFieldsReader extends StoredFieldsReader {
   private final BlockState state;
   private final long numChunks; // number of compressed blocks written
   private final long numDirtyChunks; // number of incomplete compressed blocks written
+  private final StoredFieldsBlockCache blockCache;
+  // identifies the blocks of this segment in the cache, shared with clones
+  private final Object cacheKey;
   private boolean closed;
 
   // used by clone
@@ -106,6 +109,8 @@ public final class CompressingStoredFieldsReader extends StoredFieldsReader {
     this.numChunks = reader.numChunks;
     this.numDirtyChunks = reader.numDirtyChunks;
     this.merging = merging;
+    this.blockCache = reader.blockCache;
+    this.cacheKey = reader.cacheKey;
     this.state = new BlockState();
     this.closed = false;
   }
@@ -130,6 +135,8 @@ public final class CompressingStoredFieldsReader extends StoredFieldsReader {
       packedIntsVersion = fieldsStream.readVInt();
       decompressor = compressionMode.newDecompressor();
       this.merging = false;
+      this.blockCache = StoredFieldsBlockCache.getDefault();
+      this.cacheKey = this;
       this.state = new BlockState();
 
       // NOTE: data file is too costly to verify checksum against all the bytes on open,
@@ -201,6 +208,9 @@ public final class CompressingStoredFieldsReader extends StoredFieldsReader {
   @Override
   public void close() throws IOException {
     if (!closed) {
+      if (blockCache != null && cacheKey == this) {
+        blockCache.invalidate(cacheKey);
+      }
       IOUtils.close(indexReader, fieldsStream);
       closed = true;
     }
@@ -376,6 +386,9 @@ public final class CompressingStoredFieldsReader extends StoredFieldsReader {
     private final BytesRef spare = new BytesRef();
     private final BytesRef bytes = new BytesRef();
 
+    // the decompressed documents when they come from the block cache, not to be modified
+    private BytesRef cachedBytes;
+
     boolean contains(int docID) {
       return docID >= docBase && docID < docBase + chunkDocs;
     }
@@ -384,10 +397,11 @@ public final class CompressingStoredFieldsReader extends StoredFieldsReader {
      * Reset this block so that it stores state for the block
      * that contains the given doc id.
      */
-    void reset(int docID) throws IOException {
+    void reset(int docID, long blockStartPointer) throws IOException {
       boolean success = false;
+      cachedBytes = null;
       try {
-        doReset(docID);
+        doReset(docID, blockStartPointer);
         success = true;
       } finally {
         if (success == false) {
@@ -401,7 +415,21 @@ public final class CompressingStoredFieldsReader extends StoredFieldsReader {
       }
     }
 
-    private void doReset(int docID) throws IOException {
+    /**
+     * Reset this block so that it stores state for the given cached block.
+     */
+    void reset(StoredFieldsBlockCache.Block block) {
+      docBase = block.docBase;
+      chunkDocs = block.chunkDocs;
+      sliced = false;
+      offsets = ArrayUtil.grow(offsets, chunkDocs + 1);
+      System.arraycopy(block.offsets, 0, offsets, 0, chunkDocs + 1);
+      numStoredFields = ArrayUtil.grow(numStoredFields, chunkDocs);
+      System.arraycopy(block.numStoredFields, 0, numStoredFields, 0, chunkDocs);
+      cachedBytes = new BytesRef(block.bytes);
+    }
+
+    private void doReset(int docID, long blockStartPointer) throws IOException {
       docBase = fieldsStream.readVInt();
       final int token = fieldsStream.readVInt();
       chunkDocs = token >>> 1;
@@ -486,6 +514,19 @@ public final class CompressingStoredFieldsReader extends StoredFieldsReader {
         if (bytes.length != totalLength) {
           throw new CorruptIndexException("Corrupted: expected chunk size = " + totalLength + ", got " + bytes.length, fieldsStream);
         }
+      } else if (blockCache != null && sliced == false) {
+        // decompress the whole block so that next reads of its documents can skip decompression
+        final int totalLength = offsets[chunkDocs];
+        decompressor.decompress(fieldsStream, totalLength, 0, totalLength, bytes);
+        if (bytes.length != totalLength) {
+          throw new CorruptIndexException("Corrupted: expected chunk size = " + totalLength + ", got " + bytes.length, fieldsStream);
+        }
+        final StoredFieldsBlockCache.Block block = new StoredFieldsBlockCache.Block(docBase, chunkDocs,
+            ArrayUtil.copyOfSubArray(offsets, 0, chunkDocs + 1),
+            ArrayUtil.copyOfSubArray(numStoredFields, 0, chunkDocs),
+            ArrayUtil.copyOfSubArray(bytes.bytes, bytes.offset, bytes.offset + totalLength));
+        blockCache.put(cacheKey, blockStartPointer, block);
+        cachedBytes = new BytesRef(block.bytes);
       }
     }
 
@@ -511,6 +552,8 @@ public final class CompressingStoredFieldsReader extends StoredFieldsReader {
       } else if (merging) {
         // already decompressed
         documentInput = new ByteArrayDataInput(bytes.bytes, bytes.offset + offset, length);
+      } else if (cachedBytes != null) {
+        documentInput = new ByteArrayDataInput(cachedBytes.bytes, cachedBytes.offset + offset, length);
       } else if (sliced) {
         fieldsStream.seek(startPointer);
         decompressor.decompress(fieldsStream, chunkSize, offset, Math.min(length, chunkSize - offset), bytes);
@@ -565,13 +608,31 @@ public final class CompressingStoredFieldsReader extends StoredFieldsReader {
 
   SerializedDocument document(int docID) throws IOException {
     if (state.contains(docID) == false) {
-      fieldsStream.seek(indexReader.getStartPointer(docID));
-      state.reset(docID);
+      final long blockStartPointer = indexReader.getStartPointer(docID);
+      final StoredFieldsBlockCache.Block block = blockCache == null || merging ? null : blockCache.get(cacheKey, blockStartPointer);
+      if (block != null && block.contains(docID)) {
+        state.reset(block);
+      } else {
+        fieldsStream.seek(blockStartPointer);
+        state.reset(docID, blockStartPointer);
+      }
     }
     assert state.contains(docID);
     return state.document(docID);
   }
 
+  @Override
+  public void prefetch(int docID) throws IOException {
+    if (state.contains(docID)) {
+      return;
+    }
+    final long blockStartPointer = indexReader.getStartPointer(docID);
+    if (blockCache == null || merging || blockCache.contains(cacheKey, blockStartPointer) == false) {
+      // compressed blocks are rarely larger than the chunk size
+      fieldsStream.prefetch(blockStartPointer, Math.min(chunkSize, maxPointer - blockStartPointer));
+    }
+  }
+
   @Override
   public void visitDocument(int docID, StoredFieldVisitor visitor)
       throws IOException {
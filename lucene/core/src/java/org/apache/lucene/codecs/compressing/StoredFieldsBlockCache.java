@@ -0,0 +1,267 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.compressing;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.RamUsageEstimator;
+
+/**
+ * A cache of decompressed blocks of stored fields, shared by the readers of
+ * all segments that are opened while it is the {@link #setDefault default}
+ * cache. It is bounded by the amount of memory that it uses.
+ * <p>
+ * {@link CompressingStoredFieldsReader} decompresses the whole block of
+ * documents that a document belongs to in order to return it. With this cache,
+ * documents that are fetched repeatedly, or whose neighbors are, are read from
+ * a previously decompressed block instead. Blocks are keyed by the segment
+ * reader they come from and by their position in the stored fields file, and
+ * are removed from the cache when the reader is closed.
+ * <p>
+ * Lookups don't lock. Blocks that are not looked up anymore are evicted first:
+ * every cached block is given a second chance if it has been used since the
+ * previous time that the eviction went over it.
+ * <p>
+ * Merges don't use the cache, neither do blocks of a single document that is
+ * larger than the chunk size of the format.
+ *
+ * @lucene.experimental
+ */
+public final class StoredFieldsBlockCache implements Accountable {
+
+  private static volatile StoredFieldsBlockCache defaultCache;
+
+  /**
+   * Return the cache that {@link CompressingStoredFieldsReader}s use when they
+   * are opened, or {@code null} if they don't use any cache, which is the default.
+   */
+  public static StoredFieldsBlockCache getDefault() {
+    return defaultCache;
+  }
+
+  /**
+   * Set the cache that {@link CompressingStoredFieldsReader}s use when they
+   * are opened. This has no effect on readers that are already open.
+   * Use {@code null} to disable caching.
+   */
+  public static void setDefault(StoredFieldsBlockCache cache) {
+    defaultCache = cache;
+  }
+
+  private final long maxRamBytesUsed;
+  private final long maxBlockRamBytesUsed;
+  private final Map<Key, Block> cache = new ConcurrentHashMap<>();
+  // blocks in the order in which eviction goes over them, guarded by lock
+  private final Deque<Key> evictionQueue = new ArrayDeque<>();
+  private final ReentrantLock lock = new ReentrantLock();
+  private final AtomicLong ramBytesUsed = new AtomicLong();
+
+  private final LongAdder hitCount = new LongAdder();
+  private final LongAdder missCount = new LongAdder();
+  private final LongAdder evictionCount = new LongAdder();
+
+  /**
+   * Create a new instance that will use at most {@code maxRamBytesUsed} bytes
+   * of memory. Blocks that use more than 1/8th of this amount are not cached.
+   */
+  public StoredFieldsBlockCache(long maxRamBytesUsed) {
+    if (maxRamBytesUsed <= 0) {
+      throw new IllegalArgumentException("maxRamBytesUsed must be positive, got " + maxRamBytesUsed);
+    }
+    this.maxRamBytesUsed = maxRamBytesUsed;
+    this.maxBlockRamBytesUsed = Math.max(1, maxRamBytesUsed / 8);
+  }
+
+  /** Return the cached block at the given position of the reader, or {@code null}. */
+  Block get(Object readerKey, long startPointer) {
+    final Block block = cache.get(new Key(readerKey, startPointer));
+    if (block == null) {
+      missCount.increment();
+      return null;
+    }
+    hitCount.increment();
+    if (block.used == false) {
+      block.used = true;
+    }
+    return block;
+  }
+
+  /** Return whether the block at the given position of the reader is cached, without counting a lookup. */
+  boolean contains(Object readerKey, long startPointer) {
+    return cache.containsKey(new Key(readerKey, startPointer));
+  }
+
+  /** Add a block to the cache, and evict blocks if the cache uses too much memory. */
+  void put(Object readerKey, long startPointer, Block block) {
+    if (block.ramBytesUsed > maxBlockRamBytesUsed) {
+      return;
+    }
+    final Key key = new Key(readerKey, startPointer);
+    lock.lock();
+    try {
+      if (cache.putIfAbsent(key, block) == null) {
+        evictionQueue.addLast(key);
+        ramBytesUsed.addAndGet(block.ramBytesUsed);
+        evictIfNecessary();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void evictIfNecessary() {
+    assert lock.isHeldByCurrentThread();
+    while (ramBytesUsed.get() > maxRamBytesUsed && evictionQueue.isEmpty() == false) {
+      final Key key = evictionQueue.pollFirst();
+      final Block block = cache.get(key);
+      assert block != null;
+      if (block.used) {
+        // second chance
+        block.used = false;
+        evictionQueue.addLast(key);
+      } else {
+        cache.remove(key);
+        ramBytesUsed.addAndGet(-block.ramBytesUsed);
+        evictionCount.increment();
+      }
+    }
+  }
+
+  /** Remove all blocks of the given reader. */
+  void invalidate(Object readerKey) {
+    lock.lock();
+    try {
+      for (Iterator<Key> it = evictionQueue.iterator(); it.hasNext(); ) {
+        final Key key = it.next();
+        if (key.readerKey == readerKey) {
+          it.remove();
+          ramBytesUsed.addAndGet(-cache.remove(key).ramBytesUsed);
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Remove all blocks from the cache. */
+  public void clear() {
+    lock.lock();
+    try {
+      cache.clear();
+      evictionQueue.clear();
+      ramBytesUsed.set(0);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Return the number of blocks in the cache. */
+  public int getCacheSize() {
+    return cache.size();
+  }
+
+  /** Return the number of lookups that found a block in the cache. */
+  public long getHitCount() {
+    return hitCount.sum();
+  }
+
+  /** Return the number of lookups that didn't find a block in the cache. */
+  public long getMissCount() {
+    return missCount.sum();
+  }
+
+  /** Return the number of blocks that have been evicted because the cache used too much memory. */
+  public long getEvictionCount() {
+    return evictionCount.sum();
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    return ramBytesUsed.get();
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "(blocks=" + getCacheSize() + ", ramBytesUsed=" + ramBytesUsed()
+        + ", hits=" + getHitCount() + ", misses=" + getMissCount() + ")";
+  }
+
+  private static final class Key {
+    final Object readerKey;
+    final long startPointer;
+
+    Key(Object readerKey, long startPointer) {
+      this.readerKey = readerKey;
+      this.startPointer = startPointer;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (obj == null || obj.getClass() != Key.class) {
+        return false;
+      }
+      final Key that = (Key) obj;
+      return readerKey == that.readerKey && startPointer == that.startPointer;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * System.identityHashCode(readerKey) + Long.hashCode(startPointer);
+    }
+  }
+
+  /** A decompressed block of documents. Its arrays must not be modified. */
+  static final class Block {
+    private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(Block.class)
+        + RamUsageEstimator.shallowSizeOfInstance(Key.class)
+        // entry of the map and of the eviction queue
+        + 2 * RamUsageEstimator.NUM_BYTES_OBJECT_REF + RamUsageEstimator.NUM_BYTES_OBJECT_HEADER
+        + Integer.BYTES + 2 * RamUsageEstimator.NUM_BYTES_OBJECT_REF;
+
+    final int docBase;
+    final int chunkDocs;
+    // offsets of documents in bytes, chunkDocs + 1 values
+    final int[] offsets;
+    final int[] numStoredFields;
+    final byte[] bytes;
+    final long ramBytesUsed;
+    // whether the block has been used since eviction last went over it
+    volatile boolean used;
+
+    Block(int docBase, int chunkDocs, int[] offsets, int[] numStoredFields, byte[] bytes) {
+      this.docBase = docBase;
+      this.chunkDocs = chunkDocs;
+      this.offsets = offsets;
+      this.numStoredFields = numStoredFields;
+      this.bytes = bytes;
+      this.ramBytesUsed = BASE_RAM_BYTES_USED + RamUsageEstimator.sizeOf(offsets)
+          + RamUsageEstimator.sizeOf(numStoredFields) + RamUsageEstimator.sizeOf(bytes);
+    }
+
+    boolean contains(int docID) {
+      return docID >= docBase && docID < docBase + chunkDocs;
+    }
+  }
+}
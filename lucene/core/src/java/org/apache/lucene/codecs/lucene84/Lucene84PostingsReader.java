@@ -282,6 +282,15 @@ public final class Lucene84PostingsReader extends PostingsReaderBase {
     return new BlockImpactsEverythingEnum(fieldInfo, (IntBlockTermState) state, flags);
   }
 
+  /**
+   * Postings enums only start reading when they are first advanced, so hinting the directory
+   * here lets the enums of several terms that are pulled together, e.g. by a boolean query,
+   * load their first blocks concurrently.
+   */
+  private static void prefetchPostings(IndexInput docIn, long docStartFP) throws IOException {
+    docIn.prefetch(docStartFP, 1);
+  }
+
   final class BlockDocsEnum extends PostingsEnum {
 
     final ForUtil forUtil = new ForUtil();
@@ -358,6 +367,7 @@ public final class Lucene84PostingsReader extends PostingsReaderBase {
           docIn = startDocIn.clone();
         }
         docIn.seek(docTermStartFP);
+        prefetchPostings(docIn, docTermStartFP);
       }
 
       doc = -1;
@@ -671,6 +681,7 @@ public final class Lucene84PostingsReader extends PostingsReaderBase {
           docIn = startDocIn.clone();
         }
         docIn.seek(docTermStartFP);
+        prefetchPostings(docIn, docTermStartFP);
       }
       posPendingFP = posTermStartFP;
       payPendingFP = payTermStartFP;
@@ -1047,6 +1058,7 @@ public final class Lucene84PostingsReader extends PostingsReaderBase {
 
       docFreq = termState.docFreq;
       docIn.seek(termState.docStartFP);
+      prefetchPostings(docIn, termState.docStartFP);
 
       doc = -1;
       accum = 0;
@@ -1261,6 +1273,7 @@ public final class Lucene84PostingsReader extends PostingsReaderBase {
       payTermStartFP = termState.payStartFP;
       totalTermFreq = termState.totalTermFreq;
       docIn.seek(docTermStartFP);
+      prefetchPostings(docIn, docTermStartFP);
       posPendingFP = posTermStartFP;
       posPendingCount = 0;
       if (termState.totalTermFreq < BLOCK_SIZE) {
@@ -1610,6 +1623,7 @@ public final class Lucene84PostingsReader extends PostingsReaderBase {
       payTermStartFP = termState.payStartFP;
       totalTermFreq = termState.totalTermFreq;
       docIn.seek(docTermStartFP);
+      prefetchPostings(docIn, docTermStartFP);
       posPendingFP = posTermStartFP;
       payPendingFP = payTermStartFP;
       posPendingCount = 0;
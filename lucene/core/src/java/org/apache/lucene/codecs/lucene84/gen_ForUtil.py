@@ -20,6 +20,7 @@ from fractions import gcd
 """Code generation for ForUtil.java"""
 
 MAX_SPECIALIZED_BITS_PER_VALUE = 24
+MAX_BITS_PER_VALUE_16_BIT_LANES_PREFIX_SUM = 11
 OUTPUT_FILE = "ForUtil.java"
 HEADER = """// This file has been automatically generated, DO NOT EDIT
 
@@ -94,13 +95,11 @@ final class ForUtil {
     }
   }
 
-  private static void expand8To32(long[] arr) {
+  private static void expand8To16(long[] arr) {
     for (int i = 0; i < 16; ++i) {
       long l = arr[i];
-      arr[i] = (l >>> 24) & 0x000000FF000000FFL;
-      arr[16+i] = (l >>> 16) & 0x000000FF000000FFL;
-      arr[32+i] = (l >>> 8) & 0x000000FF000000FFL;
-      arr[48+i] = l & 0x000000FF000000FFL;
+      arr[i] = (l >>> 8) & 0x00FF00FF00FF00FFL;
+      arr[16+i] = l & 0x00FF00FF00FF00FFL;
     }
   }
 
@@ -149,8 +148,28 @@ final class ForUtil {
   }
 
   private static void prefixSum8(long[] arr, long base) {
-    expand8To32(arr);
-    prefixSum32(arr, base);
+    // The sum of 32 values of 8 bits fits in 16 bits
+    expand8To16(arr);
+    prefixSum16Lanes(arr, base);
+  }
+
+  // Computes the prefix sum of values that are packed in 4 lanes of 16 bits, in the
+  // order used by expand16. Each lane holds 32 values whose sum must fit in 16 bits,
+  // so this only works with values of up to 11 bits, but it runs on twice as many
+  // values per operation as prefixSum32.
+  private static void prefixSum16Lanes(long[] arr, long base) {
+    innerPrefixSum16(arr);
+    final long l = arr[BLOCK_SIZE/4-1];
+    final long base1 = base + (l >>> 48);
+    final long base2 = base1 + ((l >>> 32) & 0xFFFFL);
+    final long base3 = base2 + ((l >>> 16) & 0xFFFFL);
+    for (int i = 0; i < 32; ++i) {
+      long v = arr[i];
+      arr[i] = base + (v >>> 48);
+      arr[32+i] = base1 + ((v >>> 32) & 0xFFFFL);
+      arr[64+i] = base2 + ((v >>> 16) & 0xFFFFL);
+      arr[96+i] = base3 + (v & 0xFFFFL);
+    }
   }
 
   private static void prefixSum16(long[] arr, long base) {
@@ -169,6 +188,41 @@ final class ForUtil {
     }
   }
 
+  // For some reason unrolling seems to help
+  private static void innerPrefixSum16(long[] arr) {
+    arr[1] += arr[0];
+    arr[2] += arr[1];
+    arr[3] += arr[2];
+    arr[4] += arr[3];
+    arr[5] += arr[4];
+    arr[6] += arr[5];
+    arr[7] += arr[6];
+    arr[8] += arr[7];
+    arr[9] += arr[8];
+    arr[10] += arr[9];
+    arr[11] += arr[10];
+    arr[12] += arr[11];
+    arr[13] += arr[12];
+    arr[14] += arr[13];
+    arr[15] += arr[14];
+    arr[16] += arr[15];
+    arr[17] += arr[16];
+    arr[18] += arr[17];
+    arr[19] += arr[18];
+    arr[20] += arr[19];
+    arr[21] += arr[20];
+    arr[22] += arr[21];
+    arr[23] += arr[22];
+    arr[24] += arr[23];
+    arr[25] += arr[24];
+    arr[26] += arr[25];
+    arr[27] += arr[26];
+    arr[28] += arr[27];
+    arr[29] += arr[28];
+    arr[30] += arr[29];
+    arr[31] += arr[30];
+  }
+
   // For some reason unrolling seems to help
   private static void innerPrefixSum32(long[] arr) {
     arr[1] += arr[0];
@@ -468,7 +522,11 @@ if __name__ == '__main__':
       next_primitive = 16
     f.write('    case %d:\n' %bpv)
     f.write('      decode%d(in, tmp, longs);\n' %bpv)
-    f.write('      prefixSum%d(longs, base);\n' %next_primitive)
+    if 8 < bpv <= MAX_BITS_PER_VALUE_16_BIT_LANES_PREFIX_SUM:
+      # values are already packed in 16 bits lanes and are small enough to not overflow
+      f.write('      prefixSum16Lanes(longs, base);\n')
+    else:
+      f.write('      prefixSum%d(longs, base);\n' %next_primitive)
     f.write('      break;\n')
   f.write('    default:\n')
   f.write('      decodeSlow(bitsPerValue, in, tmp, longs);\n')
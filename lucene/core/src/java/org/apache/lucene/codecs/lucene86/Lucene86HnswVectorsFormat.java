@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.lucene86;
+
+import java.io.IOException;
+
+import org.apache.lucene.codecs.DocValuesConsumer;
+import org.apache.lucene.codecs.DocValuesFormat;
+import org.apache.lucene.codecs.DocValuesProducer;
+import org.apache.lucene.index.SegmentReadState;
+import org.apache.lucene.index.SegmentWriteState;
+import org.apache.lucene.util.hnsw.HnswGraphBuilder;
+
+/**
+ * Doc values format for the vectors of {@link org.apache.lucene.document.VectorField}s, which
+ * indexes them in a navigable small-world graph per field and per segment for approximate
+ * nearest-neighbor search. The graph is rebuilt when segments get merged. It is a
+ * single-layer graph built by {@link org.apache.lucene.util.hnsw.HnswGraphBuilder}, not a
+ * hierarchical one.
+ * <p>
+ * This format only supports binary doc values of vector fields, so it needs to be configured
+ * per field, for instance by overriding {@link Lucene86Codec#getDocValuesFormatForField(String)}.
+ *
+ * <p>Data is stored across three files
+ * <ul>
+ *   <li>A .vem file that records metadata about the fields, such as their numbers of
+ *       dimensions, similarity functions and the documents that have a vector.
+ *   <li>A .vec file that stores the vectors, as consecutive floats in order of documents.
+ *   <li>A .vex file that stores the graphs, as a fixed number of neighbor ordinals per vector.
+ * </ul>
+ *
+ * @see org.apache.lucene.index.VectorValues
+ * @lucene.experimental
+ */
+public final class Lucene86HnswVectorsFormat extends DocValuesFormat {
+
+  static final String META_CODEC_NAME = "Lucene86HnswVectorsFormatMeta";
+  static final String VECTOR_DATA_CODEC_NAME = "Lucene86HnswVectorsFormatData";
+  static final String GRAPH_INDEX_CODEC_NAME = "Lucene86HnswVectorsFormatIndex";
+
+  /**
+   * Filename extension for the meta per field
+   */
+  public static final String META_EXTENSION = "vem";
+
+  /**
+   * Filename extension for the vectors
+   */
+  public static final String VECTOR_DATA_EXTENSION = "vec";
+
+  /**
+   * Filename extension for the graphs
+   */
+  public static final String GRAPH_INDEX_EXTENSION = "vex";
+
+  static final int VERSION_START = 0;
+  static final int VERSION_CURRENT = VERSION_START;
+
+  private final int maxConn;
+  private final int beamWidth;
+
+  /** Create a format with default graph parameters. */
+  public Lucene86HnswVectorsFormat() {
+    this(HnswGraphBuilder.DEFAULT_MAX_CONN, HnswGraphBuilder.DEFAULT_BEAM_WIDTH);
+  }
+
+  /**
+   * Create a format with the given graph parameters.
+   * @param maxConn maximum number of neighbors of each vector in the graph
+   * @param beamWidth number of candidates to consider when looking for the neighbors of a vector,
+   *                  higher values give better graphs and slower indexing
+   */
+  public Lucene86HnswVectorsFormat(int maxConn, int beamWidth) {
+    super("Lucene86HnswVectors");
+    if (maxConn <= 0) {
+      throw new IllegalArgumentException("maxConn must be positive, got " + maxConn);
+    }
+    if (beamWidth <= 0) {
+      throw new IllegalArgumentException("beamWidth must be positive, got " + beamWidth);
+    }
+    this.maxConn = maxConn;
+    this.beamWidth = beamWidth;
+  }
+
+  @Override
+  public DocValuesConsumer fieldsConsumer(SegmentWriteState state) throws IOException {
+    return new Lucene86HnswVectorsWriter(state, maxConn, beamWidth);
+  }
+
+  @Override
+  public DocValuesProducer fieldsProducer(SegmentReadState state) throws IOException {
+    return new Lucene86HnswVectorsReader(state);
+  }
+
+  @Override
+  public String toString() {
+    return "Lucene86HnswVectorsFormat(maxConn=" + maxConn + ", beamWidth=" + beamWidth + ")";
+  }
+}
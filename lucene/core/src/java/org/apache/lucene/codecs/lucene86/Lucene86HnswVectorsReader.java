@@ -0,0 +1,453 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.lucene86;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.codecs.DocValuesProducer;
+import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.index.CorruptIndexException;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.FieldInfos;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.SegmentReadState;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.index.SortedNumericDocValues;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.index.VectorValues;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TotalHits;
+import org.apache.lucene.store.ChecksumIndexInput;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.apache.lucene.util.hnsw.HnswGraph;
+import org.apache.lucene.util.hnsw.HnswGraphBuilder;
+import org.apache.lucene.util.hnsw.NeighborQueue;
+import org.apache.lucene.util.hnsw.RandomAccessVectorValues;
+
+/** reader for {@link Lucene86HnswVectorsFormat} */
+final class Lucene86HnswVectorsReader extends DocValuesProducer {
+
+  private final Map<String,FieldEntry> fields = new HashMap<>();
+  private final IndexInput vectorData;
+  private final IndexInput graphIndex;
+  private long ramBytesUsed;
+
+  Lucene86HnswVectorsReader(SegmentReadState state) throws IOException {
+    ramBytesUsed = RamUsageEstimator.shallowSizeOfInstance(getClass());
+    final String metaFileName = IndexFileNames.segmentFileName(state.segmentInfo.name,
+        state.segmentSuffix, Lucene86HnswVectorsFormat.META_EXTENSION);
+    final String vectorDataFileName = IndexFileNames.segmentFileName(state.segmentInfo.name,
+        state.segmentSuffix, Lucene86HnswVectorsFormat.VECTOR_DATA_EXTENSION);
+    final String graphIndexFileName = IndexFileNames.segmentFileName(state.segmentInfo.name,
+        state.segmentSuffix, Lucene86HnswVectorsFormat.GRAPH_INDEX_EXTENSION);
+
+    IndexInput vectorData = null, graphIndex = null;
+    boolean success = false;
+    try {
+      vectorData = state.directory.openInput(vectorDataFileName, state.context);
+      CodecUtil.checkIndexHeader(vectorData,
+          Lucene86HnswVectorsFormat.VECTOR_DATA_CODEC_NAME,
+          Lucene86HnswVectorsFormat.VERSION_START,
+          Lucene86HnswVectorsFormat.VERSION_CURRENT,
+          state.segmentInfo.getId(),
+          state.segmentSuffix);
+
+      graphIndex = state.directory.openInput(graphIndexFileName, state.context);
+      CodecUtil.checkIndexHeader(graphIndex,
+          Lucene86HnswVectorsFormat.GRAPH_INDEX_CODEC_NAME,
+          Lucene86HnswVectorsFormat.VERSION_START,
+          Lucene86HnswVectorsFormat.VERSION_CURRENT,
+          state.segmentInfo.getId(),
+          state.segmentSuffix);
+
+      long vectorDataLength = -1, graphIndexLength = -1;
+      try (ChecksumIndexInput meta = state.directory.openChecksumInput(metaFileName, state.context)) {
+        Throwable priorE = null;
+        try {
+          CodecUtil.checkIndexHeader(meta,
+              Lucene86HnswVectorsFormat.META_CODEC_NAME,
+              Lucene86HnswVectorsFormat.VERSION_START,
+              Lucene86HnswVectorsFormat.VERSION_CURRENT,
+              state.segmentInfo.getId(),
+              state.segmentSuffix);
+          readFields(meta, state.fieldInfos, state.segmentInfo.maxDoc());
+          vectorDataLength = meta.readLong();
+          graphIndexLength = meta.readLong();
+        } catch (Throwable t) {
+          priorE = t;
+        } finally {
+          CodecUtil.checkFooter(meta, priorE);
+        }
+      }
+      // At this point, checksums of the meta file have been validated so we
+      // know that the lengths of the other files are very likely correct.
+      CodecUtil.retrieveChecksum(vectorData, vectorDataLength);
+      CodecUtil.retrieveChecksum(graphIndex, graphIndexLength);
+      success = true;
+    } finally {
+      if (success == false) {
+        IOUtils.closeWhileHandlingException(vectorData, graphIndex);
+      }
+    }
+    this.vectorData = vectorData;
+    this.graphIndex = graphIndex;
+  }
+
+  private void readFields(ChecksumIndexInput meta, FieldInfos infos, int maxDoc) throws IOException {
+    for (int fieldNumber = meta.readInt(); fieldNumber != -1; fieldNumber = meta.readInt()) {
+      final FieldInfo info = infos.fieldInfo(fieldNumber);
+      if (info == null) {
+        throw new CorruptIndexException("Invalid field number: " + fieldNumber, meta);
+      }
+      final FieldEntry entry = new FieldEntry();
+      final int similarityFunction = meta.readByte();
+      if (similarityFunction < 0 || similarityFunction >= VectorValues.SimilarityFunction.values().length) {
+        throw new CorruptIndexException("Invalid similarity function: " + similarityFunction, meta);
+      }
+      entry.similarityFunction = VectorValues.SimilarityFunction.values()[similarityFunction];
+      entry.dimension = meta.readVInt();
+      entry.maxConn = meta.readVInt();
+      entry.vectorDataOffset = meta.readVLong();
+      entry.vectorDataLength = meta.readVLong();
+      entry.graphIndexOffset = meta.readVLong();
+      entry.graphIndexLength = meta.readVLong();
+      entry.size = meta.readVInt();
+      if (entry.size < 0 || entry.size > maxDoc) {
+        throw new CorruptIndexException("Invalid number of vectors: " + entry.size, meta);
+      }
+      if (entry.vectorDataLength != (long) entry.size * entry.dimension * Float.BYTES) {
+        throw new CorruptIndexException("Invalid length of vectors: " + entry.vectorDataLength, meta);
+      }
+      if (entry.size == maxDoc) {
+        // dense: ordinals are doc ids
+        entry.docs = null;
+      } else {
+        entry.docs = new int[entry.size];
+        int doc = -1;
+        for (int i = 0; i < entry.size; ++i) {
+          doc += 1 + meta.readVInt();
+          if (doc >= maxDoc) {
+            throw new CorruptIndexException("Invalid doc: " + doc, meta);
+          }
+          entry.docs[i] = doc;
+        }
+        ramBytesUsed += RamUsageEstimator.sizeOf(entry.docs);
+      }
+      fields.put(info.name, entry);
+    }
+  }
+
+  private static class FieldEntry {
+    VectorValues.SimilarityFunction similarityFunction;
+    int dimension;
+    int maxConn;
+    long vectorDataOffset;
+    long vectorDataLength;
+    long graphIndexOffset;
+    long graphIndexLength;
+    int size;
+    // doc of each ordinal, null if every doc has a vector
+    int[] docs;
+
+    int ordToDoc(int ord) {
+      return docs == null ? ord : docs[ord];
+    }
+  }
+
+  @Override
+  public BinaryDocValues getBinary(FieldInfo field) throws IOException {
+    final FieldEntry entry = fields.get(field.name);
+    if (entry == null) {
+      throw new IllegalArgumentException("field=\"" + field.name + "\" has no vectors");
+    }
+    final IndexInput vectors = vectorData.slice("vector-data", entry.vectorDataOffset, entry.vectorDataLength);
+    final IndexInput graph = graphIndex.slice("graph-index", entry.graphIndexOffset, entry.graphIndexLength);
+    return new OffHeapVectorValues(entry, vectors, graph);
+  }
+
+  @Override
+  public NumericDocValues getNumeric(FieldInfo field) {
+    throw new UnsupportedOperationException("Lucene86HnswVectorsFormat only supports vector fields");
+  }
+
+  @Override
+  public SortedDocValues getSorted(FieldInfo field) {
+    throw new UnsupportedOperationException("Lucene86HnswVectorsFormat only supports vector fields");
+  }
+
+  @Override
+  public SortedNumericDocValues getSortedNumeric(FieldInfo field) {
+    throw new UnsupportedOperationException("Lucene86HnswVectorsFormat only supports vector fields");
+  }
+
+  @Override
+  public SortedSetDocValues getSortedSet(FieldInfo field) {
+    throw new UnsupportedOperationException("Lucene86HnswVectorsFormat only supports vector fields");
+  }
+
+  @Override
+  public void checkIntegrity() throws IOException {
+    CodecUtil.checksumEntireFile(vectorData);
+    CodecUtil.checksumEntireFile(graphIndex);
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    return ramBytesUsed;
+  }
+
+  @Override
+  public void close() throws IOException {
+    IOUtils.close(vectorData, graphIndex);
+  }
+
+  /** Random access to vectors stored as consecutive big-endian floats. */
+  static final class OffHeapVectors implements RandomAccessVectorValues {
+
+    private final int dimension;
+    private final int size;
+    private final IndexInput data;
+    private final byte[] bytes;
+    private final FloatBuffer floatBuffer;
+    private final float[] value;
+    private final BytesRef binaryValue;
+
+    OffHeapVectors(int dimension, int size, IndexInput data) {
+      this.dimension = dimension;
+      this.size = size;
+      this.data = data;
+      this.bytes = new byte[dimension * Float.BYTES];
+      this.floatBuffer = ByteBuffer.wrap(bytes).asFloatBuffer();
+      this.value = new float[dimension];
+      this.binaryValue = new BytesRef(bytes);
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+
+    @Override
+    public int dimension() {
+      return dimension;
+    }
+
+    /** Return the encoded vector at the given ordinal. */
+    BytesRef binaryValue(int ord) throws IOException {
+      data.seek((long) ord * bytes.length);
+      data.readBytes(bytes, 0, bytes.length);
+      return binaryValue;
+    }
+
+    @Override
+    public float[] vectorValue(int ord) throws IOException {
+      binaryValue(ord);
+      floatBuffer.rewind();
+      floatBuffer.get(value);
+      return value;
+    }
+
+    @Override
+    public OffHeapVectors copy() {
+      return new OffHeapVectors(dimension, size, data.clone());
+    }
+  }
+
+  /** Graph whose nodes have a fixed number of slots for neighbors, preceded by the number of used slots. */
+  private static final class OffHeapHnswGraph extends HnswGraph {
+
+    private final int size;
+    private final int maxConn;
+    private final IndexInput data;
+    private int arcCount;
+    private int arcUpto;
+
+    OffHeapHnswGraph(int size, int maxConn, IndexInput data) {
+      this.size = size;
+      this.maxConn = maxConn;
+      this.data = data;
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+
+    @Override
+    public void seek(int node) throws IOException {
+      data.seek((long) node * (maxConn + 1) * Integer.BYTES);
+      arcCount = data.readInt();
+      arcUpto = 0;
+    }
+
+    @Override
+    public int nextNeighbor() throws IOException {
+      if (arcUpto < arcCount) {
+        ++arcUpto;
+        return data.readInt();
+      }
+      return DocIdSetIterator.NO_MORE_DOCS;
+    }
+  }
+
+  private static final class OffHeapVectorValues extends VectorValues {
+
+    private final FieldEntry entry;
+    private final OffHeapVectors vectors;
+    private final IndexInput graphData;
+    private int ord = -1;
+    private int doc = -1;
+
+    OffHeapVectorValues(FieldEntry entry, IndexInput vectorData, IndexInput graphData) {
+      this.entry = entry;
+      this.vectors = new OffHeapVectors(entry.dimension, entry.size, vectorData);
+      this.graphData = graphData;
+    }
+
+    @Override
+    public int dimension() {
+      return entry.dimension;
+    }
+
+    @Override
+    public SimilarityFunction similarityFunction() {
+      return entry.similarityFunction;
+    }
+
+    @Override
+    public float[] vectorValue() throws IOException {
+      return vectors.vectorValue(ord);
+    }
+
+    @Override
+    public BytesRef binaryValue() throws IOException {
+      return vectors.binaryValue(ord);
+    }
+
+    @Override
+    public int docID() {
+      return doc;
+    }
+
+    @Override
+    public int nextDoc() {
+      return setOrd(ord + 1);
+    }
+
+    @Override
+    public int advance(int target) {
+      assert target > doc;
+      if (entry.docs == null) {
+        return setOrd(target);
+      }
+      int index = Arrays.binarySearch(entry.docs, ord + 1, entry.size, target);
+      if (index < 0) {
+        index = -1 - index;
+      }
+      return setOrd(index);
+    }
+
+    private int setOrd(int ord) {
+      this.ord = ord;
+      if (ord >= entry.size) {
+        doc = NO_MORE_DOCS;
+      } else {
+        doc = entry.ordToDoc(ord);
+      }
+      return doc;
+    }
+
+    @Override
+    public boolean advanceExact(int target) {
+      doc = target;
+      if (entry.docs == null) {
+        ord = target;
+        return true;
+      }
+      // the target may be the current doc
+      final int index = Arrays.binarySearch(entry.docs, Math.max(ord, 0), entry.size, target);
+      if (index >= 0) {
+        ord = index;
+        return true;
+      }
+      // so that nextDoc() returns the first doc after the target
+      ord = -2 - index;
+      return false;
+    }
+
+    @Override
+    public long cost() {
+      return entry.size;
+    }
+
+    @Override
+    public TopDocs search(float[] target, int k, int fanout, Bits acceptDocs, int visitedLimit) throws IOException {
+      if (target.length != entry.dimension) {
+        throw new IllegalArgumentException("vector query dimension: " + target.length
+            + " differs from field dimension: " + entry.dimension);
+      }
+      final Bits acceptOrds;
+      if (acceptDocs == null) {
+        acceptOrds = null;
+      } else {
+        acceptOrds = new Bits() {
+          @Override
+          public boolean get(int index) {
+            return acceptDocs.get(entry.ordToDoc(index));
+          }
+
+          @Override
+          public int length() {
+            return entry.size;
+          }
+        };
+      }
+      // a fixed seed makes results reproducible
+      final int ef = k + fanout;
+      final NeighborQueue results = HnswGraph.search(target, ef, ef, vectors.copy(), entry.similarityFunction,
+          new OffHeapHnswGraph(entry.size, entry.maxConn, graphData.clone()), acceptOrds, visitedLimit,
+          new Random(HnswGraphBuilder.DEFAULT_RAND_SEED));
+      if (results.incomplete()) {
+        return null;
+      }
+      while (results.size() > k) {
+        results.pop();
+      }
+      final ScoreDoc[] scoreDocs = new ScoreDoc[results.size()];
+      for (int i = scoreDocs.length - 1; i >= 0; --i) {
+        final float score = results.topScore();
+        final int node = results.pop();
+        scoreDocs[i] = new ScoreDoc(entry.ordToDoc(node), score);
+      }
+      return new TopDocs(new TotalHits(results.visitedCount(), TotalHits.Relation.GREATER_THAN_OR_EQUAL_TO), scoreDocs);
+    }
+  }
+}
@@ -0,0 +1,218 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.lucene86;
+
+import java.io.IOException;
+
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.codecs.DocValuesConsumer;
+import org.apache.lucene.codecs.DocValuesProducer;
+import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.index.SegmentWriteState;
+import org.apache.lucene.index.VectorValues;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.hnsw.HnswGraphBuilder;
+import org.apache.lucene.util.hnsw.NeighborArray;
+import org.apache.lucene.util.hnsw.OnHeapHnswGraph;
+
+/** writer for {@link Lucene86HnswVectorsFormat} */
+final class Lucene86HnswVectorsWriter extends DocValuesConsumer {
+
+  private final SegmentWriteState state;
+  private final int maxConn;
+  private final int beamWidth;
+  private IndexOutput meta, vectorData, graphIndex;
+
+  Lucene86HnswVectorsWriter(SegmentWriteState state, int maxConn, int beamWidth) throws IOException {
+    this.state = state;
+    this.maxConn = maxConn;
+    this.beamWidth = beamWidth;
+    final String metaFileName = IndexFileNames.segmentFileName(state.segmentInfo.name,
+        state.segmentSuffix, Lucene86HnswVectorsFormat.META_EXTENSION);
+    final String vectorDataFileName = IndexFileNames.segmentFileName(state.segmentInfo.name,
+        state.segmentSuffix, Lucene86HnswVectorsFormat.VECTOR_DATA_EXTENSION);
+    final String graphIndexFileName = IndexFileNames.segmentFileName(state.segmentInfo.name,
+        state.segmentSuffix, Lucene86HnswVectorsFormat.GRAPH_INDEX_EXTENSION);
+    boolean success = false;
+    try {
+      meta = state.directory.createOutput(metaFileName, state.context);
+      CodecUtil.writeIndexHeader(meta,
+          Lucene86HnswVectorsFormat.META_CODEC_NAME,
+          Lucene86HnswVectorsFormat.VERSION_CURRENT,
+          state.segmentInfo.getId(),
+          state.segmentSuffix);
+      vectorData = state.directory.createOutput(vectorDataFileName, state.context);
+      CodecUtil.writeIndexHeader(vectorData,
+          Lucene86HnswVectorsFormat.VECTOR_DATA_CODEC_NAME,
+          Lucene86HnswVectorsFormat.VERSION_CURRENT,
+          state.segmentInfo.getId(),
+          state.segmentSuffix);
+      graphIndex = state.directory.createOutput(graphIndexFileName, state.context);
+      CodecUtil.writeIndexHeader(graphIndex,
+          Lucene86HnswVectorsFormat.GRAPH_INDEX_CODEC_NAME,
+          Lucene86HnswVectorsFormat.VERSION_CURRENT,
+          state.segmentInfo.getId(),
+          state.segmentSuffix);
+      success = true;
+    } finally {
+      if (success == false) {
+        IOUtils.closeWhileHandlingException(this);
+      }
+    }
+  }
+
+  @Override
+  public void addBinaryField(FieldInfo field, DocValuesProducer valuesProducer) throws IOException {
+    final int dimension = VectorValues.getDimension(field);
+    if (dimension == 0) {
+      throw new IllegalArgumentException("field=\"" + field.name + "\" is not a vector field, "
+          + "Lucene86HnswVectorsFormat only supports fields indexed with VectorField");
+    }
+    final VectorValues.SimilarityFunction similarityFunction = VectorValues.getSimilarityFunction(field);
+    final int vectorByteLength = dimension * Float.BYTES;
+
+    // Vectors are first written to a temporary file, which is both copied to the
+    // data file and used to compute similarities while building the graph.
+    int[] docs = new int[0];
+    int size = 0;
+    String tempFileName = null;
+    boolean success = false;
+    try {
+      try (IndexOutput temp = state.directory.createTempOutput(state.segmentInfo.name, "vectors", state.context)) {
+        tempFileName = temp.getName();
+        final BinaryDocValues values = valuesProducer.getBinary(field);
+        for (int doc = values.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = values.nextDoc()) {
+          final BytesRef value = values.binaryValue();
+          if (value.length != vectorByteLength) {
+            throw new IllegalArgumentException("field=\"" + field.name + "\" has vectors of " + dimension
+                + " dimensions, but doc=" + doc + " has a value of " + value.length + " bytes");
+          }
+          temp.writeBytes(value.bytes, value.offset, value.length);
+          docs = ArrayUtil.grow(docs, size + 1);
+          docs[size++] = doc;
+        }
+      }
+
+      try (IndexInput temp = state.directory.openInput(tempFileName, state.context)) {
+        final long vectorDataOffset = vectorData.getFilePointer();
+        vectorData.copyBytes(temp, temp.length());
+        final long vectorDataLength = vectorData.getFilePointer() - vectorDataOffset;
+
+        final long graphIndexOffset = graphIndex.getFilePointer();
+        final Lucene86HnswVectorsReader.OffHeapVectors vectors =
+            new Lucene86HnswVectorsReader.OffHeapVectors(dimension, size, temp);
+        final OnHeapHnswGraph graph = new HnswGraphBuilder(vectors, similarityFunction,
+            maxConn, beamWidth, HnswGraphBuilder.DEFAULT_RAND_SEED).build();
+        writeGraph(graph);
+        final long graphIndexLength = graphIndex.getFilePointer() - graphIndexOffset;
+
+        meta.writeInt(field.number);
+        meta.writeByte((byte) similarityFunction.ordinal());
+        meta.writeVInt(dimension);
+        meta.writeVInt(maxConn);
+        meta.writeVLong(vectorDataOffset);
+        meta.writeVLong(vectorDataLength);
+        meta.writeVLong(graphIndexOffset);
+        meta.writeVLong(graphIndexLength);
+        meta.writeVInt(size);
+        if (size != state.segmentInfo.maxDoc()) {
+          int previous = -1;
+          for (int i = 0; i < size; ++i) {
+            meta.writeVInt(docs[i] - previous - 1);
+            previous = docs[i];
+          }
+        }
+      }
+      success = true;
+    } finally {
+      if (tempFileName != null) {
+        if (success) {
+          state.directory.deleteFile(tempFileName);
+        } else {
+          IOUtils.deleteFilesIgnoringExceptions(state.directory, tempFileName);
+        }
+      }
+    }
+  }
+
+  /** Write the neighbors of each node on a fixed number of slots, so that they can be looked up by node. */
+  private void writeGraph(OnHeapHnswGraph graph) throws IOException {
+    for (int node = 0; node < graph.size(); ++node) {
+      final NeighborArray neighbors = graph.getNeighbors(node);
+      final int[] nodes = neighbors.nodes();
+      final int count = neighbors.size();
+      assert count <= maxConn;
+      graphIndex.writeInt(count);
+      for (int i = 0; i < count; ++i) {
+        graphIndex.writeInt(nodes[i]);
+      }
+      for (int i = count; i < maxConn; ++i) {
+        graphIndex.writeInt(0);
+      }
+    }
+  }
+
+  @Override
+  public void addNumericField(FieldInfo field, DocValuesProducer valuesProducer) {
+    throw new UnsupportedOperationException("Lucene86HnswVectorsFormat only supports vector fields");
+  }
+
+  @Override
+  public void addSortedField(FieldInfo field, DocValuesProducer valuesProducer) {
+    throw new UnsupportedOperationException("Lucene86HnswVectorsFormat only supports vector fields");
+  }
+
+  @Override
+  public void addSortedNumericField(FieldInfo field, DocValuesProducer valuesProducer) {
+    throw new UnsupportedOperationException("Lucene86HnswVectorsFormat only supports vector fields");
+  }
+
+  @Override
+  public void addSortedSetField(FieldInfo field, DocValuesProducer valuesProducer) {
+    throw new UnsupportedOperationException("Lucene86HnswVectorsFormat only supports vector fields");
+  }
+
+  @Override
+  public void close() throws IOException {
+    boolean success = false;
+    try {
+      if (meta != null) {
+        meta.writeInt(-1); // write EOF marker
+        CodecUtil.writeFooter(vectorData);
+        CodecUtil.writeFooter(graphIndex);
+        meta.writeLong(vectorData.getFilePointer());
+        meta.writeLong(graphIndex.getFilePointer());
+        CodecUtil.writeFooter(meta);
+      }
+      success = true;
+    } finally {
+      if (success) {
+        IOUtils.close(meta, vectorData, graphIndex);
+      } else {
+        IOUtils.closeWhileHandlingException(meta, vectorData, graphIndex);
+      }
+      meta = vectorData = graphIndex = null;
+    }
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.document;
+
+import java.util.Objects;
+
+import org.apache.lucene.index.DocValuesType;
+import org.apache.lucene.index.IndexableFieldType;
+import org.apache.lucene.index.VectorValues;
+import org.apache.lucene.search.KnnVectorQuery;
+import org.apache.lucene.search.Query;
+
+/**
+ * Field that indexes a per-document dense vector of floats for nearest-neighbor search.
+ * Here's an example usage:
+ *
+ * <pre class="prettyprint">
+ *   document.add(new VectorField(name, new float[] {0.6f, 0.8f}, VectorValues.SimilarityFunction.DOT_PRODUCT));
+ * </pre>
+ *
+ * <p>
+ * Vectors are stored as binary doc values, see {@link VectorValues}. All the vectors
+ * of a field must have the same number of dimensions and similarity function, across
+ * all segments of the index: {@link org.apache.lucene.index.IndexWriter} rejects
+ * documents that would change them.
+ * By default, {@link KnnVectorQuery} compares the target vector with the vectors of
+ * all matching documents. In order to index vectors in a graph and find nearest
+ * neighbors efficiently, configure the codec to use
+ * {@link org.apache.lucene.codecs.lucene86.Lucene86HnswVectorsFormat} as the
+ * doc values format of this field.
+ *
+ * @see VectorValues
+ * @lucene.experimental
+ */
+public class VectorField extends Field {
+
+  /**
+   * Create a field type for vectors of the given number of dimensions
+   * that are compared with the given function.
+   * @throws IllegalArgumentException if the number of dimensions is not in
+   *         {@code [1, }{@link VectorValues#MAX_DIMENSIONS}{@code ]}
+   */
+  public static FieldType createFieldType(int dimension, VectorValues.SimilarityFunction similarityFunction) {
+    if (dimension <= 0 || dimension > VectorValues.MAX_DIMENSIONS) {
+      throw new IllegalArgumentException("dimension must be in [1, " + VectorValues.MAX_DIMENSIONS + "], got " + dimension);
+    }
+    Objects.requireNonNull(similarityFunction, "similarityFunction must not be null");
+    final FieldType type = new FieldType();
+    type.setDocValuesType(DocValuesType.BINARY);
+    type.putAttribute(VectorValues.DIMENSION_KEY, Integer.toString(dimension));
+    type.putAttribute(VectorValues.SIMILARITY_FUNCTION_KEY, similarityFunction.name());
+    type.freeze();
+    return type;
+  }
+
+  private static <T extends IndexableFieldType> T getType(float[] vector, T type) {
+    final String dimension = type.getAttributes() == null ? null : type.getAttributes().get(VectorValues.DIMENSION_KEY);
+    if (dimension == null) {
+      throw new IllegalArgumentException("field type must be created with VectorField.createFieldType");
+    }
+    if (vector.length != Integer.parseInt(dimension)) {
+      throw new IllegalArgumentException("vector has " + vector.length + " dimensions but the field type expects " + dimension);
+    }
+    for (float value : vector) {
+      if (Float.isFinite(value) == false) {
+        throw new IllegalArgumentException("vector values must be finite, got " + value);
+      }
+    }
+    return type;
+  }
+
+  /**
+   * Create a new vector field.
+   * @param name field name
+   * @param vector value
+   * @param similarityFunction function used to compare vectors of this field
+   * @throws IllegalArgumentException if the vector is empty, has more than
+   *         {@link VectorValues#MAX_DIMENSIONS} dimensions or has non-finite values
+   */
+  public VectorField(String name, float[] vector, VectorValues.SimilarityFunction similarityFunction) {
+    this(name, vector, createFieldType(Objects.requireNonNull(vector, "vector must not be null").length, similarityFunction));
+  }
+
+  /**
+   * Create a new vector field with a type created by {@link #createFieldType}.
+   * Sharing the field type across documents avoids creating it for every field.
+   * @param name field name
+   * @param vector value
+   * @param type field type
+   * @throws IllegalArgumentException if the number of dimensions of the vector does not match the type,
+   *         or if it has non-finite values
+   */
+  public VectorField(String name, float[] vector, FieldType type) {
+    super(name, getType(Objects.requireNonNull(vector, "vector must not be null"), type));
+    fieldsData = VectorValues.encode(vector);
+  }
+
+  /**
+   * Change the vector of this field.
+   * @throws IllegalArgumentException if the number of dimensions of the vector does not match the type
+   */
+  public void setVectorValue(float[] vector) {
+    getType(Objects.requireNonNull(vector, "vector must not be null"), type);
+    fieldsData = VectorValues.encode(vector);
+  }
+
+  /**
+   * Create a query that returns the {@code k} documents whose vectors are the most similar to {@code target}.
+   * @see KnnVectorQuery
+   */
+  public static Query newKnnQuery(String field, float[] target, int k) {
+    return new KnnVectorQuery(field, target, k);
+  }
+}
@@ -674,6 +674,9 @@ final class DefaultIndexingChain extends DocConsumer {
         if (fp.docValuesWriter == null) {
           fp.docValuesWriter = new BinaryDocValuesWriter(fp.fieldInfo, bytesUsed);
         }
+        if (fp.fieldInfo.getAttribute(VectorValues.DIMENSION_KEY) != null) {
+          verifyVectorValue(fp.fieldInfo, field);
+        }
         ((BinaryDocValuesWriter) fp.docValuesWriter).addValue(docID, field.binaryValue());
         break;
 
@@ -703,6 +706,27 @@ final class DefaultIndexingChain extends DocConsumer {
     }
   }
 
+  /** Checks that a value of a vector field has the number of dimensions and the similarity function of the field. */
+  private static void verifyVectorValue(FieldInfo fieldInfo, IndexableField field) {
+    final int dimension = VectorValues.getDimension(fieldInfo);
+    final Map<String, String> attributes = field.fieldType().getAttributes();
+    if (attributes != null && attributes.containsKey(VectorValues.DIMENSION_KEY)) {
+      final int fieldDimension = Integer.parseInt(attributes.get(VectorValues.DIMENSION_KEY));
+      if (fieldDimension != dimension) {
+        throw new IllegalArgumentException("cannot change vector dimension from " + dimension + " to " + fieldDimension + " for field=\"" + fieldInfo.name + "\"");
+      }
+      final String similarityFunction = fieldInfo.getAttribute(VectorValues.SIMILARITY_FUNCTION_KEY);
+      final String fieldSimilarityFunction = attributes.get(VectorValues.SIMILARITY_FUNCTION_KEY);
+      if (Objects.equals(similarityFunction, fieldSimilarityFunction) == false) {
+        throw new IllegalArgumentException("cannot change vector similarity function from " + similarityFunction + " to " + fieldSimilarityFunction + " for field=\"" + fieldInfo.name + "\"");
+      }
+    }
+    if (field.binaryValue() != null && field.binaryValue().length != dimension * Float.BYTES) {
+      throw new IllegalArgumentException("field=\"" + fieldInfo.name + "\": cannot index a vector of "
+          + field.binaryValue().length / Float.BYTES + " dimensions in a field of " + dimension + " dimensions");
+    }
+  }
+
   /** Returns a previously created {@link PerField}, or null
    *  if this field name wasn't seen yet. */
   private PerField getPerField(String name) {
@@ -734,6 +758,9 @@ final class DefaultIndexingChain extends DocConsumer {
       initIndexOptions(fi, fieldType.indexOptions());
       Map<String, String> attributes = fieldType.getAttributes();
       if (attributes != null) {
+        // Record the vector dimension and similarity function of this field, if any; this
+        // setter will throw IllegalArgExc if they were already set to something different:
+        fieldInfos.globalFieldNumbers.setVectorProperties(fi.number, fi.name, attributes);
         attributes.forEach((k, v) -> fi.putAttribute(k, v));
       }
 
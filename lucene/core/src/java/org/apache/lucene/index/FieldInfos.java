@@ -262,6 +262,16 @@ public class FieldInfos implements Iterable<FieldInfo> {
     }
   }
   
+  static final class FieldVectorProperties {
+    public final int dimension;
+    public final String similarityFunction;
+
+    public FieldVectorProperties(int dimension, String similarityFunction) {
+      this.dimension = dimension;
+      this.similarityFunction = similarityFunction;
+    }
+  }
+
   static final class FieldNumbers {
     
     private final Map<Integer,String> numberToName;
@@ -274,6 +284,11 @@ public class FieldInfos implements Iterable<FieldInfo> {
 
     private final Map<String,FieldDimensions> dimensions;
 
+    // We use this to enforce that the vectors of a field keep the same
+    // number of dimensions and similarity function across segments, since
+    // merging would otherwise fail or silently pick one of them:
+    private final Map<String,FieldVectorProperties> vectorProperties;
+
     // TODO: we should similarly catch an attempt to turn
     // norms back on after they were already committed; today
     // we silently discard the norm but this is badly trappy
@@ -288,6 +303,7 @@ public class FieldInfos implements Iterable<FieldInfo> {
       this.indexOptions = new HashMap<>();
       this.docValuesType = new HashMap<>();
       this.dimensions = new HashMap<>();
+      this.vectorProperties = new HashMap<>();
       this.softDeletesFieldName = softDeletesFieldName;
     }
     
@@ -428,6 +444,7 @@ public class FieldInfos implements Iterable<FieldInfo> {
       indexOptions.clear();
       docValuesType.clear();
       dimensions.clear();
+      vectorProperties.clear();
     }
 
     synchronized void setIndexOptions(int number, String name, IndexOptions indexOptions) {
@@ -456,6 +473,39 @@ public class FieldInfos implements Iterable<FieldInfo> {
       verifyConsistentDimensions(number, name, dimensionCount, indexDimensionCount, dimensionNumBytes);
       dimensions.put(name, new FieldDimensions(dimensionCount, indexDimensionCount, dimensionNumBytes));
     }
+
+    /**
+     * Records the number of dimensions and the similarity function of the vectors of the
+     * given field, as found in {@code attributes}, or does nothing if {@code attributes}
+     * do not describe a vector field.
+     * @throws IllegalArgumentException if vectors of this field were already recorded
+     *         with a different number of dimensions or similarity function
+     */
+    synchronized void setVectorProperties(int number, String name, Map<String,String> attributes) {
+      final String dimensionAttribute = attributes == null ? null : attributes.get(VectorValues.DIMENSION_KEY);
+      if (dimensionAttribute == null) {
+        return;
+      }
+      final int dimension = Integer.parseInt(dimensionAttribute);
+      final String similarityFunction = attributes.get(VectorValues.SIMILARITY_FUNCTION_KEY);
+      if (name.equals(numberToName.get(number)) == false) {
+        throw new IllegalArgumentException("field number " + number + " is already mapped to field name \"" + numberToName.get(number) + "\", not \"" + name + "\"");
+      }
+      if (Integer.valueOf(number).equals(nameToNumber.get(name)) == false) {
+        throw new IllegalArgumentException("field name \"" + name + "\" is already mapped to field number \"" + nameToNumber.get(name) + "\", not \"" + number + "\"");
+      }
+      FieldVectorProperties props = vectorProperties.get(name);
+      if (props == null) {
+        vectorProperties.put(name, new FieldVectorProperties(dimension, similarityFunction));
+      } else {
+        if (props.dimension != dimension) {
+          throw new IllegalArgumentException("cannot change vector dimension from " + props.dimension + " to " + dimension + " for field=\"" + name + "\"");
+        }
+        if (Objects.equals(props.similarityFunction, similarityFunction) == false) {
+          throw new IllegalArgumentException("cannot change vector similarity function from " + props.similarityFunction + " to " + similarityFunction + " for field=\"" + name + "\"");
+        }
+      }
+    }
   }
   
   static final class Builder {
@@ -523,11 +573,13 @@ public class FieldInfos implements Iterable<FieldInfo> {
         // before then we'll get the same name and number,
         // else we'll allocate a new one:
         final int fieldNumber = globalFieldNumbers.addOrGet(name, preferredFieldNumber, indexOptions, docValues, dataDimensionCount, indexDimensionCount, dimensionNumBytes, isSoftDeletesField);
+        globalFieldNumbers.setVectorProperties(fieldNumber, name, attributes);
         fi = new FieldInfo(name, fieldNumber, storeTermVector, omitNorms, storePayloads, indexOptions, docValues, dvGen, attributes, dataDimensionCount, indexDimensionCount, dimensionNumBytes, isSoftDeletesField);
         assert !byName.containsKey(fi.name);
         globalFieldNumbers.verifyConsistent(Integer.valueOf(fi.number), fi.name, fi.getDocValuesType());
         byName.put(fi.name, fi);
       } else {
+        globalFieldNumbers.setVectorProperties(fi.number, name, attributes);
         fi.update(storeTermVector, omitNorms, storePayloads, indexOptions, attributes, dataDimensionCount, indexDimensionCount, dimensionNumBytes);
 
         if (docValues != DocValuesType.NONE) {
@@ -27,6 +27,7 @@ import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.Accountables;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.BytesRefBuilder;
+import org.apache.lucene.util.FixedBitSet;
 import org.apache.lucene.util.InPlaceMergeSorter;
 import org.apache.lucene.util.LongValues;
 import org.apache.lucene.util.PriorityQueue;
@@ -44,6 +45,29 @@ public class OrdinalMap implements Accountable {
   // TODO: we could also have a utility method to merge Terms[] and use size() as a weight when we need it
   // TODO: use more efficient packed ints structures?
 
+  /** The global ords of the terms of a segment, in increasing order, see {@link #buildIncremental}. */
+  private static class SegmentOrds {
+    final int segment;
+    final LongValues globalOrds;
+    final long valueCount;
+    long segmentOrd = -1;
+    long globalOrd;
+
+    SegmentOrds(int segment, LongValues globalOrds, long valueCount) {
+      this.segment = segment;
+      this.globalOrds = globalOrds;
+      this.valueCount = valueCount;
+    }
+
+    boolean next() {
+      if (++segmentOrd >= valueCount) {
+        return false;
+      }
+      globalOrd = globalOrds.get(segmentOrd);
+      return true;
+    }
+  }
+
   private static class TermsEnumIndex {
     public final static TermsEnumIndex[] EMPTY_ARRAY = new TermsEnumIndex[0];
     final int subIndex;
@@ -168,6 +192,273 @@ public class OrdinalMap implements Accountable {
     return new OrdinalMap(owner, subs, segmentMap, acceptableOverheadRatio);
   }
 
+  /**
+   * Seeking a term in the terms dictionary of a segment is assumed to cost that many times more than
+   * advancing to the next term, see {@link #build(IndexReader.CacheKey, OrdinalMap, int[], SortedSetDocValues[], float)}.
+   */
+  private static final int SEEK_COST = 8;
+
+  /**
+   * Create an ordinal map like {@link #build(IndexReader.CacheKey, SortedDocValues[], float)}, reusing
+   * the mapping of segments that <code>previous</code> already maps.
+   * @see #build(IndexReader.CacheKey, OrdinalMap, int[], SortedSetDocValues[], float)
+   */
+  public static OrdinalMap build(IndexReader.CacheKey owner, OrdinalMap previous, int[] previousSegments,
+      SortedDocValues[] values, float acceptableOverheadRatio) throws IOException {
+    final TermsEnum[] subs = new TermsEnum[values.length];
+    final long[] valueCounts = new long[values.length];
+    for (int i = 0; i < values.length; ++i) {
+      subs[i] = values[i].termsEnum();
+      valueCounts[i] = values[i].getValueCount();
+    }
+    if (isIncrementalBuildCheaper(previous, previousSegments, valueCounts)) {
+      return buildIncremental(owner, previous, previousSegments, subs, valueCounts, acceptableOverheadRatio);
+    }
+    return build(owner, values, acceptableOverheadRatio);
+  }
+
+  /**
+   * Create an ordinal map like {@link #build(IndexReader.CacheKey, SortedSetDocValues[], float)}, reusing
+   * the mapping of segments that <code>previous</code> already maps. This is typically the map of the same
+   * field in a previous point-in-time view of the index: segments that did not change keep the terms
+   * that they had, so only the terms of the new segments need to be merged with the terms that are
+   * already known. The global ordinals of the terms of the other segments are shifted by the number of
+   * terms that are added before them, and by the number of terms that only existed in segments that are
+   * gone.
+   * <p>
+   * The map is fully rebuilt if there is nothing to reuse, or if the new segments have so many terms that
+   * looking them up in the terms dictionaries of the other segments would be slower.
+   *
+   * @param previous a map to reuse, or null
+   * @param previousSegments for every value, the index of the same segment in <code>previous</code>,
+   *             or -1 if it is a new segment. Reused segments must have exactly the same terms as when
+   *             <code>previous</code> was built.
+   */
+  public static OrdinalMap build(IndexReader.CacheKey owner, OrdinalMap previous, int[] previousSegments,
+      SortedSetDocValues[] values, float acceptableOverheadRatio) throws IOException {
+    final TermsEnum[] subs = new TermsEnum[values.length];
+    final long[] valueCounts = new long[values.length];
+    for (int i = 0; i < values.length; ++i) {
+      subs[i] = values[i].termsEnum();
+      valueCounts[i] = values[i].getValueCount();
+    }
+    if (isIncrementalBuildCheaper(previous, previousSegments, valueCounts)) {
+      return buildIncremental(owner, previous, previousSegments, subs, valueCounts, acceptableOverheadRatio);
+    }
+    return build(owner, values, acceptableOverheadRatio);
+  }
+
+  /**
+   * A full build advances through all terms of all segments, while an incremental build seeks every term
+   * of the new segments in each reused segment.
+   */
+  private static boolean isIncrementalBuildCheaper(OrdinalMap previous, int[] previousSegments, long[] valueCounts) {
+    if (previous == null || previous.getValueCount() > Integer.MAX_VALUE) {
+      return false;
+    }
+    if (previousSegments.length != valueCounts.length) {
+      throw new IllegalArgumentException("values and previousSegments must have the same length");
+    }
+    long totalValues = 0, newValues = 0;
+    int numReused = 0;
+    for (int i = 0; i < valueCounts.length; ++i) {
+      totalValues += valueCounts[i];
+      if (previousSegments[i] >= 0) {
+        numReused++;
+      } else {
+        newValues += valueCounts[i];
+      }
+    }
+    return numReused > 0 && newValues * numReused * SEEK_COST <= totalValues;
+  }
+
+  /**
+   * Builds the same map as {@link #build(IndexReader.CacheKey, TermsEnum[], long[], float)} would, using
+   * <code>previous</code> for the segments that it already maps. Only the new segments are enumerated:
+   * every one of their terms is looked up in the reused segments to find its position among the terms
+   * that are already known.
+   * @param subs TermsEnums that support {@link TermsEnum#seekCeil} and {@link TermsEnum#ord()} with
+   *             compact ordinals
+   * @param valueCounts the number of terms of each sub, also used as its weight
+   */
+  static OrdinalMap buildIncremental(IndexReader.CacheKey owner, OrdinalMap previous, int[] previousSegments,
+      TermsEnum[] subs, long[] valueCounts, float acceptableOverheadRatio) throws IOException {
+    final int prevValueCount = Math.toIntExact(previous.getValueCount());
+
+    // the terms that are still known, the others only existed in segments that are gone
+    final FixedBitSet live = new FixedBitSet(prevValueCount);
+    final LongValues[] prevGlobalOrds = new LongValues[subs.length];
+    for (int i = 0; i < subs.length; ++i) {
+      if (previousSegments[i] >= 0) {
+        prevGlobalOrds[i] = previous.getGlobalOrds(previousSegments[i]);
+        for (long ord = 0; ord < valueCounts[i]; ++ord) {
+          live.set((int) prevGlobalOrds[i].get(ord));
+        }
+      }
+    }
+
+    // merge-sort the terms of the new segments, and find the previous global ord of each of them, or the
+    // previous global ord of the first term that is greater if this is a new term
+    final PriorityQueue<TermsEnumIndex> queue = new PriorityQueue<TermsEnumIndex>(subs.length) {
+      @Override
+      protected boolean lessThan(TermsEnumIndex a, TermsEnumIndex b) {
+        return a.currentTerm.compareTo(b.currentTerm) < 0;
+      }
+    };
+    final PackedLongValues.Builder[] newSegmentTerms = new PackedLongValues.Builder[subs.length];
+    for (int i = 0; i < subs.length; i++) {
+      if (previousSegments[i] < 0) {
+        newSegmentTerms[i] = PackedLongValues.monotonicBuilder(PackedInts.COMPACT);
+        TermsEnumIndex sub = new TermsEnumIndex(subs[i], i);
+        if (sub.next() != null) {
+          queue.add(sub);
+        }
+      }
+    }
+    // for every term of the new segments, its previous global ord, or the previous value count plus its index
+    // in addedTermPositions if it is a new term
+    final PackedLongValues.Builder newTerms = PackedLongValues.packedBuilder(PackedInts.COMPACT);
+    // for every added term, the previous global ord that it goes before
+    final PackedLongValues.Builder addedTermPositions = PackedLongValues.monotonicBuilder(PackedInts.COMPACT);
+    long numAdded = 0;
+    final boolean[] exhausted = new boolean[subs.length];
+    final BytesRefBuilder scratch = new BytesRefBuilder();
+    while (queue.size() != 0) {
+      TermsEnumIndex top = queue.top();
+      scratch.copyBytes(top.currentTerm);
+
+      long prevGlobalOrd = -1;
+      long position = prevValueCount;
+      for (int i = 0; i < subs.length && prevGlobalOrd == -1; ++i) {
+        if (prevGlobalOrds[i] != null && exhausted[i] == false) {
+          // terms are sought in increasing order, so each sub only moves forward
+          TermsEnum.SeekStatus status = subs[i].seekCeil(scratch.get());
+          if (status == TermsEnum.SeekStatus.FOUND) {
+            prevGlobalOrd = prevGlobalOrds[i].get(subs[i].ord());
+          } else if (status == TermsEnum.SeekStatus.NOT_FOUND) {
+            position = Math.min(position, prevGlobalOrds[i].get(subs[i].ord()));
+          } else {
+            exhausted[i] = true;
+          }
+        }
+      }
+      if (prevGlobalOrd == -1) {
+        newTerms.add(prevValueCount + numAdded);
+        addedTermPositions.add(position);
+        numAdded++;
+      } else {
+        newTerms.add(prevGlobalOrd);
+      }
+
+      final long newTermIndex = newTerms.size() - 1;
+      while (queue.size() != 0 && queue.top().currentTerm.equals(scratch.get())) {
+        top = queue.top();
+        newSegmentTerms[top.subIndex].add(newTermIndex);
+        if (top.next() == null) {
+          queue.pop();
+        } else {
+          queue.updateTop();
+        }
+      }
+    }
+
+    // interleave the added terms with the previous terms that are still live
+    final PackedLongValues addedPositions = addedTermPositions.build();
+    final PackedLongValues.Builder prevToGlobalOrds = PackedLongValues.monotonicBuilder(PackedInts.COMPACT);
+    final PackedLongValues.Builder addedGlobalOrds = PackedLongValues.monotonicBuilder(PackedInts.COMPACT);
+    long globalOrd = 0;
+    long added = 0;
+    for (int prevGlobalOrd = 0; prevGlobalOrd < prevValueCount; ++prevGlobalOrd) {
+      for (; added < numAdded && addedPositions.get(added) <= prevGlobalOrd; ++added) {
+        addedGlobalOrds.add(globalOrd++);
+      }
+      // terms that are gone take the global ord of the next live term, which keeps the mapping monotonic
+      prevToGlobalOrds.add(globalOrd);
+      if (live.get(prevGlobalOrd)) {
+        globalOrd++;
+      }
+    }
+    for (; added < numAdded; ++added) {
+      addedGlobalOrds.add(globalOrd++);
+    }
+    final long valueCount = globalOrd;
+    final PackedLongValues prevToGlobal = prevToGlobalOrds.build();
+    final PackedLongValues addedGlobal = addedGlobalOrds.build();
+    final PackedLongValues newTermOrds = newTerms.build();
+
+    // the global ords of the terms of every segment
+    final LongValues[] globalOrds = new LongValues[subs.length];
+    for (int i = 0; i < subs.length; ++i) {
+      if (newSegmentTerms[i] == null) {
+        final LongValues prevGlobal = prevGlobalOrds[i];
+        globalOrds[i] = new LongValues() {
+          @Override
+          public long get(long segmentOrd) {
+            return prevToGlobal.get(prevGlobal.get(segmentOrd));
+          }
+        };
+      } else {
+        final PackedLongValues terms = newSegmentTerms[i].build();
+        globalOrds[i] = new LongValues() {
+          @Override
+          public long get(long segmentOrd) {
+            final long newTermOrd = newTermOrds.get(terms.get(segmentOrd));
+            return newTermOrd < prevValueCount ? prevToGlobal.get(newTermOrd) : addedGlobal.get(newTermOrd - prevValueCount);
+          }
+        };
+      }
+    }
+
+    // compute the segment to global ord deltas of all segments
+    final SegmentMap segmentMap = new SegmentMap(valueCounts);
+    final PackedLongValues.Builder[] ordDeltas = new PackedLongValues.Builder[subs.length];
+    final long[] ordDeltaBits = new long[subs.length];
+    for (int i = 0; i < subs.length; ++i) {
+      final int segment = segmentMap.newToOld(i);
+      ordDeltas[i] = PackedLongValues.monotonicBuilder(acceptableOverheadRatio);
+      for (long segmentOrd = 0; segmentOrd < valueCounts[segment]; ++segmentOrd) {
+        final long delta = globalOrds[segment].get(segmentOrd) - segmentOrd;
+        ordDeltas[i].add(delta);
+        ordDeltaBits[i] |= delta;
+      }
+    }
+
+    // merge the global ords of all segments to find the first segment of every term, in global ord order, so
+    // that they can be appended to packed builders instead of temporary arrays of the size of the value count
+    final PriorityQueue<SegmentOrds> segmentsQueue = new PriorityQueue<SegmentOrds>(subs.length) {
+      @Override
+      protected boolean lessThan(SegmentOrds a, SegmentOrds b) {
+        return a.globalOrd < b.globalOrd || (a.globalOrd == b.globalOrd && a.segment < b.segment);
+      }
+    };
+    for (int i = 0; i < subs.length; ++i) {
+      final int segment = segmentMap.newToOld(i);
+      final SegmentOrds ords = new SegmentOrds(i, globalOrds[segment], valueCounts[segment]);
+      if (ords.next()) {
+        segmentsQueue.add(ords);
+      }
+    }
+    final PackedLongValues.Builder firstSegmentsBuilder = PackedLongValues.packedBuilder(PackedInts.COMPACT);
+    final PackedLongValues.Builder globalOrdDeltasBuilder = PackedLongValues.monotonicBuilder(PackedInts.COMPACT);
+    for (long ord = 0; segmentsQueue.size() != 0; ++ord) {
+      SegmentOrds top = segmentsQueue.top();
+      assert top.globalOrd == ord;
+      firstSegmentsBuilder.add(top.segment);
+      globalOrdDeltasBuilder.add(ord - top.segmentOrd);
+      while (segmentsQueue.size() != 0 && segmentsQueue.top().globalOrd == ord) {
+        top = segmentsQueue.top();
+        if (top.next()) {
+          segmentsQueue.updateTop();
+        } else {
+          segmentsQueue.pop();
+        }
+      }
+    }
+    assert firstSegmentsBuilder.size() == valueCount;
+    return new OrdinalMap(owner, segmentMap, globalOrdDeltasBuilder.build(), firstSegmentsBuilder.build(),
+        ordDeltas, ordDeltaBits, acceptableOverheadRatio);
+  }
+
   private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(OrdinalMap.class);
 
   /** Cache key of whoever asked for this awful thing */
@@ -273,11 +564,36 @@ public class OrdinalMap implements Accountable {
 
     this.firstSegments = firstSegments.build();
     this.globalOrdDeltas = globalOrdDeltas.build();
-    // ordDeltas is typically the bottleneck, so let's see what we can do to make it faster
-    segmentToGlobalOrds = new LongValues[subs.length];
-    long ramBytesUsed = BASE_RAM_BYTES_USED + this.globalOrdDeltas.ramBytesUsed()
+    this.segmentToGlobalOrds = new LongValues[subs.length];
+    this.ramBytesUsed = BASE_RAM_BYTES_USED + this.globalOrdDeltas.ramBytesUsed()
       + this.firstSegments.ramBytesUsed() + RamUsageEstimator.shallowSizeOf(segmentToGlobalOrds)
-      + segmentMap.ramBytesUsed();
+      + segmentMap.ramBytesUsed()
+      + buildSegmentToGlobalOrds(ordDeltas, ordDeltaBits, acceptableOverheadRatio, segmentToGlobalOrds);
+  }
+
+  /** Creates an ordinal map from its parts, see {@link #buildIncremental}. */
+  private OrdinalMap(IndexReader.CacheKey owner, SegmentMap segmentMap, PackedLongValues globalOrdDeltas,
+      PackedLongValues firstSegments, PackedLongValues.Builder[] ordDeltas, long[] ordDeltaBits,
+      float acceptableOverheadRatio) {
+    this.owner = owner;
+    this.segmentMap = segmentMap;
+    this.globalOrdDeltas = globalOrdDeltas;
+    this.firstSegments = firstSegments;
+    this.segmentToGlobalOrds = new LongValues[ordDeltas.length];
+    this.ramBytesUsed = BASE_RAM_BYTES_USED + globalOrdDeltas.ramBytesUsed()
+      + firstSegments.ramBytesUsed() + RamUsageEstimator.shallowSizeOf(segmentToGlobalOrds)
+      + segmentMap.ramBytesUsed()
+      + buildSegmentToGlobalOrds(ordDeltas, ordDeltaBits, acceptableOverheadRatio, segmentToGlobalOrds);
+  }
+
+  /**
+   * Fills <code>segmentToGlobalOrds</code> from the segment ord to global ord deltas of each segment,
+   * and returns the memory that they use.
+   */
+  private static long buildSegmentToGlobalOrds(PackedLongValues.Builder[] ordDeltas, long[] ordDeltaBits,
+      float acceptableOverheadRatio, LongValues[] segmentToGlobalOrds) {
+    // ordDeltas is typically the bottleneck, so let's see what we can do to make it faster
+    long ramBytesUsed = 0;
     for (int i = 0; i < ordDeltas.length; ++i) {
       final PackedLongValues deltas = ordDeltas[i].build();
       if (ordDeltaBits[i] == 0L) {
@@ -317,7 +633,7 @@ public class OrdinalMap implements Accountable {
         ramBytesUsed += RamUsageEstimator.shallowSizeOf(segmentToGlobalOrds[i]);
       }
     }
-    this.ramBytesUsed = ramBytesUsed;
+    return ramBytesUsed;
   }
 
   /** 
@@ -0,0 +1,250 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.index;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+
+/**
+ * Per-document dense vectors of floats, indexed with {@link org.apache.lucene.document.VectorField}.
+ * <p>
+ * Vectors are stored as {@link BinaryDocValues}: the binary value of a document is
+ * the encoding of its vector as computed by {@link #encode(float[])}. The number of
+ * dimensions of the field and the function used to compare its vectors are recorded
+ * as attributes of its {@link FieldInfo}.
+ * <p>
+ * Doc values formats that index vectors, such as
+ * {@link org.apache.lucene.codecs.lucene86.Lucene86HnswVectorsFormat}, return
+ * sub-classes of this class as binary doc values, which may implement
+ * {@link #search(float[], int, int, Bits, int) approximate nearest-neighbor search}.
+ *
+ * @lucene.experimental
+ */
+public abstract class VectorValues extends BinaryDocValues {
+
+  /** Name of the {@link FieldInfo} attribute that records the number of dimensions of vectors. */
+  public static final String DIMENSION_KEY = VectorValues.class.getSimpleName() + ".dimension";
+
+  /** Name of the {@link FieldInfo} attribute that records the {@link SimilarityFunction} of vectors. */
+  public static final String SIMILARITY_FUNCTION_KEY = VectorValues.class.getSimpleName() + ".similarityFunction";
+
+  /** Maximum number of dimensions of a vector. */
+  public static final int MAX_DIMENSIONS = 1024;
+
+  /** Function used to compare vectors. Higher scores mean more similar vectors. */
+  public enum SimilarityFunction {
+
+    /** Scores vectors by the inverse of one plus their squared euclidean distance. */
+    EUCLIDEAN {
+      @Override
+      public float compare(float[] v1, float[] v2) {
+        float squareSum = 0;
+        for (int i = 0; i < v1.length; ++i) {
+          final float diff = v1[i] - v2[i];
+          squareSum += diff * diff;
+        }
+        return 1 / (1 + squareSum);
+      }
+    },
+
+    /**
+     * Scores vectors by their dot product, mapped to {@code [0, 1]} assuming that
+     * vectors are normalized to unit length.
+     */
+    DOT_PRODUCT {
+      @Override
+      public float compare(float[] v1, float[] v2) {
+        float dotProduct = 0;
+        for (int i = 0; i < v1.length; ++i) {
+          dotProduct += v1[i] * v2[i];
+        }
+        return Math.max((1 + dotProduct) / 2, 0);
+      }
+    };
+
+    /** Return the similarity of the two given vectors, which must have the same length. */
+    public abstract float compare(float[] v1, float[] v2);
+  }
+
+  /** Sole constructor. (For invocation by subclass
+   *  constructors, typically implicit.) */
+  protected VectorValues() {}
+
+  /** Return the number of dimensions of the vectors. */
+  public abstract int dimension();
+
+  /** Return the function used to compare vectors. */
+  public abstract SimilarityFunction similarityFunction();
+
+  /**
+   * Return the vector of the current document. The returned array may be reused
+   * across calls. It is illegal to call this method after {@link #advanceExact(int)}
+   * returned {@code false}.
+   */
+  public abstract float[] vectorValue() throws IOException;
+
+  /**
+   * Return the {@code k} documents whose vectors are the most similar to {@code target},
+   * or {@code null} if these values do not support approximate search or if more than
+   * {@code visitedLimit} vectors would need to be compared to find them. Only documents
+   * that are set in {@code acceptDocs} are returned, unless it is {@code null}.
+   * Documents are leaf-level ids and the returned {@link TopDocs} is sorted by
+   * decreasing score.
+   * <p>
+   * The search keeps track of {@code fanout} more candidates than {@code k}, which finds
+   * the true nearest neighbors more often at the cost of comparing more vectors.
+   * <p>
+   * This method may be called at any time and does not affect the iteration state.
+   * The default implementation returns {@code null}.
+   */
+  public TopDocs search(float[] target, int k, int fanout, Bits acceptDocs, int visitedLimit) throws IOException {
+    return null;
+  }
+
+  /** Return the {@link VectorValues} of the given field, or {@code null} if it has no vectors. */
+  public static VectorValues get(LeafReader reader, String field) throws IOException {
+    final FieldInfo fieldInfo = reader.getFieldInfos().fieldInfo(field);
+    if (fieldInfo == null || getDimension(fieldInfo) == 0) {
+      return null;
+    }
+    final BinaryDocValues values = reader.getBinaryDocValues(field);
+    if (values == null) {
+      return null;
+    } else if (values instanceof VectorValues) {
+      return (VectorValues) values;
+    } else {
+      return new EncodedVectorValues(values, getDimension(fieldInfo), getSimilarityFunction(fieldInfo), unwrap(values));
+    }
+  }
+
+  /**
+   * Return the {@link VectorValues} wrapped by {@link FilterBinaryDocValues}, such as those of
+   * {@link ExitableDirectoryReader}, or {@code null} if there are none. Filters don't change doc ids, so
+   * the search of the wrapped values can be used as is.
+   */
+  private static VectorValues unwrap(BinaryDocValues values) {
+    while (values instanceof FilterBinaryDocValues) {
+      values = ((FilterBinaryDocValues) values).in;
+    }
+    return values instanceof VectorValues ? (VectorValues) values : null;
+  }
+
+  /** Return the number of dimensions of the vectors of the given field, or 0 if it is not a vector field. */
+  public static int getDimension(FieldInfo fieldInfo) {
+    final String dimension = fieldInfo.getAttribute(DIMENSION_KEY);
+    return dimension == null ? 0 : Integer.parseInt(dimension);
+  }
+
+  /** Return the {@link SimilarityFunction} of the given vector field. */
+  public static SimilarityFunction getSimilarityFunction(FieldInfo fieldInfo) {
+    final String similarityFunction = fieldInfo.getAttribute(SIMILARITY_FUNCTION_KEY);
+    if (similarityFunction == null) {
+      throw new IllegalArgumentException("field=\"" + fieldInfo.name + "\" is not a vector field");
+    }
+    return SimilarityFunction.valueOf(similarityFunction);
+  }
+
+  /** Encode the given vector into the binary value that is stored in doc values. */
+  public static BytesRef encode(float[] vector) {
+    final ByteBuffer buffer = ByteBuffer.allocate(vector.length * Float.BYTES);
+    buffer.asFloatBuffer().put(vector);
+    return new BytesRef(buffer.array());
+  }
+
+  /** Decode the given binary value into {@code vector}, whose length is the number of dimensions. */
+  public static void decode(BytesRef bytes, float[] vector) {
+    if (bytes.length != vector.length * Float.BYTES) {
+      throw new IllegalArgumentException("Expected a vector of " + vector.length
+          + " dimensions, but got " + bytes.length + " bytes");
+    }
+    ByteBuffer.wrap(bytes.bytes, bytes.offset, bytes.length).asFloatBuffer().get(vector);
+  }
+
+  /**
+   * Vectors read from regular binary doc values, or from wrapped vectors. Iteration goes through the
+   * wrapper, search goes to the wrapped vectors.
+   */
+  private static class EncodedVectorValues extends VectorValues {
+
+    private final BinaryDocValues in;
+    private final SimilarityFunction similarityFunction;
+    private final float[] vector;
+    private final VectorValues searchable;
+
+    EncodedVectorValues(BinaryDocValues in, int dimension, SimilarityFunction similarityFunction, VectorValues searchable) {
+      this.in = in;
+      this.similarityFunction = similarityFunction;
+      this.vector = new float[dimension];
+      this.searchable = searchable;
+    }
+
+    @Override
+    public TopDocs search(float[] target, int k, int fanout, Bits acceptDocs, int visitedLimit) throws IOException {
+      return searchable == null ? null : searchable.search(target, k, fanout, acceptDocs, visitedLimit);
+    }
+
+    @Override
+    public int dimension() {
+      return vector.length;
+    }
+
+    @Override
+    public SimilarityFunction similarityFunction() {
+      return similarityFunction;
+    }
+
+    @Override
+    public float[] vectorValue() throws IOException {
+      decode(in.binaryValue(), vector);
+      return vector;
+    }
+
+    @Override
+    public BytesRef binaryValue() throws IOException {
+      return in.binaryValue();
+    }
+
+    @Override
+    public boolean advanceExact(int target) throws IOException {
+      return in.advanceExact(target);
+    }
+
+    @Override
+    public int docID() {
+      return in.docID();
+    }
+
+    @Override
+    public int nextDoc() throws IOException {
+      return in.nextDoc();
+    }
+
+    @Override
+    public int advance(int target) throws IOException {
+      return in.advance(target);
+    }
+
+    @Override
+    public long cost() {
+      return in.cost();
+    }
+  }
+}
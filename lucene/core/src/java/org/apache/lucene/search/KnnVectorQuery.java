@@ -0,0 +1,433 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.search;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Objects;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.VectorValues;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BitSetIterator;
+import org.apache.lucene.util.FixedBitSet;
+
+/**
+ * Finds the {@code k} documents whose vectors, indexed with
+ * {@link org.apache.lucene.document.VectorField}, are the most similar to a target vector.
+ * Documents are scored by the {@link VectorValues.SimilarityFunction} of the field.
+ * <p>
+ * The nearest neighbors of each segment are found when the query is rewritten,
+ * either with the {@link VectorValues#search approximate search} of the doc values
+ * of the field, or by comparing the target with the vector of every matching document
+ * when the doc values don't support approximate search, or when fewer documents match
+ * the filter than would be visited by the approximate search. The {@code k} best hits
+ * across all segments are then returned.
+ *
+ * @lucene.experimental
+ */
+public class KnnVectorQuery extends Query {
+
+  /** The default number of candidates that the approximate search keeps track of besides the top {@code k}. */
+  public static final int DEFAULT_FANOUT = 50;
+
+  private final String field;
+  private final float[] target;
+  private final int k;
+  private final int fanout;
+  private final Query filter;
+
+  /**
+   * Find the {@code k} nearest documents to the target vector.
+   * @param field a field that has been indexed with {@link org.apache.lucene.document.VectorField}
+   * @param target the target of the search
+   * @param k the number of documents to find
+   * @throws IllegalArgumentException if {@code k} is less than 1
+   */
+  public KnnVectorQuery(String field, float[] target, int k) {
+    this(field, target, k, null);
+  }
+
+  /**
+   * Find the {@code k} nearest documents to the target vector among the documents that match {@code filter}.
+   * @param field a field that has been indexed with {@link org.apache.lucene.document.VectorField}
+   * @param target the target of the search
+   * @param k the number of documents to find
+   * @param filter a filter applied before the vector search, or {@code null} to consider all documents
+   * @throws IllegalArgumentException if {@code k} is less than 1
+   */
+  public KnnVectorQuery(String field, float[] target, int k, Query filter) {
+    this(field, target, k, DEFAULT_FANOUT, filter);
+  }
+
+  /**
+   * Find the {@code k} nearest documents to the target vector among the documents that match {@code filter}.
+   * @param field a field that has been indexed with {@link org.apache.lucene.document.VectorField}
+   * @param target the target of the search
+   * @param k the number of documents to find
+   * @param fanout the number of candidates that the approximate search keeps track of besides the top {@code k}:
+   *               higher values find the true nearest neighbors more often, but compare more vectors,
+   *               see {@link VectorValues#search}
+   * @param filter a filter applied before the vector search, or {@code null} to consider all documents
+   * @throws IllegalArgumentException if {@code k} is less than 1 or {@code fanout} is negative
+   */
+  public KnnVectorQuery(String field, float[] target, int k, int fanout, Query filter) {
+    this.field = Objects.requireNonNull(field, "field must not be null");
+    this.target = Objects.requireNonNull(target, "target must not be null").clone();
+    if (k < 1) {
+      throw new IllegalArgumentException("k must be at least 1, got: " + k);
+    }
+    if (fanout < 0) {
+      throw new IllegalArgumentException("fanout must not be negative, got: " + fanout);
+    }
+    this.k = k;
+    this.fanout = fanout;
+    this.filter = filter;
+  }
+
+  @Override
+  public Query rewrite(IndexReader reader) throws IOException {
+    Weight filterWeight = null;
+    if (filter != null) {
+      final IndexSearcher searcher = new IndexSearcher(reader);
+      searcher.setQueryCache(null);
+      filterWeight = searcher.createWeight(searcher.rewrite(filter), ScoreMode.COMPLETE_NO_SCORES, 1);
+    }
+
+    final TopDocs[] perLeafResults = new TopDocs[reader.leaves().size()];
+    for (LeafReaderContext ctx : reader.leaves()) {
+      final TopDocs results = searchLeaf(ctx, filterWeight);
+      for (ScoreDoc scoreDoc : results.scoreDocs) {
+        scoreDoc.doc += ctx.docBase;
+      }
+      perLeafResults[ctx.ord] = results;
+    }
+    final TopDocs topK = TopDocs.merge(k, perLeafResults);
+    if (topK.scoreDocs.length == 0) {
+      return new MatchNoDocsQuery();
+    }
+    return createRewrittenQuery(reader, topK);
+  }
+
+  private TopDocs searchLeaf(LeafReaderContext ctx, Weight filterWeight) throws IOException {
+    final VectorValues values = VectorValues.get(ctx.reader(), field);
+    if (values == null) {
+      return TopDocsCollector.EMPTY_TOPDOCS;
+    }
+    if (values.dimension() != target.length) {
+      throw new IllegalArgumentException("vector query dimension: " + target.length
+          + " differs from field dimension: " + values.dimension());
+    }
+
+    final Bits liveDocs = ctx.reader().getLiveDocs();
+    if (filterWeight == null) {
+      final TopDocs results = values.search(target, k, fanout, liveDocs, Integer.MAX_VALUE);
+      if (results != null) {
+        return results;
+      }
+      return exactSearch(values, liveDocs, null);
+    }
+
+    final Scorer scorer = filterWeight.scorer(ctx);
+    if (scorer == null) {
+      return TopDocsCollector.EMPTY_TOPDOCS;
+    }
+    final FixedBitSet acceptDocs = new FixedBitSet(ctx.reader().maxDoc());
+    final DocIdSetIterator filterIterator = scorer.iterator();
+    for (int doc = filterIterator.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = filterIterator.nextDoc()) {
+      if (liveDocs == null || liveDocs.get(doc)) {
+        acceptDocs.set(doc);
+      }
+    }
+    final int cost = acceptDocs.cardinality();
+    if (cost <= k) {
+      // the exact search is at least as cheap as the approximate search
+      return exactSearch(values, null, new BitSetIterator(acceptDocs, cost));
+    }
+    // stop the approximate search as soon as it compares more vectors than the exact search would
+    final TopDocs results = values.search(target, k, fanout, acceptDocs, cost);
+    if (results != null) {
+      return results;
+    }
+    return exactSearch(values, null, new BitSetIterator(acceptDocs, cost));
+  }
+
+  /**
+   * Compare the target with the vectors of all documents of {@code acceptIterator}, or of all
+   * documents that are live according to {@code liveDocs} if it is null.
+   */
+  private TopDocs exactSearch(VectorValues values, Bits liveDocs, DocIdSetIterator acceptIterator) throws IOException {
+    final VectorValues.SimilarityFunction similarityFunction = values.similarityFunction();
+    final HitQueue queue = new HitQueue(k, true);
+    ScoreDoc topDoc = queue.top();
+    int visited = 0;
+    final DocIdSetIterator iterator = acceptIterator == null ? values : acceptIterator;
+    for (int doc = iterator.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = iterator.nextDoc()) {
+      if (acceptIterator == null) {
+        if (liveDocs != null && liveDocs.get(doc) == false) {
+          continue;
+        }
+      } else if (values.advanceExact(doc) == false) {
+        continue;
+      }
+      ++visited;
+      final float score = similarityFunction.compare(target, values.vectorValue());
+      if (score > topDoc.score) {
+        topDoc.score = score;
+        topDoc.doc = doc;
+        topDoc = queue.updateTop();
+      }
+    }
+
+    // remove the sentinel values
+    while (queue.size() > 0 && queue.top().score < 0) {
+      queue.pop();
+    }
+    final ScoreDoc[] topScoreDocs = new ScoreDoc[queue.size()];
+    for (int i = topScoreDocs.length - 1; i >= 0; i--) {
+      topScoreDocs[i] = queue.pop();
+    }
+    return new TopDocs(new TotalHits(visited, TotalHits.Relation.EQUAL_TO), topScoreDocs);
+  }
+
+  private Query createRewrittenQuery(IndexReader reader, TopDocs topK) {
+    final int len = topK.scoreDocs.length;
+    Arrays.sort(topK.scoreDocs, (a, b) -> a.doc - b.doc);
+    final int[] docs = new int[len];
+    final float[] scores = new float[len];
+    for (int i = 0; i < len; i++) {
+      docs[i] = topK.scoreDocs[i].doc;
+      scores[i] = topK.scoreDocs[i].score;
+    }
+    final int[] segmentStarts = findSegmentStarts(reader, docs);
+    return new DocAndScoreQuery(k, docs, scores, segmentStarts, reader.getContext().id());
+  }
+
+  /** Return, for each leaf, the index in {@code docs} of the first doc that belongs to it. */
+  private static int[] findSegmentStarts(IndexReader reader, int[] docs) {
+    final int[] starts = new int[reader.leaves().size() + 1];
+    starts[starts.length - 1] = docs.length;
+    if (starts.length == 2) {
+      return starts;
+    }
+    int resultIndex = 0;
+    for (int i = 1; i < starts.length - 1; i++) {
+      final int upper = reader.leaves().get(i).docBase;
+      resultIndex = Arrays.binarySearch(docs, resultIndex, docs.length, upper);
+      if (resultIndex < 0) {
+        resultIndex = -1 - resultIndex;
+      }
+      starts[i] = resultIndex;
+    }
+    return starts;
+  }
+
+  @Override
+  public void visit(QueryVisitor visitor) {
+    if (visitor.acceptField(field)) {
+      visitor.visitLeaf(this);
+    }
+  }
+
+  @Override
+  public String toString(String field) {
+    return getClass().getSimpleName() + ":" + this.field + "[" + target[0] + ",...][" + k + "][" + fanout + "]"
+        + (filter == null ? "" : "[" + filter + "]");
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    return sameClassAs(other) &&
+        field.equals(((KnnVectorQuery) other).field) &&
+        Arrays.equals(target, ((KnnVectorQuery) other).target) &&
+        k == ((KnnVectorQuery) other).k &&
+        fanout == ((KnnVectorQuery) other).fanout &&
+        Objects.equals(filter, ((KnnVectorQuery) other).filter);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(classHash(), field, Arrays.hashCode(target), k, fanout, filter);
+  }
+
+  /** Returns the field of the vectors that this query searches. */
+  public String getField() {
+    return field;
+  }
+
+  /** Returns the number of documents to find. */
+  public int getK() {
+    return k;
+  }
+
+  /** Returns the number of candidates that the approximate search keeps track of besides the top {@code k}. */
+  public int getFanout() {
+    return fanout;
+  }
+
+  /** Returns the filter applied before the vector search, or {@code null}. */
+  public Query getFilter() {
+    return filter;
+  }
+
+  /** Matches the precomputed top hits of a {@link KnnVectorQuery} with their scores. */
+  static final class DocAndScoreQuery extends Query {
+
+    private final int k;
+    private final int[] docs;
+    private final float[] scores;
+    private final int[] segmentStarts;
+    private final Object contextIdentity;
+
+    /**
+     * @param k the number of documents requested by the original query
+     * @param docs the global doc ids of the hits, sorted
+     * @param scores the scores of the hits, in the same order as {@code docs}
+     * @param segmentStarts the index in {@code docs} of the first hit of each leaf, plus the number of hits
+     * @param contextIdentity the {@link org.apache.lucene.index.IndexReaderContext#id() id} of the reader the hits come from
+     */
+    DocAndScoreQuery(int k, int[] docs, float[] scores, int[] segmentStarts, Object contextIdentity) {
+      this.k = k;
+      this.docs = docs;
+      this.scores = scores;
+      this.segmentStarts = segmentStarts;
+      this.contextIdentity = contextIdentity;
+    }
+
+    @Override
+    public Weight createWeight(IndexSearcher searcher, ScoreMode scoreMode, float boost) {
+      if (searcher.getIndexReader().getContext().id() != contextIdentity) {
+        throw new IllegalStateException("This DocAndScoreQuery was created by a different reader");
+      }
+      return new Weight(this) {
+        @Override
+        public Explanation explain(LeafReaderContext context, int doc) {
+          final int found = Arrays.binarySearch(docs, segmentStarts[context.ord], segmentStarts[context.ord + 1],
+              doc + context.docBase);
+          if (found < 0) {
+            return Explanation.noMatch("not in top " + k);
+          }
+          return Explanation.match(scores[found] * boost, "within top " + k);
+        }
+
+        @Override
+        public Scorer scorer(LeafReaderContext context) {
+          final int lower = segmentStarts[context.ord];
+          final int upper = segmentStarts[context.ord + 1];
+          if (lower == upper) {
+            return null;
+          }
+          return new Scorer(this) {
+            int upTo = -1;
+
+            @Override
+            public DocIdSetIterator iterator() {
+              return new DocIdSetIterator() {
+                @Override
+                public int docID() {
+                  return docIdNoShadow();
+                }
+
+                @Override
+                public int nextDoc() {
+                  if (upTo == -1) {
+                    upTo = lower;
+                  } else {
+                    ++upTo;
+                  }
+                  return docIdNoShadow();
+                }
+
+                @Override
+                public int advance(int target) throws IOException {
+                  return slowAdvance(target);
+                }
+
+                @Override
+                public long cost() {
+                  return upper - lower;
+                }
+              };
+            }
+
+            @Override
+            public float getMaxScore(int docId) {
+              float maxScore = 0;
+              for (int idx = Math.max(lower, upTo); idx < upper && docs[idx] - context.docBase <= docId; idx++) {
+                maxScore = Math.max(maxScore, scores[idx]);
+              }
+              return maxScore * boost;
+            }
+
+            @Override
+            public float score() {
+              return scores[upTo] * boost;
+            }
+
+            @Override
+            public int docID() {
+              return docIdNoShadow();
+            }
+
+            private int docIdNoShadow() {
+              if (upTo == -1) {
+                return -1;
+              }
+              if (upTo >= upper) {
+                return DocIdSetIterator.NO_MORE_DOCS;
+              }
+              return docs[upTo] - context.docBase;
+            }
+          };
+        }
+
+        @Override
+        public boolean isCacheable(LeafReaderContext ctx) {
+          // hits depend on the other segments of the reader
+          return false;
+        }
+      };
+    }
+
+    @Override
+    public void visit(QueryVisitor visitor) {
+      visitor.visitLeaf(this);
+    }
+
+    @Override
+    public String toString(String field) {
+      return "DocAndScore[" + k + "]";
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (sameClassAs(obj) == false) {
+        return false;
+      }
+      final DocAndScoreQuery other = (DocAndScoreQuery) obj;
+      return contextIdentity == other.contextIdentity
+          && Arrays.equals(docs, other.docs)
+          && Arrays.equals(scores, other.scores);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(classHash(), contextIdentity, Arrays.hashCode(docs), Arrays.hashCode(scores));
+    }
+  }
+}
@@ -27,8 +27,13 @@ import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Predicate;
 
@@ -52,7 +57,12 @@ import static org.apache.lucene.util.RamUsageEstimator.QUERY_DEFAULT_RAM_BYTES_U
  * eviction policy in order to remain under a given maximum size and number of
  * bytes used.
  *
- * This class is thread-safe.
+ * This class is thread-safe. Lookups do not take any lock: the queries that
+ * are read from the cache are recorded in a lock-free buffer which is applied
+ * to the LRU order the next time the cache is modified, or as soon as enough
+ * accesses are pending and the lock is free. Eviction is hence based on an
+ * approximation of the least-recently-used order under heavy concurrency, but
+ * searches never have to skip the cache because another thread is using it.
  *
  * Note that query eviction runs in linear time with the total number of
  * segments that have cache entries so this cache works best with
@@ -82,13 +92,20 @@ import static org.apache.lucene.util.RamUsageEstimator.QUERY_DEFAULT_RAM_BYTES_U
  * {@link #onQueryCache}, {@link #onQueryEviction},
  * {@link #onDocIdSetCache}, {@link #onDocIdSetEviction} and {@link #onClear}.
  * It is better to not perform heavy computations in these methods though since
- * they are called synchronously and under a lock.
+ * they are called synchronously. All of them but {@link #onHit} and
+ * {@link #onMiss} are called under a lock, these two may be called
+ * concurrently by several search threads.
  *
  * @see QueryCachingPolicy
  * @lucene.experimental
  */
 public class LRUQueryCache implements QueryCache, Accountable {
 
+  // number of pending accesses above which lookups try to apply them to the LRU order
+  static final int ACCESS_BUFFER_DRAIN_THRESHOLD = 64;
+  // number of pending accesses above which new accesses are not recorded anymore
+  static final int ACCESS_BUFFER_MAX_SIZE = 4096;
+
   private final int maxSize;
   private final long maxRamBytesUsed;
   private final Predicate<LeafReaderContext> leavesToCache;
@@ -98,16 +115,22 @@ public class LRUQueryCache implements QueryCache, Accountable {
   // The contract between this set and the per-leaf caches is that per-leaf caches
   // are only allowed to store sub-sets of the queries that are contained in
   // mostRecentlyUsedQueries. This is why write operations are performed under a lock
+  // while reads only go through the concurrent per-leaf maps
   private final Set<Query> mostRecentlyUsedQueries;
   private final Map<IndexReader.CacheKey, LeafCache> cache;
   private final ReentrantLock lock;
   private final float skipCacheFactor;
-
+  // queries that have been looked up without the lock and still need to be
+  // moved to the most-recently-used position, in lookup order
+  private final Queue<Query> pendingAccesses;
+  private final AtomicInteger pendingAccessCount;
+
+  // hits and misses are counted concurrently by search threads
+  private final LongAdder hitCount;
+  private final LongAdder missCount;
   // these variables are volatile so that we do not need to sync reads
   // but increments need to be performed under the lock
   private volatile long ramBytesUsed;
-  private volatile long hitCount;
-  private volatile long missCount;
   private volatile long cacheCount;
   private volatile long cacheSize;
 
@@ -131,8 +154,12 @@ public class LRUQueryCache implements QueryCache, Accountable {
 
     uniqueQueries = new LinkedHashMap<>(16, 0.75f, true);
     mostRecentlyUsedQueries = uniqueQueries.keySet();
-    cache = new IdentityHashMap<>();
+    cache = new ConcurrentHashMap<>();
     lock = new ReentrantLock();
+    pendingAccesses = new ConcurrentLinkedQueue<>();
+    pendingAccessCount = new AtomicInteger();
+    hitCount = new LongAdder();
+    missCount = new LongAdder();
     ramBytesUsed = 0;
   }
 
@@ -179,23 +206,28 @@ public class LRUQueryCache implements QueryCache, Accountable {
    * Expert: callback when there is a cache hit on a given query.
    * Implementing this method is typically useful in order to compute more
    * fine-grained statistics about the query cache.
+   * NOTE: this method is not called under a lock and may be called
+   * concurrently from several threads. {@code query} is the query that was
+   * looked up: it is equal to the cached query, but may be a different
+   * instance than the one that was passed to {@link #onQueryCache}.
    * @see #onMiss
    * @lucene.experimental
    */
   protected void onHit(Object readerCoreKey, Query query) {
-    assert lock.isHeldByCurrentThread();
-    hitCount += 1;
+    hitCount.increment();
   }
 
   /**
    * Expert: callback when there is a cache miss on a given query.
+   * NOTE: this method is not called under a lock and may be called
+   * concurrently from several threads. {@code query} is the query that was
+   * looked up, even if an equal query is cached for other segments.
    * @see #onHit
    * @lucene.experimental
    */
   protected void onMiss(Object readerCoreKey, Query query) {
-    assert lock.isHeldByCurrentThread();
     assert query != null;
-    missCount += 1;
+    missCount.increment();
   }
 
   /**
@@ -268,7 +300,6 @@ public class LRUQueryCache implements QueryCache, Accountable {
   }
 
   DocIdSet get(Query key, IndexReader.CacheHelper cacheHelper) {
-    assert lock.isHeldByCurrentThread();
     assert key instanceof BoostQuery == false;
     assert key instanceof ConstantScoreQuery == false;
     final IndexReader.CacheKey readerKey = cacheHelper.getKey();
@@ -277,27 +308,52 @@ public class LRUQueryCache implements QueryCache, Accountable {
       onMiss(readerKey, key);
       return null;
     }
-    // this get call moves the query to the most-recently-used position
-    final Query singleton = uniqueQueries.get(key);
-    if (singleton == null) {
-      onMiss(readerKey, key);
-      return null;
-    }
-    final DocIdSet cached = leafCache.get(singleton);
+    // the query will be moved to the most-recently-used position when pending accesses get applied
+    recordAccess(key);
+    final DocIdSet cached = leafCache.get(key);
     if (cached == null) {
-      onMiss(readerKey, singleton);
+      onMiss(readerKey, key);
     } else {
-      onHit(readerKey, singleton);
+      onHit(readerKey, key);
     }
     return cached;
   }
 
+  private void recordAccess(Query query) {
+    final int pending = pendingAccessCount.incrementAndGet();
+    if (pending > ACCESS_BUFFER_MAX_SIZE) {
+      // the lock has not been available for a long time, give up on this access
+      // rather than letting the buffer grow: the LRU order is only approximate anyway
+      pendingAccessCount.decrementAndGet();
+    } else {
+      pendingAccesses.offer(query);
+    }
+    if (pending >= ACCESS_BUFFER_DRAIN_THRESHOLD && lock.tryLock()) {
+      try {
+        drainPendingAccesses();
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  /** Move queries that have been looked up since the last call to the most-recently-used position. */
+  private void drainPendingAccesses() {
+    assert lock.isHeldByCurrentThread();
+    for (Query query = pendingAccesses.poll(); query != null; query = pendingAccesses.poll()) {
+      pendingAccessCount.decrementAndGet();
+      // this get call moves the query to the most-recently-used position
+      uniqueQueries.get(query);
+    }
+  }
+
   private void putIfAbsent(Query query, DocIdSet set, IndexReader.CacheHelper cacheHelper) {
     assert query instanceof BoostQuery == false;
     assert query instanceof ConstantScoreQuery == false;
     // under a lock to make sure that mostRecentlyUsedQueries and cache remain sync'ed
     lock.lock();
     try {
+      drainPendingAccesses();
       Query singleton = uniqueQueries.putIfAbsent(query, query);
       if (singleton == null) {
         onQueryCache(query, LINKED_HASHTABLE_RAM_BYTES_PER_ENTRY + QUERY_DEFAULT_RAM_BYTES_USED);
@@ -372,6 +428,7 @@ public class LRUQueryCache implements QueryCache, Accountable {
   public void clearQuery(Query query) {
     lock.lock();
     try {
+      drainPendingAccesses();
       final Query singleton = uniqueQueries.remove(query);
       if (singleton != null) {
         onEviction(singleton);
@@ -395,6 +452,8 @@ public class LRUQueryCache implements QueryCache, Accountable {
   public void clear() {
     lock.lock();
     try {
+      // do not keep references to the queries that were looked up before clearing
+      drainPendingAccesses();
       cache.clear();
       // Note that this also clears the uniqueQueries map since mostRecentlyUsedQueries is the uniqueQueries.keySet view:
       mostRecentlyUsedQueries.clear();
@@ -451,6 +510,7 @@ public class LRUQueryCache implements QueryCache, Accountable {
   List<Query> cachedQueries() {
     lock.lock();
     try {
+      drainPendingAccesses();
       return new ArrayList<>(mostRecentlyUsedQueries);
     } finally {
       lock.unlock();
@@ -552,7 +612,7 @@ public class LRUQueryCache implements QueryCache, Accountable {
    * @see #getMissCount()
    */
   public final long getHitCount() {
-    return hitCount;
+    return hitCount.sum();
   }
 
   /**
@@ -563,7 +623,7 @@ public class LRUQueryCache implements QueryCache, Accountable {
    * @see #getHitCount()
    */
   public final long getMissCount() {
-    return missCount;
+    return missCount.sum();
   }
 
   /**
@@ -603,7 +663,7 @@ public class LRUQueryCache implements QueryCache, Accountable {
     return getCacheCount() - getCacheSize();
   }
 
-  // this class is not thread-safe, everything but ramBytesUsed needs to be called under a lock
+  // reads are thread-safe, but everything else but ramBytesUsed needs to be called under a lock
   private class LeafCache implements Accountable {
 
     private final Object key;
@@ -612,7 +672,9 @@ public class LRUQueryCache implements QueryCache, Accountable {
 
     LeafCache(Object key) {
       this.key = key;
-      cache = new IdentityHashMap<>();
+      // keys are the singletons of uniqueQueries, so looking up equal queries
+      // returns the same entries as looking up the singletons by identity
+      cache = new ConcurrentHashMap<>();
       ramBytesUsed = 0;
     }
 
@@ -716,7 +778,7 @@ public class LRUQueryCache implements QueryCache, Accountable {
       }
 
       // Short-circuit: Check whether this segment is eligible for caching
-      // before we take a lock because of #get
+      // before we look up the cache
       if (shouldCache(context) == false) {
         return in.scorerSupplier(context);
       }
@@ -727,17 +789,7 @@ public class LRUQueryCache implements QueryCache, Accountable {
         return in.scorerSupplier(context);
       }
 
-      // If the lock is already busy, prefer using the uncached version than waiting
-      if (lock.tryLock() == false) {
-        return in.scorerSupplier(context);
-      }
-
-      DocIdSet docIdSet;
-      try {
-        docIdSet = get(in.getQuery(), cacheHelper);
-      } finally {
-        lock.unlock();
-      }
+      DocIdSet docIdSet = get(in.getQuery(), cacheHelper);
 
       if (docIdSet == null) {
         if (policy.shouldCache(in.getQuery())) {
@@ -827,7 +879,7 @@ public class LRUQueryCache implements QueryCache, Accountable {
       }
 
       // Short-circuit: Check whether this segment is eligible for caching
-      // before we take a lock because of #get
+      // before we look up the cache
       if (shouldCache(context) == false) {
         return in.bulkScorer(context);
       }
@@ -838,17 +890,7 @@ public class LRUQueryCache implements QueryCache, Accountable {
         return in.bulkScorer(context);
       }
 
-      // If the lock is already busy, prefer using the uncached version than waiting
-      if (lock.tryLock() == false) {
-        return in.bulkScorer(context);
-      }
-
-      DocIdSet docIdSet;
-      try {
-        docIdSet = get(in.getQuery(), cacheHelper);
-      } finally {
-        lock.unlock();
-      }
+      DocIdSet docIdSet = get(in.getQuery(), cacheHelper);
 
       if (docIdSet == null) {
         if (policy.shouldCache(in.getQuery())) {
@@ -74,6 +74,16 @@ public abstract class IndexInput extends DataInput implements Cloneable,Closeabl
   /** The number of bytes in the file. */
   public abstract long length();
 
+  /**
+   * Expert: hint that the bytes from {@code offset} (inclusive) to {@code offset+length} (exclusive)
+   * of this input will be read soon, so that implementations may start loading them in the
+   * background. This allows reads of several ranges to overlap, instead of waiting for each of
+   * them in turn. This method must return quickly and does not change the file pointer.
+   * <p>
+   * The default implementation does nothing.
+   */
+  public void prefetch(long offset, long length) throws IOException {}
+
   @Override
   public String toString() {
     return resourceDescription;
@@ -78,13 +78,27 @@ public final class LZ4 {
 
   /**
    * Decompress at least <code>decompressedLen</code> bytes into
-   * <code>dest[dOff:]</code>. Please note that <code>dest</code> must be large
+   * <code>dest[0:]</code>. Please note that <code>dest</code> must be large
    * enough to be able to hold <b>all</b> decompressed data (meaning that you
    * need to know the total decompressed length).
    */
   public static int decompress(DataInput compressed, int decompressedLen, byte[] dest) throws IOException {
-    int dOff = 0;
+    return decompress(compressed, decompressedLen, dest, 0);
+  }
+
+  /**
+   * Decompress at least <code>decompressedLen</code> bytes into
+   * <code>dest[dOff:]</code>, and return the offset in <code>dest</code> after
+   * the last decompressed byte. Matches may refer to bytes that precede
+   * <code>dOff</code>, which is how data that has been compressed with
+   * {@link #compressWithDictionary} is decompressed: the dictionary is expected
+   * to be stored in <code>dest[dOff-dictLen:dOff]</code>. Please note that
+   * <code>dest</code> must be large enough to be able to hold <b>all</b>
+   * decompressed data.
+   */
+  public static int decompress(DataInput compressed, int decompressedLen, byte[] dest, int dOff) throws IOException {
     final int destEnd = dest.length;
+    final int decompressedEnd = dOff + decompressedLen;
 
     do {
       // literals
@@ -103,7 +117,7 @@ public final class LZ4 {
         dOff += literalLen;
       }
 
-      if (dOff >= decompressedLen) {
+      if (dOff >= decompressedEnd) {
         break;
       }
 
@@ -133,7 +147,7 @@ public final class LZ4 {
         System.arraycopy(dest, dOff - matchDec, dest, dOff, fastLen);
         dOff += matchLen;
       }
-    } while (dOff < decompressedLen);
+    } while (dOff < decompressedEnd);
 
     return dOff;
   }
@@ -190,6 +204,13 @@ public final class LZ4 {
     /** Reset this hash table in order to compress the given content. */
     abstract void reset(byte[] b, int off, int len);
 
+    /**
+     * Record the first {@code dictLen} bytes of the content as a dictionary
+     * that matches may refer to. This must be called right after
+     * {@link #reset}.
+     */
+    abstract void initDictionary(int dictLen);
+
     /**
      * Advance the cursor to {@off} and return an index that stored the same
      * 4 bytes as {@code b[o:o+4)}. This may only be called on strictly
@@ -243,6 +264,16 @@ public final class LZ4 {
       }
     }
 
+    @Override
+    void initDictionary(int dictLen) {
+      for (int i = 0; i < dictLen; ++i) {
+        final int v = readInt(bytes, base + i);
+        final int h = hash(v, hashLog);
+        hashTable.set(h, i);
+      }
+      lastOff = Math.max(lastOff, base + dictLen - 1);
+    }
+
     @Override
     int get(int off) {
       assert off > lastOff;
@@ -327,6 +358,13 @@ public final class LZ4 {
       this.end = off + len;
     }
 
+    @Override
+    void initDictionary(int dictLen) {
+      assert next == base;
+      // get() records the hashes of all positions up to the current offset,
+      // including the ones of the dictionary
+    }
+
     @Override
     int get(int off) {
       assert off > next;
@@ -394,18 +432,42 @@ public final class LZ4 {
    * but can safely be reused.
    */
   public static void compress(byte[] bytes, int off, int len, DataOutput out, HashTable ht) throws IOException {
-    Objects.checkFromIndexSize(off, len, bytes.length);
+    compressWithDictionary(bytes, off, 0, len, out, ht);
+  }
+
+  /**
+   * Compress <code>bytes[dictOff+dictLen:dictOff+dictLen+len]</code> into
+   * <code>out</code> using at most 16KB of memory.
+   * <code>bytes[dictOff:dictOff+dictLen]</code> is used as a dictionary that
+   * matches may refer to, so the same dictionary must be present right before
+   * the decompressed bytes in order to decompress them, see
+   * {@link #decompress(DataInput, int, byte[], int)}. The dictionary may not
+   * be longer than 64kB. <code>ht</code> shouldn't be shared across threads
+   * but can safely be reused.
+   */
+  public static void compressWithDictionary(byte[] bytes, int dictOff, int dictLen, int len, DataOutput out, HashTable ht) throws IOException {
+    Objects.checkFromIndexSize(dictOff, dictLen, bytes.length);
+    Objects.checkFromIndexSize(dictOff + dictLen, len, bytes.length);
+    if (dictLen > MAX_DISTANCE) {
+      throw new IllegalArgumentException("dictLen must not be greater than 64kB, but got " + dictLen);
+    }
 
-    final int base = off;
-    final int end = off + len;
+    final int base = dictOff;
+    final int end = dictOff + dictLen + len;
 
-    int anchor = off++;
+    int off = dictOff + dictLen;
+    int anchor = off;
+    if (dictLen == 0) {
+      // the first byte can't be a match
+      ++off;
+    }
 
     if (len > LAST_LITERALS + MIN_MATCH) {
 
       final int limit = end - LAST_LITERALS;
       final int matchLimit = limit - MIN_MATCH;
-      ht.reset(bytes, base, len);
+      ht.reset(bytes, base, dictLen + len);
+      ht.initDictionary(dictLen);
 
       main:
       while (off <= limit) {
@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.util.hnsw;
+
+import java.io.IOException;
+import java.util.Random;
+
+import org.apache.lucene.index.VectorValues;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.SparseFixedBitSet;
+
+import static org.apache.lucene.search.DocIdSetIterator.NO_MORE_DOCS;
+
+/**
+ * A navigable small-world graph over vector ordinals, which can be searched for
+ * the approximate nearest neighbors of a target vector. Implementations iterate
+ * over the neighbors of one node at a time, see {@link #seek(int)}.
+ * <p>
+ * Despite the name, this is not a hierarchical graph: it only has the bottom layer of
+ * an HNSW graph, and searches start from random nodes rather than from an upper layer.
+ *
+ * @lucene.experimental
+ */
+public abstract class HnswGraph {
+
+  /** Sole constructor. (For invocation by subclass
+   *  constructors, typically implicit.) */
+  protected HnswGraph() {}
+
+  /** Return the number of nodes of the graph. */
+  public abstract int size();
+
+  /** Move to the given node, so that {@link #nextNeighbor()} iterates over its neighbors. */
+  public abstract void seek(int node) throws IOException;
+
+  /** Return the next neighbor of the current node, or {@link org.apache.lucene.search.DocIdSetIterator#NO_MORE_DOCS} if there are no more. */
+  public abstract int nextNeighbor() throws IOException;
+
+  /**
+   * Search the graph for the nodes whose vectors are the most similar to {@code query}.
+   * <p>
+   * The search starts from {@code numSeed} random nodes and repeatedly expands the most
+   * similar node that has not been expanded yet, until no candidate can improve the
+   * current top {@code topK} nodes anymore. Nodes that are not set in {@code acceptOrds}
+   * are traversed but not returned. If more than {@code visitedLimit} nodes need to be
+   * compared with the query, the search stops and the returned queue is
+   * {@link NeighborQueue#incomplete() incomplete}.
+   *
+   * @return a min-heap of at most {@code topK} nodes, whose top is the least similar one
+   */
+  public static NeighborQueue search(float[] query, int topK, int numSeed, RandomAccessVectorValues vectors,
+                                     VectorValues.SimilarityFunction similarityFunction, HnswGraph graph,
+                                     Bits acceptOrds, int visitedLimit, Random random) throws IOException {
+    final int size = graph.size();
+    final NeighborQueue results = new NeighborQueue(topK, false);
+    // nodes that may lead to more similar nodes, most similar first
+    final NeighborQueue candidates = new NeighborQueue(topK, true);
+    final SparseFixedBitSet visited = new SparseFixedBitSet(Math.max(1, size));
+    int visitedCount = 0;
+
+    // draw distinct seeds, at most once per node
+    final int boundedNumSeed = Math.min(numSeed, size);
+    for (int i = 0, attempts = 0; i < boundedNumSeed && attempts < 2 * size; ++attempts) {
+      final int entryPoint = random.nextInt(size);
+      if (visited.get(entryPoint)) {
+        continue;
+      }
+      ++i;
+      if (visitedCount >= visitedLimit) {
+        results.markIncomplete();
+        break;
+      }
+      visited.set(entryPoint);
+      ++visitedCount;
+      final float score = similarityFunction.compare(query, vectors.vectorValue(entryPoint));
+      candidates.add(entryPoint, score);
+      if (acceptOrds == null || acceptOrds.get(entryPoint)) {
+        results.insertWithOverflow(entryPoint, score, topK);
+      }
+    }
+
+    float minAcceptedScore = results.size() >= topK ? results.topScore() : Float.NEGATIVE_INFINITY;
+    while (candidates.size() > 0 && results.incomplete() == false) {
+      if (candidates.topScore() < minAcceptedScore) {
+        // the best candidate cannot improve results anymore
+        break;
+      }
+      final int topCandidate = candidates.pop();
+      graph.seek(topCandidate);
+      for (int friend = graph.nextNeighbor(); friend != NO_MORE_DOCS; friend = graph.nextNeighbor()) {
+        if (visited.get(friend)) {
+          continue;
+        }
+        if (visitedCount >= visitedLimit) {
+          results.markIncomplete();
+          break;
+        }
+        visited.set(friend);
+        ++visitedCount;
+        final float score = similarityFunction.compare(query, vectors.vectorValue(friend));
+        if (results.size() < topK || score > minAcceptedScore) {
+          candidates.add(friend, score);
+          if (acceptOrds == null || acceptOrds.get(friend)) {
+            results.insertWithOverflow(friend, score, topK);
+            if (results.size() >= topK) {
+              minAcceptedScore = results.topScore();
+            }
+          }
+        }
+      }
+    }
+    results.setVisitedCount(visitedCount);
+    return results;
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.util.hnsw;
+
+import java.io.IOException;
+import java.util.Random;
+
+import org.apache.lucene.index.VectorValues;
+
+/**
+ * Builds a navigable small-world graph by inserting vectors one at a time, in order of
+ * their ordinals. Each new vector is connected to the {@code maxConn} most similar
+ * vectors that a search of width {@code beamWidth} finds among the vectors that were
+ * inserted before it, and these vectors get a reverse connection to the new vector, at
+ * the expense of their least similar neighbor if they already have {@code maxConn}
+ * neighbors.
+ * <p>
+ * All vectors are inserted in a single layer, there are no upper layers of sparser
+ * long-range connections as in a hierarchical graph.
+ *
+ * @lucene.experimental
+ */
+public final class HnswGraphBuilder {
+
+  /** Default maximum number of neighbors per node. */
+  public static final int DEFAULT_MAX_CONN = 16;
+
+  /** Default number of candidates to consider when searching for the neighbors of a new node. */
+  public static final int DEFAULT_BEAM_WIDTH = 100;
+
+  /** Default seed of the random generator that draws entry points. */
+  public static final long DEFAULT_RAND_SEED = 42;
+
+  private final RandomAccessVectorValues vectors;
+  // a second view over the vectors, so that the vector being inserted is not overwritten while searching
+  private final RandomAccessVectorValues buildVectors;
+  private final VectorValues.SimilarityFunction similarityFunction;
+  private final int maxConn;
+  private final int beamWidth;
+  private final Random random;
+
+  /**
+   * Create a builder.
+   * @param vectors the vectors to index
+   * @param similarityFunction how to compare vectors
+   * @param maxConn maximum number of neighbors per node
+   * @param beamWidth number of candidates to consider when looking for the neighbors of a new node
+   * @param seed seed of the random generator that draws entry points
+   */
+  public HnswGraphBuilder(RandomAccessVectorValues vectors, VectorValues.SimilarityFunction similarityFunction,
+                          int maxConn, int beamWidth, long seed) throws IOException {
+    if (maxConn <= 0) {
+      throw new IllegalArgumentException("maxConn must be positive, got " + maxConn);
+    }
+    if (beamWidth <= 0) {
+      throw new IllegalArgumentException("beamWidth must be positive, got " + beamWidth);
+    }
+    this.vectors = vectors;
+    this.buildVectors = vectors.copy();
+    this.similarityFunction = similarityFunction;
+    this.maxConn = maxConn;
+    this.beamWidth = beamWidth;
+    this.random = new Random(seed);
+  }
+
+  /** Build the graph of all the vectors. */
+  public OnHeapHnswGraph build() throws IOException {
+    final OnHeapHnswGraph graph = new OnHeapHnswGraph(maxConn);
+    for (int node = 0; node < vectors.size(); ++node) {
+      addGraphNode(graph, node, vectors.vectorValue(node));
+    }
+    return graph;
+  }
+
+  private void addGraphNode(OnHeapHnswGraph graph, int node, float[] value) throws IOException {
+    assert node == graph.size();
+    final NeighborQueue candidates = HnswGraph.search(value, beamWidth, beamWidth, buildVectors,
+        similarityFunction, graph, null, Integer.MAX_VALUE, random);
+    graph.addNode();
+
+    // only keep the maxConn most similar candidates
+    while (candidates.size() > maxConn) {
+      candidates.pop();
+    }
+    final NeighborArray neighbors = graph.getNeighbors(node);
+    while (candidates.size() > 0) {
+      final float score = candidates.topScore();
+      final int friend = candidates.pop();
+      neighbors.add(friend, score);
+      final NeighborArray friendNeighbors = graph.getNeighbors(friend);
+      friendNeighbors.add(node, score);
+      if (friendNeighbors.size() > maxConn) {
+        friendNeighbors.removeWorst();
+      }
+    }
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.util.hnsw;
+
+import org.apache.lucene.util.ArrayUtil;
+
+/**
+ * The neighbors of a graph node, and their similarity with this node, in no particular order.
+ *
+ * @lucene.internal
+ */
+public final class NeighborArray {
+
+  private int size;
+  private int[] nodes;
+  private float[] scores;
+
+  /** Create an array with room for {@code initialSize} neighbors, that grows as needed. */
+  public NeighborArray(int initialSize) {
+    nodes = new int[initialSize];
+    scores = new float[initialSize];
+  }
+
+  /** Add a neighbor. */
+  public void add(int node, float score) {
+    if (size == nodes.length) {
+      nodes = ArrayUtil.grow(nodes, size + 1);
+      scores = ArrayUtil.growExact(scores, nodes.length);
+    }
+    nodes[size] = node;
+    scores[size] = score;
+    ++size;
+  }
+
+  /** Remove the neighbor that has the lowest score. */
+  public void removeWorst() {
+    assert size > 0;
+    int worst = 0;
+    for (int i = 1; i < size; ++i) {
+      if (scores[i] < scores[worst]) {
+        worst = i;
+      }
+    }
+    --size;
+    nodes[worst] = nodes[size];
+    scores[worst] = scores[size];
+  }
+
+  /** Return the number of neighbors. */
+  public int size() {
+    return size;
+  }
+
+  /** Return the neighbors, only the first {@link #size()} entries are valid. */
+  public int[] nodes() {
+    return nodes;
+  }
+
+  /** Return the scores of the neighbors, only the first {@link #size()} entries are valid. */
+  public float[] scores() {
+    return scores;
+  }
+}
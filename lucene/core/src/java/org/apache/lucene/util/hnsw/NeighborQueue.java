@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.util.hnsw;
+
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.NumericUtils;
+
+/**
+ * A priority queue of graph nodes and their scores, backed by a binary heap of
+ * {@code long}s that pack the score in the upper 32 bits and the node in the
+ * lower 32 bits. The top of a min-heap is the node that has the lowest score,
+ * the top of a max-heap is the node that has the highest score.
+ *
+ * @lucene.internal
+ */
+public final class NeighborQueue {
+
+  private final boolean maxHeap;
+  private long[] heap;
+  private int size;
+  // number of nodes whose score was computed in order to fill this queue
+  private int visitedCount;
+  // whether the search that filled this queue stopped before it was done
+  private boolean incomplete;
+
+  /** Create a queue with room for {@code initialSize} nodes, that grows as needed. */
+  public NeighborQueue(int initialSize, boolean maxHeap) {
+    this.maxHeap = maxHeap;
+    // heap[0] is unused so that the children of i are 2*i and 2*i+1
+    this.heap = new long[Math.max(1, initialSize) + 1];
+  }
+
+  /** Return the number of nodes in this queue. */
+  public int size() {
+    return size;
+  }
+
+  /** Add a node to this queue. */
+  public void add(int node, float score) {
+    if (size + 1 == heap.length) {
+      heap = ArrayUtil.grow(heap, size + 2);
+    }
+    heap[++size] = encode(node, score);
+    upHeap(size);
+  }
+
+  /**
+   * Add a node to this queue if it has less than {@code maxSize} nodes, or replace
+   * the top node with the given one if it is competitive. Return whether the node was added.
+   */
+  public boolean insertWithOverflow(int node, float score, int maxSize) {
+    if (size < maxSize) {
+      add(node, score);
+      return true;
+    }
+    final long encoded = encode(node, score);
+    if (size > 0 && encoded > heap[1]) {
+      heap[1] = encoded;
+      downHeap(1);
+      return true;
+    }
+    return false;
+  }
+
+  /** Remove the top node of this queue and return it. */
+  public int pop() {
+    assert size > 0;
+    final long top = heap[1];
+    heap[1] = heap[size--];
+    downHeap(1);
+    return decodeNode(top);
+  }
+
+  /** Return the top node of this queue. */
+  public int topNode() {
+    assert size > 0;
+    return decodeNode(heap[1]);
+  }
+
+  /** Return the score of the top node of this queue. */
+  public float topScore() {
+    assert size > 0;
+    return decodeScore(heap[1]);
+  }
+
+  /** Remove all nodes from this queue. */
+  public void clear() {
+    size = 0;
+    visitedCount = 0;
+    incomplete = false;
+  }
+
+  /** Return the number of nodes that were visited in order to fill this queue. */
+  public int visitedCount() {
+    return visitedCount;
+  }
+
+  /** Set the number of nodes that were visited in order to fill this queue. */
+  public void setVisitedCount(int visitedCount) {
+    this.visitedCount = visitedCount;
+  }
+
+  /** Return whether the search that filled this queue stopped early. */
+  public boolean incomplete() {
+    return incomplete;
+  }
+
+  /** Record that the search that filled this queue stopped early. */
+  public void markIncomplete() {
+    this.incomplete = true;
+  }
+
+  // in both cases, the top of the heap is the smallest long
+  private long encode(int node, float score) {
+    final long encoded = (((long) NumericUtils.floatToSortableInt(score)) << 32) | (node & 0xFFFFFFFFL);
+    return maxHeap ? ~encoded : encoded;
+  }
+
+  private int decodeNode(long heapValue) {
+    return (int) (maxHeap ? ~heapValue : heapValue);
+  }
+
+  private float decodeScore(long heapValue) {
+    return NumericUtils.sortableIntToFloat((int) ((maxHeap ? ~heapValue : heapValue) >> 32));
+  }
+
+  private void upHeap(int i) {
+    final long value = heap[i];
+    int parent = i >>> 1;
+    while (parent > 0 && value < heap[parent]) {
+      heap[i] = heap[parent];
+      i = parent;
+      parent = i >>> 1;
+    }
+    heap[i] = value;
+  }
+
+  private void downHeap(int i) {
+    final long value = heap[i];
+    int child = i << 1;
+    while (child <= size) {
+      if (child + 1 <= size && heap[child + 1] < heap[child]) {
+        child++;
+      }
+      if (heap[child] >= value) {
+        break;
+      }
+      heap[i] = heap[child];
+      i = child;
+      child = i << 1;
+    }
+    heap[i] = value;
+  }
+}
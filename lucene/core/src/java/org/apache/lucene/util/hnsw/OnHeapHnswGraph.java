@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.util.hnsw;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.apache.lucene.search.DocIdSetIterator.NO_MORE_DOCS;
+
+/**
+ * An {@link HnswGraph} that keeps the neighbors of every node in memory, as built by
+ * {@link HnswGraphBuilder}. Nodes are added in increasing order of their ordinals.
+ *
+ * @lucene.experimental
+ */
+public final class OnHeapHnswGraph extends HnswGraph {
+
+  private final int maxConn;
+  private final List<NeighborArray> graph;
+
+  // state of the iterator over the neighbors of the current node
+  private NeighborArray current;
+  private int upto;
+
+  OnHeapHnswGraph(int maxConn) {
+    this.maxConn = maxConn;
+    this.graph = new ArrayList<>();
+  }
+
+  /** Return the maximum number of neighbors of a node. */
+  public int maxConn() {
+    return maxConn;
+  }
+
+  /** Return the neighbors of the given node. */
+  public NeighborArray getNeighbors(int node) {
+    return graph.get(node);
+  }
+
+  /** Add a node without neighbors, whose ordinal is the current size of the graph. */
+  void addNode() {
+    // one extra slot since neighbors are pruned after they get added
+    graph.add(new NeighborArray(maxConn + 1));
+  }
+
+  @Override
+  public int size() {
+    return graph.size();
+  }
+
+  @Override
+  public void seek(int node) {
+    current = graph.get(node);
+    upto = 0;
+  }
+
+  @Override
+  public int nextNeighbor() {
+    if (upto < current.size()) {
+      return current.nodes()[upto++];
+    }
+    return NO_MORE_DOCS;
+  }
+}
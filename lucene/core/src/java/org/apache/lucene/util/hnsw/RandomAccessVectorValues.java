@@ -0,0 +1,45 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.util.hnsw;
+
+import java.io.IOException;
+
+/**
+ * Vectors that can be accessed by ordinal, in {@code [0, size())}.
+ *
+ * @lucene.experimental
+ */
+public interface RandomAccessVectorValues {
+
+  /** Return the number of vectors. */
+  int size();
+
+  /** Return the number of dimensions of the vectors. */
+  int dimension();
+
+  /**
+   * Return the vector at the given ordinal. The returned array may be reused
+   * by the next call to this method.
+   */
+  float[] vectorValue(int ord) throws IOException;
+
+  /**
+   * Return an independent view over the same vectors, whose calls to
+   * {@link #vectorValue(int)} do not overwrite arrays returned by this instance.
+   */
+  RandomAccessVectorValues copy() throws IOException;
+}
@@ -0,0 +1,27 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Navigable small-world graphs for approximate nearest-neighbor search over dense vectors.
+ * <p>
+ * {@link org.apache.lucene.util.hnsw.HnswGraphBuilder} builds a graph whose nodes are the
+ * ordinals of a set of vectors and whose arcs connect each vector to its nearest neighbors,
+ * and {@link org.apache.lucene.util.hnsw.HnswGraph#search HnswGraph.search} greedily walks
+ * such a graph towards the vectors that are the closest to a target.
+ * The graph has a single layer, entry points are drawn at random.
+ */
+package org.apache.lucene.util.hnsw;
@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.compressing;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestUtil;
+
+public class TestStoredFieldsBlockCache extends LuceneTestCase {
+
+  private static StoredFieldsBlockCache.Block newBlock(int docBase, int numBytes) {
+    return new StoredFieldsBlockCache.Block(docBase, 1, new int[] {0, numBytes}, new int[] {1}, new byte[numBytes]);
+  }
+
+  public void testGetAndPut() {
+    StoredFieldsBlockCache cache = new StoredFieldsBlockCache(1 << 20);
+    Object key1 = new Object();
+    Object key2 = new Object();
+    StoredFieldsBlockCache.Block block = newBlock(0, 100);
+
+    assertNull(cache.get(key1, 42));
+    assertEquals(0, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+
+    cache.put(key1, 42, block);
+    assertSame(block, cache.get(key1, 42));
+    assertNull(cache.get(key1, 43));
+    assertNull(cache.get(key2, 42));
+    assertEquals(1, cache.getHitCount());
+    assertEquals(3, cache.getMissCount());
+    assertEquals(1, cache.getCacheSize());
+    assertEquals(block.ramBytesUsed, cache.ramBytesUsed());
+
+    // the first block wins
+    cache.put(key1, 42, newBlock(0, 100));
+    assertSame(block, cache.get(key1, 42));
+    assertEquals(block.ramBytesUsed, cache.ramBytesUsed());
+
+    cache.put(key2, 42, newBlock(0, 100));
+    cache.invalidate(key1);
+    assertNull(cache.get(key1, 42));
+    assertNotNull(cache.get(key2, 42));
+    assertEquals(1, cache.getCacheSize());
+
+    cache.clear();
+    assertEquals(0, cache.getCacheSize());
+    assertEquals(0, cache.ramBytesUsed());
+  }
+
+  public void testRamBound() {
+    final long blockRamBytesUsed = newBlock(0, 1000).ramBytesUsed;
+    StoredFieldsBlockCache cache = new StoredFieldsBlockCache(10 * blockRamBytesUsed);
+    Object key = new Object();
+
+    // too large to be cached
+    cache.put(key, 0, newBlock(0, 10000));
+    assertEquals(0, cache.getCacheSize());
+
+    for (int i = 0; i < 100; ++i) {
+      cache.put(key, i, newBlock(i, 1000));
+      assertTrue(cache.ramBytesUsed() <= 10 * blockRamBytesUsed);
+    }
+    assertEquals(10, cache.getCacheSize());
+    assertEquals(90, cache.getEvictionCount());
+    // least recently added blocks are evicted first
+    assertNotNull(cache.get(key, 90));
+    assertNull(cache.get(key, 89));
+
+    // blocks that are used get a second chance
+    cache.put(key, 100, newBlock(100, 1000));
+    assertNotNull(cache.get(key, 90));
+    assertNull(cache.get(key, 91));
+  }
+
+  public void testReadDocuments() throws Exception {
+    StoredFieldsBlockCache cache = new StoredFieldsBlockCache(1 << 20);
+    StoredFieldsBlockCache previous = StoredFieldsBlockCache.getDefault();
+    StoredFieldsBlockCache.setDefault(cache);
+    try (Directory dir = newDirectory()) {
+      IndexWriterConfig iwc = newIndexWriterConfig().setCodec(TestUtil.getDefaultCodec());
+      final int numDocs = atLeast(1000);
+      final String[] values = new String[numDocs];
+      try (IndexWriter w = new IndexWriter(dir, iwc)) {
+        for (int i = 0; i < numDocs; ++i) {
+          Document doc = new Document();
+          if (random().nextInt(10) != 0) {
+            values[i] = TestUtil.randomSimpleString(random(), random().nextInt(10) == 0 ? 20000 : 200);
+            doc.add(new StoredField("id", i));
+            doc.add(new StoredField("value", values[i]));
+          }
+          w.addDocument(doc);
+        }
+        w.forceMerge(1);
+      }
+
+      final DirectoryReader reader = DirectoryReader.open(dir);
+      try {
+        for (int iter = 0; iter < 2; ++iter) {
+          for (int i = 0; i < numDocs; ++i) {
+            assertDocument(reader.document(i), i, values[i]);
+          }
+        }
+        assertTrue(cache.getCacheSize() > 0);
+        assertTrue(cache.getHitCount() > 0);
+        assertTrue(cache.ramBytesUsed() <= 1 << 20);
+
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] threads = new Thread[TestUtil.nextInt(random(), 2, 5)];
+        for (int t = 0; t < threads.length; ++t) {
+          final long seed = random().nextLong();
+          threads[t] = new Thread(() -> {
+            java.util.Random random = new java.util.Random(seed);
+            try {
+              for (int i = 0; i < 1000; ++i) {
+                final int docID = random.nextInt(numDocs);
+                assertDocument(reader.document(docID), docID, values[docID]);
+              }
+            } catch (Throwable e) {
+              failure.set(e);
+            }
+          });
+          threads[t].start();
+        }
+        for (Thread thread : threads) {
+          thread.join();
+        }
+        if (failure.get() != null) {
+          throw new AssertionError(failure.get());
+        }
+      } finally {
+        reader.close();
+      }
+      // closing the reader removes its blocks from the cache
+      assertEquals(0, cache.getCacheSize());
+      assertEquals(0, cache.ramBytesUsed());
+    } finally {
+      StoredFieldsBlockCache.setDefault(previous);
+    }
+  }
+
+  private static void assertDocument(Document doc, int docID, String value) {
+    if (value == null) {
+      assertEquals(0, doc.getFields().size());
+    } else {
+      assertEquals(docID, doc.getField("id").numericValue().intValue());
+      assertEquals(value, doc.get("value"));
+    }
+  }
+}
@@ -72,7 +72,7 @@ public class TestForDeltaUtil extends LuceneTestCase {
           forDeltaUtil.skip(in);
           continue;
         }
-        long base = 0;
+        long base = random().nextBoolean() ? 0 : random().nextInt(Integer.MAX_VALUE);
         final long[] restored = new long[ForUtil.BLOCK_SIZE];
         forDeltaUtil.decodeAndPrefixSum(in, base, restored);
         final long[] expected = new long[ForUtil.BLOCK_SIZE];
@@ -92,4 +92,28 @@ public class TestForDeltaUtil extends LuceneTestCase {
 
     d.close();
   }
+
+  public void testMaxDeltas() throws IOException {
+    // the largest deltas for a given number of bits must not overflow the lanes that prefix sums are computed on
+    final Directory d = new ByteBuffersDirectory();
+    final ForDeltaUtil forDeltaUtil = new ForDeltaUtil(new ForUtil());
+    for (int bpv = 1; bpv <= 31 - 7; ++bpv) {
+      final long maxValue = PackedInts.maxValue(bpv);
+      final long[] deltas = new long[ForUtil.BLOCK_SIZE];
+      Arrays.fill(deltas, maxValue);
+      try (IndexOutput out = d.createOutput("test" + bpv + ".bin", IOContext.DEFAULT)) {
+        forDeltaUtil.encodeDeltas(deltas, out);
+      }
+
+      final long base = random().nextInt(1 << 20);
+      final long[] restored = new long[ForUtil.BLOCK_SIZE];
+      try (IndexInput in = d.openInput("test" + bpv + ".bin", IOContext.READONCE)) {
+        forDeltaUtil.decodeAndPrefixSum(in, base, restored);
+      }
+      for (int j = 0; j < ForUtil.BLOCK_SIZE; ++j) {
+        assertEquals(base + (j + 1) * maxValue, restored[j]);
+      }
+    }
+    d.close();
+  }
 }
@@ -19,18 +19,23 @@ package org.apache.lucene.index;
 
 import java.io.IOException;
 import java.lang.reflect.Field;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 
 import org.apache.lucene.analysis.MockAnalyzer;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
 import org.apache.lucene.document.SortedDocValuesField;
 import org.apache.lucene.document.SortedSetDocValuesField;
+import org.apache.lucene.document.StringField;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.LongValues;
 import org.apache.lucene.util.LuceneTestCase;
 import org.apache.lucene.util.RamUsageTester;
 import org.apache.lucene.util.TestUtil;
+import org.apache.lucene.util.packed.PackedInts;
 
 public class TestOrdinalMap extends LuceneTestCase {
 
@@ -95,4 +100,110 @@ public class TestOrdinalMap extends LuceneTestCase {
     dir.close();
   }
 
+  public void testIncrementalBuild() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriterConfig cfg = newIndexWriterConfig(new MockAnalyzer(random()))
+        .setCodec(TestUtil.alwaysDocValuesFormat(TestUtil.getDefaultDocValuesFormat()));
+    IndexWriter iw = new IndexWriter(dir, cfg);
+    final int maxTermLength = TestUtil.nextInt(random(), 1, 3);
+    DirectoryReader reader = DirectoryReader.open(iw);
+    OrdinalMap sortedMap = null, sortedSetMap = null;
+    List<IndexReader.CacheKey> segments = new ArrayList<>();
+    int id = 0;
+    final int iters = atLeast(10);
+    for (int iter = 0; iter < iters; ++iter) {
+      final int numDocs = TestUtil.nextInt(random(), 1, 100);
+      for (int i = 0; i < numDocs; ++i, ++id) {
+        Document d = new Document();
+        d.add(new StringField("id", Integer.toString(id), Store.NO));
+        if (random().nextBoolean()) {
+          d.add(new SortedDocValuesField("sdv", new BytesRef(TestUtil.randomSimpleString(random(), maxTermLength))));
+        }
+        final int numSortedSet = random().nextInt(3);
+        for (int j = 0; j < numSortedSet; ++j) {
+          d.add(new SortedSetDocValuesField("ssdv", new BytesRef(TestUtil.randomSimpleString(random(), maxTermLength))));
+        }
+        iw.addDocument(d);
+      }
+      if (random().nextInt(4) == 0) {
+        // segments that only have deleted docs are dropped, and so are the terms that only they had
+        final int from = random().nextInt(id);
+        for (int i = from; i < Math.min(id, from + 50); ++i) {
+          iw.deleteDocuments(new Term("id", Integer.toString(i)));
+        }
+      }
+      if (random().nextInt(5) == 0) {
+        iw.forceMerge(TestUtil.nextInt(random(), 1, 5));
+      }
+      DirectoryReader newReader = DirectoryReader.openIfChanged(reader, iw);
+      if (newReader == null) {
+        continue;
+      }
+      reader.close();
+      reader = newReader;
+
+      final List<LeafReaderContext> leaves = reader.leaves();
+      final int[] previousSegments = new int[leaves.size()];
+      final SortedDocValues[] sorted = new SortedDocValues[leaves.size()];
+      final SortedSetDocValues[] sortedSet = new SortedSetDocValues[leaves.size()];
+      for (int i = 0; i < leaves.size(); ++i) {
+        previousSegments[i] = segments.indexOf(leaves.get(i).reader().getCoreCacheHelper().getKey());
+        sorted[i] = DocValues.getSorted(leaves.get(i).reader(), "sdv");
+        sortedSet[i] = DocValues.getSortedSet(leaves.get(i).reader(), "ssdv");
+      }
+
+      OrdinalMap expected = OrdinalMap.build(null, sorted, PackedInts.DEFAULT);
+      if (sortedMap != null) {
+        final TermsEnum[] subs = new TermsEnum[sorted.length];
+        final long[] valueCounts = new long[sorted.length];
+        for (int i = 0; i < sorted.length; ++i) {
+          subs[i] = sorted[i].termsEnum();
+          valueCounts[i] = sorted[i].getValueCount();
+        }
+        OrdinalMap actual = OrdinalMap.buildIncremental(null, sortedMap, previousSegments, subs, valueCounts, PackedInts.DEFAULT);
+        assertSameMapping(expected, actual, valueCounts);
+        assertSameMapping(expected, OrdinalMap.build(null, sortedMap, previousSegments, sorted, PackedInts.DEFAULT), valueCounts);
+      }
+      sortedMap = expected;
+
+      expected = OrdinalMap.build(null, sortedSet, PackedInts.DEFAULT);
+      if (sortedSetMap != null) {
+        final TermsEnum[] subs = new TermsEnum[sortedSet.length];
+        final long[] valueCounts = new long[sortedSet.length];
+        for (int i = 0; i < sortedSet.length; ++i) {
+          subs[i] = sortedSet[i].termsEnum();
+          valueCounts[i] = sortedSet[i].getValueCount();
+        }
+        OrdinalMap actual = OrdinalMap.buildIncremental(null, sortedSetMap, previousSegments, subs, valueCounts, PackedInts.DEFAULT);
+        assertSameMapping(expected, actual, valueCounts);
+        // maps that reuse an incrementally built map are fine too
+        expected = actual;
+      }
+      sortedSetMap = expected;
+
+      segments.clear();
+      for (LeafReaderContext leaf : leaves) {
+        segments.add(leaf.reader().getCoreCacheHelper().getKey());
+      }
+    }
+    reader.close();
+    iw.close();
+    dir.close();
+  }
+
+  private static void assertSameMapping(OrdinalMap expected, OrdinalMap actual, long[] valueCounts) {
+    assertEquals(expected.getValueCount(), actual.getValueCount());
+    for (int i = 0; i < valueCounts.length; ++i) {
+      LongValues expectedOrds = expected.getGlobalOrds(i);
+      LongValues actualOrds = actual.getGlobalOrds(i);
+      for (long ord = 0; ord < valueCounts[i]; ++ord) {
+        assertEquals(expectedOrds.get(ord), actualOrds.get(ord));
+      }
+    }
+    for (long ord = 0; ord < expected.getValueCount(); ++ord) {
+      assertEquals(expected.getFirstSegmentNumber(ord), actual.getFirstSegmentNumber(ord));
+      assertEquals(expected.getFirstSegmentOrd(ord), actual.getFirstSegmentOrd(ord));
+    }
+    assertEquals(RamUsageTester.sizeOf(actual, ORDINAL_MAP_ACCUMULATOR), actual.ramBytesUsed());
+  }
 }
@@ -0,0 +1,441 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.search;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.lucene.codecs.Codec;
+import org.apache.lucene.codecs.DocValuesFormat;
+import org.apache.lucene.codecs.lucene86.Lucene86Codec;
+import org.apache.lucene.codecs.lucene86.Lucene86HnswVectorsFormat;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.VectorField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.ExitableDirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.VectorValues;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.LuceneTestCase;
+
+public class TestKnnVectorQuery extends LuceneTestCase {
+
+  private static final VectorValues.SimilarityFunction SIMILARITY = VectorValues.SimilarityFunction.EUCLIDEAN;
+
+  /** A codec that indexes the vectors of the "vector" field in a graph. */
+  private static Codec hnswCodec() {
+    return hnswCodec(random().nextBoolean() ? 16 : 4, random().nextBoolean() ? 100 : 20);
+  }
+
+  private static Codec hnswCodec(int maxConn, int beamWidth) {
+    final DocValuesFormat vectorsFormat = new Lucene86HnswVectorsFormat(maxConn, beamWidth);
+    return new Lucene86Codec() {
+      @Override
+      public DocValuesFormat getDocValuesFormatForField(String field) {
+        if (field.equals("vector")) {
+          return vectorsFormat;
+        }
+        return super.getDocValuesFormatForField(field);
+      }
+    };
+  }
+
+  private static IndexWriterConfig newConfig(boolean hnsw) {
+    // keep doc ids in insertion order across merges
+    final IndexWriterConfig iwc = newIndexWriterConfig().setMergePolicy(newLogMergePolicy());
+    if (hnsw) {
+      iwc.setCodec(hnswCodec());
+    }
+    return iwc;
+  }
+
+  /** Index {@code numDocs} documents, whose vector is {@code {i, i}} where {@code i} is the doc id. */
+  private static Directory createIndex(int numDocs, boolean hnsw) throws IOException {
+    final Directory dir = newDirectory();
+    try (IndexWriter w = new IndexWriter(dir, newConfig(hnsw).setMaxBufferedDocs(Math.max(2, numDocs / 3)))) {
+      final FieldType type = VectorField.createFieldType(2, SIMILARITY);
+      for (int i = 0; i < numDocs; ++i) {
+        final Document doc = new Document();
+        doc.add(new StringField("id", Integer.toString(i), Field.Store.NO));
+        doc.add(new StringField("parity", i % 2 == 0 ? "even" : "odd", Field.Store.NO));
+        doc.add(new NumericDocValuesField("num", i));
+        doc.add(new VectorField("vector", new float[] {i, i}, type));
+        w.addDocument(doc);
+      }
+      w.forceMerge(1);
+    }
+    return dir;
+  }
+
+  private static Set<Integer> ids(TopDocs topDocs) {
+    final Set<Integer> ids = new HashSet<>();
+    for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+      ids.add(scoreDoc.doc);
+    }
+    return ids;
+  }
+
+  public void testFindsNearest() throws IOException {
+    for (boolean hnsw : new boolean[] {false, true}) {
+      try (Directory dir = createIndex(100, hnsw);
+           IndexReader reader = DirectoryReader.open(dir)) {
+        final IndexSearcher searcher = new IndexSearcher(reader);
+        final TopDocs topDocs = searcher.search(new KnnVectorQuery("vector", new float[] {10.2f, 10.2f}, 3), 10);
+        assertEquals(3, topDocs.scoreDocs.length);
+        assertEquals(10, topDocs.scoreDocs[0].doc);
+        assertEquals(SIMILARITY.compare(new float[] {10.2f, 10.2f}, new float[] {10, 10}), topDocs.scoreDocs[0].score, 0f);
+        final Set<Integer> expected = new HashSet<>();
+        expected.add(9);
+        expected.add(10);
+        expected.add(11);
+        assertEquals(expected, ids(topDocs));
+      }
+    }
+  }
+
+  public void testMatchesAcrossSegments() throws IOException {
+    for (boolean hnsw : new boolean[] {false, true}) {
+      try (Directory dir = newDirectory()) {
+        try (IndexWriter w = new IndexWriter(dir, newConfig(hnsw))) {
+          for (int i = 0; i < 30; ++i) {
+            final Document doc = new Document();
+            doc.add(new VectorField("vector", new float[] {i, 0}, SIMILARITY));
+            w.addDocument(doc);
+            if (i % 10 == 9) {
+              w.commit();
+            }
+          }
+        }
+        try (IndexReader reader = DirectoryReader.open(dir)) {
+          final IndexSearcher searcher = newSearcher(reader);
+          final Query query = new KnnVectorQuery("vector", new float[] {15, 0}, 5);
+          final TopDocs topDocs = searcher.search(query, 10);
+          assertEquals(5, topDocs.scoreDocs.length);
+          assertEquals(15, topDocs.scoreDocs[0].doc);
+          for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+            assertTrue(Math.abs(scoreDoc.doc - 15) <= 2);
+          }
+          assertEquals(5, searcher.count(query));
+        }
+      }
+    }
+  }
+
+  public void testDeletes() throws IOException {
+    for (boolean hnsw : new boolean[] {false, true}) {
+      try (Directory dir = createIndex(50, hnsw)) {
+        try (IndexWriter w = new IndexWriter(dir, newConfig(hnsw).setMergePolicy(NoMergePolicy.INSTANCE))) {
+          w.deleteDocuments(new Term("parity", "even"));
+        }
+        try (IndexReader reader = DirectoryReader.open(dir)) {
+          final IndexSearcher searcher = new IndexSearcher(reader);
+          final TopDocs topDocs = searcher.search(new KnnVectorQuery("vector", new float[] {20, 20}, 4), 10);
+          final Set<Integer> expected = new HashSet<>();
+          expected.add(17);
+          expected.add(19);
+          expected.add(21);
+          expected.add(23);
+          assertEquals(expected, ids(topDocs));
+        }
+      }
+    }
+  }
+
+  public void testFilter() throws IOException {
+    for (boolean hnsw : new boolean[] {false, true}) {
+      try (Directory dir = createIndex(100, hnsw);
+           IndexReader reader = DirectoryReader.open(dir)) {
+        final IndexSearcher searcher = new IndexSearcher(reader);
+
+        // many documents match the filter
+        Query filter = new TermQuery(new Term("parity", "odd"));
+        TopDocs topDocs = searcher.search(new KnnVectorQuery("vector", new float[] {50, 50}, 2, filter), 10);
+        Set<Integer> expected = new HashSet<>();
+        expected.add(49);
+        expected.add(51);
+        assertEquals(expected, ids(topDocs));
+
+        // fewer documents match the filter than requested
+        filter = new TermInSetQuery("id", new BytesRef("3"), new BytesRef("90"));
+        topDocs = searcher.search(new KnnVectorQuery("vector", new float[] {50, 50}, 5, filter), 10);
+        expected = new HashSet<>();
+        expected.add(3);
+        expected.add(90);
+        assertEquals(expected, ids(topDocs));
+
+        // no documents match the filter
+        filter = new TermQuery(new Term("id", "missing"));
+        assertEquals(0, searcher.count(new KnnVectorQuery("vector", new float[] {50, 50}, 5, filter)));
+      }
+    }
+  }
+
+  public void testSparseVectors() throws IOException {
+    for (boolean hnsw : new boolean[] {false, true}) {
+      try (Directory dir = newDirectory()) {
+        try (IndexWriter w = new IndexWriter(dir, newConfig(hnsw))) {
+          for (int i = 0; i < 40; ++i) {
+            final Document doc = new Document();
+            doc.add(new StringField("id", Integer.toString(i), Field.Store.NO));
+            if (i % 3 == 0) {
+              doc.add(new VectorField("vector", new float[] {i, i}, SIMILARITY));
+            }
+            w.addDocument(doc);
+          }
+          w.forceMerge(1);
+        }
+        try (IndexReader reader = DirectoryReader.open(dir)) {
+          final IndexSearcher searcher = new IndexSearcher(reader);
+          final TopDocs topDocs = searcher.search(new KnnVectorQuery("vector", new float[] {16, 16}, 2), 10);
+          final Set<Integer> expected = new HashSet<>();
+          expected.add(15);
+          expected.add(18);
+          assertEquals(expected, ids(topDocs));
+
+          for (LeafReaderContext ctx : reader.leaves()) {
+            final VectorValues values = VectorValues.get(ctx.reader(), "vector");
+            assertEquals(2, values.dimension());
+            assertEquals(SIMILARITY, values.similarityFunction());
+            assertTrue(values.advanceExact(12));
+            assertArrayEquals(new float[] {12, 12}, values.vectorValue(), 0f);
+            assertFalse(values.advanceExact(13));
+            assertEquals(15, values.nextDoc());
+            assertEquals(21, values.advance(19));
+            assertArrayEquals(new float[] {21, 21}, values.vectorValue(), 0f);
+          }
+        }
+      }
+    }
+  }
+
+  /** The approximate search must find most of the true nearest neighbors, and more of them with a larger fanout. */
+  public void testRecall() throws IOException {
+    final int numDocs = 1000, dimension = 8, k = 10, numQueries = 50;
+    final float[][] vectors = new float[numDocs][];
+    try (Directory dir = newDirectory()) {
+      final IndexWriterConfig iwc = newIndexWriterConfig().setMergePolicy(newLogMergePolicy()).setCodec(hnswCodec(16, 100));
+      try (IndexWriter w = new IndexWriter(dir, iwc)) {
+        final FieldType type = VectorField.createFieldType(dimension, SIMILARITY);
+        for (int i = 0; i < numDocs; ++i) {
+          vectors[i] = randomVector(dimension);
+          final Document doc = new Document();
+          doc.add(new VectorField("vector", vectors[i], type));
+          w.addDocument(doc);
+        }
+        w.forceMerge(1);
+      }
+      try (IndexReader reader = DirectoryReader.open(dir)) {
+        final IndexSearcher searcher = newSearcher(reader);
+        int foundWithoutFanout = 0, foundWithFanout = 0;
+        for (int q = 0; q < numQueries; ++q) {
+          final float[] target = randomVector(dimension);
+          final Set<Integer> nearest = exactNearest(vectors, target, k);
+          foundWithoutFanout += countIn(nearest, searcher.search(new KnnVectorQuery("vector", target, k, 0, null), k));
+          foundWithFanout += countIn(nearest, searcher.search(new KnnVectorQuery("vector", target, k), k));
+        }
+        final double recall = (double) foundWithFanout / (numQueries * k);
+        assertTrue("recall=" + recall, recall >= 0.95);
+        assertTrue(foundWithFanout >= foundWithoutFanout);
+      }
+    }
+  }
+
+  private static float[] randomVector(int dimension) {
+    final float[] vector = new float[dimension];
+    for (int i = 0; i < dimension; ++i) {
+      vector[i] = random().nextFloat();
+    }
+    return vector;
+  }
+
+  /** The ids of the {@code k} vectors that are the most similar to {@code target}, compared one by one. */
+  private static Set<Integer> exactNearest(float[][] vectors, float[] target, int k) {
+    final Integer[] ids = new Integer[vectors.length];
+    for (int i = 0; i < ids.length; ++i) {
+      ids[i] = i;
+    }
+    Arrays.sort(ids, (a, b) -> Float.compare(SIMILARITY.compare(target, vectors[b]), SIMILARITY.compare(target, vectors[a])));
+    return new HashSet<>(Arrays.asList(ids).subList(0, k));
+  }
+
+  private static int countIn(Set<Integer> ids, TopDocs topDocs) {
+    int count = 0;
+    for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+      if (ids.contains(scoreDoc.doc)) {
+        ++count;
+      }
+    }
+    return count;
+  }
+
+  /** Readers that wrap doc values, like ExitableDirectoryReader does when a timeout is set, must keep the graph search. */
+  public void testSearchThroughFilterReader() throws IOException {
+    try (Directory dir = createIndex(100, true);
+         IndexReader reader = ExitableDirectoryReader.wrap(DirectoryReader.open(dir), () -> false)) {
+      for (LeafReaderContext ctx : reader.leaves()) {
+        final VectorValues values = VectorValues.get(ctx.reader(), "vector");
+        final TopDocs topDocs = values.search(new float[] {10.2f, 10.2f}, 3, 0, null, Integer.MAX_VALUE);
+        assertNotNull(topDocs);
+        assertEquals(10, topDocs.scoreDocs[0].doc);
+        // iteration still goes through the wrapper
+        assertTrue(values.advanceExact(12));
+        assertArrayEquals(new float[] {12, 12}, values.vectorValue(), 0f);
+      }
+      final TopDocs topDocs = new IndexSearcher(reader).search(new KnnVectorQuery("vector", new float[] {10.2f, 10.2f}, 3), 10);
+      assertEquals(3, topDocs.scoreDocs.length);
+      assertEquals(10, topDocs.scoreDocs[0].doc);
+    }
+  }
+
+  public void testMissingField() throws IOException {
+    try (Directory dir = createIndex(10, random().nextBoolean());
+         IndexReader reader = DirectoryReader.open(dir)) {
+      final IndexSearcher searcher = newSearcher(reader);
+      assertEquals(0, searcher.count(new KnnVectorQuery("missing", new float[] {1, 1}, 3)));
+    }
+  }
+
+  public void testDimensionMismatch() throws IOException {
+    try (Directory dir = createIndex(10, random().nextBoolean());
+         IndexReader reader = DirectoryReader.open(dir)) {
+      final IndexSearcher searcher = newSearcher(reader);
+      final IllegalArgumentException e = expectThrows(IllegalArgumentException.class,
+          () -> searcher.search(new KnnVectorQuery("vector", new float[] {1, 1, 1}, 3), 10));
+      assertEquals("vector query dimension: 3 differs from field dimension: 2", e.getMessage());
+    }
+
+    try (Directory dir = newDirectory();
+         IndexWriter w = new IndexWriter(dir, newIndexWriterConfig())) {
+      final Document doc = new Document();
+      doc.add(new VectorField("vector", new float[] {1, 2}, SIMILARITY));
+      w.addDocument(doc);
+      final Document doc2 = new Document();
+      doc2.add(new VectorField("vector", new float[] {1, 2, 3}, SIMILARITY));
+      expectThrows(IllegalArgumentException.class, () -> w.addDocument(doc2));
+    }
+  }
+
+  public void testIllegalChangeTwoSegments() throws IOException {
+    try (Directory dir = newDirectory();
+         IndexWriter w = new IndexWriter(dir, newConfig(random().nextBoolean()))) {
+      final Document doc = new Document();
+      doc.add(new VectorField("vector", new float[] {1, 2}, SIMILARITY));
+      w.addDocument(doc);
+      w.commit();
+
+      final Document doc2 = new Document();
+      doc2.add(new VectorField("vector", new float[] {1, 2, 3}, SIMILARITY));
+      IllegalArgumentException e = expectThrows(IllegalArgumentException.class, () -> w.addDocument(doc2));
+      assertEquals("cannot change vector dimension from 2 to 3 for field=\"vector\"", e.getMessage());
+
+      final Document doc3 = new Document();
+      doc3.add(new VectorField("vector", new float[] {1, 2}, VectorValues.SimilarityFunction.DOT_PRODUCT));
+      e = expectThrows(IllegalArgumentException.class, () -> w.addDocument(doc3));
+      assertEquals("cannot change vector similarity function from EUCLIDEAN to DOT_PRODUCT for field=\"vector\"", e.getMessage());
+
+      // the rejected documents did not prevent the segments from being merged
+      w.addDocument(doc);
+      w.forceMerge(1);
+      try (IndexReader reader = DirectoryReader.open(w)) {
+        assertEquals(1, reader.leaves().size());
+        assertEquals(2, reader.numDocs());
+        final VectorValues values = VectorValues.get(reader.leaves().get(0).reader(), "vector");
+        assertEquals(2, values.dimension());
+        assertEquals(SIMILARITY, values.similarityFunction());
+      }
+    }
+  }
+
+  public void testIllegalChangeTwoWriters() throws IOException {
+    try (Directory dir = newDirectory()) {
+      try (IndexWriter w = new IndexWriter(dir, newConfig(false))) {
+        final Document doc = new Document();
+        doc.add(new VectorField("vector", new float[] {1, 2}, SIMILARITY));
+        w.addDocument(doc);
+      }
+      try (IndexWriter w = new IndexWriter(dir, newConfig(false))) {
+        final Document doc = new Document();
+        doc.add(new VectorField("vector", new float[] {1, 2, 3}, SIMILARITY));
+        final IllegalArgumentException e = expectThrows(IllegalArgumentException.class, () -> w.addDocument(doc));
+        assertEquals("cannot change vector dimension from 2 to 3 for field=\"vector\"", e.getMessage());
+      }
+      try (Directory dir2 = newDirectory()) {
+        try (IndexWriter w = new IndexWriter(dir2, newConfig(false))) {
+          final Document doc = new Document();
+          doc.add(new VectorField("vector", new float[] {1, 2, 3}, SIMILARITY));
+          w.addDocument(doc);
+        }
+        try (IndexWriter w = new IndexWriter(dir, newConfig(false))) {
+          final IllegalArgumentException e = expectThrows(IllegalArgumentException.class, () -> w.addIndexes(dir2));
+          assertEquals("cannot change vector dimension from 2 to 3 for field=\"vector\"", e.getMessage());
+        }
+      }
+    }
+  }
+
+  public void testIllegalArguments() {
+    expectThrows(IllegalArgumentException.class, () -> new KnnVectorQuery("vector", new float[] {1}, 0));
+    expectThrows(IllegalArgumentException.class, () -> new KnnVectorQuery("vector", new float[] {1}, 1, -1, null));
+    expectThrows(IllegalArgumentException.class, () -> VectorField.createFieldType(0, SIMILARITY));
+    expectThrows(IllegalArgumentException.class,
+        () -> VectorField.createFieldType(VectorValues.MAX_DIMENSIONS + 1, SIMILARITY));
+    expectThrows(IllegalArgumentException.class,
+        () -> new VectorField("vector", new float[] {Float.NaN}, SIMILARITY));
+    expectThrows(IllegalArgumentException.class,
+        () -> new VectorField("vector", new float[] {1, 2}, VectorField.createFieldType(3, SIMILARITY)));
+    expectThrows(IllegalArgumentException.class,
+        () -> new Lucene86HnswVectorsFormat(0, 10));
+  }
+
+  public void testEquals() {
+    final Query q1 = new KnnVectorQuery("vector", new float[] {1, 2}, 10);
+    final Query filter = new TermQuery(new Term("id", "1"));
+    QueryUtils.checkEqual(q1, new KnnVectorQuery("vector", new float[] {1, 2}, 10));
+    QueryUtils.checkUnequal(q1, new KnnVectorQuery("vector2", new float[] {1, 2}, 10));
+    QueryUtils.checkUnequal(q1, new KnnVectorQuery("vector", new float[] {1, 3}, 10));
+    QueryUtils.checkUnequal(q1, new KnnVectorQuery("vector", new float[] {1, 2}, 9));
+    QueryUtils.checkEqual(q1, new KnnVectorQuery("vector", new float[] {1, 2}, 10, KnnVectorQuery.DEFAULT_FANOUT, null));
+    QueryUtils.checkUnequal(q1, new KnnVectorQuery("vector", new float[] {1, 2}, 10, 0, null));
+    QueryUtils.checkUnequal(q1, new KnnVectorQuery("vector", new float[] {1, 2}, 10, filter));
+    QueryUtils.checkEqual(new KnnVectorQuery("vector", new float[] {1, 2}, 10, filter),
+        new KnnVectorQuery("vector", new float[] {1, 2}, 10, new TermQuery(new Term("id", "1"))));
+  }
+
+  public void testExplain() throws IOException {
+    try (Directory dir = createIndex(20, random().nextBoolean());
+         IndexReader reader = DirectoryReader.open(dir)) {
+      final IndexSearcher searcher = new IndexSearcher(reader);
+      final Query query = searcher.rewrite(new KnnVectorQuery("vector", new float[] {5, 5}, 3));
+      final Explanation matched = searcher.explain(query, 5);
+      assertTrue(matched.isMatch());
+      assertEquals(1f, matched.getValue().floatValue(), 0f);
+      assertFalse(searcher.explain(query, 15).isMatch());
+    }
+  }
+}
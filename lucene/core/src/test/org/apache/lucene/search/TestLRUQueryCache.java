@@ -194,6 +194,78 @@ public class TestLRUQueryCache extends LuceneTestCase {
     }
   }
 
+  // lookups must not give up on the cache when other threads are using it
+  public void testConcurrentLookups() throws Throwable {
+    Directory dir = newDirectory();
+    final RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    Document doc = new Document();
+    StringField f = new StringField("color", "", Store.NO);
+    doc.add(f);
+    final String[] colors = new String[] {"blue", "red", "yellow", "green"};
+    final int numDocs = atLeast(100);
+    for (int i = 0; i < numDocs; ++i) {
+      f.setStringValue(RandomPicks.randomFrom(random(), colors));
+      w.addDocument(doc);
+    }
+    final DirectoryReader reader = w.getReader();
+    final IndexSearcher searcher = new IndexSearcher(reader);
+    final LRUQueryCache queryCache = new LRUQueryCache(colors.length, 10000000, context -> true, Float.POSITIVE_INFINITY);
+    searcher.setQueryCache(queryCache);
+    searcher.setQueryCachingPolicy(ALWAYS_CACHE);
+
+    final int[] expectedCounts = new int[colors.length];
+    for (int i = 0; i < colors.length; ++i) {
+      // warm the cache
+      TotalHitCountCollector collector = new TotalHitCountCollector();
+      searcher.search(new TermQuery(new Term("color", colors[i])), collector);
+      expectedCounts[i] = collector.getTotalHits();
+    }
+    final long hitCount = queryCache.getHitCount();
+    final long missCount = queryCache.getMissCount();
+
+    final AtomicReference<Throwable> error = new AtomicReference<>();
+    final int numSearches = atLeast(4 * LRUQueryCache.ACCESS_BUFFER_DRAIN_THRESHOLD);
+    Thread[] threads = new Thread[TestUtil.nextInt(random(), 2, 8)];
+    for (int i = 0; i < threads.length; ++i) {
+      threads[i] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            for (int j = 0; j < numSearches; ++j) {
+              final int color = j % colors.length;
+              TotalHitCountCollector collector = new TotalHitCountCollector();
+              searcher.search(new TermQuery(new Term("color", colors[color])), collector);
+              assertEquals(expectedCounts[color], collector.getTotalHits());
+            }
+          } catch (Throwable t) {
+            error.compareAndSet(null, t);
+          }
+        }
+      };
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    try {
+      if (error.get() != null) {
+        throw error.get();
+      }
+      final long numLookups = (long) threads.length * numSearches * reader.leaves().size();
+      assertEquals(hitCount + numLookups, queryCache.getHitCount());
+      assertEquals(missCount, queryCache.getMissCount());
+      assertEquals(colors.length, queryCache.cachedQueries().size());
+      queryCache.assertConsistent();
+    } finally {
+      reader.close();
+      w.close();
+      dir.close();
+    }
+  }
+
   public void testLRUEviction() throws Exception {
     Directory dir = newDirectory();
     final RandomIndexWriter w = new RandomIndexWriter(random(), dir);
@@ -46,6 +46,11 @@ public abstract class LZ4TestCase extends LuceneTestCase {
       assertTrue(in.assertReset());
     }
 
+    @Override
+    void initDictionary(int dictLen) {
+      in.initDictionary(dictLen);
+    }
+
     @Override
     int get(int off) {
       return in.get(off);
@@ -139,6 +144,63 @@ public abstract class LZ4TestCase extends LuceneTestCase {
     assertArrayEquals(ArrayUtil.copyOfSubArray(data, offset, offset+length), ArrayUtil.copyOfSubArray(restored, 0, length));
   }
 
+  private void doTestWithDictionary(byte[] dict, byte[] data, LZ4.HashTable hashTable) throws IOException {
+    final int offset = random().nextInt(10);
+    final byte[] bytes = new byte[offset + dict.length + data.length + random().nextInt(10)];
+    System.arraycopy(dict, 0, bytes, offset, dict.length);
+    System.arraycopy(data, 0, bytes, offset + dict.length, data.length);
+    ByteBuffersDataOutput out = new ByteBuffersDataOutput();
+    LZ4.compressWithDictionary(bytes, offset, dict.length, data.length, out, hashTable);
+    byte[] compressed = out.toArrayCopy();
+
+    // Compress once again with the same hash table to test reuse
+    ByteBuffersDataOutput out2 = new ByteBuffersDataOutput();
+    LZ4.compressWithDictionary(bytes, offset, dict.length, data.length, out2, hashTable);
+    assertArrayEquals(compressed, out2.toArrayCopy());
+
+    // Now restore with the dictionary and compare bytes
+    byte[] restored = new byte[dict.length + data.length + random().nextInt(10)];
+    System.arraycopy(dict, 0, restored, 0, dict.length);
+    final int end = LZ4.decompress(new ByteArrayDataInput(compressed), data.length, restored, dict.length);
+    assertEquals(dict.length + data.length, end);
+    assertArrayEquals(data, ArrayUtil.copyOfSubArray(restored, dict.length, end));
+  }
+
+  public void testDictionary() throws IOException {
+    final byte[] dict = new byte[TestUtil.nextInt(random(), 0, 1 << 12)];
+    random().nextBytes(dict);
+    // data that shares most of its content with the dictionary
+    final byte[] data = new byte[TestUtil.nextInt(random(), 0, 1 << 12)];
+    for (int i = 0; i < data.length; ) {
+      final int len = Math.min(data.length - i, TestUtil.nextInt(random(), 1, 40));
+      if (dict.length > len && random().nextInt(4) != 0) {
+        System.arraycopy(dict, random().nextInt(dict.length - len), data, i, len);
+      } else {
+        for (int j = i; j < i + len; ++j) {
+          data[j] = (byte) random().nextInt();
+        }
+      }
+      i += len;
+    }
+    doTestWithDictionary(dict, data, newHashTable());
+  }
+
+  public void testDictionaryImprovesCompression() throws IOException {
+    final byte[] dict = "Apache Lucene is a high-performance, full-featured text search engine library"
+        .getBytes(StandardCharsets.UTF_8);
+    final byte[] data = "Lucene is a text search engine library".getBytes(StandardCharsets.UTF_8);
+    final LZ4.HashTable hashTable = newHashTable();
+    final byte[] bytes = ArrayUtil.growExact(dict, dict.length + data.length);
+    System.arraycopy(data, 0, bytes, dict.length, data.length);
+
+    ByteBuffersDataOutput withoutDict = new ByteBuffersDataOutput();
+    LZ4.compress(data, 0, data.length, withoutDict, hashTable);
+    ByteBuffersDataOutput withDict = new ByteBuffersDataOutput();
+    LZ4.compressWithDictionary(bytes, 0, dict.length, data.length, withDict, hashTable);
+    assertTrue(withDict.size() < withoutDict.size());
+    doTestWithDictionary(dict, data, hashTable);
+  }
+
   public void testEmpty() throws IOException {
     // literals and matchs lengths <= 15
     final byte[] data = "".getBytes(StandardCharsets.UTF_8);
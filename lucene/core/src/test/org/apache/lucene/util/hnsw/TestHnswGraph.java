@@ -0,0 +1,190 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.util.hnsw;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.lucene.index.VectorValues;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestUtil;
+
+import static org.apache.lucene.search.DocIdSetIterator.NO_MORE_DOCS;
+
+public class TestHnswGraph extends LuceneTestCase {
+
+  public void testMaxConn() throws IOException {
+    final int maxConn = TestUtil.nextInt(random(), 1, 10);
+    final RandomVectors vectors = new RandomVectors(random(), atLeast(200), TestUtil.nextInt(random(), 1, 8));
+    final OnHeapHnswGraph graph = new HnswGraphBuilder(vectors, VectorValues.SimilarityFunction.EUCLIDEAN,
+        maxConn, 20, random().nextLong()).build();
+    assertEquals(vectors.size(), graph.size());
+    for (int node = 0; node < graph.size(); ++node) {
+      final NeighborArray neighbors = graph.getNeighbors(node);
+      assertTrue(neighbors.size() <= maxConn);
+      final Set<Integer> seen = new HashSet<>();
+      graph.seek(node);
+      for (int friend = graph.nextNeighbor(); friend != NO_MORE_DOCS; friend = graph.nextNeighbor()) {
+        assertNotEquals(node, friend);
+        assertTrue(seen.add(friend));
+      }
+      assertEquals(neighbors.size(), seen.size());
+    }
+  }
+
+  public void testEmptyGraph() throws IOException {
+    final RandomVectors vectors = new RandomVectors(random(), 0, 2);
+    final OnHeapHnswGraph graph = new HnswGraphBuilder(vectors, VectorValues.SimilarityFunction.EUCLIDEAN,
+        HnswGraphBuilder.DEFAULT_MAX_CONN, HnswGraphBuilder.DEFAULT_BEAM_WIDTH, random().nextLong()).build();
+    final NeighborQueue results = HnswGraph.search(new float[] {0, 0}, 10, 10, vectors,
+        VectorValues.SimilarityFunction.EUCLIDEAN, graph, null, Integer.MAX_VALUE, random());
+    assertEquals(0, results.size());
+    assertFalse(results.incomplete());
+  }
+
+  /** The graph search should find most of the true nearest neighbors. */
+  public void testRecall() throws IOException {
+    final int dim = 8;
+    final int topK = 10;
+    final RandomVectors vectors = new RandomVectors(random(), 1000, dim);
+    final VectorValues.SimilarityFunction similarityFunction = VectorValues.SimilarityFunction.EUCLIDEAN;
+    final OnHeapHnswGraph graph = new HnswGraphBuilder(vectors, similarityFunction,
+        HnswGraphBuilder.DEFAULT_MAX_CONN, HnswGraphBuilder.DEFAULT_BEAM_WIDTH, random().nextLong()).build();
+
+    int found = 0;
+    final int numQueries = 20;
+    for (int i = 0; i < numQueries; ++i) {
+      final float[] query = RandomVectors.randomVector(random(), dim);
+      final NeighborQueue expected = new NeighborQueue(topK, false);
+      for (int node = 0; node < vectors.size(); ++node) {
+        expected.insertWithOverflow(node, similarityFunction.compare(query, vectors.vectorValue(node)), topK);
+      }
+      final Set<Integer> expectedNodes = new HashSet<>();
+      while (expected.size() > 0) {
+        expectedNodes.add(expected.pop());
+      }
+      final NeighborQueue actual = HnswGraph.search(query, topK, topK, vectors.copy(), similarityFunction,
+          graph, null, Integer.MAX_VALUE, random());
+      assertEquals(topK, actual.size());
+      assertTrue(actual.visitedCount() < vectors.size());
+      while (actual.size() > 0) {
+        if (expectedNodes.contains(actual.pop())) {
+          ++found;
+        }
+      }
+    }
+    final double recall = (double) found / (numQueries * topK);
+    assertTrue("recall=" + recall, recall > 0.8);
+  }
+
+  public void testAcceptOrds() throws IOException {
+    final RandomVectors vectors = new RandomVectors(random(), atLeast(100), 4);
+    final OnHeapHnswGraph graph = new HnswGraphBuilder(vectors, VectorValues.SimilarityFunction.DOT_PRODUCT,
+        HnswGraphBuilder.DEFAULT_MAX_CONN, HnswGraphBuilder.DEFAULT_BEAM_WIDTH, random().nextLong()).build();
+    final FixedBitSet acceptOrds = new FixedBitSet(vectors.size());
+    for (int i = 0; i < vectors.size(); i += 2) {
+      acceptOrds.set(i);
+    }
+    final NeighborQueue results = HnswGraph.search(RandomVectors.randomVector(random(), 4), 10, 10, vectors,
+        VectorValues.SimilarityFunction.DOT_PRODUCT, graph, acceptOrds, Integer.MAX_VALUE, random());
+    assertEquals(10, results.size());
+    while (results.size() > 0) {
+      assertTrue(acceptOrds.get(results.pop()));
+    }
+  }
+
+  public void testVisitedLimit() throws IOException {
+    final RandomVectors vectors = new RandomVectors(random(), atLeast(100), 4);
+    final OnHeapHnswGraph graph = new HnswGraphBuilder(vectors, VectorValues.SimilarityFunction.EUCLIDEAN,
+        HnswGraphBuilder.DEFAULT_MAX_CONN, HnswGraphBuilder.DEFAULT_BEAM_WIDTH, random().nextLong()).build();
+    final NeighborQueue results = HnswGraph.search(RandomVectors.randomVector(random(), 4), 10, 10, vectors,
+        VectorValues.SimilarityFunction.EUCLIDEAN, graph, null, 5, random());
+    assertTrue(results.incomplete());
+    assertTrue(results.visitedCount() <= 5);
+  }
+
+  public void testNeighborQueue() {
+    final NeighborQueue minHeap = new NeighborQueue(2, false);
+    minHeap.add(1, 0.5f);
+    minHeap.add(2, 0.2f);
+    minHeap.add(3, 0.8f);
+    assertEquals(2, minHeap.topNode());
+    assertEquals(0.2f, minHeap.topScore(), 0f);
+    assertTrue(minHeap.insertWithOverflow(4, 0.6f, 3));
+    assertFalse(minHeap.insertWithOverflow(5, 0.1f, 3));
+    assertEquals(1, minHeap.pop());
+    assertEquals(4, minHeap.pop());
+    assertEquals(3, minHeap.pop());
+
+    final NeighborQueue maxHeap = new NeighborQueue(2, true);
+    maxHeap.add(1, -1f);
+    maxHeap.add(2, 3f);
+    assertEquals(2, maxHeap.pop());
+    assertEquals(1, maxHeap.pop());
+    assertEquals(0, maxHeap.size());
+  }
+
+  /** Vectors with random values in {@code [-1, 1]}. */
+  static class RandomVectors implements RandomAccessVectorValues {
+    private final float[][] values;
+    private final int dimension;
+
+    RandomVectors(Random random, int size, int dimension) {
+      this.dimension = dimension;
+      values = new float[size][];
+      for (int i = 0; i < size; ++i) {
+        values[i] = randomVector(random, dimension);
+      }
+    }
+
+    private RandomVectors(float[][] values, int dimension) {
+      this.values = values;
+      this.dimension = dimension;
+    }
+
+    static float[] randomVector(Random random, int dimension) {
+      final float[] vector = new float[dimension];
+      for (int i = 0; i < dimension; ++i) {
+        vector[i] = random.nextFloat() * 2 - 1;
+      }
+      return vector;
+    }
+
+    @Override
+    public int size() {
+      return values.length;
+    }
+
+    @Override
+    public int dimension() {
+      return dimension;
+    }
+
+    @Override
+    public float[] vectorValue(int ord) {
+      return values[ord];
+    }
+
+    @Override
+    public RandomAccessVectorValues copy() {
+      return new RandomVectors(values, dimension);
+    }
+  }
+}
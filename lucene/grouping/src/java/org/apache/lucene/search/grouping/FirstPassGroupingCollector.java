@@ -31,6 +31,7 @@ import org.apache.lucene.search.ScoreMode;
 import org.apache.lucene.search.SimpleCollector;
 import org.apache.lucene.search.Sort;
 import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TotalHits;
 
 /** FirstPassGroupingCollector is the first of two passes necessary
  *  to collect grouped hits.  This pass gathers the top N sorted
@@ -52,12 +53,20 @@ public class FirstPassGroupingCollector<T> extends SimpleCollector {
   private final boolean needsScores;
   private final HashMap<T, CollectedSearchGroup<T>> groupMap;
   private final int compIDXEnd;
+  // only set when groups are sorted by relevance, and we may skip
+  // non-competitive hits once totalHitsThreshold hits were collected:
+  private final boolean canSkipHits;
+  private final int totalHitsThreshold;
 
   // Set once we reach topNGroups unique groups:
   /** @lucene.internal */
   protected TreeSet<CollectedSearchGroup<T>> orderedGroups;
   private int docBase;
   private int spareSlot;
+  private Scorable scorer;
+  private int totalHits;
+  private TotalHits.Relation totalHitsRelation = TotalHits.Relation.EQUAL_TO;
+  private float minCompetitiveScore;
 
   /**
    * Create the first pass collector.
@@ -71,8 +80,32 @@ public class FirstPassGroupingCollector<T> extends SimpleCollector {
    *    Sort.RELEVANCE.
    * @param topNGroups How many top groups to keep.
    */
-  @SuppressWarnings({"unchecked", "rawtypes"})
   public FirstPassGroupingCollector(GroupSelector<T> groupSelector, Sort groupSort, int topNGroups) {
+    this(groupSelector, groupSort, topNGroups, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Create the first pass collector, which may skip non-competitive hits
+   * when groups are sorted by relevance.
+   *
+   * <p><b>NOTE</b>: Once the top N groups are found and more than
+   * {@code totalHitsThreshold} hits were collected, the minimum score a
+   * hit needs to compete with the bottom group is passed on to the scorer,
+   * so that queries which support it can skip low scoring hits.  The total
+   * hit count returned by {@link #getTotalHits()} is then a lower bound.
+   * Only the first pass may skip hits: collectors that need all hits, such
+   * as the {@link TopGroupsCollector} of the second pass, must not be fed
+   * from a cache of this pass.
+   *
+   * @param groupSelector a GroupSelector used to defined groups
+   * @param groupSort The {@link Sort} used to sort the
+   *    groups.  Hits can only be skipped if this is {@link Sort#RELEVANCE}.
+   * @param topNGroups How many top groups to keep.
+   * @param totalHitsThreshold the number of hits to count accurately.
+   *    A value of {@link Integer#MAX_VALUE} disables skipping.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  public FirstPassGroupingCollector(GroupSelector<T> groupSelector, Sort groupSort, int topNGroups, int totalHitsThreshold) {
     this.groupSelector = groupSelector;
     if (topNGroups < 1) {
       throw new IllegalArgumentException("topNGroups must be >= 1 (got " + topNGroups + ")");
@@ -98,13 +131,30 @@ public class FirstPassGroupingCollector<T> extends SimpleCollector {
 
     spareSlot = topNGroups;
     groupMap = new HashMap<>(topNGroups);
+
+    this.canSkipHits = totalHitsThreshold != Integer.MAX_VALUE
+        && sortFields.length == 1
+        && sortFields[0].getType() == SortField.Type.SCORE
+        && sortFields[0].getReverse() == false;
+    this.totalHitsThreshold = Math.max(totalHitsThreshold, topNGroups);
   }
 
   @Override
   public ScoreMode scoreMode() {
+    if (canSkipHits) {
+      return ScoreMode.TOP_SCORES;
+    }
     return needsScores ? ScoreMode.COMPLETE : ScoreMode.COMPLETE_NO_SCORES;
   }
 
+  /**
+   * Returns the number of hits that were collected.  This is a lower bound
+   * of the number of matching documents if non-competitive hits were skipped.
+   */
+  public TotalHits getTotalHits() {
+    return new TotalHits(totalHits, totalHitsRelation);
+  }
+
   /**
    * Returns top groups, starting from offset.  This may
    * return null, if no groups were collected, or if the
@@ -151,10 +201,28 @@ public class FirstPassGroupingCollector<T> extends SimpleCollector {
 
   @Override
   public void setScorer(Scorable scorer) throws IOException {
+    this.scorer = scorer;
     groupSelector.setScorer(scorer);
     for (LeafFieldComparator comparator : leafComparators) {
       comparator.setScorer(scorer);
     }
+    minCompetitiveScore = 0f;
+    updateMinCompetitiveScore();
+  }
+
+  private void updateMinCompetitiveScore() throws IOException {
+    if (canSkipHits == false || orderedGroups == null || totalHits < totalHitsThreshold) {
+      return;
+    }
+    // since groups are tie-broken on their top doc, and docs are collected
+    // in doc Id order, a hit must score more than the bottom group to compete
+    final float bottomScore = (Float) comparators[0].value(orderedGroups.last().comparatorSlot);
+    final float localMinScore = Math.nextUp(bottomScore);
+    if (localMinScore > minCompetitiveScore) {
+      scorer.setMinCompetitiveScore(localMinScore);
+      minCompetitiveScore = localMinScore;
+      totalHitsRelation = TotalHits.Relation.GREATER_THAN_OR_EQUAL_TO;
+    }
   }
 
   private boolean isCompetitive(int doc) throws IOException {
@@ -190,8 +258,16 @@ public class FirstPassGroupingCollector<T> extends SimpleCollector {
   @Override
   public void collect(int doc) throws IOException {
 
-    if (isCompetitive(doc) == false)
+    totalHits++;
+
+    if (isCompetitive(doc) == false) {
+      if (canSkipHits && totalHitsRelation == TotalHits.Relation.EQUAL_TO) {
+        // we may just have reached totalHitsThreshold, in which case we can
+        // start setting the min competitive score now
+        updateMinCompetitiveScore();
+      }
       return;
+    }
 
     // TODO: should we add option to mean "ignore docs that
     // don't have the group field" (instead of stuffing them
@@ -228,6 +304,7 @@ public class FirstPassGroupingCollector<T> extends SimpleCollector {
           // number of groups; from here on we will drop
           // bottom group when we insert new one:
           buildSortedSet();
+          updateMinCompetitiveScore();
         }
 
         return;
@@ -256,6 +333,7 @@ public class FirstPassGroupingCollector<T> extends SimpleCollector {
       for (LeafFieldComparator fc : leafComparators) {
         fc.setBottom(lastComparatorSlot);
       }
+      updateMinCompetitiveScore();
 
       return;
     }
@@ -311,6 +389,7 @@ public class FirstPassGroupingCollector<T> extends SimpleCollector {
         for (LeafFieldComparator fc : leafComparators) {
           fc.setBottom(newLast.comparatorSlot);
         }
+        updateMinCompetitiveScore();
       }
     }
   }
@@ -24,6 +24,7 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -47,6 +48,8 @@ import org.apache.lucene.index.ReaderUtil;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.queries.function.ValueSource;
 import org.apache.lucene.queries.function.valuesource.BytesRefFieldSource;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.CachingCollector;
 import org.apache.lucene.search.Collector;
 import org.apache.lucene.search.FieldDoc;
@@ -190,6 +193,65 @@ public class TestGrouping extends LuceneTestCase {
     dir.close();
   }
 
+  public void testSkipNonCompetitiveHits() throws Exception {
+    Directory dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir, newIndexWriterConfig(new MockAnalyzer(random())));
+    final int numDocs = atLeast(500);
+    for (int i = 0; i < numDocs; i++) {
+      Document doc = new Document();
+      addGroupField(doc, "group", "g" + random().nextInt(50));
+      StringBuilder text = new StringBuilder();
+      for (String term : new String[] {"a", "b", "c"}) {
+        for (int j = random().nextInt(8); j > 0; j--) {
+          text.append(term).append(' ');
+        }
+      }
+      doc.add(new TextField("content", text.toString(), Field.Store.NO));
+      w.addDocument(doc);
+    }
+    IndexSearcher indexSearcher = newSearcher(w.getReader());
+    w.close();
+
+    Query query = new BooleanQuery.Builder()
+        .add(new TermQuery(new Term("content", "a")), BooleanClause.Occur.SHOULD)
+        .add(new TermQuery(new Term("content", "b")), BooleanClause.Occur.SHOULD)
+        .build();
+    final int topNGroups = TestUtil.nextInt(random(), 1, 10);
+
+    FirstPassGroupingCollector<BytesRef> exact
+        = new FirstPassGroupingCollector<>(new TermGroupSelector("group"), Sort.RELEVANCE, topNGroups);
+    assertEquals(ScoreMode.COMPLETE, exact.scoreMode());
+    indexSearcher.search(query, exact);
+    assertEquals(TotalHits.Relation.EQUAL_TO, exact.getTotalHits().relation);
+
+    FirstPassGroupingCollector<BytesRef> skipping
+        = new FirstPassGroupingCollector<>(new TermGroupSelector("group"), Sort.RELEVANCE, topNGroups, topNGroups);
+    assertEquals(ScoreMode.TOP_SCORES, skipping.scoreMode());
+    indexSearcher.search(query, skipping);
+    assertTrue(skipping.getTotalHits().value <= exact.getTotalHits().value);
+    if (skipping.getTotalHits().relation == TotalHits.Relation.EQUAL_TO) {
+      assertEquals(exact.getTotalHits().value, skipping.getTotalHits().value);
+    }
+
+    Collection<SearchGroup<BytesRef>> expected = exact.getTopGroups(0);
+    Collection<SearchGroup<BytesRef>> actual = skipping.getTopGroups(0);
+    assertEquals(expected.size(), actual.size());
+    Iterator<SearchGroup<BytesRef>> it = actual.iterator();
+    for (SearchGroup<BytesRef> group : expected) {
+      SearchGroup<BytesRef> other = it.next();
+      assertEquals(group.groupValue, other.groupValue);
+      assertArrayEquals(group.sortValues, other.sortValues);
+    }
+
+    // hits can only be skipped when groups are sorted by relevance
+    Sort sort = new Sort(new SortField("group", SortField.Type.STRING));
+    assertEquals(ScoreMode.COMPLETE_NO_SCORES,
+        new FirstPassGroupingCollector<>(new TermGroupSelector("group"), sort, topNGroups, topNGroups).scoreMode());
+
+    indexSearcher.getIndexReader().close();
+    dir.close();
+  }
+
   private void addGroupField(Document doc, String groupField, String value) {
     doc.add(new SortedDocValuesField(groupField, new BytesRef(value)));
   }
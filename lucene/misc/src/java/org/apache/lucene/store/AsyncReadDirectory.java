@@ -0,0 +1,274 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.store;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.util.NamedThreadFactory;
+
+/**
+ * An {@link FSDirectory} implementation that reads like {@link NIOFSDirectory}, with
+ * positional reads of a {@link FileChannel}, and that implements
+ * {@link IndexInput#prefetch(long, long)} by reading the requested ranges from a pool of
+ * threads.
+ * <p>
+ * Reads of an {@link IndexInput} block the calling thread, so a search over an index that
+ * doesn't fit in the OS cache waits for its reads one at a time. Postings and stored fields
+ * readers call {@link IndexInput#prefetch(long, long)} when they know what they will read
+ * next, e.g. when a query creates the postings of all its terms before iterating over them.
+ * This directory then reads these ranges concurrently in the background, which loads them
+ * into the OS cache, so that the reads that follow don't have to wait for the disk, or only
+ * wait for one of several concurrent reads. This helps most on devices that serve several
+ * concurrent reads faster than the same reads in sequence, such as SSDs.
+ * <p>
+ * Prefetching is only a hint: requests are dropped when too many of them are pending.
+ * Background reads are never interrupted, since interrupting a thread that reads from a
+ * {@link FileChannel} closes it.
+ * <p>
+ * The threads of this directory stop when they are idle, and {@link #close()} stops them
+ * after pending reads.
+ *
+ * @lucene.experimental
+ */
+public class AsyncReadDirectory extends FSDirectory {
+
+  /** Default number of threads that read prefetched ranges in the background. */
+  public static final int DEFAULT_NUM_THREADS = 16;
+
+  /** Default maximum number of prefetched ranges that wait for a thread, more are dropped. */
+  public static final int DEFAULT_MAX_PENDING_READS = 1024;
+
+  // OS pages that we assume, prefetched ranges are aligned on them
+  static final int PAGE_SIZE = 4096;
+  // larger prefetches are truncated
+  static final int MAX_PREFETCH_LENGTH = 1 << 18;
+
+  private final ThreadPoolExecutor executor;
+
+  /** Create a new AsyncReadDirectory for the named location.
+   *  The directory is created at the named location if it does not yet exist.
+   *
+   * @param path the path of the directory
+   * @param lockFactory the lock factory to use
+   * @param numThreads the number of threads that read prefetched ranges,
+   *   see {@link #DEFAULT_NUM_THREADS}
+   * @param maxPendingReads the number of prefetched ranges that may wait for a thread,
+   *   see {@link #DEFAULT_MAX_PENDING_READS}
+   * @throws IOException if there is a low-level I/O error
+   */
+  public AsyncReadDirectory(Path path, LockFactory lockFactory, int numThreads, int maxPendingReads) throws IOException {
+    super(path, lockFactory);
+    if (numThreads <= 0) {
+      throw new IllegalArgumentException("numThreads must be positive (got: " + numThreads + ")");
+    }
+    if (maxPendingReads <= 0) {
+      throw new IllegalArgumentException("maxPendingReads must be positive (got: " + maxPendingReads + ")");
+    }
+    executor = new ThreadPoolExecutor(numThreads, numThreads, 1, TimeUnit.SECONDS,
+        new ArrayBlockingQueue<>(maxPendingReads), new NamedThreadFactory("AsyncReadDirectory"),
+        new ThreadPoolExecutor.DiscardPolicy());
+    executor.allowCoreThreadTimeOut(true);
+  }
+
+  /** Create a new AsyncReadDirectory for the named location.
+   *  The directory is created at the named location if it does not yet exist.
+   *
+   * @param path the path of the directory
+   * @param lockFactory the lock factory to use
+   * @throws IOException if there is a low-level I/O error
+   */
+  public AsyncReadDirectory(Path path, LockFactory lockFactory) throws IOException {
+    this(path, lockFactory, DEFAULT_NUM_THREADS, DEFAULT_MAX_PENDING_READS);
+  }
+
+  /** Create a new AsyncReadDirectory for the named location and {@link FSLockFactory#getDefault()}.
+   *  The directory is created at the named location if it does not yet exist.
+   *
+   * @param path the path of the directory
+   * @throws IOException if there is a low-level I/O error
+   */
+  public AsyncReadDirectory(Path path) throws IOException {
+    this(path, FSLockFactory.getDefault());
+  }
+
+  @Override
+  public IndexInput openInput(String name, IOContext context) throws IOException {
+    ensureOpen();
+    ensureCanRead(name);
+    Path path = getDirectory().resolve(name);
+    FileChannel fc = FileChannel.open(path, StandardOpenOption.READ);
+    return new AsyncReadIndexInput("AsyncReadIndexInput(path=\"" + path + "\")", fc, context, executor);
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    try {
+      super.close();
+    } finally {
+      // lets pending reads finish, they fail silently if their file got closed
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Reads bytes with {@link FileChannel#read(ByteBuffer, long)}, in the calling thread or
+   * in the background for prefetched ranges.
+   */
+  static final class AsyncReadIndexInput extends BufferedIndexInput {
+    /**
+     * The maximum chunk size for reads of 16384 bytes.
+     */
+    private static final int CHUNK_SIZE = 16384;
+
+    private static final ThreadLocal<ByteBuffer> PREFETCH_BUFFER = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(CHUNK_SIZE));
+
+    /** the file channel we will read from */
+    private final FileChannel channel;
+    /** the executor that reads prefetched ranges */
+    private final ThreadPoolExecutor executor;
+    /** is this instance a clone and hence does not own the file to close it */
+    boolean isClone = false;
+    /** start offset: non-zero in the slice case */
+    private final long off;
+    /** end offset (start+length) */
+    private final long end;
+    /** the last prefetched range of pages, which doesn't need to be prefetched again */
+    private long lastPrefetchStart = -1, lastPrefetchEnd = -1;
+
+    AsyncReadIndexInput(String resourceDesc, FileChannel fc, IOContext context, ThreadPoolExecutor executor) throws IOException {
+      super(resourceDesc, context);
+      this.channel = fc;
+      this.executor = executor;
+      this.off = 0L;
+      this.end = fc.size();
+    }
+
+    AsyncReadIndexInput(String resourceDesc, FileChannel fc, long off, long length, int bufferSize, ThreadPoolExecutor executor) {
+      super(resourceDesc, bufferSize);
+      this.channel = fc;
+      this.executor = executor;
+      this.off = off;
+      this.end = off + length;
+      this.isClone = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (!isClone) {
+        channel.close();
+      }
+    }
+
+    @Override
+    public AsyncReadIndexInput clone() {
+      AsyncReadIndexInput clone = (AsyncReadIndexInput)super.clone();
+      clone.isClone = true;
+      return clone;
+    }
+
+    @Override
+    public IndexInput slice(String sliceDescription, long offset, long length) throws IOException {
+      if (offset < 0 || length < 0 || offset + length > this.length()) {
+        throw new IllegalArgumentException("slice() " + sliceDescription + " out of bounds: offset=" + offset + ",length=" + length + ",fileLength="  + this.length() + ": "  + this);
+      }
+      return new AsyncReadIndexInput(getFullSliceDescription(sliceDescription), channel, off + offset, length, getBufferSize(), executor);
+    }
+
+    @Override
+    public final long length() {
+      return end - off;
+    }
+
+    @Override
+    public void prefetch(long offset, long length) throws IOException {
+      if (offset < 0 || length < 0 || offset + length > this.length()) {
+        throw new IllegalArgumentException("prefetch() out of bounds: offset=" + offset + ",length=" + length + ",fileLength="  + this.length() + ": "  + this);
+      }
+      if (length == 0) {
+        return;
+      }
+      final long start = (off + offset) & -PAGE_SIZE;
+      final long stop = Math.min(end, off + offset + Math.min(length, MAX_PREFETCH_LENGTH));
+      if (start >= lastPrefetchStart && stop <= lastPrefetchEnd) {
+        return;
+      }
+      lastPrefetchStart = start;
+      lastPrefetchEnd = (stop + PAGE_SIZE - 1) & -PAGE_SIZE;
+      executor.execute(() -> readQuietly(start, stop));
+    }
+
+    private void readQuietly(long pos, long stop) {
+      final ByteBuffer buffer = PREFETCH_BUFFER.get();
+      try {
+        while (pos < stop) {
+          buffer.clear();
+          buffer.limit((int) Math.min(CHUNK_SIZE, stop - pos));
+          final int i = channel.read(buffer, pos);
+          if (i < 0) {
+            return;
+          }
+          pos += i;
+        }
+      } catch (IOException e) {
+        // prefetching is best-effort, the file may have been closed in the meantime
+      }
+    }
+
+    @Override
+    protected void readInternal(ByteBuffer b) throws IOException {
+      long pos = getFilePointer() + off;
+
+      if (pos + b.remaining() > end) {
+        throw new EOFException("read past EOF: " + this);
+      }
+
+      try {
+        int readLength = b.remaining();
+        while (readLength > 0) {
+          final int toRead = Math.min(CHUNK_SIZE, readLength);
+          b.limit(b.position() + toRead);
+          assert b.remaining() == toRead;
+          final int i = channel.read(b, pos);
+          if (i < 0) { // be defensive here, even though we checked before hand, something could have changed
+            throw new EOFException("read past EOF: " + this + " buffer: " + b + " chunkLen: " + toRead + " end: " + end);
+          }
+          assert i > 0 : "FileChannel.read with non zero-length bb.remaining() must always read at least one byte (FileChannel is in blocking mode, see spec of ReadableByteChannel)";
+          pos += i;
+          readLength -= i;
+        }
+        assert readLength == 0;
+      } catch (IOException ioe) {
+        throw new IOException(ioe.getMessage() + ": " + this, ioe);
+      }
+    }
+
+    @Override
+    protected void seekInternal(long pos) throws IOException {
+      if (pos > length()) {
+        throw new EOFException("read past EOF: pos=" + pos + " vs length=" + length() + ": " + this);
+      }
+    }
+  }
+}
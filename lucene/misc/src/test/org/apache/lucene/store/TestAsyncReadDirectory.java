@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.store;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.TestUtil;
+
+/**
+ * Tests AsyncReadDirectory
+ */
+public class TestAsyncReadDirectory extends BaseDirectoryTestCase {
+
+  @Override
+  protected Directory getDirectory(Path path) throws IOException {
+    return new AsyncReadDirectory(path);
+  }
+
+  public void testPrefetch() throws IOException {
+    try (Directory dir = getDirectory(createTempDir())) {
+      final byte[] bytes = new byte[TestUtil.nextInt(random(), 1, 100000)];
+      random().nextBytes(bytes);
+      try (IndexOutput out = dir.createOutput("test", IOContext.DEFAULT)) {
+        out.writeBytes(bytes, bytes.length);
+      }
+      try (IndexInput in = dir.openInput("test", IOContext.DEFAULT)) {
+        final IndexInput slice = in.slice("slice", 1, bytes.length - 1);
+        for (int iter = 0; iter < 100; ++iter) {
+          final int offset = random().nextInt(bytes.length);
+          final int length = random().nextInt(bytes.length - offset + 1);
+          in.prefetch(offset, length);
+          // prefetching doesn't move the file pointer
+          in.seek(offset);
+          assertEquals(offset, in.getFilePointer());
+          final byte[] read = new byte[length];
+          in.readBytes(read, 0, length);
+          assertArrayEquals(ArrayUtil.copyOfSubArray(bytes, offset, offset + length), read);
+
+          if (offset > 0) {
+            slice.prefetch(offset - 1, length);
+            slice.seek(offset - 1);
+            slice.readBytes(read, 0, length);
+            assertArrayEquals(ArrayUtil.copyOfSubArray(bytes, offset, offset + length), read);
+          }
+        }
+
+        expectThrows(IllegalArgumentException.class, () -> in.prefetch(-1, 1));
+        expectThrows(IllegalArgumentException.class, () -> in.prefetch(bytes.length, 1));
+      }
+    }
+  }
+}
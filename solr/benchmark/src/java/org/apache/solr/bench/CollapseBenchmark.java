@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.bench;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.util.IOUtils;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.embedded.EmbeddedSolrServer;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.core.NodeConfig;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.request.LocalSolrQueryRequest;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.request.SolrRequestHandler;
+import org.apache.solr.request.SolrRequestInfo;
+import org.apache.solr.response.SolrQueryResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the collapse query parser when group heads are selected by score: the collectors that track every group,
+ * against the one that only keeps the groups of the requested page ({@code topGroups=true}). Documents are scored by
+ * a disjunction of terms with varied frequencies, so that the latter can skip non-competitive documents.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CollapseBenchmark {
+
+  private static final String CORE_NAME = "bench";
+
+  @Param({"500000"})
+  public int numDocs;
+
+  /** Number of distinct values of the collapse field. */
+  @Param({"1000", "250000"})
+  public int numGroups;
+
+  /** String (ordinal based) or int collapse field. */
+  @Param({"group_s", "group_i"})
+  public String field;
+
+  @Param({"false", "true"})
+  public boolean topGroups;
+
+  private Path solrHome;
+  private EmbeddedSolrServer server;
+  private SolrCore core;
+  private SolrRequestHandler handler;
+  private ModifiableSolrParams params;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException, SolrServerException {
+    solrHome = Files.createTempDirectory("solr-bench");
+    Path confDir = Files.createDirectories(solrHome.resolve(CORE_NAME).resolve("conf"));
+    for (String file : new String[] {"solrconfig.xml", "schema.xml"}) {
+      try (InputStream in = CollapseBenchmark.class.getResourceAsStream("/bench-conf/" + file)) {
+        Files.copy(in, confDir.resolve(file));
+      }
+    }
+    try (Writer writer = Files.newBufferedWriter(solrHome.resolve(CORE_NAME).resolve("core.properties"), StandardCharsets.UTF_8)) {
+      writer.write("name=" + CORE_NAME + "\n");
+    }
+    server = new EmbeddedSolrServer(new NodeConfig.NodeConfigBuilder("bench", solrHome).build(), CORE_NAME);
+
+    Random random = new Random(42);
+    List<SolrInputDocument> batch = new ArrayList<>();
+    for (int i = 0; i < numDocs; ++i) {
+      SolrInputDocument doc = new SolrInputDocument();
+      int group = random.nextInt(numGroups);
+      doc.addField("id", Integer.toString(i));
+      doc.addField("group_s", "g" + group);
+      doc.addField("group_i", group);
+      StringBuilder text = new StringBuilder();
+      for (String term : new String[] {"a", "b", "c"}) {
+        for (int j = random.nextInt(8); j > 0; --j) {
+          text.append(term).append(' ');
+        }
+      }
+      doc.addField("text_t", text.toString());
+      batch.add(doc);
+      if (batch.size() == 1000) {
+        server.add(batch);
+        batch.clear();
+      }
+    }
+    if (batch.isEmpty() == false) {
+      server.add(batch);
+    }
+    server.commit();
+
+    core = server.getCoreContainer().getCore(CORE_NAME);
+    handler = core.getRequestHandler("/select");
+    params = new ModifiableSolrParams();
+    params.set("q", "text_t:a text_t:b text_t:c");
+    params.set("rows", 10);
+    params.set("fq", "{!collapse field=" + field + (topGroups ? " topGroups=true" : "") + "}");
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    core.close();
+    server.close();
+    IOUtils.rm(solrHome);
+  }
+
+  @Benchmark
+  public Object collapse() throws Exception {
+    SolrQueryRequest req = new LocalSolrQueryRequest(core, params);
+    SolrQueryResponse rsp = new SolrQueryResponse();
+    SolrRequestInfo.setRequestInfo(new SolrRequestInfo(req, rsp));
+    try {
+      core.execute(handler, req, rsp);
+      if (rsp.getException() != null) {
+        throw rsp.getException();
+      }
+      return rsp.getResponse();
+    } finally {
+      SolrRequestInfo.clearRequestInfo();
+      req.close();
+    }
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.bench;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.util.JavaBinCodec;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link JavaBinCodec} encoding and decoding of a search response: a header, a list of
+ * documents with typical field types and a facet section.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JavaBinCodecBenchmark {
+
+  @Param({"10", "1000"})
+  public int numDocs;
+
+  private NamedList<Object> response;
+  private byte[] encoded;
+  private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+  @Setup
+  public void setup() throws IOException {
+    Random random = new Random(42);
+    response = new NamedList<>();
+
+    NamedList<Object> header = new SimpleOrderedMap<>();
+    header.add("status", 0);
+    header.add("QTime", 12);
+    response.add("responseHeader", header);
+
+    SolrDocumentList docs = new SolrDocumentList();
+    docs.setNumFound(numDocs * 100L);
+    docs.setStart(0);
+    docs.setMaxScore(1f);
+    for (int i = 0; i < numDocs; ++i) {
+      SolrDocument doc = new SolrDocument();
+      doc.setField("id", "doc-" + random.nextInt(Integer.MAX_VALUE));
+      doc.setField("title_t", randomText(random, 8));
+      doc.setField("body_t", randomText(random, 60));
+      doc.setField("price_f", random.nextFloat() * 100);
+      doc.setField("popularity_i", random.nextInt(1000));
+      doc.setField("timestamp_l", random.nextLong());
+      doc.setField("created_dt", new Date(1_500_000_000_000L + random.nextInt(Integer.MAX_VALUE)));
+      doc.setField("in_stock_b", random.nextBoolean());
+      doc.setField("tags_ss", Arrays.asList(randomText(random, 1), randomText(random, 1), randomText(random, 1)));
+      doc.setField("score", random.nextFloat());
+      docs.add(doc);
+    }
+    response.add("response", docs);
+
+    NamedList<Object> counts = new NamedList<>();
+    for (int i = 0; i < 100; ++i) {
+      counts.add("cat" + i, random.nextInt(10000));
+    }
+    NamedList<Object> facetFields = new SimpleOrderedMap<>();
+    facetFields.add("cat_s", counts);
+    NamedList<Object> facetCounts = new SimpleOrderedMap<>();
+    facetCounts.add("facet_fields", facetFields);
+    response.add("facet_counts", facetCounts);
+
+    encode();
+    encoded = out.toByteArray();
+  }
+
+  private static String randomText(Random random, int numWords) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < numWords; ++i) {
+      if (i > 0) {
+        sb.append(' ');
+      }
+      int length = 2 + random.nextInt(8);
+      for (int j = 0; j < length; ++j) {
+        sb.append((char) ('a' + random.nextInt(26)));
+      }
+    }
+    return sb.toString();
+  }
+
+  @Benchmark
+  public int encode() throws IOException {
+    out.reset();
+    try (JavaBinCodec codec = new JavaBinCodec()) {
+      codec.marshal(response, out);
+    }
+    return out.size();
+  }
+
+  @Benchmark
+  public Object decode() throws IOException {
+    try (JavaBinCodec codec = new JavaBinCodec()) {
+      return codec.unmarshal(encoded);
+    }
+  }
+}
@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.bench;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.util.IOUtils;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.embedded.EmbeddedSolrServer;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.core.NodeConfig;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.request.LocalSolrQueryRequest;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.request.SolrRequestHandler;
+import org.apache.solr.request.SolrRequestInfo;
+import org.apache.solr.response.SolrQueryResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures JSON terms facets on string fields with docValues, which are counted by
+ * {@code FacetFieldProcessorByArrayDV}, on an embedded core with an in-memory index.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonFacetBenchmark {
+
+  private static final String CORE_NAME = "bench";
+
+  @Param({"500000"})
+  public int numDocs;
+
+  /** Number of distinct values of the faceted field. */
+  @Param({"100", "100000"})
+  public int cardinality;
+
+  /** Single-valued (sorted docValues) or multi-valued (sorted set docValues) field. */
+  @Param({"cat_s", "tags_ss"})
+  public String field;
+
+  /** Matches all documents, or about 10% of them. */
+  @Param({"*:*", "n_i:[0 TO 9]"})
+  public String query;
+
+  private Path solrHome;
+  private EmbeddedSolrServer server;
+  private SolrCore core;
+  private SolrRequestHandler handler;
+  private ModifiableSolrParams params;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException, SolrServerException {
+    solrHome = Files.createTempDirectory("solr-bench");
+    Path confDir = Files.createDirectories(solrHome.resolve(CORE_NAME).resolve("conf"));
+    for (String file : new String[] {"solrconfig.xml", "schema.xml"}) {
+      try (InputStream in = JsonFacetBenchmark.class.getResourceAsStream("/bench-conf/" + file)) {
+        Files.copy(in, confDir.resolve(file));
+      }
+    }
+    try (Writer writer = Files.newBufferedWriter(solrHome.resolve(CORE_NAME).resolve("core.properties"), StandardCharsets.UTF_8)) {
+      writer.write("name=" + CORE_NAME + "\n");
+    }
+    server = new EmbeddedSolrServer(new NodeConfig.NodeConfigBuilder("bench", solrHome).build(), CORE_NAME);
+
+    Random random = new Random(42);
+    List<SolrInputDocument> batch = new ArrayList<>();
+    for (int i = 0; i < numDocs; ++i) {
+      SolrInputDocument doc = new SolrInputDocument();
+      doc.addField("id", Integer.toString(i));
+      doc.addField("n_i", random.nextInt(100));
+      doc.addField("cat_s", "v" + random.nextInt(cardinality));
+      for (int j = random.nextInt(4); j >= 0; --j) {
+        doc.addField("tags_ss", "v" + random.nextInt(cardinality));
+      }
+      batch.add(doc);
+      if (batch.size() == 1000) {
+        server.add(batch);
+        batch.clear();
+      }
+    }
+    if (batch.isEmpty() == false) {
+      server.add(batch);
+    }
+    server.commit();
+
+    core = server.getCoreContainer().getCore(CORE_NAME);
+    handler = core.getRequestHandler("/select");
+    params = new ModifiableSolrParams();
+    params.set("q", query);
+    params.set("rows", 0);
+    params.set("json.facet", "{f:{type:terms, field:" + field + ", limit:10}}");
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    core.close();
+    server.close();
+    IOUtils.rm(solrHome);
+  }
+
+  @Benchmark
+  public Object termsFacet() throws Exception {
+    SolrQueryRequest req = new LocalSolrQueryRequest(core, params);
+    SolrQueryResponse rsp = new SolrQueryResponse();
+    SolrRequestInfo.setRequestInfo(new SolrRequestInfo(req, rsp));
+    try {
+      core.execute(handler, req, rsp);
+      if (rsp.getException() != null) {
+        throw rsp.getException();
+      }
+      return rsp.getValues().get("facets");
+    } finally {
+      SolrRequestInfo.clearRequestInfo();
+      req.close();
+    }
+  }
+}
@@ -245,6 +245,24 @@ public class SolrConfig extends XmlConfigFile implements MapSerializable {
       conf = new CacheConfig(CaffeineCache.class, args, null);
     }
     fieldValueCacheConfig = conf;
+    if (getNode("query/segmentFilterCache", false) != null) {
+      segmentFilterCacheSize = getInt("query/segmentFilterCache/@size", 1000);
+      segmentFilterCacheMaxRamMB = getInt("query/segmentFilterCache/@maxRamMB", 256);
+      segmentFilterCacheMinSegmentSize = getInt("query/segmentFilterCache/@minSegmentSize", 10000);
+    } else {
+      segmentFilterCacheSize = 0;
+      segmentFilterCacheMaxRamMB = 0;
+      segmentFilterCacheMinSegmentSize = 0;
+    }
+    if (getNode("query/parallelSearch", false) != null) {
+      parallelSearchThreads = getInt("query/parallelSearch/@threads", Runtime.getRuntime().availableProcessors());
+      parallelSearchMaxDocsPerSlice = getInt("query/parallelSearch/@maxDocsPerSlice", 250_000);
+      parallelSearchMaxSegmentsPerSlice = getInt("query/parallelSearch/@maxSegmentsPerSlice", 5);
+    } else {
+      parallelSearchThreads = 0;
+      parallelSearchMaxDocsPerSlice = 0;
+      parallelSearchMaxSegmentsPerSlice = 0;
+    }
     useColdSearcher = getBool("query/useColdSearcher", false);
     dataDir = get("dataDir", null);
     if (dataDir != null && dataDir.length() == 0) dataDir = null;
@@ -522,6 +540,14 @@ public class SolrConfig extends XmlConfigFile implements MapSerializable {
   public final CacheConfig documentCacheConfig;
   public final CacheConfig fieldValueCacheConfig;
   public final Map<String, CacheConfig> userCacheConfigs;
+  // per-segment filter cache shared by all searchers of a core, disabled if size is 0
+  public final int segmentFilterCacheSize;
+  public final int segmentFilterCacheMaxRamMB;
+  public final int segmentFilterCacheMinSegmentSize;
+  // threads and slicing policy used to search the segments of an index concurrently, disabled if threads is 0
+  public final int parallelSearchThreads;
+  public final int parallelSearchMaxDocsPerSlice;
+  public final int parallelSearchMaxSegmentsPerSlice;
   // SolrIndexSearcher - more...
   public final boolean useFilterForSortedQuery;
   public final int queryResultWindowSize;
@@ -921,6 +947,16 @@ public class SolrConfig extends XmlConfigFile implements MapSerializable {
 
 
     addCacheConfig(m, filterCacheConfig, queryResultCacheConfig, documentCacheConfig, fieldValueCacheConfig);
+    if (segmentFilterCacheSize > 0) {
+      m.put("segmentFilterCache", makeMap("size", segmentFilterCacheSize,
+          "maxRamMB", segmentFilterCacheMaxRamMB,
+          "minSegmentSize", segmentFilterCacheMinSegmentSize));
+    }
+    if (parallelSearchThreads > 0) {
+      m.put("parallelSearch", makeMap("threads", parallelSearchThreads,
+          "maxDocsPerSlice", parallelSearchMaxDocsPerSlice,
+          "maxSegmentsPerSlice", parallelSearchMaxSegmentsPerSlice));
+    }
     m = new LinkedHashMap();
     result.put("requestDispatcher", m);
     m.put("handleSelect", handleSelect);
@@ -68,7 +68,9 @@ import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexDeletionPolicy;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.LRUQueryCache;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.IOContext;
 import org.apache.lucene.store.IndexInput;
@@ -106,7 +108,9 @@ import org.apache.solr.handler.RequestHandlerBase;
 import org.apache.solr.handler.SolrConfigHandler;
 import org.apache.solr.handler.component.HighlightComponent;
 import org.apache.solr.handler.component.SearchComponent;
+import org.apache.solr.index.SlowCompositeReaderWrapper;
 import org.apache.solr.logging.MDCLoggingContext;
+import org.apache.solr.metrics.MetricsMap;
 import org.apache.solr.metrics.SolrCoreMetricManager;
 import org.apache.solr.metrics.SolrMetricProducer;
 import org.apache.solr.metrics.SolrMetricsContext;
@@ -138,6 +142,7 @@ import org.apache.solr.schema.IndexSchema;
 import org.apache.solr.schema.ManagedIndexSchema;
 import org.apache.solr.schema.SimilarityFactory;
 import org.apache.solr.search.QParserPlugin;
+import org.apache.solr.search.SolrCache;
 import org.apache.solr.search.SolrFieldCacheBean;
 import org.apache.solr.search.SolrIndexSearcher;
 import org.apache.solr.search.ValueSourceParser;
@@ -222,6 +227,10 @@ public final class SolrCore implements SolrInfoBean, Closeable {
 
   private final CircuitBreakerManager circuitBreakerManager;
 
+  private final LRUQueryCache segmentFilterCache;
+
+  private final ExecutorService parallelSearchExecutor;
+
   private final List<Runnable> confListeners = new CopyOnWriteArrayList<>();
 
   private final ReentrantLock ruleExpiryLock;
@@ -942,6 +951,10 @@ public final class SolrCore implements SolrInfoBean, Closeable {
       // Initialize the metrics manager
       this.coreMetricManager = initCoreMetricManager(solrConfig);
       this.circuitBreakerManager = initCircuitBreakerManager();
+      this.segmentFilterCache = initSegmentFilterCache(solrConfig);
+      this.parallelSearchExecutor = solrConfig.parallelSearchThreads <= 0 ? null
+          : ExecutorUtil.newMDCAwareFixedThreadPool(solrConfig.parallelSearchThreads,
+              new SolrNamedThreadFactory("parallelSearch"));
       solrMetricsContext = coreMetricManager.getSolrMetricsContext();
       this.coreMetricManager.loadReporters();
 
@@ -1174,6 +1187,15 @@ public final class SolrCore implements SolrInfoBean, Closeable {
     return circuitBreakerManager;
   }
 
+  private LRUQueryCache initSegmentFilterCache(SolrConfig config) {
+    if (config.segmentFilterCacheSize <= 0) {
+      return null;
+    }
+    final int minSegmentSize = config.segmentFilterCacheMinSegmentSize;
+    return new LRUQueryCache(config.segmentFilterCacheSize, config.segmentFilterCacheMaxRamMB * 1024L * 1024L,
+        context -> context.reader().maxDoc() >= minSegmentSize, 250);
+  }
+
   @Override
   public void initializeMetrics(SolrMetricsContext parentContext, String scope) {
     newSearcherCounter = parentContext.counter("new", Category.SEARCHER.toString());
@@ -1223,6 +1245,19 @@ public final class SolrCore implements SolrInfoBean, Closeable {
         return true;
       }
     }, true, "spins", Category.CORE.toString(), "fs");
+
+    if (segmentFilterCache != null) {
+      parentContext.gauge(new MetricsMap((detailed, map) -> {
+        map.put(SolrCache.LOOKUPS_PARAM, segmentFilterCache.getTotalCount());
+        map.put(SolrCache.HITS_PARAM, segmentFilterCache.getHitCount());
+        map.put(SolrCache.HIT_RATIO_PARAM, segmentFilterCache.getTotalCount() == 0 ? 0.0
+            : (double) segmentFilterCache.getHitCount() / segmentFilterCache.getTotalCount());
+        map.put(SolrCache.INSERTS_PARAM, segmentFilterCache.getCacheCount());
+        map.put(SolrCache.EVICTIONS_PARAM, segmentFilterCache.getEvictionCount());
+        map.put(SolrCache.SIZE_PARAM, segmentFilterCache.getCacheSize());
+        map.put(SolrCache.RAM_BYTES_USED_PARAM, segmentFilterCache.ramBytesUsed());
+      }), true, "segmentFilterCache", Category.CACHE.toString(), "core");
+    }
   }
 
   public String getMetricTag() {
@@ -1512,6 +1547,23 @@ public final class SolrCore implements SolrInfoBean, Closeable {
     return circuitBreakerManager;
   }
 
+  /**
+   * Returns the cache of per-segment filter results that is shared by all searchers of this core, or null if
+   * it is not enabled. Entries are keyed by segment core, so they survive commits and are dropped when the
+   * segment goes away.
+   */
+  public LRUQueryCache getSegmentFilterCache() {
+    return segmentFilterCache;
+  }
+
+  /**
+   * Returns the executor that searchers of this core use to search slices of their segments concurrently, or null
+   * if requests are always searched on the request thread.
+   */
+  public ExecutorService getParallelSearchExecutor() {
+    return parallelSearchExecutor;
+  }
+
   // this core current usage count
   private final AtomicInteger refCount = new AtomicInteger(1);
 
@@ -1637,6 +1689,17 @@ public final class SolrCore implements SolrInfoBean, Closeable {
     }
     assert ObjectReleaseTracker.release(searcherExecutor);
 
+    if (parallelSearchExecutor != null) {
+      try {
+        ExecutorUtil.shutdownAndAwaitTermination(parallelSearchExecutor);
+      } catch (Throwable e) {
+        SolrException.log(log, e);
+        if (e instanceof Error) {
+          throw (Error) e;
+        }
+      }
+    }
+
     try {
       // Since we waited for the searcherExecutor to shut down,
       // there should be no more searchers warming in the background
@@ -2130,6 +2193,16 @@ public final class SolrCore implements SolrInfoBean, Closeable {
         tmp = new SolrIndexSearcher(this, newIndexDir, getLatestSchema(), newName,
             newReader, true, useCaches, true, directoryFactory);
 
+        // segments that did not change keep their terms, so the ordinal maps of the new searcher only need to merge
+        // the terms of the new segments into the maps of the previous one
+        LeafReader previousLeafReader = newestSearcher.get().getSlowAtomicReader();
+        if (newestSearcher.get().getSchema() == tmp.getSchema()
+            && previousLeafReader instanceof SlowCompositeReaderWrapper
+            && tmp.getSlowAtomicReader() instanceof SlowCompositeReaderWrapper) {
+          ((SlowCompositeReaderWrapper) tmp.getSlowAtomicReader())
+              .reuseOrdinalMaps((SlowCompositeReaderWrapper) previousLeafReader);
+        }
+
       } else {
         // newestSearcher == null at this point
 
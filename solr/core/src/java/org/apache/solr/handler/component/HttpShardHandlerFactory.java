@@ -46,6 +46,7 @@ import org.apache.solr.client.solrj.impl.HttpClientUtil;
 import org.apache.solr.client.solrj.impl.HttpSolrClient;
 import org.apache.solr.client.solrj.impl.LBHttp2SolrClient;
 import org.apache.solr.client.solrj.impl.LBSolrClient;
+import org.apache.solr.client.solrj.routing.AdaptiveReplicaListTransformerFactory;
 import org.apache.solr.client.solrj.routing.AffinityReplicaListTransformerFactory;
 import org.apache.solr.client.solrj.routing.ReplicaListTransformer;
 import org.apache.solr.client.solrj.routing.ReplicaListTransformerFactory;
@@ -116,6 +117,12 @@ public class HttpShardHandlerFactory extends ShardHandlerFactory implements org.
 
   private RequestReplicaListTransformerGenerator requestReplicaListTransformerGenerator = new RequestReplicaListTransformerGenerator();
 
+  // keeps the latency statistics of replicas, only when adaptive routing is the default
+  private AdaptiveReplicaListTransformerFactory adaptiveRltFactory;
+
+  // null unless hedging is enabled
+  private ShardRequestHedger hedger;
+
   // URL scheme to be used in distributed search.
   static final String INIT_URL_SCHEME = "urlScheme";
 
@@ -142,6 +149,12 @@ public class HttpShardHandlerFactory extends ShardHandlerFactory implements org.
 
   public static final String INIT_SHARDS_WHITELIST = "shardsWhitelist";
 
+  // The percentile of recent shard request latencies after which a request is also sent to another replica, 0 to disable
+  static final String INIT_HEDGE_PERCENTILE = "hedgePercentile";
+
+  // The minimum time to wait for a response before sending the request to another replica
+  static final String INIT_HEDGE_MIN_DELAY = "hedgeMinDelay";
+
   static final String INIT_SOLR_DISABLE_SHARDS_WHITELIST = "solr.disable." + INIT_SHARDS_WHITELIST;
 
   static final String SET_SOLR_DISABLE_SHARDS_WHITELIST_CLUE = " set -D"+INIT_SOLR_DISABLE_SHARDS_WHITELIST+"=true to disable shards whitelist checks";
@@ -216,6 +229,7 @@ public class HttpShardHandlerFactory extends ShardHandlerFactory implements org.
   private void initReplicaListTransformers(@SuppressWarnings({"rawtypes"})NamedList routingConfig) {
     String defaultRouting = null;
     ReplicaListTransformerFactory stableRltFactory = null;
+    AdaptiveReplicaListTransformerFactory adaptiveRltFactory = null;
     ReplicaListTransformerFactory defaultRltFactory;
     if (routingConfig != null && routingConfig.size() > 0) {
       Iterator<Entry<String,?>> iter = routingConfig.iterator();
@@ -235,6 +249,11 @@ public class HttpShardHandlerFactory extends ShardHandlerFactory implements org.
             defaultRouting = checkDefaultReplicaListTransformer(c, key, defaultRouting);
             stableRltFactory = new AffinityReplicaListTransformerFactory(c);
             break;
+          case ShardParams.REPLICA_ADAPTIVE:
+            c = getNamedList(e.getValue());
+            defaultRouting = checkDefaultReplicaListTransformer(c, key, defaultRouting);
+            adaptiveRltFactory = new AdaptiveReplicaListTransformerFactory(c);
+            break;
           default:
             throw new IllegalArgumentException("invalid replica routing spec name: " + key);
         }
@@ -245,6 +264,9 @@ public class HttpShardHandlerFactory extends ShardHandlerFactory implements org.
     }
     if (ShardParams.REPLICA_STABLE.equals(defaultRouting)) {
       defaultRltFactory = stableRltFactory;
+    } else if (ShardParams.REPLICA_ADAPTIVE.equals(defaultRouting)) {
+      defaultRltFactory = adaptiveRltFactory;
+      this.adaptiveRltFactory = adaptiveRltFactory;
     } else {
       defaultRltFactory = RequestReplicaListTransformerGenerator.RANDOM_RLTF;
     }
@@ -324,6 +346,13 @@ public class HttpShardHandlerFactory extends ShardHandlerFactory implements org.
 
     initReplicaListTransformers(getParameter(args, "replicaRouting", null, sb));
 
+    // may be configured as any numeric type, or as a string
+    float hedgePercentile = toNumber(INIT_HEDGE_PERCENTILE, getParameter(args, INIT_HEDGE_PERCENTILE, (Object) 0f, sb)).floatValue();
+    if (hedgePercentile != 0) {
+      int hedgeMinDelay = toNumber(INIT_HEDGE_MIN_DELAY, getParameter(args, INIT_HEDGE_MIN_DELAY, (Object) 10, sb)).intValue();
+      this.hedger = new ShardRequestHedger(this, hedgePercentile, hedgeMinDelay);
+    }
+
     log.debug("created with {}",sb);
   }
 
@@ -344,10 +373,24 @@ public class HttpShardHandlerFactory extends ShardHandlerFactory implements org.
   }
 
 
+  private static Number toNumber(String configKey, Object value) {
+    if (value instanceof Number) {
+      return (Number) value;
+    }
+    try {
+      return Double.parseDouble(value.toString());
+    } catch (NumberFormatException e) {
+      throw new SolrException(ErrorCode.SERVER_ERROR, configKey + " must be a number, got " + value, e);
+    }
+  }
+
   @Override
   public void close() {
     try {
       ExecutorUtil.shutdownAndAwaitTermination(commExecutor);
+      if (hedger != null) {
+        hedger.close();
+      }
     } finally {
       try {
         if (loadbalancer != null) {
@@ -428,6 +471,21 @@ public class HttpShardHandlerFactory extends ShardHandlerFactory implements org.
     }
   }
 
+  /**
+   * Returns the factory of adaptive replica routing, which must be told about every request sent to a replica,
+   * or null if adaptive routing is not the default.
+   */
+  AdaptiveReplicaListTransformerFactory getAdaptiveReplicaListTransformerFactory() {
+    return adaptiveRltFactory;
+  }
+
+  /**
+   * Returns the hedger of requests to shards with several replicas, or null if hedging is disabled.
+   */
+  ShardRequestHedger getShardRequestHedger() {
+    return hedger;
+  }
+
   /**
    * Creates a new completion service for use by a single set of distributed requests.
    */
@@ -458,6 +516,9 @@ public class HttpShardHandlerFactory extends ShardHandlerFactory implements org.
     commExecutor = MetricUtils.instrumentedExecutorService(commExecutor, null,
         solrMetricsContext.getMetricRegistry(),
         SolrMetricManager.mkName("httpShardExecutor", expandedScope, "threadPool"));
+    if (hedger != null) {
+      hedger.initializeMetrics(solrMetricsContext, expandedScope);
+    }
   }
 
   /**
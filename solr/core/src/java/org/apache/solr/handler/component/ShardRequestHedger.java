@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.handler.component;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.codahale.metrics.ExponentiallyDecayingReservoir;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.impl.LBSolrClient;
+import org.apache.solr.client.solrj.request.QueryRequest;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.util.ExecutorUtil;
+import org.apache.solr.common.util.SolrNamedThreadFactory;
+import org.apache.solr.metrics.SolrMetricManager;
+import org.apache.solr.metrics.SolrMetricsContext;
+
+/**
+ * Sends a second copy of a shard request to another replica when the first one takes longer than a given percentile
+ * of the recent shard request latencies, and returns whichever response comes first. The other request is
+ * cancelled.
+ * <p>
+ * Both copies run on a dedicated executor, so that the thread waiting for them never waits for a thread of the
+ * executor that runs the shard requests themselves.
+ */
+class ShardRequestHedger {
+
+  /** Don't hedge until that many latencies were recorded, the percentile would be meaningless. */
+  static final int MIN_SAMPLES = 100;
+
+  private final HttpShardHandlerFactory factory;
+  final double quantile;
+  final long minDelayNanos;
+  private final ExecutorService executor;
+  private final Histogram latencies = new Histogram(new ExponentiallyDecayingReservoir());
+  Meter requests = new Meter();
+  Meter hedged = new Meter();
+  Meter hedgeWins = new Meter();
+
+  /**
+   * @param percentile the percentile of the latencies to wait for before hedging, in (0, 100)
+   * @param minDelayMs the minimum time to wait before hedging
+   */
+  ShardRequestHedger(HttpShardHandlerFactory factory, float percentile, int minDelayMs) {
+    if (percentile <= 0 || percentile >= 100) {
+      throw new SolrException(SolrException.ErrorCode.SERVER_ERROR,
+          HttpShardHandlerFactory.INIT_HEDGE_PERCENTILE + " must be in (0, 100), got " + percentile);
+    }
+    this.factory = factory;
+    this.quantile = percentile / 100d;
+    this.minDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, minDelayMs));
+    this.executor = ExecutorUtil.newMDCAwareCachedThreadPool(new SolrNamedThreadFactory("httpShardHedgeExecutor"));
+  }
+
+  void initializeMetrics(SolrMetricsContext solrMetricsContext, String scope) {
+    String path = SolrMetricManager.mkName("hedge", scope);
+    requests = solrMetricsContext.meter("requests", path);
+    hedged = solrMetricsContext.meter("hedged", path);
+    hedgeWins = solrMetricsContext.meter("wins", path);
+    solrMetricsContext.gauge(() -> TimeUnit.NANOSECONDS.toMillis(getDelayNanos()), true, "delayMs", path);
+  }
+
+  /** How long to wait for the first copy of a request before sending the second one. */
+  long getDelayNanos() {
+    if (latencies.getCount() < MIN_SAMPLES) {
+      return Long.MAX_VALUE;
+    }
+    return Math.max(minDelayNanos, (long) latencies.getSnapshot().getValue(quantile));
+  }
+
+  /**
+   * Sends the given request to the given urls through the load balancer, and the hedge request to all urls but
+   * the first one if there is no response in time.
+   *
+   * @param req the request
+   * @param hedgeReq a copy of the request, requests are modified when they are sent so they can't be shared
+   * @param urls the urls of the replicas of the shard, at least 2
+   */
+  LBSolrClient.Rsp request(QueryRequest req, QueryRequest hedgeReq, List<String> urls) throws SolrServerException, IOException {
+    assert urls.size() > 1;
+    requests.mark();
+    long delayNanos = getDelayNanos();
+    if (delayNanos == Long.MAX_VALUE) {
+      return timedRequest(req, urls);
+    }
+
+    CompletionService<LBSolrClient.Rsp> completionService = new ExecutorCompletionService<>(executor);
+    Future<LBSolrClient.Rsp> primary = completionService.submit(() -> timedRequest(req, urls));
+    Future<LBSolrClient.Rsp> hedge = null;
+    try {
+      Future<LBSolrClient.Rsp> first = completionService.poll(delayNanos, TimeUnit.NANOSECONDS);
+      if (first == null) {
+        hedged.mark();
+        hedge = completionService.submit(() -> timedRequest(hedgeReq, urls.subList(1, urls.size())));
+        first = completionService.take();
+      }
+      try {
+        return getResponse(first, hedge);
+      } catch (ExecutionException e) {
+        if (hedge == null) {
+          throw e;
+        }
+        // the other copy may still succeed
+        try {
+          return getResponse(completionService.take(), hedge);
+        } catch (ExecutionException e2) {
+          e.addSuppressed(e2.getCause());
+          throw e;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof SolrServerException) {
+        throw (SolrServerException) cause;
+      } else if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new SolrServerException(cause);
+    } finally {
+      // interrupts the request that is still running, if any
+      primary.cancel(true);
+      if (hedge != null) {
+        hedge.cancel(true);
+      }
+    }
+  }
+
+  private LBSolrClient.Rsp getResponse(Future<LBSolrClient.Rsp> future, Future<LBSolrClient.Rsp> hedge)
+      throws ExecutionException, InterruptedException {
+    LBSolrClient.Rsp rsp = future.get();
+    if (future == hedge) {
+      hedgeWins.mark();
+    }
+    return rsp;
+  }
+
+  private LBSolrClient.Rsp timedRequest(QueryRequest req, List<String> urls) throws SolrServerException, IOException {
+    long startTime = System.nanoTime();
+    LBSolrClient.Rsp rsp = factory.makeLoadBalancedRequest(req, urls);
+    latencies.update(System.nanoTime() - startTime);
+    return rsp;
+  }
+
+  void close() {
+    ExecutorUtil.shutdownAndAwaitTermination(executor);
+  }
+}
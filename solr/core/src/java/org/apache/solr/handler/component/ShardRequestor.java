@@ -29,6 +29,7 @@ import org.apache.solr.client.solrj.SolrRequest;
 import org.apache.solr.client.solrj.SolrResponse;
 import org.apache.solr.client.solrj.impl.LBSolrClient;
 import org.apache.solr.client.solrj.request.QueryRequest;
+import org.apache.solr.client.solrj.routing.AdaptiveReplicaListTransformerFactory;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.common.params.CommonParams;
 import org.apache.solr.common.params.ModifiableSolrParams;
@@ -100,19 +101,20 @@ class ShardRequestor implements Callable<ShardResponse> {
     srsp.setShard(shard);
     SimpleSolrResponse ssr = new SimpleSolrResponse();
     srsp.setSolrResponse(ssr);
+    // the load balancer tries the urls in order, so the first one is where the request is expected to go
+    final String firstUrl = urls.isEmpty() ? null : urls.get(0);
+    final AdaptiveReplicaListTransformerFactory adaptiveRltFactory = firstUrl == null ? null
+        : httpShardHandler.httpShardHandlerFactory.getAdaptiveReplicaListTransformerFactory();
+    if (adaptiveRltFactory != null) {
+      adaptiveRltFactory.requestStarted(firstUrl);
+    }
     long startTime = System.nanoTime();
 
     try {
       params.remove(CommonParams.WT); // use default (currently javabin)
       params.remove(CommonParams.VERSION);
 
-      QueryRequest req = httpShardHandler.makeQueryRequest(sreq, params, shard);
-      if (tracer != null && span != null) {
-        tracer.inject(span.context(), Format.Builtin.HTTP_HEADERS, new SolrRequestCarrier(req));
-      }
-      req.setMethod(SolrRequest.METHOD.POST);
-      SolrRequestInfo requestInfo = SolrRequestInfo.getRequestInfo();
-      if (requestInfo != null) req.setUserPrincipal(requestInfo.getReq().getUserPrincipal());
+      QueryRequest req = makeQueryRequest();
 
       // no need to set the response parser as binary is the defaultJab
       // req.setResponseParser(new BinaryResponseParser());
@@ -129,7 +131,10 @@ class ShardRequestor implements Callable<ShardResponse> {
         srsp.setShardAddress(url);
         ssr.nl = httpShardHandler.request(url, req);
       } else {
-        LBSolrClient.Rsp rsp = httpShardHandler.httpShardHandlerFactory.makeLoadBalancedRequest(req, urls);
+        ShardRequestHedger hedger = httpShardHandler.httpShardHandlerFactory.getShardRequestHedger();
+        LBSolrClient.Rsp rsp = hedger == null
+            ? httpShardHandler.httpShardHandlerFactory.makeLoadBalancedRequest(req, urls)
+            : hedger.request(req, makeQueryRequest(), urls);
         ssr.nl = rsp.getResponse();
         srsp.setShardAddress(rsp.getServer());
       }
@@ -144,11 +149,44 @@ class ShardRequestor implements Callable<ShardResponse> {
       }
     }
 
-    ssr.elapsedTime = TimeUnit.MILLISECONDS.convert(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+    long elapsedNanos = System.nanoTime() - startTime;
+    ssr.elapsedTime = TimeUnit.MILLISECONDS.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+    if (adaptiveRltFactory != null) {
+      adaptiveRltFactory.requestFinished(firstUrl, elapsedNanos, isReplicaFailure(srsp, firstUrl));
+    }
 
     return httpShardHandler.transfomResponse(sreq, srsp, shard);
   }
 
+  private QueryRequest makeQueryRequest() {
+    QueryRequest req = httpShardHandler.makeQueryRequest(sreq, params, shard);
+    if (tracer != null && span != null) {
+      tracer.inject(span.context(), Format.Builtin.HTTP_HEADERS, new SolrRequestCarrier(req));
+    }
+    req.setMethod(SolrRequest.METHOD.POST);
+    SolrRequestInfo requestInfo = SolrRequestInfo.getRequestInfo();
+    if (requestInfo != null) req.setUserPrincipal(requestInfo.getReq().getUserPrincipal());
+    return req;
+  }
+
+  /**
+   * Whether the request failed, or was answered by another replica than the given one, for another reason than
+   * a bad request.
+   */
+  private static boolean isReplicaFailure(ShardResponse srsp, String url) {
+    Throwable e = srsp.getException();
+    if (e == null) {
+      // the load balancer drops trailing slashes
+      String address = srsp.getShardAddress();
+      return address == null || LBSolrClient.normalize(url).equals(LBSolrClient.normalize(address)) == false;
+    }
+    if (e instanceof SolrException) {
+      int code = ((SolrException) e).code();
+      return code < 400 || code >= 500;
+    }
+    return true;
+  }
+
   static class SimpleSolrResponse extends SolrResponse {
 
     long elapsedTime;
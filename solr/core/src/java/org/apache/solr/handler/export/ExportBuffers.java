@@ -61,6 +61,7 @@ class ExportBuffers {
   Buffer fillBuffer;
   Buffer outputBuffer;
   Runnable filler;
+  SortedRunsMerger merger;
   ExecutorService service;
   Throwable error;
   LongAdder outputCounter = new LongAdder();
@@ -68,7 +69,7 @@ class ExportBuffers {
 
   ExportBuffers(ExportWriter exportWriter, List<LeafReaderContext> leaves, SolrIndexSearcher searcher,
                 OutputStream os, IteratorWriter.ItemWriter rawWriter, Sort sort, int queueSize, int totalHits,
-                Timer writeOutputBufferTimer, Timer fillerWaitTimer, Timer writerWaitTimer) throws IOException {
+                int sortThreads, Timer writeOutputBufferTimer, Timer fillerWaitTimer, Timer writerWaitTimer) throws IOException {
     this.exportWriter = exportWriter;
     this.leaves = leaves;
     this.os = os;
@@ -93,16 +94,27 @@ class ExportBuffers {
     bufferOne.initialize(writerSortDoc);
     bufferTwo.initialize(writerSortDoc);
     barrier = new CyclicBarrier(2, () -> swapBuffers());
+    if (sortThreads > 1 && exportWriter.sets != null) {
+      merger = SortedRunsMerger.create(this, exportWriter, searcher, sort, sortThreads, queueSize);
+    }
     filler = () -> {
       try {
         log.debug("--- filler start {}", Thread.currentThread());
-        SortDoc sortDoc = exportWriter.getSortDoc(searcher, sort.getSort());
+        SortDoc sortDoc = null;
+        SortQueue queue = null;
+        if (merger == null) {
+          sortDoc = exportWriter.getSortDoc(searcher, sort.getSort());
+          queue = new SortQueue(queueSize, sortDoc);
+        }
         Buffer buffer = getFillBuffer();
-        SortQueue queue = new SortQueue(queueSize, sortDoc);
         long lastOutputCounter = 0;
         for (int count = 0; count < totalHits; ) {
           log.debug("--- filler fillOutDocs in {}", fillBuffer);
-          exportWriter.fillOutDocs(leaves, sortDoc, queue, buffer);
+          if (merger == null) {
+            exportWriter.fillOutDocs(leaves, sortDoc, queue, buffer);
+          } else {
+            merger.fillOutDocs(buffer);
+          }
           count += (buffer.outDocsIndex + 1);
           log.debug("--- filler count={}, exchange buffer from {}", count, buffer);
           Timer.Context timerContext = getFillerWaitTimer().time();
@@ -192,12 +204,13 @@ class ExportBuffers {
   }
 
   public void shutdownNow() {
+    // set first, so that interrupted threads know that they were shut down
+    shutDown = true;
     if (service != null) {
       log.debug("--- shutting down buffers");
       service.shutdownNow();
       service = null;
     }
-    shutDown = true;
   }
 
   public boolean isShutDown() {
@@ -211,8 +224,13 @@ class ExportBuffers {
    * @throws IOException on errors
    */
   public void run(Callable<Boolean> writer) throws IOException {
-    service = ExecutorUtil.newMDCAwareFixedThreadPool(1, new SolrNamedThreadFactory("ExportBuffers"));
+    // the filler, plus one thread per slice when sorting segments concurrently
+    int numThreads = merger == null ? 1 : 1 + merger.getNumSlices();
+    service = ExecutorUtil.newMDCAwareFixedThreadPool(numThreads, new SolrNamedThreadFactory("ExportBuffers"));
     try {
+      if (merger != null) {
+        merger.start(service);
+      }
       CompletableFuture.runAsync(filler, service);
       writer.call();
 
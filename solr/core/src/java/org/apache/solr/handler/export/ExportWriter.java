@@ -93,12 +93,18 @@ import static org.apache.solr.common.util.Utils.makeMap;
  * <p>
  * This streaming approach is light on memory (only up to 2x batch size documents are ever stored in memory at
  * once), and it allows {@link ExportWriter} to scale well with regard to numDocs.
+ * <p>
+ * With {@link #SORT_THREADS_PARAM} greater than 1, the segments are split in groups that are stream sorted
+ * concurrently, and the sorted batches of all groups are merged before being exported.
  */
 public class ExportWriter implements SolrCore.RawWriter, Closeable {
   private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
   public static final String BATCH_SIZE_PARAM = "batchSize";
   public static final int DEFAULT_BATCH_SIZE = 30000;
+  /** Number of threads that sort groups of segments concurrently, 1 to sort all segments on a single thread. */
+  public static final String SORT_THREADS_PARAM = "sortThreads";
+  public static final int DEFAULT_SORT_THREADS = 1;
 
   private OutputStreamWriter respWriter;
   final SolrQueryRequest req;
@@ -107,6 +113,7 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
   final SolrMetricsContext solrMetricsContext;
   final String metricsPath;
   final int batchSize;
+  final int sortThreads;
   StreamExpression streamExpression;
   StreamContext streamContext;
   FieldWriter[] fieldWriters;
@@ -131,6 +138,7 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
     this.solrMetricsContext = solrMetricsContext;
     this.metricsPath = metricsPath;
     this.batchSize = req.getParams().getInt(BATCH_SIZE_PARAM, DEFAULT_BATCH_SIZE);
+    this.sortThreads = req.getParams().getInt(SORT_THREADS_PARAM, DEFAULT_SORT_THREADS);
     identifyLowestSortingDocTimer = solrMetricsContext.timer("identifyLowestSortingDoc", metricsPath);
     transferBatchToBufferTimer = solrMetricsContext.timer("transferBatchToBuffer", metricsPath);
     writeOutputBufferTimer = solrMetricsContext.timer("writeOutputBuffer", metricsPath);
@@ -307,9 +315,9 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
     try {
       queue.reset();
       SortDoc top = queue.top();
-      for (int i = 0; i < leaves.size(); i++) {
-        sortDoc.setNextReader(leaves.get(i));
-        DocIdSetIterator it = new BitSetIterator(sets[i], 0); // cost is not useful here
+      for (LeafReaderContext leaf : leaves) {
+        sortDoc.setNextReader(leaf);
+        DocIdSetIterator it = new BitSetIterator(sets[leaf.ord], 0); // cost is not useful here
         int docId;
         while ((docId = it.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
           sortDoc.setValues(docId);
@@ -356,7 +364,7 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
     final int queueSize = Math.min(batchSize, totalHits);
 
     ExportBuffers buffers = new ExportBuffers(this, leaves, req.getSearcher(), os, writer, sort, queueSize, totalHits,
-        writeOutputBufferTimer, fillerWaitTimer, writerWaitTimer);
+        sortThreads, writeOutputBufferTimer, fillerWaitTimer, writerWaitTimer);
 
     if (streamExpression != null) {
       streamContext.put(ExportBuffers.EXPORT_BUFFERS_KEY, buffers);
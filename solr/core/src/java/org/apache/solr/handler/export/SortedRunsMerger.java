@@ -0,0 +1,238 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.handler.export;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.PriorityQueue;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sorts the matching documents of groups of segments ("slices") concurrently and merges the results.
+ * <p>
+ * Each slice is sorted on its own thread with the stream sorting of {@link ExportWriter}, restricted to the bitmaps
+ * of its segments: every pass produces the next sorted run of the slice. Each slice alternates between two runs, so
+ * that it sorts the next one while the current one is being merged. {@link #fillOutDocs} does a k-way merge of the
+ * runs of all slices into the buffers of {@link ExportBuffers}, in the same order as a single pass over all
+ * segments would have produced.
+ * <p>
+ * Runs hold the batch size divided by the number of slices, so this needs about as much memory as sorting on a
+ * single thread, and the cost of a pass, which is proportional to the number of matching documents of a slice, is
+ * divided by the number of slices too.
+ */
+class SortedRunsMerger {
+  private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  private final ExportBuffers buffers;
+  private final List<Slice> slices;
+  private final PriorityQueue<Slice> queue;
+
+  /**
+   * Groups the segments that have matching documents in up to {@code numSlices} slices of about the same number
+   * of matching documents. Returns null if that doesn't give at least two slices.
+   */
+  static SortedRunsMerger create(ExportBuffers buffers, ExportWriter exportWriter, SolrIndexSearcher searcher,
+                                 Sort sort, int numSlices, int queueSize) throws IOException {
+    List<LeafReaderContext> leaves = new ArrayList<>();
+    for (LeafReaderContext leaf : buffers.leaves) {
+      if (exportWriter.sets[leaf.ord].cardinality() > 0) {
+        leaves.add(leaf);
+      }
+    }
+    numSlices = Math.min(numSlices, leaves.size());
+    if (numSlices < 2) {
+      return null;
+    }
+    // biggest segments first, each to the slice with the least documents so far
+    leaves.sort(Comparator.comparingInt((LeafReaderContext leaf) -> exportWriter.sets[leaf.ord].cardinality()).reversed());
+    List<List<LeafReaderContext>> sliceLeaves = new ArrayList<>(numSlices);
+    int[] sliceHits = new int[numSlices];
+    for (int i = 0; i < numSlices; i++) {
+      sliceLeaves.add(new ArrayList<>());
+    }
+    for (LeafReaderContext leaf : leaves) {
+      int smallest = 0;
+      for (int i = 1; i < numSlices; i++) {
+        if (sliceHits[i] < sliceHits[smallest]) {
+          smallest = i;
+        }
+      }
+      sliceLeaves.get(smallest).add(leaf);
+      sliceHits[smallest] += exportWriter.sets[leaf.ord].cardinality();
+    }
+
+    int runSize = Math.max(1, (queueSize + numSlices - 1) / numSlices);
+    List<Slice> slices = new ArrayList<>(numSlices);
+    for (int i = 0; i < numSlices; i++) {
+      List<LeafReaderContext> segments = sliceLeaves.get(i);
+      segments.sort(Comparator.comparingInt(leaf -> leaf.ord));
+      // sort docs are created here: the global ordinals of string fields are built by the first one
+      SortDoc sortDoc = exportWriter.getSortDoc(searcher, sort.getSort());
+      slices.add(new Slice(buffers, exportWriter, segments, sliceHits[i], sortDoc, Math.min(runSize, sliceHits[i])));
+    }
+    return new SortedRunsMerger(buffers, slices);
+  }
+
+  private SortedRunsMerger(ExportBuffers buffers, List<Slice> slices) {
+    this.buffers = buffers;
+    this.slices = slices;
+    this.queue = new PriorityQueue<Slice>(slices.size()) {
+      @Override
+      protected boolean lessThan(Slice a, Slice b) {
+        // SortDoc#lessThan is true for docs that sort after the other one
+        return b.head().lessThan(a.head());
+      }
+    };
+  }
+
+  int getNumSlices() {
+    return slices.size();
+  }
+
+  /** Starts sorting all slices on the given executor, which must have a thread for each of them. */
+  void start(ExecutorService service) {
+    for (Slice slice : slices) {
+      service.execute(slice);
+    }
+  }
+
+  /** Fills the buffer with the next documents, in the same layout as {@link ExportWriter#fillOutDocs}. */
+  void fillOutDocs(ExportBuffers.Buffer buffer) throws Exception {
+    if (queue.size() == 0) {
+      for (Slice slice : slices) {
+        if (slice.nextRun()) {
+          queue.add(slice);
+        }
+      }
+    }
+    int remaining = 0;
+    for (Slice slice : slices) {
+      remaining += slice.remaining();
+    }
+    // the writer goes from the last doc of the buffer to the first one
+    int outDocsIndex = Math.min(buffer.outDocs.length, remaining) - 1;
+    for (int i = outDocsIndex; i >= 0; i--) {
+      Slice top = queue.top();
+      buffer.outDocs[i].setValues(top.head());
+      if (top.advance()) {
+        queue.updateTop();
+      } else {
+        queue.pop();
+      }
+    }
+    buffer.outDocsIndex = outDocsIndex;
+  }
+
+  /** Segments sorted on their own thread, in runs that are handed over to {@link #fillOutDocs}. */
+  private static class Slice implements Runnable {
+    private final ExportBuffers buffers;
+    private final ExportWriter exportWriter;
+    private final List<LeafReaderContext> leaves;
+    private final int hits;
+    private final SortDoc sortDoc;
+    private final SortQueue sortQueue;
+    private final BlockingQueue<ExportBuffers.Buffer> emptyRuns = new ArrayBlockingQueue<>(2);
+    private final BlockingQueue<ExportBuffers.Buffer> sortedRuns = new ArrayBlockingQueue<>(2);
+
+    // only accessed by the merging thread
+    private ExportBuffers.Buffer run;
+    private int merged;
+
+    Slice(ExportBuffers buffers, ExportWriter exportWriter, List<LeafReaderContext> leaves, int hits,
+          SortDoc sortDoc, int runSize) {
+      this.buffers = buffers;
+      this.exportWriter = exportWriter;
+      this.leaves = leaves;
+      this.hits = hits;
+      this.sortDoc = sortDoc;
+      this.sortQueue = new SortQueue(runSize, sortDoc);
+      for (int i = 0; i < 2; i++) {
+        ExportBuffers.Buffer run = new ExportBuffers.Buffer(runSize);
+        run.initialize(sortDoc);
+        emptyRuns.add(run);
+      }
+    }
+
+    @Override
+    public void run() {
+      try {
+        for (int count = 0; count < hits; ) {
+          ExportBuffers.Buffer run = emptyRuns.take();
+          // clears the exported docs from the bitmaps of this slice only
+          exportWriter.fillOutDocs(leaves, sortDoc, sortQueue, run);
+          count += run.outDocsIndex + 1;
+          sortedRuns.put(run);
+        }
+      } catch (Throwable e) {
+        if (e instanceof InterruptedException) {
+          Thread.currentThread().interrupt();
+          if (buffers.isShutDown()) {
+            return;
+          }
+        }
+        log.error("slice", e);
+        buffers.error(e);
+        buffers.shutdownNow();
+      }
+    }
+
+    SortDoc head() {
+      return run.outDocs[run.outDocsIndex];
+    }
+
+    int remaining() {
+      return hits - merged;
+    }
+
+    /** Moves to the next doc, returns false if all docs of this slice were merged. */
+    boolean advance() throws Exception {
+      merged++;
+      if (--run.outDocsIndex >= 0) {
+        return true;
+      }
+      emptyRuns.add(run);
+      return nextRun();
+    }
+
+    /** Waits for the next sorted run, returns false if all docs of this slice were merged. */
+    private boolean nextRun() throws Exception {
+      if (merged == hits) {
+        run = null;
+        return false;
+      }
+      run = sortedRuns.poll(ExportBuffers.EXCHANGE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+      if (run == null) {
+        throw new IOException("Timed out waiting for the documents of segments " + leaves);
+      }
+      assert run.outDocsIndex >= 0;
+      return true;
+    }
+  }
+}
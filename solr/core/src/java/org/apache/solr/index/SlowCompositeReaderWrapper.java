@@ -18,6 +18,7 @@ package org.apache.solr.index;
 
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -25,6 +26,7 @@ import org.apache.lucene.index.*;
 import org.apache.lucene.index.MultiDocValues.MultiSortedDocValues;
 import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.Version;
+import org.apache.lucene.util.packed.PackedInts;
 
 /**
  * This class forces a composite reader (eg a {@link
@@ -59,6 +61,11 @@ public final class SlowCompositeReaderWrapper extends LeafReader {
   // but do we really need to optimize slow-wrapper any more?
   final Map<String,OrdinalMap> cachedOrdMaps = new HashMap<>();
 
+  // ordinal maps of a previous view of the index that are not rebuilt yet, and the core keys of its segments,
+  // see reuseOrdinalMaps. Guarded by cachedOrdMaps.
+  final Map<String,OrdinalMap> previousOrdMaps = new HashMap<>();
+  private final Map<IndexReader.CacheKey,Integer> previousSegments = new HashMap<>();
+
   /** This method is sugar for getting an {@link LeafReader} from
    * an {@link IndexReader} of any kind. If the reader is already atomic,
    * it is returned unchanged, otherwise wrapped by this class.
@@ -93,6 +100,36 @@ public final class SlowCompositeReaderWrapper extends LeafReader {
     fieldInfos = FieldInfos.getMergedFieldInfos(in);
   }
 
+  /**
+   * Makes this reader build the ordinal maps of its fields from the ones that <code>previous</code> has built so
+   * far, instead of merging the terms of all segments again: only the terms of the segments that are not in
+   * <code>previous</code> are merged into them. Both readers must expose the same doc values for a field, and
+   * the maps of <code>previous</code> are kept until this reader builds its own.
+   *
+   * @see OrdinalMap#build(IndexReader.CacheKey, OrdinalMap, int[], SortedSetDocValues[], float)
+   */
+  public void reuseOrdinalMaps(SlowCompositeReaderWrapper previous) {
+    final Map<String,OrdinalMap> ordMaps;
+    synchronized (previous.cachedOrdMaps) {
+      ordMaps = new HashMap<>(previous.cachedOrdMaps);
+    }
+    synchronized (cachedOrdMaps) {
+      previousOrdMaps.clear();
+      previousSegments.clear();
+      if (ordMaps.isEmpty()) {
+        return;
+      }
+      previousOrdMaps.putAll(ordMaps);
+      final List<LeafReaderContext> leaves = previous.in.leaves();
+      for (int i = 0; i < leaves.size(); i++) {
+        final CacheHelper cacheHelper = leaves.get(i).reader().getCoreCacheHelper();
+        if (cacheHelper != null) {
+          previousSegments.put(cacheHelper.getKey(), i);
+        }
+      }
+    }
+  }
+
   @Override
   public String toString() {
     return "SlowCompositeReaderWrapper(" + in + ")";
@@ -156,7 +193,7 @@ public final class SlowCompositeReaderWrapper extends LeafReader {
       map = cachedOrdMaps.get(field);
       if (map == null) {
         // uncached, or not a multi dv
-        SortedDocValues dv = MultiDocValues.getSortedValues(in, field);
+        SortedDocValues dv = getSortedValues(field);
         if (dv instanceof MultiSortedDocValues) {
           map = ((MultiSortedDocValues)dv).mapping;
           IndexReader.CacheHelper cacheHelper = getReaderCacheHelper();
@@ -198,7 +235,7 @@ public final class SlowCompositeReaderWrapper extends LeafReader {
       map = cachedOrdMaps.get(field);
       if (map == null) {
         // uncached, or not a multi dv
-        SortedSetDocValues dv = MultiDocValues.getSortedSetValues(in, field);
+        SortedSetDocValues dv = getSortedSetValues(field);
         if (dv instanceof MultiDocValues.MultiSortedSetDocValues) {
           map = ((MultiDocValues.MultiSortedSetDocValues)dv).mapping;
           IndexReader.CacheHelper cacheHelper = getReaderCacheHelper();
@@ -234,6 +271,85 @@ public final class SlowCompositeReaderWrapper extends LeafReader {
     return new MultiDocValues.MultiSortedSetDocValues(values, starts, map, cost);
   }
 
+  /** Like {@link MultiDocValues#getSortedValues}, but reuses the ordinal map of the previous reader if any. */
+  private SortedDocValues getSortedValues(String field) throws IOException {
+    assert Thread.holdsLock(cachedOrdMaps);
+    final OrdinalMap previous = previousOrdMaps.remove(field);
+    final List<LeafReaderContext> leaves = in.leaves();
+    if (previous == null || leaves.size() <= 1) {
+      return MultiDocValues.getSortedValues(in, field);
+    }
+    boolean anyReal = false;
+    final SortedDocValues[] values = new SortedDocValues[leaves.size()];
+    final int[] starts = new int[leaves.size() + 1];
+    long totalCost = 0;
+    for (int i = 0; i < leaves.size(); i++) {
+      LeafReaderContext context = leaves.get(i);
+      SortedDocValues v = context.reader().getSortedDocValues(field);
+      if (v == null) {
+        v = DocValues.emptySorted();
+      } else {
+        anyReal = true;
+        totalCost += v.cost();
+      }
+      values[i] = v;
+      starts[i] = context.docBase;
+    }
+    starts[leaves.size()] = maxDoc();
+    if (anyReal == false) {
+      return null;
+    }
+    IndexReader.CacheHelper cacheHelper = getReaderCacheHelper();
+    IndexReader.CacheKey owner = cacheHelper == null ? null : cacheHelper.getKey();
+    OrdinalMap mapping = OrdinalMap.build(owner, previous, getPreviousSegments(leaves), values, PackedInts.DEFAULT);
+    return new MultiSortedDocValues(values, starts, mapping, totalCost);
+  }
+
+  /** Like {@link MultiDocValues#getSortedSetValues}, but reuses the ordinal map of the previous reader if any. */
+  private SortedSetDocValues getSortedSetValues(String field) throws IOException {
+    assert Thread.holdsLock(cachedOrdMaps);
+    final OrdinalMap previous = previousOrdMaps.remove(field);
+    final List<LeafReaderContext> leaves = in.leaves();
+    if (previous == null || leaves.size() <= 1) {
+      return MultiDocValues.getSortedSetValues(in, field);
+    }
+    boolean anyReal = false;
+    final SortedSetDocValues[] values = new SortedSetDocValues[leaves.size()];
+    final int[] starts = new int[leaves.size() + 1];
+    long totalCost = 0;
+    for (int i = 0; i < leaves.size(); i++) {
+      LeafReaderContext context = leaves.get(i);
+      SortedSetDocValues v = context.reader().getSortedSetDocValues(field);
+      if (v == null) {
+        v = DocValues.emptySortedSet();
+      } else {
+        anyReal = true;
+        totalCost += v.cost();
+      }
+      values[i] = v;
+      starts[i] = context.docBase;
+    }
+    starts[leaves.size()] = maxDoc();
+    if (anyReal == false) {
+      return null;
+    }
+    IndexReader.CacheHelper cacheHelper = getReaderCacheHelper();
+    IndexReader.CacheKey owner = cacheHelper == null ? null : cacheHelper.getKey();
+    OrdinalMap mapping = OrdinalMap.build(owner, previous, getPreviousSegments(leaves), values, PackedInts.DEFAULT);
+    return new MultiDocValues.MultiSortedSetDocValues(values, starts, mapping, totalCost);
+  }
+
+  /** For every segment, its index in the previous reader, or -1 if it is a new segment. */
+  private int[] getPreviousSegments(List<LeafReaderContext> leaves) {
+    final int[] segments = new int[leaves.size()];
+    for (int i = 0; i < leaves.size(); i++) {
+      final CacheHelper cacheHelper = leaves.get(i).reader().getCoreCacheHelper();
+      final Integer previous = cacheHelper == null ? null : previousSegments.get(cacheHelper.getKey());
+      segments[i] = previous == null ? -1 : previous;
+    }
+    return segments;
+  }
+
   @Override
   public NumericDocValues getNormValues(String field) throws IOException {
     ensureOpen();
@@ -156,6 +156,11 @@ public class BinaryResponseWriter implements BinaryQueryResponseWriter {
 
     protected void writeResultsBody( ResultContext res, JavaBinCodec codec ) throws IOException {
       codec.writeTag(JavaBinCodec.ARR, res.getDocList().size());
+      // subclasses of the codec may intercept the documents that are written
+      if (codec.getClass() == JavaBinCodec.class && JavaBinDocWriter.canWrite(res)) {
+        new JavaBinDocWriter(res, codec).writeDocs();
+        return;
+      }
       Iterator<SolrDocument> docStreamer = res.getProcessedDocuments();
       while (docStreamer.hasNext()) {
         SolrDocument doc = docStreamer.next();
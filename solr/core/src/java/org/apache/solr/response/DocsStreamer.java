@@ -18,9 +18,11 @@ package org.apache.solr.response;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 import org.apache.lucene.document.Document;
@@ -69,6 +71,14 @@ public class DocsStreamer implements Iterator<SolrDocument> {
 
   private final SolrReturnFields solrReturnFields;
 
+  // documents are fetched in batches, see SolrDocumentFetcher#solrDocs
+  static final int FETCH_BATCH_SIZE = 512;
+  private int[] batchIds;
+  private float[] batchScores;
+  private SolrDocument[] batchDocs;
+  private int batchPos;
+  private int batchSize;
+
   private int idx = -1;
 
   public DocsStreamer(ResultContext rctx) {
@@ -87,19 +97,24 @@ public class DocsStreamer implements Iterator<SolrDocument> {
   }
 
   public boolean hasNext() {
-    return docIterator.hasNext();
+    return batchPos < batchSize || docIterator.hasNext();
   }
 
   public SolrDocument next() {
-    int id = docIterator.nextDoc();
+    if (batchPos == batchSize) {
+      fetchBatch();
+    }
+    int id = batchIds[batchPos];
+    float score = batchScores[batchPos];
+    SolrDocument sdoc = batchDocs[batchPos];
+    batchDocs[batchPos++] = null;
     idx++;
-    SolrDocument sdoc = docFetcher.solrDoc(id, solrReturnFields);
 
     if (transformer != null) {
       boolean doScore = rctx.wantsScores();
       try {
         if (doScore) {
-          transformer.transform(sdoc, id, docIterator.score());
+          transformer.transform(sdoc, id, score);
         } else {
           transformer.transform(sdoc, id);
         }
@@ -111,6 +126,28 @@ public class DocsStreamer implements Iterator<SolrDocument> {
 
   }
 
+  private void fetchBatch() {
+    if (batchIds == null) {
+      int size = Math.max(1, Math.min(docs.size(), FETCH_BATCH_SIZE));
+      batchIds = new int[size];
+      batchScores = new float[size];
+    }
+    boolean doScore = rctx.wantsScores();
+    batchSize = 0;
+    while (batchSize < batchIds.length && docIterator.hasNext()) {
+      batchIds[batchSize] = docIterator.nextDoc();
+      if (doScore) {
+        batchScores[batchSize] = docIterator.score();
+      }
+      batchSize++;
+    }
+    if (batchSize == 0) {
+      throw new NoSuchElementException();
+    }
+    batchDocs = docFetcher.solrDocs(batchSize == batchIds.length ? batchIds : Arrays.copyOf(batchIds, batchSize), solrReturnFields);
+    batchPos = 0;
+  }
+
   /**
    * This method is less efficient then the 3 arg version because it may convert some fields that 
    * are not needed
@@ -0,0 +1,380 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.response;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.util.JavaBinCodec;
+import org.apache.solr.response.transform.DocTransformer;
+import org.apache.solr.response.transform.ScoreAugmenter;
+import org.apache.solr.schema.DatePointField;
+import org.apache.solr.schema.DoublePointField;
+import org.apache.solr.schema.FieldType;
+import org.apache.solr.schema.FloatPointField;
+import org.apache.solr.schema.IntPointField;
+import org.apache.solr.schema.LongPointField;
+import org.apache.solr.schema.SchemaField;
+import org.apache.solr.schema.StrField;
+import org.apache.solr.schema.TextField;
+import org.apache.solr.search.DocIterator;
+import org.apache.solr.search.DocList;
+import org.apache.solr.search.SolrDocumentFetcher;
+import org.apache.solr.search.SolrReturnFields;
+
+/**
+ * Writes the documents of a {@link ResultContext} in the javabin format as their fields are read from the index,
+ * without building a {@link SolrDocument} for each of them. The output is the same as if {@link DocsStreamer}
+ * documents were passed to {@link JavaBinCodec#writeSolrDocument}.
+ * <p>
+ * The javabin format needs the number of fields of a document before its first field, so the values of a document
+ * are buffered, in arrays that are reused across documents. Documents are fetched in batches of up to
+ * {@link DocsStreamer#FETCH_BATCH_SIZE}, in index order, so the values of a whole batch are buffered before its
+ * documents are written in the order of the doc list. Numbers of the point field types are kept as primitives.
+ * <p>
+ * Stored fields are read through the document cache when there is one, like {@link DocsStreamer} does, so cached
+ * documents are not read again, documents read here are cached, and large fields are still loaded lazily.
+ */
+final class JavaBinDocWriter extends SolrDocumentFetcher.SolrDocVisitor {
+
+  private static final byte OBJECT = 0, INT = 1, LONG = 2, FLOAT = 3, DOUBLE = 4, DATE = 5;
+  /** Stored values that need to go through {@link DocsStreamer#getValue}. */
+  private static final byte CONVERT = -1;
+
+  /**
+   * Whether this class can write the documents of the given context: the only transformer that it supports is the
+   * one that adds the score.
+   */
+  static boolean canWrite(ResultContext ctx) {
+    if (ctx.getSearcher() == null || ctx.getReturnFields() instanceof SolrReturnFields == false) {
+      return false;
+    }
+    DocTransformer transformer = ctx.getReturnFields().getTransformer();
+    return transformer == null || transformer.getClass() == ScoreAugmenter.class;
+  }
+
+  private final ResultContext ctx;
+  private final JavaBinCodec codec;
+  private final SolrDocumentFetcher docFetcher;
+  private final SolrReturnFields returnFields;
+  /** Name of the score in documents, null if it is not returned. */
+  private final String scoreName;
+
+  /** The documents of the current batch, at the positions of their ids. */
+  private BufferedDoc[] batch;
+  /** The document being visited. */
+  private BufferedDoc doc;
+
+  JavaBinDocWriter(ResultContext ctx, JavaBinCodec codec) {
+    assert canWrite(ctx);
+    this.ctx = ctx;
+    this.codec = codec;
+    this.docFetcher = ctx.getSearcher().getDocFetcher();
+    this.returnFields = (SolrReturnFields) ctx.getReturnFields();
+    DocTransformer transformer = returnFields.getTransformer();
+    if (transformer != null && ctx.wantsScores() && returnFields.wantsField(transformer.getName())) {
+      scoreName = transformer.getName();
+    } else {
+      scoreName = null;
+    }
+  }
+
+  /** Writes all documents of the doc list, after the caller wrote the tag of the array that holds them. */
+  void writeDocs() throws IOException {
+    DocList docs = ctx.getDocList();
+    int[] ids = new int[Math.max(1, Math.min(docs.size(), DocsStreamer.FETCH_BATCH_SIZE))];
+    float[] scores = new float[ids.length];
+    batch = new BufferedDoc[ids.length];
+    DocIterator iterator = docs.iterator();
+    while (iterator.hasNext()) {
+      int batchSize = 0;
+      while (batchSize < ids.length && iterator.hasNext()) {
+        ids[batchSize] = iterator.nextDoc();
+        if (scoreName != null) {
+          scores[batchSize] = iterator.score();
+        }
+        batchSize++;
+      }
+      docFetcher.visitSolrDocs(batchSize == ids.length ? ids : Arrays.copyOf(ids, batchSize), returnFields, this);
+      for (int i = 0; i < batchSize; i++) {
+        doc = batch[i];
+        if (scoreName != null) {
+          FieldValues score = startValues(scoreName);
+          score.add(FLOAT, Float.floatToRawIntBits(scores[i]), null);
+          score.asList = false;
+        }
+        writeDoc();
+      }
+    }
+  }
+
+  private void writeDoc() throws IOException {
+    codec.writeTag(JavaBinCodec.SOLRDOC);
+    codec.writeTag(JavaBinCodec.ORDERED_MAP, doc.numFields);
+    for (int i = 0; i < doc.numFields; i++) {
+      FieldValues values = doc.fields[i];
+      codec.writeExternString(values.name);
+      values.write(codec);
+      values.clear();
+      doc.fields[i] = null;
+    }
+    doc.numFields = 0;
+  }
+
+  private FieldValues getValues(String name) {
+    FieldValues values = doc.values.get(name);
+    if (values == null) {
+      values = new FieldValues(name, ctx.getSearcher().getSchema().getFieldOrNull(name), returnFields.wantsField(name));
+      doc.values.put(name, values);
+    }
+    return values;
+  }
+
+  /**
+   * Returns the values of the given field in the current document, after dropping any that were already added, like
+   * {@link SolrDocument#setField} replaces them.
+   */
+  private FieldValues startValues(String name) {
+    FieldValues values = getValues(name);
+    if (values.inDoc) {
+      values.clear();
+      values.inDoc = true;
+    } else {
+      addToDoc(values);
+    }
+    return values;
+  }
+
+  private void addToDoc(FieldValues values) {
+    values.inDoc = true;
+    doc.fields = ArrayUtil.grow(doc.fields, doc.numFields + 1);
+    doc.fields[doc.numFields++] = values;
+  }
+
+  private void addStored(FieldInfo fieldInfo, byte type, long number, Object object) {
+    FieldValues values = getValues(fieldInfo.name);
+    if (values.inDoc == false) {
+      addToDoc(values);
+    }
+    values.add(type, number, object);
+    values.asList |= values.count > 1;
+  }
+
+  private void addConverted(FieldInfo fieldInfo, StoredField field) {
+    addStored(fieldInfo, OBJECT, 0, DocsStreamer.getValue(getValues(fieldInfo.name).schemaField, field));
+  }
+
+  @Override
+  public void startDoc(int index) {
+    if (batch[index] == null) {
+      batch[index] = new BufferedDoc();
+    }
+    doc = batch[index];
+  }
+
+  @Override
+  public Status needsField(FieldInfo fieldInfo) {
+    return getValues(fieldInfo.name).wanted ? Status.YES : Status.NO;
+  }
+
+  @Override
+  public void stringField(FieldInfo fieldInfo, String value) {
+    if (getValues(fieldInfo.name).storedType == OBJECT) {
+      addStored(fieldInfo, OBJECT, 0, value);
+    } else {
+      addConverted(fieldInfo, new StoredField(fieldInfo.name, value));
+    }
+  }
+
+  @Override
+  public void binaryField(FieldInfo fieldInfo, byte[] value) {
+    addConverted(fieldInfo, new StoredField(fieldInfo.name, value));
+  }
+
+  @Override
+  public void intField(FieldInfo fieldInfo, int value) {
+    if (getValues(fieldInfo.name).storedType == INT) {
+      addStored(fieldInfo, INT, value, null);
+    } else {
+      addConverted(fieldInfo, new StoredField(fieldInfo.name, value));
+    }
+  }
+
+  @Override
+  public void longField(FieldInfo fieldInfo, long value) {
+    byte storedType = getValues(fieldInfo.name).storedType;
+    if (storedType == LONG || storedType == DATE) {
+      addStored(fieldInfo, storedType, value, null);
+    } else {
+      addConverted(fieldInfo, new StoredField(fieldInfo.name, value));
+    }
+  }
+
+  @Override
+  public void floatField(FieldInfo fieldInfo, float value) {
+    if (getValues(fieldInfo.name).storedType == FLOAT) {
+      addStored(fieldInfo, FLOAT, Float.floatToRawIntBits(value), null);
+    } else {
+      addConverted(fieldInfo, new StoredField(fieldInfo.name, value));
+    }
+  }
+
+  @Override
+  public void doubleField(FieldInfo fieldInfo, double value) {
+    if (getValues(fieldInfo.name).storedType == DOUBLE) {
+      addStored(fieldInfo, DOUBLE, Double.doubleToRawLongBits(value), null);
+    } else {
+      addConverted(fieldInfo, new StoredField(fieldInfo.name, value));
+    }
+  }
+
+  @Override
+  public void docValuesField(String name, Object value) {
+    FieldValues values = getValues(name);
+    if (values.wanted == false) {
+      return;
+    }
+    values = startValues(name);
+    values.asList = value instanceof Collection;
+    if (values.asList) {
+      for (Object v : (Collection<?>) value) {
+        values.add(OBJECT, 0, v);
+      }
+    } else {
+      values.add(OBJECT, 0, value);
+    }
+  }
+
+  /** The buffered values of a document, reused by the documents at the same position of the following batches. */
+  private static final class BufferedDoc {
+    final Map<String, FieldValues> values = new HashMap<>();
+    /** The fields of the document, in the order they were added. */
+    FieldValues[] fields = new FieldValues[8];
+    int numFields;
+  }
+
+  /** The values of a field in a document. */
+  private static final class FieldValues {
+    final String name;
+    final SchemaField schemaField;
+    final boolean wanted;
+    /** How stored values of this field are kept, see {@link #storedType(SchemaField)}. */
+    final byte storedType;
+
+    boolean inDoc;
+    boolean asList;
+    int count;
+    byte[] types = new byte[1];
+    long[] numbers = new long[1];
+    Object[] objects = new Object[1];
+
+    FieldValues(String name, SchemaField schemaField, boolean wanted) {
+      this.name = name;
+      this.schemaField = schemaField;
+      this.wanted = wanted;
+      this.storedType = storedType(schemaField);
+      this.asList = schemaField != null && schemaField.multiValued();
+    }
+
+    /**
+     * Returns the type of the values that {@link DocsStreamer#getValue} returns for stored fields of the given type,
+     * if they can be taken as they are read, or {@link #CONVERT}.
+     */
+    private static byte storedType(SchemaField schemaField) {
+      if (schemaField == null) {
+        return CONVERT;
+      }
+      Class<? extends FieldType> type = schemaField.getType().getClass();
+      if (type == StrField.class || type == TextField.class) {
+        return OBJECT;
+      } else if (type == IntPointField.class) {
+        return INT;
+      } else if (type == LongPointField.class) {
+        return LONG;
+      } else if (type == FloatPointField.class) {
+        return FLOAT;
+      } else if (type == DoublePointField.class) {
+        return DOUBLE;
+      } else if (type == DatePointField.class) {
+        return DATE;
+      }
+      return CONVERT;
+    }
+
+    void add(byte type, long number, Object object) {
+      if (count == types.length) {
+        types = ArrayUtil.grow(types, count + 1);
+        numbers = ArrayUtil.grow(numbers, count + 1);
+        objects = ArrayUtil.grow(objects, count + 1);
+      }
+      types[count] = type;
+      numbers[count] = number;
+      objects[count] = object;
+      count++;
+    }
+
+    void clear() {
+      for (int i = 0; i < count; i++) {
+        objects[i] = null;
+      }
+      count = 0;
+      inDoc = false;
+      asList = schemaField != null && schemaField.multiValued();
+    }
+
+    void write(JavaBinCodec codec) throws IOException {
+      if (asList) {
+        codec.writeTag(JavaBinCodec.ARR, count);
+        for (int i = 0; i < count; i++) {
+          write(codec, i);
+        }
+      } else {
+        assert count == 1;
+        write(codec, 0);
+      }
+    }
+
+    private void write(JavaBinCodec codec, int i) throws IOException {
+      switch (types[i]) {
+        case INT:
+          codec.writeInt((int) numbers[i]);
+          break;
+        case LONG:
+          codec.writeLong(numbers[i]);
+          break;
+        case FLOAT:
+          codec.writeFloat(Float.intBitsToFloat((int) numbers[i]));
+          break;
+        case DOUBLE:
+          codec.writeDouble(Double.longBitsToDouble(numbers[i]));
+          break;
+        case DATE:
+          codec.writeDate(numbers[i]);
+          break;
+        default:
+          codec.writeVal(objects[i]);
+      }
+    }
+  }
+}
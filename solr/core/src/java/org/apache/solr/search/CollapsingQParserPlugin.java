@@ -30,6 +30,8 @@ import com.carrotsearch.hppc.FloatArrayList;
 import com.carrotsearch.hppc.IntArrayList;
 import com.carrotsearch.hppc.IntIntHashMap;
 import com.carrotsearch.hppc.IntLongHashMap;
+import com.carrotsearch.hppc.LongArrayList;
+import com.carrotsearch.hppc.LongIntHashMap;
 import com.carrotsearch.hppc.cursors.IntIntCursor;
 import com.carrotsearch.hppc.cursors.IntLongCursor;
 import org.apache.commons.lang3.StringUtils;
@@ -65,6 +67,7 @@ import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.FixedBitSet;
 import org.apache.lucene.util.LongValues;
 import org.apache.solr.common.SolrException;
+import org.apache.solr.common.params.CommonParams;
 import org.apache.solr.common.params.GroupParams;
 import org.apache.solr.common.params.ModifiableSolrParams;
 import org.apache.solr.common.params.SolrParams;
@@ -116,6 +119,12 @@ import static org.apache.solr.common.params.CommonParams.SORT;
  expand : treats each doc with a null value in the collapse field as a separate group.<br>
  collapse : collapses all docs with a null value into a single group using either highest score, or min/max.
  <p>
+ Collapse based on the highest scoring document, keeping only the groups that rank within start+rows when results
+ are sorted by score. This bounds memory by the number of rows instead of the number of groups, and lets the query skip
+ documents that can't make it into these groups. numFound and facets then only account for the kept groups:
+ <p>
+ fq={!collapse field=field_name topGroups=true}
+ <p>
  The CollapsingQParserPlugin fully supports the QueryElevationComponent
  **/
 
@@ -227,6 +236,7 @@ public class CollapsingQParserPlugin extends QParserPlugin {
     public static final int NULL_POLICY_COLLAPSE = 1;
     public static final int NULL_POLICY_EXPAND = 2;
     private int size;
+    private int numGroups = -1; // only the heads of that many groups are kept, if not negative
 
     public String getField(){
       return this.collapseField;
@@ -255,6 +265,7 @@ public class CollapsingQParserPlugin extends QParserPlugin {
       hashCode = 31 * hashCode + collapseField.hashCode();
       hashCode = 31 * hashCode + groupHeadSelector.hashCode();
       hashCode = 31 * hashCode + nullPolicy;
+      hashCode = 31 * hashCode + numGroups;
       return hashCode;
     }
 
@@ -266,7 +277,8 @@ public class CollapsingQParserPlugin extends QParserPlugin {
     private boolean equalsTo(CollapsingPostFilter other) {
       return collapseField.equals(other.collapseField) &&
              groupHeadSelector.equals(other.groupHeadSelector) &&
-             nullPolicy == other.nullPolicy;
+             nullPolicy == other.nullPolicy &&
+             numGroups == other.numGroups;
     }
 
     @Override
@@ -344,6 +356,25 @@ public class CollapsingQParserPlugin extends QParserPlugin {
            (null != topSort && topSort.includesScore()) ||
            (this.boosted != null));
 
+        if (localParams.getBool("topGroups", false)) {
+          // the heads of the groups that rank below the requested page can only be dropped if they rank by score
+          if (GroupHeadSelectorType.SCORE.equals(groupHeadSelector.type) == false) {
+            throw new SolrException(SolrException.ErrorCode.BAD_REQUEST,
+                "topGroups is only supported when the group head is selected by score");
+          }
+          if (null != topSort && null != topSort.getSort()) {
+            throw new SolrException(SolrException.ErrorCode.BAD_REQUEST,
+                "topGroups is only supported when results are sorted by score");
+          }
+          if (request.getParams().get(CommonParams.RQ) != null) {
+            throw new SolrException(SolrException.ErrorCode.BAD_REQUEST,
+                "topGroups is not supported with re-ranking");
+          }
+          if (null != topSort) {
+            this.numGroups = topSort.getOffset() + topSort.getCount();
+          }
+        }
+
         if (this.needsScores && null != rb) {
           // regardless of why we need scores ensure the IndexSearcher will compute them
           // for the "real" docs.  (ie: maybe we need them because we were
@@ -397,6 +428,7 @@ public class CollapsingQParserPlugin extends QParserPlugin {
                                              this.needsScores4Collapsing,
                                              this.needsScores,
                                              this.size,
+                                             this.numGroups,
                                              boostDocsMap,
                                              searcher);
 
@@ -933,6 +965,361 @@ public class CollapsingQParserPlugin extends QParserPlugin {
     }
   }
 
+  /*
+   * Collapses using the score to select the group head, like OrdScoreCollector and IntScoreCollector, but only keeps
+   * the heads of the groups that rank in the top of the results when these are sorted by score. Memory is bounded by
+   * the number of groups that are kept, not by the number of values of the collapse field, and the min competitive
+   * score is passed on to the scorer so that it can skip documents that can't make it into the top groups.
+   */
+  private static abstract class TopGroupsScoreCollector extends DelegatingCollector {
+
+    /** Key of the group of documents that have no value in the collapse field. */
+    static final long NULL_KEY = Long.MIN_VALUE;
+
+    private final LeafReaderContext[] contexts;
+    private final int maxDoc;
+    private final int nullPolicy;
+    private final int numGroups;
+    // The best groups so far, as a min heap of their score. There is room for the groups of the boosted docs, which
+    // are removed at the end.
+    private final int capacity;
+    private final long[] keys;
+    private final float[] scores;
+    private final int[] docs;
+    private final LongIntHashMap positions; // group key -> position in the heap
+    private int size;
+    private float minCompetitiveScore;
+    private LongArrayList boostKeys;
+    private IntArrayList boostDocs;
+    private FloatArrayList boostScores;
+    private MergeBoost mergeBoost;
+    private boolean boosts;
+
+    TopGroupsScoreCollector(int maxDoc,
+                            int segments,
+                            int nullPolicy,
+                            int numGroups,
+                            IntIntHashMap boostDocsMap,
+                            IndexSearcher searcher) {
+      this.maxDoc = maxDoc;
+      this.contexts = new LeafReaderContext[segments];
+      List<LeafReaderContext> con = searcher.getTopReaderContext().leaves();
+      for(int i=0; i<con.size(); i++) {
+        contexts[i] = con.get(i);
+      }
+      this.nullPolicy = nullPolicy;
+      this.numGroups = numGroups;
+
+      if(boostDocsMap != null) {
+        this.boosts = true;
+        this.boostKeys = new LongArrayList();
+        this.boostDocs = new IntArrayList();
+        this.boostScores = new FloatArrayList();
+        int[] bd = new int[boostDocsMap.size()];
+        Iterator<IntIntCursor> it =  boostDocsMap.iterator();
+        int index = -1;
+        while(it.hasNext()) {
+          IntIntCursor cursor = it.next();
+          bd[++index] = cursor.key;
+        }
+
+        Arrays.sort(bd);
+        this.mergeBoost = new MergeBoost(bd);
+      }
+
+      this.capacity = numGroups + (boostDocsMap == null ? 0 : boostDocsMap.size());
+      this.keys = new long[capacity];
+      this.scores = new float[capacity];
+      this.docs = new int[capacity];
+      this.positions = new LongIntHashMap(capacity);
+    }
+
+    /** Returns the key of the group of the given doc of the current segment, or {@link #NULL_KEY}. */
+    protected abstract long groupKey(int contextDoc) throws IOException;
+
+    // Boosted docs must be collected whatever their score
+    @Override public ScoreMode scoreMode() { return boosts ? ScoreMode.COMPLETE : ScoreMode.TOP_SCORES; }
+
+    @Override
+    public void setScorer(Scorable scorer) throws IOException {
+      super.setScorer(scorer);
+      if(minCompetitiveScore > 0) {
+        scorer.setMinCompetitiveScore(minCompetitiveScore);
+      }
+    }
+
+    @Override
+    protected void doSetNextReader(LeafReaderContext context) throws IOException {
+      this.contexts[context.ord] = context;
+      this.docBase = context.docBase;
+    }
+
+    @Override
+    public void collect(int contextDoc) throws IOException {
+      int globalDoc = contextDoc+this.docBase;
+      long key = groupKey(contextDoc);
+
+      // Check to see if we have documents boosted by the QueryElevationComponent
+      if(boosts && mergeBoost.boost(globalDoc)) {
+        boostDocs.add(globalDoc);
+        boostKeys.add(key);
+        boostScores.add(scorer.score());
+        return;
+      }
+
+      if(key == NULL_KEY) {
+        if(nullPolicy == CollapsingPostFilter.NULL_POLICY_IGNORE) {
+          return;
+        } else if(nullPolicy == CollapsingPostFilter.NULL_POLICY_EXPAND) {
+          key = NULL_KEY + 1 + globalDoc; // each doc is its own group, below the keys of values
+        }
+      }
+
+      if(capacity == 0) {
+        return;
+      }
+      float score = scorer.score();
+      int pos = positions.getOrDefault(key, -1);
+      if(pos >= 0) {
+        if(score > scores[pos]) {
+          scores[pos] = score;
+          docs[pos] = globalDoc;
+          downHeap(pos);
+          updateMinCompetitiveScore();
+        }
+      } else if(size < capacity) {
+        set(size, key, score, globalDoc);
+        upHeap(size++);
+        updateMinCompetitiveScore();
+      } else if(score > scores[0]) {
+        // replaces the group with the lowest score
+        positions.remove(keys[0]);
+        set(0, key, score, globalDoc);
+        downHeap(0);
+        updateMinCompetitiveScore();
+      }
+    }
+
+    private void updateMinCompetitiveScore() throws IOException {
+      // docs that don't score more than the last group can't make it into the heap, ties are broken by doc id
+      if(size == capacity && boosts == false) {
+        float minScore = Math.nextUp(scores[0]);
+        if(minScore > minCompetitiveScore) {
+          minCompetitiveScore = minScore;
+          scorer.setMinCompetitiveScore(minScore);
+        }
+      }
+    }
+
+    @Override
+    public void finish() throws IOException {
+      if(contexts.length == 0) {
+        return;
+      }
+
+      if(boosts) {
+        //Remove any group heads that are in the same groups as boosted documents.
+        for(int i=0; i<boostKeys.size(); i++) {
+          long key = boostKeys.get(i);
+          int pos = key == NULL_KEY ? -1 : positions.getOrDefault(key, -1);
+          if(pos >= 0) {
+            scores[pos] = Float.NEGATIVE_INFINITY;
+            upHeap(pos);
+          }
+        }
+      }
+      while(size > 0 && (size > numGroups || scores[0] == Float.NEGATIVE_INFINITY)) {
+        pop();
+      }
+      int numHeads = size + (boosts ? boostDocs.size() : 0);
+
+      // doc ids in the upper bits, so that the heads are sorted by doc
+      long[] heads = new long[numHeads];
+      for(int i=0; i<size; i++) {
+        heads[i] = ((long) docs[i] << 32) | (Float.floatToRawIntBits(scores[i]) & 0xFFFFFFFFL);
+      }
+      for(int i=size; i<numHeads; i++) {
+        heads[i] = ((long) boostDocs.get(i-size) << 32) | (Float.floatToRawIntBits(boostScores.get(i-size)) & 0xFFFFFFFFL);
+      }
+      Arrays.sort(heads);
+
+      int currentContext = -1;
+      int currentDocBase = 0;
+      int nextDocBase = 0;
+      ScoreAndDoc dummy = new ScoreAndDoc();
+      for(long head : heads) {
+        int docId = (int) (head >>> 32);
+        while(docId >= nextDocBase) {
+          currentContext++;
+          currentDocBase = contexts[currentContext].docBase;
+          nextDocBase = currentContext+1 < contexts.length ? contexts[currentContext+1].docBase : maxDoc;
+          leafDelegate = delegate.getLeafCollector(contexts[currentContext]);
+          leafDelegate.setScorer(dummy);
+        }
+
+        int contextDoc = docId-currentDocBase;
+        dummy.score = Float.intBitsToFloat((int) head);
+        dummy.docId = contextDoc;
+        leafDelegate.collect(contextDoc);
+      }
+
+      if(delegate instanceof DelegatingCollector) {
+        ((DelegatingCollector) delegate).finish();
+      }
+    }
+
+    private void set(int pos, long key, float score, int doc) {
+      keys[pos] = key;
+      scores[pos] = score;
+      docs[pos] = doc;
+      positions.put(key, pos);
+    }
+
+    private void pop() {
+      positions.remove(keys[0]);
+      size--;
+      if(size > 0) {
+        set(0, keys[size], scores[size], docs[size]);
+        downHeap(0);
+      }
+    }
+
+    /** Whether the group at position i ranks below the one at j. */
+    private boolean lessThan(int i, int j) {
+      return scores[i] < scores[j] || (scores[i] == scores[j] && docs[i] > docs[j]);
+    }
+
+    private void swap(int i, int j) {
+      long key = keys[i];
+      float score = scores[i];
+      int doc = docs[i];
+      set(i, keys[j], scores[j], docs[j]);
+      set(j, key, score, doc);
+    }
+
+    private void upHeap(int pos) {
+      while(pos > 0) {
+        int parent = (pos - 1) >>> 1;
+        if(lessThan(pos, parent) == false) {
+          break;
+        }
+        swap(pos, parent);
+        pos = parent;
+      }
+    }
+
+    private void downHeap(int pos) {
+      while(true) {
+        int child = 2 * pos + 1;
+        if(child >= size) {
+          break;
+        }
+        if(child + 1 < size && lessThan(child + 1, child)) {
+          child++;
+        }
+        if(lessThan(child, pos) == false) {
+          break;
+        }
+        swap(pos, child);
+        pos = child;
+      }
+    }
+  }
+
+  /*
+   * Keeps the top groups of a String field, see TopGroupsScoreCollector.
+   */
+  private static class OrdTopGroupsScoreCollector extends TopGroupsScoreCollector {
+
+    private SortedDocValues collapseValues;
+    private OrdinalMap ordinalMap;
+    private SortedDocValues segmentValues;
+    private LongValues segmentOrdinalMap;
+    private MultiDocValues.MultiSortedDocValues multiSortedDocValues;
+
+    public OrdTopGroupsScoreCollector(int maxDoc,
+                                      int segments,
+                                      DocValuesProducer collapseValuesProducer,
+                                      int nullPolicy,
+                                      int numGroups,
+                                      IntIntHashMap boostDocsMap,
+                                      IndexSearcher searcher) throws IOException {
+      super(maxDoc, segments, nullPolicy, numGroups, boostDocsMap, searcher);
+      this.collapseValues = collapseValuesProducer.getSorted(null);
+      if(collapseValues instanceof MultiDocValues.MultiSortedDocValues) {
+        this.multiSortedDocValues = (MultiDocValues.MultiSortedDocValues)collapseValues;
+        this.ordinalMap = multiSortedDocValues.mapping;
+      }
+    }
+
+    @Override
+    protected void doSetNextReader(LeafReaderContext context) throws IOException {
+      super.doSetNextReader(context);
+      if(ordinalMap != null) {
+        this.segmentValues = this.multiSortedDocValues.values[context.ord];
+        this.segmentOrdinalMap = ordinalMap.getGlobalOrds(context.ord);
+      } else {
+        this.segmentValues = collapseValues;
+      }
+    }
+
+    @Override
+    protected long groupKey(int contextDoc) throws IOException {
+      if(this.ordinalMap != null) {
+        //Handle ordinalMapping case
+        if (segmentValues.advanceExact(contextDoc)) {
+          return segmentOrdinalMap.get(segmentValues.ordValue());
+        }
+      } else {
+        //Handle top Level FieldCache or Single Segment Case
+        if (segmentValues.advanceExact(contextDoc+this.docBase)) {
+          return segmentValues.ordValue();
+        }
+      }
+      return NULL_KEY;
+    }
+  }
+
+  /*
+   * Keeps the top groups of an Int or Float field, see TopGroupsScoreCollector.
+   */
+  private static class IntTopGroupsScoreCollector extends TopGroupsScoreCollector {
+
+    private final String field;
+    private final int nullValue;
+    private NumericDocValues collapseValues;
+
+    public IntTopGroupsScoreCollector(int maxDoc,
+                                      int segments,
+                                      int nullValue,
+                                      int nullPolicy,
+                                      int numGroups,
+                                      String field,
+                                      IntIntHashMap boostDocsMap,
+                                      IndexSearcher searcher) {
+      super(maxDoc, segments, nullPolicy, numGroups, boostDocsMap, searcher);
+      this.field = field;
+      this.nullValue = nullValue;
+    }
+
+    @Override
+    protected void doSetNextReader(LeafReaderContext context) throws IOException {
+      super.doSetNextReader(context);
+      this.collapseValues = DocValues.getNumeric(context.reader(), this.field);
+    }
+
+    @Override
+    protected long groupKey(int contextDoc) throws IOException {
+      int collapseValue;
+      if (collapseValues.advanceExact(contextDoc)) {
+        collapseValue = (int) collapseValues.longValue();
+      } else {
+        collapseValue = 0;
+      }
+      return collapseValue == nullValue ? NULL_KEY : collapseValue;
+    }
+  }
+
   /**
    * Collapse on Ordinal value field.
    */
@@ -1306,6 +1693,7 @@ public class CollapsingQParserPlugin extends QParserPlugin {
                                             boolean needsScores4Collapsing,
                                             boolean needsScores,
                                             int size,
+                                            int numGroups,
                                             IntIntHashMap boostDocs,
                                             SolrIndexSearcher searcher) throws IOException {
 
@@ -1364,6 +1752,9 @@ public class CollapsingQParserPlugin extends QParserPlugin {
 
         if (collapseFieldType instanceof StrField) {
 
+          if (numGroups >= 0) {
+            return new OrdTopGroupsScoreCollector(maxDoc, leafCount, docValuesProducer, nullPolicy, numGroups, boostDocs, searcher);
+          }
           return new OrdScoreCollector(maxDoc, leafCount, docValuesProducer, nullPolicy, boostDocs, searcher);
 
         } else if (isNumericCollapsible(collapseFieldType)) {
@@ -1383,6 +1774,9 @@ public class CollapsingQParserPlugin extends QParserPlugin {
             }
           }
 
+          if (numGroups >= 0) {
+            return new IntTopGroupsScoreCollector(maxDoc, leafCount, nullValue, nullPolicy, numGroups, collapseField, boostDocs, searcher);
+          }
           return new IntScoreCollector(maxDoc, leafCount, nullValue, nullPolicy, size, collapseField, boostDocs, searcher);
 
         } else {
@@ -142,7 +142,12 @@ public class DocSetUtil {
 
     // This may throw an ExitableDirectoryReader.ExitingReaderException
     // but we should not catch it here, as we don't know how this DocSet will be used (it could be negated before use) or cached.
-    searcher.search(query, collector);
+    if (searcher.getSegmentFilterCache() != null
+        && !(query instanceof ExtendedQuery && !((ExtendedQuery) query).getCache())) {
+      searcher.searchWithSegmentFilterCache(query, collector);
+    } else {
+      searcher.search(query, collector);
+    }
 
     return getDocSet(collector, searcher);
   }
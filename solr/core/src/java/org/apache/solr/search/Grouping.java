@@ -346,7 +346,7 @@ public class Grouping {
 
     CachingCollector cachedCollector = null;
     if (cacheSecondPassSearch && allCollectors != null) {
-      int maxDocsToCache = (int) Math.round(maxDoc * (maxDocsPercentageToCache / 100.0d));
+      int maxDocsToCache = getMaxDocsToCache();
       // Only makes sense to cache if we cache more than zero.
       // Maybe we should have a minimum and a maximum, that defines the window we would like caching for.
       if (maxDocsToCache > 0) {
@@ -449,6 +449,22 @@ public class Grouping {
     }
   }
 
+  private int getMaxDocsToCache() {
+    return (int) Math.round(maxDoc * (maxDocsPercentageToCache / 100.0d));
+  }
+
+  /**
+   * Returns the total hits threshold of first pass collectors. Hit counts come from the second pass,
+   * so the first pass may skip non-competitive hits, unless it is cached in order to be replayed as
+   * the second pass, which then needs every hit.
+   */
+  private int getFirstPassTotalHitsThreshold(int groupsToFind) {
+    if (cacheSecondPassSearch && getMaxDocsToCache() > 0) {
+      return Integer.MAX_VALUE;
+    }
+    return groupsToFind;
+  }
+
   /**
    * Returns offset + len if len equals zero or higher. Otherwise returns max.
    *
@@ -731,7 +747,7 @@ public class Grouping {
       }
 
       groupSort = groupSort == null ? Sort.RELEVANCE : groupSort;
-      firstPass = new FirstPassGroupingCollector<>(new TermGroupSelector(groupBy), groupSort, actualGroupsToFind);
+      firstPass = new FirstPassGroupingCollector<>(new TermGroupSelector(groupBy), groupSort, actualGroupsToFind, getFirstPassTotalHitsThreshold(actualGroupsToFind));
       return firstPass;
     }
 
@@ -956,7 +972,7 @@ public class Grouping {
       }
 
       groupSort = groupSort == null ? Sort.RELEVANCE : groupSort;
-      firstPass = new FirstPassGroupingCollector<>(newSelector(), searcher.weightSort(groupSort), actualGroupsToFind);
+      firstPass = new FirstPassGroupingCollector<>(newSelector(), searcher.weightSort(groupSort), actualGroupsToFind, getFirstPassTotalHitsThreshold(actualGroupsToFind));
       return firstPass;
     }
 
@@ -0,0 +1,552 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.util.BitDocIdSet;
+import org.apache.lucene.util.BitSet;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.RamUsageEstimator;
+
+/**
+ * A {@link DocSet} that is stored in a direct {@link ByteBuffer}, outside of the Java heap. It holds either the
+ * words of the bit set of a {@link BitDocSet} or the sorted doc ids of a {@link SortedIntDocSet}, and reads them
+ * in place, so that using a cached set doesn't copy it back to the heap. Sets that are computed from it, such as
+ * intersections, are regular heap based sets.
+ * <p>The buffer is never modified after construction and only read with absolute gets, so an instance can be
+ * shared by concurrent requests.</p>
+ *
+ * @see OffHeapFilterCache
+ */
+final class OffHeapDocSet extends DocSet {
+  private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(OffHeapDocSet.class);
+
+  private final ByteBuffer buffer;
+  private final LongBuffer words;  // null for sorted int sets
+  private final IntBuffer docs;    // null for bit sets
+  private final int numBits;
+  private final int size;
+
+  private OffHeapDocSet(ByteBuffer buffer, int numBits, int size) {
+    this.buffer = buffer;
+    this.numBits = numBits;
+    this.size = size;
+    if (numBits >= 0) {
+      words = buffer.asLongBuffer();
+      docs = null;
+    } else {
+      words = null;
+      docs = buffer.asIntBuffer();
+    }
+  }
+
+  /** Copies the given {@link BitDocSet} or {@link SortedIntDocSet} off the heap. */
+  static OffHeapDocSet of(DocSet set) {
+    if (set instanceof OffHeapDocSet) {
+      return (OffHeapDocSet) set;
+    } else if (set instanceof BitDocSet) {
+      FixedBitSet bits = ((BitDocSet) set).getBits();
+      int numWords = FixedBitSet.bits2words(bits.length());
+      ByteBuffer buffer = allocate(numWords * Long.BYTES);
+      buffer.asLongBuffer().put(bits.getBits(), 0, numWords);
+      return new OffHeapDocSet(buffer, bits.length(), set.size());
+    } else {
+      int[] docs = ((SortedIntDocSet) set).getDocs();
+      ByteBuffer buffer = allocate(docs.length * Integer.BYTES);
+      buffer.asIntBuffer().put(docs);
+      return new OffHeapDocSet(buffer, -1, docs.length);
+    }
+  }
+
+  private static ByteBuffer allocate(int numBytes) {
+    return ByteBuffer.allocateDirect(numBytes).order(ByteOrder.nativeOrder());
+  }
+
+  /** Whether this set holds a bit set, like {@link BitDocSet}, rather than sorted doc ids. */
+  private boolean isBitSet() {
+    return words != null;
+  }
+
+  /** Whether the given set has fast random access, so that the other set of an operation should drive it. */
+  private static boolean isDense(DocSet set) {
+    return set instanceof BitDocSet || (set instanceof OffHeapDocSet && ((OffHeapDocSet) set).isBitSet());
+  }
+
+  /** Returns the words of a dense set, see {@link #isDense}. */
+  private static LongBuffer wordsOf(DocSet set) {
+    if (set instanceof BitDocSet) {
+      return LongBuffer.wrap(((BitDocSet) set).getBits().getBits());
+    }
+    return ((OffHeapDocSet) set).words;
+  }
+
+  /** Returns the number of bits of a dense set, see {@link #isDense}. */
+  private static int lengthOf(DocSet set) {
+    if (set instanceof BitDocSet) {
+      return ((BitDocSet) set).getBits().length();
+    }
+    return ((OffHeapDocSet) set).numBits;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public boolean exists(int doc) {
+    if (isBitSet()) {
+      return doc < numBits && (words.get(doc >> 6) & (1L << doc)) != 0;
+    }
+    int idx = lowerBound(doc, 0, size);
+    return idx < size && docs.get(idx) == doc;
+  }
+
+  /** Returns the index of the first doc of a sorted int set in <code>[from, to)</code> that is &gt;= target. */
+  private int lowerBound(int target, int from, int to) {
+    int low = from;
+    int high = to - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int doc = docs.get(mid);
+      if (doc < target) {
+        low = mid + 1;
+      } else if (doc > target) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return low;
+  }
+
+  /** Returns the first doc of a bit set that is &gt;= index, or {@link DocIdSetIterator#NO_MORE_DOCS}. */
+  private int nextSetBit(int index) {
+    if (index >= numBits) {
+      return DocIdSetIterator.NO_MORE_DOCS;
+    }
+    int i = index >> 6;
+    long word = words.get(i) >> index;  // skip all the bits to the right of index
+    if (word != 0) {
+      return index + Long.numberOfTrailingZeros(word);
+    }
+    final int numWords = words.limit();
+    while (++i < numWords) {
+      word = words.get(i);
+      if (word != 0) {
+        return (i << 6) + Long.numberOfTrailingZeros(word);
+      }
+    }
+    return DocIdSetIterator.NO_MORE_DOCS;
+  }
+
+  @Override
+  public DocIterator iterator() {
+    return new DocIterator() {
+      int idx = 0;  // for sorted int sets
+      int pos = isBitSet() ? nextSetBit(0) : (size == 0 ? DocIdSetIterator.NO_MORE_DOCS : docs.get(0));
+
+      @Override
+      public boolean hasNext() {
+        return pos != DocIdSetIterator.NO_MORE_DOCS;
+      }
+
+      @Override
+      public Integer next() {
+        return nextDoc();
+      }
+
+      @Override
+      public int nextDoc() {
+        int old = pos;
+        if (isBitSet()) {
+          pos = old + 1 < numBits ? nextSetBit(old + 1) : DocIdSetIterator.NO_MORE_DOCS;
+        } else {
+          pos = ++idx < size ? docs.get(idx) : DocIdSetIterator.NO_MORE_DOCS;
+        }
+        return old;
+      }
+
+      @Override
+      public float score() {
+        return 0.0f;
+      }
+    };
+  }
+
+  @Override
+  public DocSet intersection(DocSet other) {
+    if (isBitSet() && isDense(other)) {
+      LongBuffer otherWords = wordsOf(other);
+      int numWords = Math.min(words.limit(), otherWords.limit());
+      long[] newWords = new long[FixedBitSet.bits2words(numBits)];
+      for (int i = 0; i < numWords; i++) {
+        newWords[i] = words.get(i) & otherWords.get(i);
+      }
+      return new BitDocSet(new FixedBitSet(newWords, numBits));
+    }
+    // the sparser set drives the intersection
+    DocSet driver = isBitSet() ? other : this;
+    DocSet dense = driver == this ? other : this;
+    int count = 0;
+    int[] arr = new int[driver.size()];
+    for (DocIterator it = driver.iterator(); it.hasNext(); ) {
+      int doc = it.nextDoc();
+      if (dense.exists(doc)) arr[count++] = doc;
+    }
+    return new SortedIntDocSet(arr, count);
+  }
+
+  @Override
+  public int intersectionSize(DocSet other) {
+    if (isBitSet() && isDense(other)) {
+      LongBuffer otherWords = wordsOf(other);
+      int numWords = Math.min(words.limit(), otherWords.limit());
+      int count = 0;
+      for (int i = 0; i < numWords; i++) {
+        count += Long.bitCount(words.get(i) & otherWords.get(i));
+      }
+      return count;
+    }
+    DocSet driver = isBitSet() ? other : this;
+    DocSet dense = driver == this ? other : this;
+    int count = 0;
+    for (DocIterator it = driver.iterator(); it.hasNext(); ) {
+      if (dense.exists(it.nextDoc())) count++;
+    }
+    return count;
+  }
+
+  @Override
+  public boolean intersects(DocSet other) {
+    if (isBitSet() && isDense(other)) {
+      LongBuffer otherWords = wordsOf(other);
+      int numWords = Math.min(words.limit(), otherWords.limit());
+      for (int i = 0; i < numWords; i++) {
+        if ((words.get(i) & otherWords.get(i)) != 0) return true;
+      }
+      return false;
+    }
+    DocSet driver = isBitSet() ? other : this;
+    DocSet dense = driver == this ? other : this;
+    for (DocIterator it = driver.iterator(); it.hasNext(); ) {
+      if (dense.exists(it.nextDoc())) return true;
+    }
+    return false;
+  }
+
+  @Override
+  public DocSet union(DocSet other) {
+    FixedBitSet newbits = getFixedBitSetClone();
+    if (isDense(other)) {
+      newbits = FixedBitSet.ensureCapacity(newbits, lengthOf(other));
+      other.addAllTo(newbits);
+    } else {
+      DocIterator iter = other.iterator();
+      while (iter.hasNext()) {
+        int doc = iter.nextDoc();
+        newbits = FixedBitSet.ensureCapacity(newbits, doc);
+        newbits.set(doc);
+      }
+    }
+    return new BitDocSet(newbits);
+  }
+
+  @Override
+  public DocSet andNot(DocSet other) {
+    if (isBitSet()) {
+      FixedBitSet newbits = getFixedBitSetClone();
+      if (isDense(other)) {
+        long[] newWords = newbits.getBits();
+        LongBuffer otherWords = wordsOf(other);
+        int numWords = Math.min(newWords.length, otherWords.limit());
+        for (int i = 0; i < numWords; i++) {
+          newWords[i] &= ~otherWords.get(i);
+        }
+      } else {
+        DocIterator iter = other.iterator();
+        while (iter.hasNext()) {
+          int doc = iter.nextDoc();
+          if (doc < newbits.length()) {
+            newbits.clear(doc);
+          }
+        }
+      }
+      return new BitDocSet(newbits);
+    }
+    int count = 0;
+    int[] arr = new int[size];
+    for (int i = 0; i < size; i++) {
+      int doc = docs.get(i);
+      if (!other.exists(doc)) arr[count++] = doc;
+    }
+    return new SortedIntDocSet(arr, count);
+  }
+
+  @Override
+  public void addAllTo(FixedBitSet target) {
+    if (isBitSet()) {
+      long[] targetWords = target.getBits();
+      int numWords = Math.min(targetWords.length, words.limit());
+      for (int i = 0; i < numWords; i++) {
+        targetWords[i] |= words.get(i);
+      }
+    } else {
+      for (int i = 0; i < size; i++) {
+        target.set(docs.get(i));
+      }
+    }
+  }
+
+  /** Returns a heap based copy of this set. */
+  @Override
+  public DocSet clone() {
+    if (isBitSet()) {
+      return new BitDocSet(getFixedBitSetClone(), size);
+    }
+    int[] arr = new int[size];
+    docs.duplicate().get(arr);
+    return new SortedIntDocSet(arr);
+  }
+
+  @Override
+  public Bits getBits() {
+    if (isBitSet()) {
+      return new LongBufferBitSet();
+    }
+    return new Bits() {
+      @Override
+      public boolean get(int index) {
+        return exists(index);
+      }
+
+      @Override
+      public int length() {
+        return size == 0 ? 0 : docs.get(size - 1) + 1;
+      }
+    };
+  }
+
+  @Override
+  protected FixedBitSet getFixedBitSet() {
+    return getFixedBitSetClone();
+  }
+
+  @Override
+  protected FixedBitSet getFixedBitSetClone() {
+    if (isBitSet()) {
+      long[] newWords = new long[FixedBitSet.bits2words(numBits)];
+      words.duplicate().get(newWords);
+      return new FixedBitSet(newWords, numBits);
+    }
+    FixedBitSet bitSet = new FixedBitSet(size == 0 ? 0 : docs.get(size - 1) + 1);
+    addAllTo(bitSet);
+    return bitSet;
+  }
+
+  @Override
+  public Filter getTopFilter() {
+    return new Filter() {
+      final ByteBuffer bs = buffer;
+
+      @Override
+      public DocIdSet getDocIdSet(final LeafReaderContext context, final Bits acceptDocs) {
+        LeafReader reader = context.reader();
+        // all Solr DocSets that are used as filters only include live docs
+        final Bits acceptDocs2 = acceptDocs == null ? null : (reader.getLiveDocs() == acceptDocs ? null : acceptDocs);
+
+        if (context.isTopLevel && isBitSet()) {
+          return BitsFilteredDocIdSet.wrap(new BitDocIdSet(new LongBufferBitSet(), size), acceptDocs);
+        }
+
+        final int base = context.docBase;
+        final int max = base + reader.maxDoc();   // one past the max doc in this segment.
+        // the range of the doc ids of this segment, for sorted int sets
+        final int startIdx = isBitSet() ? 0 : lowerBound(base, 0, size);
+        final int endIdx = isBitSet() ? 0 : lowerBound(max, startIdx, size);
+
+        return BitsFilteredDocIdSet.wrap(new DocIdSet() {
+          @Override
+          public DocIdSetIterator iterator() {
+            return new DocIdSetIterator() {
+              int idx = startIdx;
+              int adjustedDoc = -1;
+
+              @Override
+              public int docID() {
+                return adjustedDoc;
+              }
+
+              @Override
+              public int nextDoc() {
+                if (isBitSet()) {
+                  return advance(adjustedDoc + 1);
+                }
+                return adjustedDoc = idx < endIdx ? docs.get(idx++) - base : NO_MORE_DOCS;
+              }
+
+              @Override
+              public int advance(int target) {
+                if (target == NO_MORE_DOCS || target + base >= max) {
+                  return adjustedDoc = NO_MORE_DOCS;
+                }
+                if (isBitSet()) {
+                  int pos = nextSetBit(target + base);
+                  return adjustedDoc = pos < max ? pos - base : NO_MORE_DOCS;
+                }
+                idx = lowerBound(target + base, idx, endIdx);
+                return nextDoc();
+              }
+
+              @Override
+              public long cost() {
+                if (isBitSet()) {
+                  // pro-rated for the segment
+                  return (long) (size * ((FixedBitSet.bits2words(max - base) << 6) / (float) Math.max(1, numBits)));
+                }
+                return endIdx - startIdx;
+              }
+            };
+          }
+
+          @Override
+          public long ramBytesUsed() {
+            return 0L;  // off-heap
+          }
+
+          @Override
+          public Bits bits() {
+            if (isBitSet() == false) {
+              // random access is expensive for this set
+              return null;
+            }
+            return new Bits() {
+              @Override
+              public boolean get(int index) {
+                return exists(index + base);
+              }
+
+              @Override
+              public int length() {
+                return max - base;
+              }
+            };
+          }
+
+        }, acceptDocs2);
+      }
+
+      @Override
+      public String toString(String field) {
+        return "OffHeapDocSetTopFilter";
+      }
+
+      @Override
+      public boolean equals(Object other) {
+        return sameClassAs(other) && bs == getClass().cast(other).bs;
+      }
+
+      @Override
+      public int hashCode() {
+        return classHash() * 31 + System.identityHashCode(bs);
+      }
+    };
+  }
+
+  /** Includes the off-heap buffer, so that <code>maxRamMB</code> bounds the memory used outside of the heap. */
+  @Override
+  public long ramBytesUsed() {
+    return BASE_RAM_BYTES_USED + buffer.capacity();
+  }
+
+  @Override
+  public String toString() {
+    return "OffHeapDocSet{" +
+        "size=" + size() +
+        ",ramUsed=" + RamUsageEstimator.humanReadableUnits(ramBytesUsed()) +
+        '}';
+  }
+
+  /** A read-only {@link BitSet} view of the words of this set. */
+  private final class LongBufferBitSet extends BitSet {
+
+    @Override
+    public boolean get(int index) {
+      return (words.get(index >> 6) & (1L << index)) != 0;
+    }
+
+    @Override
+    public int length() {
+      return numBits;
+    }
+
+    @Override
+    public int cardinality() {
+      return size;
+    }
+
+    @Override
+    public int nextSetBit(int index) {
+      return OffHeapDocSet.this.nextSetBit(index);
+    }
+
+    @Override
+    public int prevSetBit(int index) {
+      int i = index >> 6;
+      long word = words.get(i) << (63 - (index & 0x3f));  // skip all the bits to the left of index
+      if (word != 0) {
+        return (i << 6) + ((index & 0x3f) - Long.numberOfLeadingZeros(word));
+      }
+      while (--i >= 0) {
+        word = words.get(i);
+        if (word != 0) {
+          return (i << 6) + 63 - Long.numberOfLeadingZeros(word);
+        }
+      }
+      return -1;
+    }
+
+    @Override
+    public void set(int i) {
+      throw new UnsupportedOperationException("read-only");
+    }
+
+    @Override
+    public void clear(int i) {
+      throw new UnsupportedOperationException("read-only");
+    }
+
+    @Override
+    public void clear(int startIndex, int endIndex) {
+      throw new UnsupportedOperationException("read-only");
+    }
+
+    @Override
+    public long ramBytesUsed() {
+      return 0L;  // off-heap
+    }
+  }
+}
@@ -0,0 +1,185 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.apache.solr.metrics.SolrMetricsContext;
+
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * A {@link DocSet} cache, intended for the <code>filterCache</code>, that keeps the cached sets outside of the
+ * Java heap. Each set is copied into a direct {@link ByteBuffer} when it is inserted, and hits return an
+ * {@link OffHeapDocSet} that reads that buffer in place, so cached sets are never copied back to the heap.
+ * <p>Eviction is delegated to a {@link CaffeineCache} and accepts the same parameters. When <code>maxRamMB</code>
+ * is set it limits the amount of off-heap memory used by the cached sets, otherwise <code>size</code> limits the
+ * number of entries. Off-heap memory of evicted entries is released once their buffers are garbage collected,
+ * so <code>-XX:MaxDirectMemorySize</code> should leave some room above <code>maxRamMB</code>.</p>
+ */
+public class OffHeapFilterCache<K> implements SolrCache<K, DocSet>, Accountable {
+
+  private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(OffHeapFilterCache.class);
+
+  private final CaffeineCache<K, OffHeapDocSet> cache = new CaffeineCache<>();
+
+  @Override
+  @SuppressWarnings({"rawtypes"})
+  public Object init(Map args, Object persistence, CacheRegenerator regenerator) {
+    return cache.init(args, persistence, regenerator);
+  }
+
+  @Override
+  public String name() {
+    return cache.name();
+  }
+
+  @Override
+  public int size() {
+    return cache.size();
+  }
+
+  @Override
+  public DocSet put(K key, DocSet value) {
+    return cache.put(key, OffHeapDocSet.of(value));
+  }
+
+  @Override
+  public DocSet get(K key) {
+    return cache.get(key);
+  }
+
+  @Override
+  public DocSet remove(K key) {
+    return cache.remove(key);
+  }
+
+  @Override
+  public DocSet computeIfAbsent(K key, Function<? super K, ? extends DocSet> mappingFunction) {
+    // hand the computed set back as is, there's no need to read it from the buffer we just filled
+    DocSet[] computed = new DocSet[1];
+    OffHeapDocSet entry = cache.computeIfAbsent(key, k -> {
+      DocSet set = mappingFunction.apply(k);
+      if (set == null) {
+        return null;
+      }
+      computed[0] = set;
+      return OffHeapDocSet.of(set);
+    });
+    if (computed[0] != null) {
+      return computed[0];
+    }
+    return entry;
+  }
+
+  @Override
+  public void clear() {
+    cache.clear();
+  }
+
+  @Override
+  public void setState(State state) {
+    cache.setState(state);
+  }
+
+  @Override
+  public State getState() {
+    return cache.getState();
+  }
+
+  @Override
+  public void warm(SolrIndexSearcher searcher, SolrCache<K, DocSet> old) {
+    // the cache class may have changed on reload, there's nothing to warm from then
+    if (old instanceof OffHeapFilterCache) {
+      cache.warm(searcher, ((OffHeapFilterCache<K>) old).cache);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    cache.close();
+  }
+
+  @Override
+  public int getMaxSize() {
+    return cache.getMaxSize();
+  }
+
+  @Override
+  public void setMaxSize(int maxSize) {
+    cache.setMaxSize(maxSize);
+  }
+
+  @Override
+  public int getMaxRamMB() {
+    return cache.getMaxRamMB();
+  }
+
+  @Override
+  public void setMaxRamMB(int maxRamMB) {
+    cache.setMaxRamMB(maxRamMB);
+  }
+
+  /** Returns the on-heap overhead plus the off-heap memory held by the cached sets. */
+  @Override
+  public long ramBytesUsed() {
+    return BASE_RAM_BYTES_USED + cache.ramBytesUsed();
+  }
+
+  //////////////////////// SolrInfoBean methods //////////////////////
+
+  @Override
+  public String getName() {
+    return OffHeapFilterCache.class.getName();
+  }
+
+  @Override
+  public String getDescription() {
+    return "Off-heap " + cache.getDescription();
+  }
+
+  @Override
+  public Category getCategory() {
+    return cache.getCategory();
+  }
+
+  @Override
+  public SolrMetricsContext getSolrMetricsContext() {
+    return cache.getSolrMetricsContext();
+  }
+
+  @Override
+  public void initializeMetrics(SolrMetricsContext parentContext, String scope) {
+    cache.initializeMetrics(parentContext, scope);
+  }
+
+  // for unit tests only
+  @VisibleForTesting
+  CaffeineCache<K, OffHeapDocSet> getCache() {
+    return cache;
+  }
+
+  @Override
+  public String toString() {
+    return cache.toString();
+  }
+}
@@ -0,0 +1,318 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.solr.search;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.Collection;
+
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.DocValuesType;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.MultiDocValues;
+import org.apache.lucene.index.OrdinalMap;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.CollectorManager;
+import org.apache.lucene.search.ConstantScoreScorer;
+import org.apache.lucene.search.ConstantScoreWeight;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.SimpleCollector;
+import org.apache.lucene.search.TwoPhaseIterator;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.LongBitSet;
+import org.apache.lucene.util.LongValues;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.schema.SchemaField;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link JoinQuery} implementation using per-segment DocValues on both sides of the join.
+ * <p>
+ * The "from" query is collected into a bitset of the (global) ordinals of the "from" field, with the slices of the
+ * "from" index searched concurrently if the core is configured to do so. Each segment of the "to" index then maps
+ * these ordinals to its own ordinals by walking the terms of both fields in order, so no top-level structure is
+ * needed on the "to" side and no {@link DocSet} of the results is materialized.
+ * <p>
+ * The "from" side is only collected once a "to" segment needs it, so segments whose results are cached don't pay for
+ * it.  Results are cacheable per segment when the "from" index is another core, since the query then identifies the
+ * "from" searcher that it was built against.  Joins within the same core, with or without a "fromIndex" naming it,
+ * aren't cached per segment since a commit may change the "from" side of segments that didn't change.
+ */
+public class SegmentJoinQuery extends JoinQuery {
+  private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  public SegmentJoinQuery(String fromField, String toField, String coreName, Query subQuery) {
+    super(fromField, toField, coreName, subQuery);
+  }
+
+  @Override
+  public Weight createWeight(IndexSearcher searcher, ScoreMode scoreMode, float boost) throws IOException {
+    if (! (searcher instanceof SolrIndexSearcher)) {
+      log.debug("Falling back to JoinQueryWeight because searcher [{}] is not the required SolrIndexSearcher", searcher);
+      return super.createWeight(searcher, scoreMode, boost);
+    }
+
+    final JoinQueryWeight joinWeight = new JoinQueryWeight((SolrIndexSearcher) searcher, ScoreMode.COMPLETE_NO_SCORES, 1.0f);
+    final SolrIndexSearcher fromSearcher = joinWeight.fromSearcher;
+    final SchemaField fromSchemaField = validateField(fromSearcher, fromField, "from");
+    validateField(joinWeight.toSearcher, toField, "to");
+
+    return new ConstantScoreWeight(this, boost) {
+      private LongBitSet fromOrds;
+
+      private synchronized LongBitSet getFromOrds() throws IOException {
+        if (fromOrds == null) {
+          fromOrds = collectFromOrdinals(fromSearcher, fromSchemaField);
+        }
+        return fromOrds;
+      }
+
+      @Override
+      public Scorer scorer(LeafReaderContext context) throws IOException {
+        final SortedSetDocValues toValues = DocValues.getSortedSet(context.reader(), toField);
+        if (toValues.getValueCount() == 0) {
+          return null;
+        }
+        final LongBitSet fromOrdBitSet = getFromOrds();
+        final LongBitSet toOrdBitSet = new LongBitSet(toValues.getValueCount());
+        if (translateOrdinals(fromOrdBitSet, getTopLevelDocValues(fromSearcher, fromSchemaField), toOrdBitSet, toValues) == false) {
+          return null;
+        }
+
+        final SortedDocValues singleToValues = DocValues.unwrapSingleton(toValues);
+        final TwoPhaseIterator twoPhase;
+        if (singleToValues != null) {
+          twoPhase = new TwoPhaseIterator(singleToValues) {
+            @Override
+            public boolean matches() throws IOException {
+              return toOrdBitSet.get(singleToValues.ordValue());
+            }
+
+            @Override
+            public float matchCost() {
+              return 2.0F;
+            }
+          };
+        } else {
+          twoPhase = new TwoPhaseIterator(toValues) {
+            @Override
+            public boolean matches() throws IOException {
+              for (long ord = toValues.nextOrd(); ord != SortedSetDocValues.NO_MORE_ORDS; ord = toValues.nextOrd()) {
+                if (toOrdBitSet.get(ord)) {
+                  return true;
+                }
+              }
+              return false;
+            }
+
+            @Override
+            public float matchCost() {
+              return 10.0F;
+            }
+          };
+        }
+        return new ConstantScoreScorer(this, this.score(), scoreMode, twoPhase);
+      }
+
+      @Override
+      public boolean isCacheable(LeafReaderContext ctx) {
+        // matches depend on the whole "from" index, which is only pinned down by the query when it names the
+        // searcher of another core; a "fromIndex" naming this core leaves the open time unset
+        return fromIndex != null && fromCoreOpenTime != 0 && DocValues.isCacheable(ctx, toField);
+      }
+    };
+  }
+
+  private static SchemaField validateField(SolrIndexSearcher solrSearcher, String fieldName, String querySide) {
+    final SchemaField field = solrSearcher.getSchema().getFieldOrNull(fieldName);
+    if (field == null) {
+      throw new SolrException(SolrException.ErrorCode.BAD_REQUEST, querySide + " field '" + fieldName + "' does not exist");
+    }
+
+    if (!field.hasDocValues()) {
+      throw new SolrException(SolrException.ErrorCode.BAD_REQUEST,
+          "'per-segment' join queries require both 'from' and 'to' fields to have docValues, but " + querySide +
+              " field [" + fieldName +  "] does not.");
+    }
+
+    // numeric fields have docValues too, but the join works on the ordinals of terms
+    final FieldInfo fieldInfo = solrSearcher.getFieldInfos().fieldInfo(fieldName);
+    final boolean sortedDocValues = fieldInfo == null
+        ? field.getType().getNumberType() == null
+        : fieldInfo.getDocValuesType() == DocValuesType.SORTED || fieldInfo.getDocValuesType() == DocValuesType.SORTED_SET;
+    if (!sortedDocValues) {
+      throw new SolrException(SolrException.ErrorCode.BAD_REQUEST,
+          "'per-segment' join queries require both 'from' and 'to' fields to have SORTED or SORTED_SET docValues, but " +
+              querySide + " field [" + fieldName +  "] does not.");
+    }
+    return field;
+  }
+
+  private static SortedSetDocValues getTopLevelDocValues(SolrIndexSearcher searcher, SchemaField field) throws IOException {
+    if (field.multiValued()) {
+      return DocValues.getSortedSet(searcher.getSlowAtomicReader(), field.getName());
+    }
+    return DocValues.singleton(DocValues.getSorted(searcher.getSlowAtomicReader(), field.getName()));
+  }
+
+  /**
+   * Collects the global ordinals of the "from" field of all docs matching the "from" query.
+   */
+  private LongBitSet collectFromOrdinals(SolrIndexSearcher fromSearcher, SchemaField fromSchemaField) throws IOException {
+    final SortedSetDocValues topLevelValues = getTopLevelDocValues(fromSearcher, fromSchemaField);
+    final long valueCount = topLevelValues.getValueCount();
+    final OrdinalMap ordinalMap = getOrdinalMap(topLevelValues);
+
+    final CollectorManager<FromOrdinalsCollector, LongBitSet> manager = new CollectorManager<FromOrdinalsCollector, LongBitSet>() {
+      @Override
+      public FromOrdinalsCollector newCollector() {
+        return new FromOrdinalsCollector(fromField, ordinalMap, new LongBitSet(valueCount));
+      }
+
+      @Override
+      public LongBitSet reduce(Collection<FromOrdinalsCollector> collectors) throws IOException {
+        LongBitSet result = null;
+        for (FromOrdinalsCollector collector : collectors) {
+          collector.flush();
+          if (result == null) {
+            result = collector.globalOrds;
+          } else {
+            result.or(collector.globalOrds);
+          }
+        }
+        return result == null ? new LongBitSet(valueCount) : result;
+      }
+    };
+
+    if (valueCount == 0) {
+      return new LongBitSet(0);
+    } else if (fromSearcher.hasParallelSearchSlices()) {
+      return fromSearcher.searchInParallel(q, manager);
+    }
+    return fromSearcher.search(q, manager);
+  }
+
+  private static OrdinalMap getOrdinalMap(SortedSetDocValues topLevelValues) {
+    if (topLevelValues instanceof MultiDocValues.MultiSortedSetDocValues) {
+      return ((MultiDocValues.MultiSortedSetDocValues) topLevelValues).mapping;
+    }
+    final SortedDocValues singleValues = DocValues.unwrapSingleton(topLevelValues);
+    if (singleValues instanceof MultiDocValues.MultiSortedDocValues) {
+      return ((MultiDocValues.MultiSortedDocValues) singleValues).mapping;
+    }
+    return null; // a single segment, whose ordinals are the global ones
+  }
+
+  /**
+   * Sets the ordinals of the "to" segment whose terms are in the "from" set, walking both term dictionaries in
+   * order and leaping over the runs of terms that only one side has.
+   *
+   * @return whether any ordinal was set
+   */
+  private static boolean translateOrdinals(LongBitSet fromOrdBitSet, SortedSetDocValues fromValues,
+                                           LongBitSet toOrdBitSet, SortedSetDocValues toValues) throws IOException {
+    final TermsEnum fromTerms = fromValues.termsEnum();
+    final TermsEnum toTerms = toValues.termsEnum();
+    final long numFromOrds = fromOrdBitSet.length();
+    boolean matches = false;
+
+    long fromOrd = numFromOrds == 0 ? -1L : fromOrdBitSet.nextSetBit(0);
+    while (fromOrd >= 0) {
+      fromTerms.seekExact(fromOrd);
+      final TermsEnum.SeekStatus status = toTerms.seekCeil(fromTerms.term());
+      if (status == TermsEnum.SeekStatus.END) {
+        break;
+      } else if (status == TermsEnum.SeekStatus.FOUND) {
+        toOrdBitSet.set(toTerms.ord());
+        matches = true;
+        fromOrd++;
+      } else {
+        // the "to" side is positioned on the next greater term, skip the "from" terms before it
+        final BytesRef toTerm = toTerms.term();
+        if (fromTerms.seekCeil(toTerm) == TermsEnum.SeekStatus.END) {
+          break;
+        }
+        fromOrd = fromTerms.ord();
+      }
+      fromOrd = fromOrd < numFromOrds ? fromOrdBitSet.nextSetBit(fromOrd) : -1L;
+    }
+    return matches;
+  }
+
+  /**
+   * Collects the ordinals of each segment into a bitset of the segment's ordinals, which is then mapped to global
+   * ordinals, so that each distinct value is only looked up in the ordinal map once per segment.
+   */
+  private static class FromOrdinalsCollector extends SimpleCollector {
+    private final String field;
+    private final OrdinalMap ordinalMap;
+    final LongBitSet globalOrds;
+
+    private SortedSetDocValues segmentValues;
+    private LongBitSet segmentOrds;
+    private LongValues toGlobal;
+
+    FromOrdinalsCollector(String field, OrdinalMap ordinalMap, LongBitSet globalOrds) {
+      this.field = field;
+      this.ordinalMap = ordinalMap;
+      this.globalOrds = globalOrds;
+    }
+
+    @Override
+    public ScoreMode scoreMode() {
+      return ScoreMode.COMPLETE_NO_SCORES;
+    }
+
+    @Override
+    protected void doSetNextReader(LeafReaderContext context) throws IOException {
+      flush();
+      segmentValues = DocValues.getSortedSet(context.reader(), field);
+      segmentOrds = new LongBitSet(segmentValues.getValueCount());
+      toGlobal = ordinalMap == null ? LongValues.IDENTITY : ordinalMap.getGlobalOrds(context.ord);
+    }
+
+    @Override
+    public void collect(int doc) throws IOException {
+      if (segmentValues.advanceExact(doc)) {
+        for (long ord = segmentValues.nextOrd(); ord != SortedSetDocValues.NO_MORE_ORDS; ord = segmentValues.nextOrd()) {
+          segmentOrds.set(ord);
+        }
+      }
+    }
+
+    void flush() {
+      if (segmentOrds == null) {
+        return;
+      }
+      final long numOrds = segmentOrds.length();
+      for (long ord = numOrds == 0 ? -1L : segmentOrds.nextSetBit(0); ord >= 0;
+           ord = ord + 1 < numOrds ? segmentOrds.nextSetBit(ord + 1) : -1L) {
+        globalOrds.set(toGlobal.get(ord));
+      }
+      segmentOrds = null;
+    }
+  }
+}
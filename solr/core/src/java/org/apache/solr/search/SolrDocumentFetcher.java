@@ -26,9 +26,11 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicReference;
@@ -45,9 +47,11 @@ import org.apache.lucene.document.LazyDocument;
 import org.apache.lucene.document.StoredField;
 import org.apache.lucene.document.TextField;
 import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.index.CodecReader;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.DocValuesType;
 import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.FilterLeafReader;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexableField;
 import org.apache.lucene.index.IndexableFieldType;
@@ -59,6 +63,7 @@ import org.apache.lucene.index.SortedDocValues;
 import org.apache.lucene.index.SortedNumericDocValues;
 import org.apache.lucene.index.SortedSetDocValues;
 import org.apache.lucene.index.StoredFieldVisitor;
+import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.NumericUtils;
 import org.apache.solr.common.SolrDocument;
@@ -288,6 +293,49 @@ public class SolrDocumentFetcher {
     return solrReturnFields.getFetchOptimizer(rfoSupplier).getSolrDoc(luceneDocId);
   }
 
+  /**
+   * Like {@link #solrDoc(int, SolrReturnFields)}, but for several documents at once, which is cheaper than fetching
+   * them one at a time. The documents are read in index order, so stored fields that are compressed together are
+   * read in a row and docValues iterators only move forward, then returned in the order of the given ids.
+   *
+   * @param luceneDocIds the Lucene doc IDs, in any order
+   * @param solrReturnFields the structure holding the fields to be returned, see {@link #solrDoc(int, SolrReturnFields)}
+   * @return the documents, at the same positions as their ids
+   */
+  public SolrDocument[] solrDocs(int[] luceneDocIds, SolrReturnFields solrReturnFields) {
+    Supplier<RetrieveFieldsOptimizer> rfoSupplier = () -> new RetrieveFieldsOptimizer(solrReturnFields);
+    return solrReturnFields.getFetchOptimizer(rfoSupplier).getSolrDocs(luceneDocIds);
+  }
+
+  /**
+   * Like {@link #solrDocs(int[], SolrReturnFields)}, but passes the values of the fields to return to the given visitor
+   * instead of collecting them into {@link SolrDocument}s. The documents are visited in index order, each one after a
+   * call to {@link SolrDocVisitor#startDoc} with its position in the given ids. Which stored fields are read is up to
+   * {@link StoredFieldVisitor#needsField} of the visitor. When there is a document cache, stored fields go through it
+   * as they do for {@link #solrDocs(int[], SolrReturnFields)}, including lazily loaded ones.
+   */
+  public void visitSolrDocs(int[] luceneDocIds, SolrReturnFields solrReturnFields, SolrDocVisitor visitor) throws IOException {
+    Supplier<RetrieveFieldsOptimizer> rfoSupplier = () -> new RetrieveFieldsOptimizer(solrReturnFields);
+    solrReturnFields.getFetchOptimizer(rfoSupplier).visitSolrDocs(luceneDocIds, visitor);
+  }
+
+  /**
+   * Receives the fields of documents from {@link #visitSolrDocs(int[], SolrReturnFields, SolrDocVisitor)}: for each
+   * document, a call to {@link #startDoc}, then stored fields through the methods of {@link StoredFieldVisitor}, then
+   * the fields that are read from docValues.
+   */
+  public static abstract class SolrDocVisitor extends StoredFieldVisitor {
+
+    /** Called before the fields of a document, with the position of its id in the ids being visited. */
+    public abstract void startDoc(int index) throws IOException;
+
+    /**
+     * Receives the value of a field read from docValues, as {@link #decorateDocValueFields} would set it on a
+     * document: it replaces stored values of the same field, and multiple values come as a {@link List}.
+     */
+    public abstract void docValuesField(String name, Object value) throws IOException;
+  }
+
   /** {@link StoredFieldVisitor} which loads the specified fields eagerly (or all if null).
    * If {@link #enableLazyFieldLoading} then the rest get special lazy field entries.  Designated "large"
    * fields will always get a special field entry. */
@@ -522,18 +570,86 @@ public class SolrDocumentFetcher {
     final int localId = docid - leafContexts.get(subIndex).docBase;
     final LeafReader leafReader = leafContexts.get(subIndex).reader();
     for (String fieldName : fields) {
-      Object fieldValue = decodeDVField(localId, leafReader, fieldName);
+      Object fieldValue = decodeDVField(localId, leafReader, fieldName, null);
       if (fieldValue != null) {
         doc.setField(fieldName, fieldValue);
       }
     }
   }
 
+  /**
+   * Hints the stored fields reader of the segment of the given document that it will be read soon, so that the
+   * directory can load several documents concurrently.
+   */
+  private void prefetchStoredFields(int docid) {
+    final List<LeafReaderContext> leafContexts = searcher.getLeafContexts();
+    final LeafReaderContext leafContext = leafContexts.get(ReaderUtil.subIndex(docid, leafContexts));
+    final LeafReader leafReader = FilterLeafReader.unwrap(leafContext.reader());
+    if (leafReader instanceof CodecReader) {
+      try {
+        ((CodecReader) leafReader).getFieldsReader().prefetch(docid - leafContext.docBase);
+      } catch (IOException e) {
+        throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, "Error reading document with docId " + docid, e);
+      }
+    }
+  }
+
+  /**
+   * Adds docValues fields to documents visited in increasing docid order, reusing the docValues iterators of a
+   * segment from one document to the next instead of creating them for each document.
+   */
+  private class DocValueFieldsDecorator {
+    private final Set<String> fields;
+    private final List<LeafReaderContext> leafContexts = searcher.getLeafContexts();
+    private final Map<String, DocIdSetIterator> iterators = new HashMap<>();
+    private int subIndex = -1;
+    private int lastLocalId = -1;
+
+    DocValueFieldsDecorator(Set<String> fields) {
+      this.fields = fields;
+    }
+
+    @SuppressWarnings({"rawtypes"})
+    void decorate(SolrDocumentBase doc, int docid) throws IOException {
+      final LeafReader leafReader = advance(docid);
+      for (String fieldName : fields) {
+        Object fieldValue = decodeDVField(lastLocalId, leafReader, fieldName, iterators);
+        if (fieldValue != null) {
+          doc.setField(fieldName, fieldValue);
+        }
+      }
+    }
+
+    void visit(SolrDocVisitor visitor, int docid) throws IOException {
+      final LeafReader leafReader = advance(docid);
+      for (String fieldName : fields) {
+        Object fieldValue = decodeDVField(lastLocalId, leafReader, fieldName, iterators);
+        if (fieldValue != null) {
+          visitor.docValuesField(fieldName, fieldValue);
+        }
+      }
+    }
+
+    private LeafReader advance(int docid) {
+      final int subIndex = ReaderUtil.subIndex(docid, leafContexts);
+      final int localId = docid - leafContexts.get(subIndex).docBase;
+      if (subIndex != this.subIndex || localId <= lastLocalId) {
+        // iterators can't go backwards, or be positioned twice on the same doc
+        iterators.clear();
+        this.subIndex = subIndex;
+      }
+      lastLocalId = localId;
+      return leafContexts.get(subIndex).reader();
+    }
+  }
+
   /**
    * Decode value from DV field for a document
+   * @param iterators if not null, the docValues iterators of the segment to reuse, by field name
    * @return null if DV field is not exist or can not decodable
    */
-  private Object decodeDVField(int localId, LeafReader leafReader, String fieldName) throws IOException {
+  private Object decodeDVField(int localId, LeafReader leafReader, String fieldName,
+                               Map<String, DocIdSetIterator> iterators) throws IOException {
     final SchemaField schemaField = searcher.getSchema().getFieldOrNull(fieldName);
     FieldInfo fi = searcher.getFieldInfos().fieldInfo(fieldName);
     if (schemaField == null || !schemaField.hasDocValues() || fi == null) {
@@ -543,7 +659,7 @@ public class SolrDocumentFetcher {
     final DocValuesType dvType = fi.getDocValuesType();
     switch (dvType) {
       case NUMERIC:
-        final NumericDocValues ndv = leafReader.getNumericDocValues(fieldName);
+        final NumericDocValues ndv = (NumericDocValues) getDocValues(leafReader, fieldName, dvType, iterators);
         if (ndv == null) {
           return null;
         }
@@ -553,13 +669,13 @@ public class SolrDocumentFetcher {
         Long val = ndv.longValue();
         return decodeNumberFromDV(schemaField, val, false);
       case BINARY:
-        BinaryDocValues bdv = leafReader.getBinaryDocValues(fieldName);
+        BinaryDocValues bdv = (BinaryDocValues) getDocValues(leafReader, fieldName, dvType, iterators);
         if (bdv != null && bdv.advanceExact(localId)) {
           return BytesRef.deepCopyOf(bdv.binaryValue());
         }
         return null;
       case SORTED:
-        SortedDocValues sdv = leafReader.getSortedDocValues(fieldName);
+        SortedDocValues sdv = (SortedDocValues) getDocValues(leafReader, fieldName, dvType, iterators);
         if (sdv != null && sdv.advanceExact(localId)) {
           final BytesRef bRef = sdv.binaryValue();
           // Special handling for Boolean fields since they're stored as 'T' and 'F'.
@@ -571,8 +687,8 @@ public class SolrDocumentFetcher {
         }
         return null;
       case SORTED_NUMERIC:
-        final SortedNumericDocValues numericDv = leafReader.getSortedNumericDocValues(fieldName);
-        if (numericDv != null && numericDv.advance(localId) == localId) {
+        final SortedNumericDocValues numericDv = (SortedNumericDocValues) getDocValues(leafReader, fieldName, dvType, iterators);
+        if (numericDv != null && numericDv.advanceExact(localId)) {
           final int docValueCount = numericDv.docValueCount();
           final List<Object> outValues = new ArrayList<>(docValueCount);
           for (int i = 0; i < docValueCount; i++) {
@@ -594,8 +710,8 @@ public class SolrDocumentFetcher {
         }
         return null;
       case SORTED_SET:
-        final SortedSetDocValues values = leafReader.getSortedSetDocValues(fieldName);
-        if (values != null && values.getValueCount() > 0 && values.advance(localId) == localId) {
+        final SortedSetDocValues values = (SortedSetDocValues) getDocValues(leafReader, fieldName, dvType, iterators);
+        if (values != null && values.getValueCount() > 0 && values.advanceExact(localId)) {
           final List<Object> outValues = new LinkedList<>();
           for (long ord = values.nextOrd(); ord != SortedSetDocValues.NO_MORE_ORDS; ord = values.nextOrd()) {
             BytesRef value = values.lookupOrd(ord);
@@ -610,6 +726,36 @@ public class SolrDocumentFetcher {
     }
   }
 
+  private DocIdSetIterator getDocValues(LeafReader leafReader, String fieldName, DocValuesType dvType,
+                                       Map<String, DocIdSetIterator> iterators) throws IOException {
+    DocIdSetIterator dv = iterators == null ? null : iterators.get(fieldName);
+    if (dv == null) {
+      switch (dvType) {
+        case NUMERIC:
+          dv = leafReader.getNumericDocValues(fieldName);
+          break;
+        case BINARY:
+          dv = leafReader.getBinaryDocValues(fieldName);
+          break;
+        case SORTED:
+          dv = leafReader.getSortedDocValues(fieldName);
+          break;
+        case SORTED_NUMERIC:
+          dv = leafReader.getSortedNumericDocValues(fieldName);
+          break;
+        case SORTED_SET:
+          dv = leafReader.getSortedSetDocValues(fieldName);
+          break;
+        default:
+          return null;
+      }
+      if (dv != null && iterators != null) {
+        iterators.put(fieldName, dv);
+      }
+    }
+    return dv;
+  }
+
   private Object decodeNumberFromDV(SchemaField schemaField, long value, boolean sortableNumeric) {
     // note: This special-case is unfortunate; if we have to add any more than perhaps the fieldType should
     //  have this method so that specific field types can customize it.
@@ -796,11 +942,37 @@ public class SolrDocumentFetcher {
     }
 
     private SolrDocument getSolrDoc(int luceneDocId) {
+      return getSolrDoc(luceneDocId, null, null);
+    }
+
+    private SolrDocument[] getSolrDocs(int[] luceneDocIds) {
+      final long[] sorted = sortByDocId(luceneDocIds);
+      final DocValueFieldsDecorator dvDecorator = returnDVFields() ? new DocValueFieldsDecorator(getDvFields()) : null;
+      final Document[] docs;
+      try {
+        docs = returnStoredFields() ? getDocs(luceneDocIds, sorted) : null;
+      } catch (IOException e) {
+        throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, "Error reading documents", e);
+      }
+      final SolrDocument[] sdocs = new SolrDocument[luceneDocIds.length];
+      for (long docAndIndex : sorted) {
+        final int index = (int) docAndIndex;
+        sdocs[index] = getSolrDoc(luceneDocIds[index], docs == null ? null : docs[index], dvDecorator);
+      }
+      return sdocs;
+    }
+
+    /**
+     * @param doc the stored fields of the document if they were already read, or null
+     */
+    private SolrDocument getSolrDoc(int luceneDocId, Document doc, DocValueFieldsDecorator dvDecorator) {
 
       SolrDocument sdoc = null;
       try {
         if (returnStoredFields()) {
-          Document doc = doc(luceneDocId, getStoredFields());
+          if (doc == null) {
+            doc = doc(luceneDocId, getStoredFields());
+          }
           // make sure to use the schema from the searcher and not the request (cross-core)
           sdoc = DocsStreamer.convertLuceneDocToSolrDoc(doc, searcher.getSchema(), getReturnFields());
           if (returnDVFields() == false) {
@@ -817,13 +989,105 @@ public class SolrDocumentFetcher {
 
         // decorate the document with non-stored docValues fields
         if (returnDVFields()) {
-          decorateDocValueFields(sdoc, luceneDocId, getDvFields());
+          if (dvDecorator != null) {
+            dvDecorator.decorate(sdoc, luceneDocId);
+          } else {
+            decorateDocValueFields(sdoc, luceneDocId, getDvFields());
+          }
         }
       } catch (IOException e) {
         throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, "Error reading document with docId " + luceneDocId, e);
       }
       return sdoc;
     }
+
+    private void visitSolrDocs(int[] luceneDocIds, SolrDocVisitor visitor) throws IOException {
+      final long[] sorted = sortByDocId(luceneDocIds);
+      final DocValueFieldsDecorator dvDecorator = returnDVFields() ? new DocValueFieldsDecorator(getDvFields()) : null;
+      // with a document cache, the visitor gets the same documents as getSolrDocs, otherwise it reads from the index
+      Document[] docs = null;
+      if (returnStoredFields()) {
+        if (documentCache != null) {
+          docs = getDocs(luceneDocIds, sorted);
+        } else {
+          prefetchStoredFields(luceneDocIds, sorted, null);
+        }
+      }
+      for (long docAndIndex : sorted) {
+        final int index = (int) docAndIndex;
+        visitor.startDoc(index);
+        visitSolrDoc(luceneDocIds[index], docs == null ? null : docs[index], visitor, dvDecorator);
+      }
+    }
+
+    private void visitSolrDoc(int luceneDocId, Document doc, SolrDocVisitor visitor, DocValueFieldsDecorator dvDecorator) throws IOException {
+      if (returnStoredFields()) {
+        if (doc != null) {
+          visitFromCached(doc, visitor);
+        } else {
+          searcher.getIndexReader().document(luceneDocId, visitor);
+        }
+        solrReturnFields.setFieldSources(returnDVFields() ?
+            SolrReturnFields.FIELD_SOURCES.MIXED_SOURCES : SolrReturnFields.FIELD_SOURCES.ALL_FROM_STORED);
+      } else {
+        solrReturnFields.setFieldSources(SolrReturnFields.FIELD_SOURCES.ALL_FROM_DV);
+      }
+      if (dvDecorator != null) {
+        dvDecorator.visit(visitor, luceneDocId);
+      }
+    }
+
+    /**
+     * Returns the ids of the given documents, each in the upper 32 bits of a long with its position in the lower ones,
+     * sorted by id.
+     */
+    private long[] sortByDocId(int[] luceneDocIds) {
+      final long[] sorted = new long[luceneDocIds.length];
+      for (int i = 0; i < luceneDocIds.length; i++) {
+        sorted[i] = ((long) luceneDocIds[i] << 32) | i;
+      }
+      Arrays.sort(sorted);
+      return sorted;
+    }
+
+    /** Hints the stored fields readers of the given documents that they will be read, except those in docs. */
+    private void prefetchStoredFields(int[] luceneDocIds, long[] sorted, Document[] docs) {
+      for (long docAndIndex : sorted) {
+        final int index = (int) docAndIndex;
+        if (docs == null || docs[index] == null) {
+          SolrDocumentFetcher.this.prefetchStoredFields(luceneDocIds[index]);
+        }
+      }
+    }
+
+    /**
+     * Returns the stored fields of the given documents, at the same positions, like {@link #doc(int, Set)} would:
+     * documents are looked up in the document cache first, so that only the others are read, in index order, and then
+     * put in the cache. Batching documents only changes the order in which they are read.
+     */
+    private Document[] getDocs(int[] luceneDocIds, long[] sorted) throws IOException {
+      final Document[] docs = new Document[luceneDocIds.length];
+      if (documentCache != null) {
+        for (int i = 0; i < luceneDocIds.length; i++) {
+          docs[i] = documentCache.get(luceneDocIds[i]);
+        }
+      }
+      prefetchStoredFields(luceneDocIds, sorted, docs);
+      final Set<String> fields = getStoredFields();
+      for (long docAndIndex : sorted) {
+        final int index = (int) docAndIndex;
+        if (docs[index] == null) {
+          final int luceneDocId = luceneDocIds[index];
+          if (documentCache != null) {
+            docs[index] = docNC(luceneDocId, enableLazyFieldLoading ? fields : null);
+            documentCache.put(luceneDocId, docs[index]);
+          } else {
+            docs[index] = docNC(luceneDocId, fields);
+          }
+        }
+      }
+      return docs;
+    }
   }
 }
 
@@ -31,6 +31,10 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
@@ -55,6 +59,7 @@ import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.ThreadInterruptedException;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.common.SolrException.ErrorCode;
 import org.apache.solr.common.params.ModifiableSolrParams;
@@ -116,10 +121,14 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
 
   private final int queryResultWindowSize;
   private final int queryResultMaxDocsCached;
+  // executor and slices used to search this index concurrently, null if requests are searched on a single thread
+  private final Executor parallelSearchExecutor;
+  private final LeafSlice[] parallelSearchSlices;
   private final boolean useFilterForSortedQuery;
 
   private final boolean cachingEnabled;
   private final SolrCache<Query,DocSet> filterCache;
+  private final LRUQueryCache segmentFilterCache;
   private final SolrCache<QueryResultKey,DocList> queryResultCache;
   private final SolrCache<String,UnInvertedField> fieldValueCache;
 
@@ -271,6 +280,15 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
     this.queryResultWindowSize = solrConfig.queryResultWindowSize;
     this.queryResultMaxDocsCached = solrConfig.queryResultMaxDocsCached;
     this.useFilterForSortedQuery = solrConfig.useFilterForSortedQuery;
+    final LeafSlice[] slices = core.getParallelSearchExecutor() == null ? null
+        : slices(leafContexts, solrConfig.parallelSearchMaxDocsPerSlice, solrConfig.parallelSearchMaxSegmentsPerSlice);
+    if (slices != null && slices.length > 1) {
+      this.parallelSearchExecutor = core.getParallelSearchExecutor();
+      this.parallelSearchSlices = slices;
+    } else {
+      this.parallelSearchExecutor = null;
+      this.parallelSearchSlices = null;
+    }
 
     this.docFetcher = new SolrDocumentFetcher(this, solrConfig, enableCache);
 
@@ -282,6 +300,7 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
       if (fieldValueCache != null) clist.add(fieldValueCache);
       filterCache = solrConfig.filterCacheConfig == null ? null : solrConfig.filterCacheConfig.newInstance();
       if (filterCache != null) clist.add(filterCache);
+      segmentFilterCache = core.getSegmentFilterCache();
       queryResultCache = solrConfig.queryResultCacheConfig == null ? null
           : solrConfig.queryResultCacheConfig.newInstance();
       if (queryResultCache != null) clist.add(queryResultCache);
@@ -304,6 +323,7 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
       cacheList = clist.toArray(new SolrCache[clist.size()]);
     } else {
       this.filterCache = null;
+      this.segmentFilterCache = null;
       this.queryResultCache = null;
       this.fieldValueCache = null;
       this.cacheMap = NO_GENERIC_CACHES;
@@ -522,6 +542,38 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
     return filterCache;
   }
 
+  /**
+   * Returns the per-segment filter cache of the core, or null if there is none or caching is disabled for this
+   * searcher.
+   * @see SolrCore#getSegmentFilterCache()
+   */
+  public LRUQueryCache getSegmentFilterCache() {
+    return segmentFilterCache;
+  }
+
+  // DocSets are only created for filters, so there is no point in tracking usage before caching them
+  private static final QueryCachingPolicy CACHE_ALL_SEGMENT_FILTERS = new QueryCachingPolicy() {
+    @Override
+    public void onUse(Query query) {}
+
+    @Override
+    public boolean shouldCache(Query query) {
+      return true;
+    }
+  };
+
+  /**
+   * Like {@link #search(Query, Collector)}, but the matches of each segment are taken from, or added to, the
+   * per-segment filter cache. Segments whose results can't be cached, as told by
+   * {@link Weight#isCacheable(LeafReaderContext)}, are searched as usual. The collector must not need scores.
+   */
+  void searchWithSegmentFilterCache(Query query, Collector collector) throws IOException {
+    assert segmentFilterCache != null;
+    assert collector.scoreMode().needsScores() == false;
+    Weight weight = createWeight(rewrite(query), collector.scoreMode(), 1);
+    search(leafContexts, segmentFilterCache.doCache(weight, CACHE_ALL_SEGMENT_FILTERS), collector);
+  }
+
   //
   // Set default regenerators on filter and query caches if they don't have any
   //
@@ -1516,6 +1568,204 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
     }
   }
 
+  /**
+   * Like {@link #buildTopDocsCollector} but returns a manager whose collectors share the number of hits collected
+   * so far and the minimum competitive score, so that slices of the index can be collected concurrently. Rank
+   * queries are not supported.
+   */
+  @SuppressWarnings({"rawtypes"})
+  private CollectorManager<? extends TopDocsCollector, ? extends TopDocs> buildTopDocsCollectorManager(int len,
+      QueryCommand cmd) throws IOException {
+    assert cmd.getQuery() instanceof RankQuery == false;
+    int minNumFound = cmd.getMinExactCount();
+    if (null == cmd.getSort()) {
+      assert null == cmd.getCursorMark() : "have cursor but no sort";
+      return TopScoreDocCollector.createSharedManager(len, null, minNumFound);
+    } else {
+      final Sort weightedSort = weightSort(cmd.getSort());
+      final CursorMark cursor = cmd.getCursorMark();
+
+      final FieldDoc searchAfter = (null != cursor ? cursor.getSearchAfterFieldDoc() : null);
+      return TopFieldCollector.createSharedManager(weightedSort, len, searchAfter, minNumFound);
+    }
+  }
+
+  /**
+   * Whether this searcher has slices of the index to search concurrently with {@link #searchInParallel}.
+   */
+  boolean hasParallelSearchSlices() {
+    return parallelSearchExecutor != null;
+  }
+
+  /**
+   * Whether the given command may be collected by searching slices of the index concurrently. Post filters, rank
+   * queries, time limits and early termination all rely on a single collector seeing every hit, so such requests
+   * are searched on the request thread.
+   */
+  private boolean canSearchInParallel(QueryCommand cmd, ProcessedFilter pf) {
+    return parallelSearchExecutor != null
+        && pf.postFilter == null
+        && cmd.getQuery() instanceof RankQuery == false
+        && cmd.getTimeAllowed() <= 0
+        && cmd.getTerminateEarly() == false
+        && cmd.getSegmentTerminateEarly() == false;
+  }
+
+  /**
+   * Like {@link #search(Query, CollectorManager)}, but searches the slices of the index that were computed from
+   * the <code>parallelSearch</code> config with the executor of the core. The request thread searches the first
+   * slice, and then runs any slice that no pool thread picked up yet instead of waiting for it, so that requests
+   * still make progress when the pool is busy.
+   */
+  <C extends Collector, T> T searchInParallel(Query query, CollectorManager<C, T> collectorManager)
+      throws IOException {
+    assert parallelSearchExecutor != null;
+    final List<C> collectors = new ArrayList<>(parallelSearchSlices.length);
+    for (int i = 0; i < parallelSearchSlices.length; i++) {
+      collectors.add(collectorManager.newCollector());
+    }
+    final Weight weight = createWeight(rewrite(query), collectors.get(0).scoreMode(), 1);
+
+    final List<FutureTask<C>> tasks = new ArrayList<>(parallelSearchSlices.length);
+    for (int i = 0; i < parallelSearchSlices.length; i++) {
+      final List<LeafReaderContext> leaves = Arrays.asList(parallelSearchSlices[i].leaves);
+      final C collector = collectors.get(i);
+      tasks.add(new FutureTask<>(() -> {
+        search(leaves, weight, collector);
+        return collector;
+      }));
+    }
+    for (int i = 1; i < tasks.size(); i++) {
+      try {
+        parallelSearchExecutor.execute(tasks.get(i));
+      } catch (RejectedExecutionException e) {
+        // the core is closing, the slice is searched below on this thread
+      }
+    }
+
+    try {
+      for (FutureTask<C> task : tasks) {
+        task.run(); // no-op if the task has already been started by the executor
+        task.get();
+      }
+    } catch (InterruptedException e) {
+      throw new ThreadInterruptedException(e);
+    } catch (ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new SolrException(ErrorCode.SERVER_ERROR, cause);
+    } finally {
+      for (FutureTask<C> task : tasks) {
+        task.cancel(false);
+      }
+    }
+    return collectorManager.reduce(collectors);
+  }
+
+  /**
+   * Collects the top docs, and optionally the max score and the DocSet, of each slice of the index and merges them
+   * once all slices have been searched. The merged results are available from the manager after
+   * {@link #reduce(Collection)}.
+   */
+  private static final class ParallelCollectorManager
+      implements CollectorManager<ParallelCollectorManager.SliceCollector, Void> {
+    @SuppressWarnings({"rawtypes"})
+    private final CollectorManager topDocsManager; // null if only the DocSet is needed
+    private final boolean needScores;
+    private final int maxDoc; // -1 if no DocSet is needed
+
+    TopDocs topDocs;
+    float maxScore = Float.NaN;
+    DocSet docSet;
+
+    @SuppressWarnings({"rawtypes"})
+    ParallelCollectorManager(CollectorManager<? extends TopDocsCollector, ? extends TopDocs> topDocsManager,
+        boolean needScores, int maxDoc) {
+      assert topDocsManager != null || maxDoc >= 0;
+      this.topDocsManager = topDocsManager;
+      this.needScores = needScores;
+      this.maxDoc = maxDoc;
+    }
+
+    @Override
+    public SliceCollector newCollector() throws IOException {
+      return new SliceCollector(topDocsManager == null ? null : (TopDocsCollector<?>) topDocsManager.newCollector(),
+          needScores ? new MaxScoreCollector() : null,
+          maxDoc < 0 ? null : new DocSetCollector(maxDoc));
+    }
+
+    @Override
+    @SuppressWarnings({"unchecked"})
+    public Void reduce(Collection<SliceCollector> collectors) throws IOException {
+      final List<TopDocsCollector<?>> topCollectors = new ArrayList<>(collectors.size());
+      final List<DocSet> sets = new ArrayList<>(collectors.size());
+      for (SliceCollector collector : collectors) {
+        topCollectors.add(collector.topCollector);
+        if (collector.maxScoreCollector != null) {
+          float sliceMaxScore = collector.maxScoreCollector.getMaxScore();
+          if (Float.isNaN(maxScore) || sliceMaxScore > maxScore) {
+            maxScore = sliceMaxScore;
+          }
+        }
+        if (collector.setCollector != null) {
+          sets.add(collector.setCollector.getDocSet());
+        }
+      }
+      if (topDocsManager != null) {
+        topDocs = (TopDocs) topDocsManager.reduce(topCollectors);
+      }
+      if (maxDoc >= 0) {
+        docSet = unionOfDisjointSets(sets, maxDoc);
+      }
+      return null;
+    }
+
+    /** Each slice has its own segments, so the sets of the slices never intersect. */
+    private static DocSet unionOfDisjointSets(List<DocSet> sets, int maxDoc) {
+      int size = 0;
+      for (DocSet set : sets) {
+        size += set.size();
+      }
+      if (size <= DocSetUtil.smallSetSize(maxDoc)) {
+        final int[] docs = new int[size];
+        int pos = 0;
+        for (DocSet set : sets) {
+          for (DocIterator it = set.iterator(); it.hasNext(); ) {
+            docs[pos++] = it.nextDoc();
+          }
+        }
+        // slices are not ordered by doc id
+        Arrays.sort(docs);
+        return new SortedIntDocSet(docs);
+      }
+      final FixedBitSet bits = new FixedBitSet(maxDoc);
+      for (DocSet set : sets) {
+        set.addAllTo(bits);
+      }
+      return new BitDocSet(bits, size);
+    }
+
+    private static final class SliceCollector extends FilterCollector {
+      final TopDocsCollector<?> topCollector;
+      final MaxScoreCollector maxScoreCollector;
+      final DocSetCollector setCollector;
+
+      SliceCollector(TopDocsCollector<?> topCollector, MaxScoreCollector maxScoreCollector,
+          DocSetCollector setCollector) {
+        super(MultiCollector.wrap(topCollector, maxScoreCollector, setCollector));
+        this.topCollector = topCollector;
+        this.maxScoreCollector = maxScoreCollector;
+        this.setCollector = setCollector;
+      }
+    }
+  }
+
   private void getDocListNC(QueryResult qr, QueryCommand cmd) throws IOException {
     int len = cmd.getSupersetMaxDoc();
     int last = len;
@@ -1585,6 +1835,28 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
       // no docs on this page, so cursor doesn't change
       qr.setNextCursorMark(cmd.getCursorMark());
       hitsRelation = Relation.EQUAL_TO;
+    } else if (canSearchInParallel(cmd, pf)) {
+      final ParallelCollectorManager manager =
+          new ParallelCollectorManager(buildTopDocsCollectorManager(len, cmd), needScores, -1);
+      searchInParallel(query, manager);
+
+      TopDocs topDocs = manager.topDocs;
+      totalHits = (int) topDocs.totalHits.value;
+      hitsRelation = topDocs.totalHits.relation;
+      if (cmd.getSort() != null && needScores) {
+        TopFieldCollector.populateScores(topDocs.scoreDocs, this, query);
+      }
+      populateNextCursorMarkFromTopDocs(qr, cmd, topDocs);
+
+      maxScore = totalHits > 0 ? manager.maxScore : 0.0f;
+      nDocsReturned = topDocs.scoreDocs.length;
+      ids = new int[nDocsReturned];
+      scores = needScores ? new float[nDocsReturned] : null;
+      for (int i = 0; i < nDocsReturned; i++) {
+        ScoreDoc scoreDoc = topDocs.scoreDocs[i];
+        ids[i] = scoreDoc.doc;
+        if (scores != null) scores[i] = scoreDoc.score;
+      }
     } else {
       final TopDocsCollector<?> topCollector = buildTopDocsCollector(len, cmd);
       MaxScoreCollector maxScoreCollector = null;
@@ -1644,8 +1916,38 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
     ProcessedFilter pf = getProcessedFilter(cmd.getFilter(), cmd.getFilterList());
     final Query query = QueryUtils.combineQueryAndFilter(QueryUtils.makeQueryable(cmd.getQuery()), pf.filter);
 
-    // handle zero case...
-    if (lastDocRequested <= 0) {
+    if (canSearchInParallel(cmd, pf)) {
+      final ParallelCollectorManager manager = new ParallelCollectorManager(
+          lastDocRequested <= 0 ? null : buildTopDocsCollectorManager(len, cmd), needScores, maxDoc);
+      searchInParallel(query, manager);
+
+      set = DocSetUtil.getDocSet(manager.docSet, this);
+      totalHits = set.size();
+      if (manager.topDocs == null) {
+        nDocsReturned = 0;
+        ids = new int[nDocsReturned];
+        scores = new float[nDocsReturned];
+        // no docs on this page, so cursor doesn't change
+        qr.setNextCursorMark(cmd.getCursorMark());
+      } else {
+        TopDocs topDocs = manager.topDocs;
+        assert totalHits == topDocs.totalHits.value;
+        if (cmd.getSort() != null && needScores) {
+          TopFieldCollector.populateScores(topDocs.scoreDocs, this, query);
+        }
+        populateNextCursorMarkFromTopDocs(qr, cmd, topDocs);
+        nDocsReturned = topDocs.scoreDocs.length;
+        ids = new int[nDocsReturned];
+        scores = needScores ? new float[nDocsReturned] : null;
+        for (int i = 0; i < nDocsReturned; i++) {
+          ScoreDoc scoreDoc = topDocs.scoreDocs[i];
+          ids[i] = scoreDoc.doc;
+          if (scores != null) scores[i] = scoreDoc.score;
+        }
+      }
+      maxScore = totalHits > 0 ? manager.maxScore : 0.0f;
+    } else if (lastDocRequested <= 0) {
+      // handle zero case...
       final float[] topscore = new float[] {Float.NEGATIVE_INFINITY};
 
       Collector collector;
@@ -2009,7 +2311,7 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
     }
 
     // bit of a hack to tell if a set is sorted - do it better in the future.
-    boolean inOrder = set instanceof BitDocSet || set instanceof SortedIntDocSet;
+    boolean inOrder = set instanceof BitDocSet || set instanceof SortedIntDocSet || set instanceof OffHeapDocSet;
 
     @SuppressWarnings({"rawtypes"})
     TopDocsCollector topCollector = buildTopDocsCollector(nDocs, cmd);
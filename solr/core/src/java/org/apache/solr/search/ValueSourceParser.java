@@ -965,7 +965,8 @@ public abstract class ValueSourceParser implements NamedListInitializedPlugin {
     addParser("agg_unique", new ValueSourceParser() {
       @Override
       public ValueSource parse(FunctionQParser fp) throws SyntaxError {
-        return new UniqueAgg(fp.parseArg());
+        String field = fp.parseArg();
+        return fp.hasMoreArguments() ? new UniqueAgg(field, fp.parseInt()) : new UniqueAgg(field);
       }
     });
 
@@ -35,6 +35,7 @@ public class FacetField extends FacetRequestSorted {
   int cacheDf;  // 0 means "default", -1 means "never cache"
 
   // experimental - force perSeg collection when using dv method, currently for testing purposes only.
+  // With the uif method, un-inverts each segment on its own so unchanged segments are reused across searchers.
   Boolean perSeg;
 
   {
@@ -69,6 +70,10 @@ public class FacetField extends FacetRequestSorted {
     static FacetMethod DEFAULT_METHOD = SMART; // non-final for tests to vary
   }
 
+  private boolean isUIFPerSeg() {
+    return method == FacetMethod.UIF && Boolean.TRUE.equals(perSeg);
+  }
+
   @Override
   @SuppressWarnings("rawtypes")
   public FacetProcessor createFacetProcessor(FacetContext fcontext) {
@@ -78,7 +83,7 @@ public class FacetField extends FacetRequestSorted {
 
     if (fcontext.facetInfo != null) {
       // refinement... we will end up either skipping the entire facet, or doing calculating only specific facet buckets
-      if (multiToken && !sf.hasDocValues() && method!=FacetMethod.DV && sf.isUninvertible()) {
+      if (multiToken && !sf.hasDocValues() && method!=FacetMethod.DV && sf.isUninvertible() && !isUIFPerSeg()) {
         // Match the access method from the first phase.
         // It won't always matter, but does currently for an all-values bucket
         return new FacetFieldProcessorByArrayUIF(fcontext, this, sf);
@@ -143,6 +148,11 @@ public class FacetField extends FacetRequestSorted {
       return new FacetFieldProcessorByArrayDV(fcontext, this, sf);
     }
 
+    if (isUIFPerSeg()) {
+      // per-segment un-inverted values, cached per segment and exposed as docValues
+      return new FacetFieldProcessorByArrayDV(fcontext, this, sf);
+    }
+
     // Top-level multi-valued field cache (UIF)
     return new FacetFieldProcessorByArrayUIF(fcontext, this, sf);
   }
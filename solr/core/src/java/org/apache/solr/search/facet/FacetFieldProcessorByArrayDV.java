@@ -17,8 +17,13 @@
 package org.apache.solr.search.facet;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.apache.lucene.index.DocValues;
 import org.apache.lucene.index.LeafReaderContext;
@@ -30,8 +35,10 @@ import org.apache.lucene.search.DocIdSet;
 import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.LongValues;
+import org.apache.lucene.util.ThreadInterruptedException;
 import org.apache.lucene.util.UnicodeUtil;
 import org.apache.solr.common.SolrException;
+import org.apache.solr.core.SolrCore;
 import org.apache.solr.schema.SchemaField;
 import org.apache.solr.search.Filter;
 import org.apache.solr.uninverting.FieldCacheImpl;
@@ -121,6 +128,17 @@ class FacetFieldProcessorByArrayDV extends FacetFieldProcessorByArray {
     final List<LeafReaderContext> leaves = fcontext.searcher.getIndexReader().leaves();
     Filter filter = fcontext.base.getTopFilter();
 
+    // Segments that are counted per-segment don't depend on each other until their counts are mapped to global
+    // ords, so they can be counted by the threads that the core uses to search segments concurrently.
+    if (accumSeg && leaves.size() > 1) {
+      SolrCore core = fcontext.searcher.getCore();
+      ExecutorService executor = core == null ? null : core.getParallelSearchExecutor();
+      if (executor != null) {
+        collectPerSegInParallel(leaves, filter, executor);
+        return;
+      }
+    }
+
     for (int subIdx = 0; subIdx < leaves.size(); subIdx++) {
       LeafReaderContext subCtx = leaves.get(subIdx);
 
@@ -196,8 +214,20 @@ class FacetFieldProcessorByArrayDV extends FacetFieldProcessorByArray {
     }
      **/
 
+    countSegOrds(singleDv, disi, counts);
+    addSegCounts(counts, segMax, toGlobal);
+  }
+
+  private void collectPerSeg(SortedSetDocValues multiDv, DocIdSetIterator disi, LongValues toGlobal) throws IOException {
+    int segMax = (int)multiDv.getValueCount() + 1;
+    final int[] counts = getCountArr( segMax );
+
+    countSegOrds(multiDv, disi, counts);
+    addSegCounts(counts, segMax, toGlobal);
+  }
 
-    // calculate segment-local counts
+  /** Calculates segment-local counts: the count of a segment ord goes to <code>counts[segOrd + 1]</code>. */
+  private static void countSegOrds(SortedDocValues singleDv, DocIdSetIterator disi, int[] counts) throws IOException {
     int doc;
     if (singleDv instanceof FieldCacheImpl.SortedDocValuesImpl.Iter) {
       FieldCacheImpl.SortedDocValuesImpl.Iter fc = (FieldCacheImpl.SortedDocValuesImpl.Iter) singleDv;
@@ -211,41 +241,113 @@ class FacetFieldProcessorByArrayDV extends FacetFieldProcessorByArray {
         }
       }
     }
-
-    // convert segment-local counts to global counts
-    for (int i=1; i<segMax; i++) {
-      int segCount = counts[i];
-      if (segCount > 0) {
-        int slot = toGlobal == null ? (i - 1) : (int) toGlobal.get(i - 1);
-        countAcc.incrementCount(slot, segCount);
-      }
-    }
   }
 
-  private void collectPerSeg(SortedSetDocValues multiDv, DocIdSetIterator disi, LongValues toGlobal) throws IOException {
-    int segMax = (int)multiDv.getValueCount();
-    final int[] counts = getCountArr( segMax );
-
+  /** Calculates segment-local counts: the count of a segment ord goes to <code>counts[segOrd + 1]</code>. */
+  private static void countSegOrds(SortedSetDocValues multiDv, DocIdSetIterator disi, int[] counts) throws IOException {
     int doc;
     while ((doc = disi.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
       if (multiDv.advanceExact(doc)) {
         for(;;) {
           int segOrd = (int)multiDv.nextOrd();
           if (segOrd < 0) break;
-          counts[segOrd]++;
+          counts[segOrd + 1]++;
         }
       }
     }
+  }
 
-    for (int i=0; i<segMax; i++) {
+  /** Converts segment-local counts from {@link #countSegOrds} to global counts. */
+  private void addSegCounts(int[] counts, int segMax, LongValues toGlobal) {
+    for (int i=1; i<segMax; i++) {
       int segCount = counts[i];
       if (segCount > 0) {
-        int slot = toGlobal == null ? (i) : (int) toGlobal.get(i);
+        int slot = toGlobal == null ? (i - 1) : (int) toGlobal.get(i - 1);
         countAcc.incrementCount(slot, segCount);
       }
     }
   }
 
+  /**
+   * Like {@link #collectPerSeg}, but the segment-local counts of each segment are calculated by the given executor,
+   * in their own array. This thread adds them to the count accumulator in order as they complete, and counts any
+   * segment that no pool thread picked up yet itself, so that requests still make progress when the pool is busy.
+   */
+  private void collectPerSegInParallel(List<LeafReaderContext> leaves, Filter filter, ExecutorService executor)
+      throws IOException {
+    final List<FutureTask<int[]>> tasks = new ArrayList<>(leaves.size());
+    for (LeafReaderContext subCtx : leaves) {
+      // doc sets may expect their segments to be visited in order, so their doc id sets are taken on this thread
+      final DocIdSet dis = filter.getDocIdSet(subCtx, null); // solr docsets already exclude any deleted docs
+      tasks.add(new FutureTask<>(() -> countSegment(subCtx, dis)));
+    }
+    for (int i = 1; i < tasks.size(); i++) {
+      try {
+        executor.execute(tasks.get(i));
+      } catch (RejectedExecutionException e) {
+        // the core is closing, the segment is counted below on this thread
+      }
+    }
+
+    try {
+      for (int subIdx = 0; subIdx < tasks.size(); subIdx++) {
+        FutureTask<int[]> task = tasks.get(subIdx);
+        task.run(); // no-op if the task has already been started by the executor
+        int[] counts = task.get();
+        LongValues toGlobal = ordinalMap == null ? null : ordinalMap.getGlobalOrds(subIdx);
+        addSegCounts(counts, counts.length, toGlobal);
+      }
+    } catch (InterruptedException e) {
+      throw new ThreadInterruptedException(e);
+    } catch (ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, cause);
+    } finally {
+      for (FutureTask<int[]> task : tasks) {
+        task.cancel(false);
+      }
+    }
+  }
+
+  /** Returns the segment-local counts of a segment, see {@link #countSegOrds}. */
+  private int[] countSegment(LeafReaderContext subCtx, DocIdSet dis) throws IOException {
+    DocIdSetIterator disi = dis.iterator();
+
+    SortedDocValues singleDv = null;
+    SortedSetDocValues multiDv = null;
+    if (multiValuedField) {
+      multiDv = subCtx.reader().getSortedSetDocValues(sf.getName());
+      if (multiDv == null) {
+        multiDv = DocValues.emptySortedSet();
+      }
+      if (unwrap_singleValued_multiDv) {
+        singleDv = DocValues.unwrapSingleton(multiDv);
+      }
+    } else {
+      singleDv = subCtx.reader().getSortedDocValues(sf.getName());
+      if (singleDv == null) {
+        singleDv = DocValues.emptySorted();
+      }
+    }
+
+    final int[] counts;
+    if (singleDv != null) {
+      counts = new int[singleDv.getValueCount() + 1];
+      countSegOrds(singleDv, disi, counts);
+    } else {
+      counts = new int[(int) multiDv.getValueCount() + 1];
+      countSegOrds(multiDv, disi, counts);
+    }
+    return counts;
+  }
+
   private int[] reuse;
   private int[] getCountArr(int maxNeeded) {
     if (reuse == null) {
@@ -30,6 +30,11 @@ import org.apache.solr.util.hll.HLLType;
 
 public class HLLAgg extends StrAggValueSource {
   public static Long NO_VALUES = 0L;
+  /**
+   * The number of distinct values of a bucket that are counted exactly, past this only a HyperLogLog of them is
+   * kept. This is about as many ords as fit in the memory of a HyperLogLog.
+   */
+  static final int MAX_EXACT = 1024;
 
   protected HLLFactory factory;
 
@@ -56,16 +61,16 @@ public class HLLAgg extends StrAggValueSource {
       if (sf.getType().isPointField()) {
         return new SortedNumericAcc(fcontext, getArg(), numSlots);
       } else if (sf.hasDocValues()) {
-        return new UniqueMultiDvSlotAcc(fcontext, sf, numSlots, fcontext.isShard() ? factory : null);
+        return new UniqueMultiDvSlotAcc(fcontext, sf, numSlots, fcontext.isShard() ? factory : null, MAX_EXACT);
       } else {
-        return new UniqueMultivaluedSlotAcc(fcontext, sf, numSlots, fcontext.isShard() ? factory : null);
+        return new UniqueMultivaluedSlotAcc(fcontext, sf, numSlots, fcontext.isShard() ? factory : null, MAX_EXACT);
       }
     } else {
       if (sf.getType().getNumberType() != null) {
         // always use hll here since we don't know how many values there are?
         return new NumericAcc(fcontext, getArg(), numSlots);
       } else {
-        return new UniqueSinglevaluedSlotAcc(fcontext, sf, numSlots, fcontext.isShard() ? factory : null);
+        return new UniqueSinglevaluedSlotAcc(fcontext, sf, numSlots, fcontext.isShard() ? factory : null, MAX_EXACT);
       }
     }
   }
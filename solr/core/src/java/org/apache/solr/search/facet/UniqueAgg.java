@@ -20,25 +20,45 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
 import java.util.Set;
 
 import org.apache.lucene.index.DocValues;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.NumericDocValues;
 import org.apache.lucene.index.SortedNumericDocValues;
+import org.apache.solr.common.util.Hash;
 import org.apache.solr.common.util.SimpleOrderedMap;
 import org.apache.solr.schema.SchemaField;
 import org.apache.solr.util.LongIterator;
 import org.apache.solr.util.LongSet;
+import org.apache.solr.util.hll.HLL;
 
 public class UniqueAgg extends StrAggValueSource {
   public static final String UNIQUE = "unique";
 
   // internal constants used for aggregating values from multiple shards
   static final String VALS = "vals";
+  static final String HLL_BYTES = "hll";
+
+  /** The number of distinct values past which the count of a bucket is estimated, 0 to always count them. */
+  protected final int maxExact;
 
   public UniqueAgg(String field) {
+    this(field, 0);
+  }
+
+  /**
+   * @param maxExact the number of distinct values of a bucket past which they are not tracked anymore, but only
+   *                 estimated with a HyperLogLog. This bounds the memory that each bucket uses. 0 to always count
+   *                 them exactly.
+   */
+  public UniqueAgg(String field, int maxExact) {
     super(UNIQUE, field);
+    if (maxExact < 0) {
+      throw new IllegalArgumentException("maxExact must not be negative: " + maxExact);
+    }
+    this.maxExact = maxExact;
   }
 
   @Override
@@ -46,21 +66,36 @@ public class UniqueAgg extends StrAggValueSource {
     SchemaField sf = fcontext.qcontext.searcher().getSchema().getField(getArg());
     if (sf.multiValued() || sf.getType().multiValuedFieldCache()) {
       if (sf.getType().isPointField()) {
-        return new SortedNumericAcc(fcontext, getArg(), numSlots);
+        return new SortedNumericAcc(fcontext, getArg(), numSlots, maxExact);
       } else if (sf.hasDocValues()) {
-        return new UniqueMultiDvSlotAcc(fcontext, sf, numSlots, null);
+        return new UniqueMultiDvSlotAcc(fcontext, sf, numSlots, null, maxExact);
       } else {
-        return new UniqueMultivaluedSlotAcc(fcontext, sf, numSlots, null);
+        return new UniqueMultivaluedSlotAcc(fcontext, sf, numSlots, null, maxExact);
       }
     } else {
       if (sf.getType().getNumberType() != null) {
-        return new NumericAcc(fcontext, getArg(), numSlots);
+        return new NumericAcc(fcontext, getArg(), numSlots, maxExact);
       } else {
-        return new UniqueSinglevaluedSlotAcc(fcontext, sf, numSlots, null);
+        return new UniqueSinglevaluedSlotAcc(fcontext, sf, numSlots, null, maxExact);
       }
     }
   }
 
+  @Override
+  public boolean equals(Object o) {
+    return super.equals(o) && maxExact == ((UniqueAgg) o).maxExact;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(super.hashCode(), maxExact);
+  }
+
+  @Override
+  public String description() {
+    return maxExact == 0 ? super.description() : name() + "(" + arg + "," + maxExact + ")";
+  }
+
   @Override
   public FacetMerger createFacetMerger(Object prototype) {
     return new Merger();
@@ -73,6 +108,7 @@ public class UniqueAgg extends StrAggValueSource {
     long sumAdded;
     long shardsMissingSum;
     long shardsMissingMax;
+    HLL aggregate; // union of the HLLs of shards, if they have one
 
     @Override
     @SuppressWarnings({"unchecked", "rawtypes"})
@@ -95,10 +131,25 @@ public class UniqueAgg extends StrAggValueSource {
       shardsMissingSum += unique - valsListed;
       shardsMissingMax = Math.max(shardsMissingMax, unique - valsListed);
       // TODO: somehow get & use the count in the bucket?
+
+      byte[] serialized = (byte[]) map.get(HLL_BYTES);
+      if (serialized != null) {
+        HLL subHLL = HLL.fromBytes(serialized);
+        if (aggregate == null) {
+          aggregate = subHLL;
+        } else {
+          aggregate.union(subHLL);
+        }
+      }
     }
 
     private long getLong() {
       if (answer >= 0) return answer;
+      if (aggregate != null && shardsMissingSum > 0) {
+        // some shards didn't list all their values, but all shards sent the HLL of their values
+        answer = aggregate.cardinality();
+        return answer;
+      }
       answer = values == null ? 0 : values.size();
       if (answer == 0) {
         // either a real "0", or no values returned from shards
@@ -126,29 +177,67 @@ public class UniqueAgg extends StrAggValueSource {
 
   static abstract class BaseNumericAcc extends DocValuesAcc {
     LongSet[] sets;
+    final int maxExact;
+    HLL[] hlls; // slots that have more than maxExact values
+    final LongSet scratch = new LongSet(16);
 
-    public BaseNumericAcc(FacetContext fcontext, String field, int numSlots) throws IOException {
+    public BaseNumericAcc(FacetContext fcontext, String field, int numSlots, int maxExact) throws IOException {
       super(fcontext, fcontext.qcontext.searcher().getSchema().getField(field));
       sets = new LongSet[numSlots];
+      this.maxExact = maxExact;
+      if (maxExact > 0) {
+        hlls = new HLL[numSlots];
+      }
     }
 
     @Override
     public void reset() {
       sets = new LongSet[sets.length];
+      if (hlls != null) {
+        hlls = new HLL[hlls.length];
+      }
     }
 
     @Override
     public void resize(Resizer resizer) {
       sets = resizer.resize(sets, null);
+      if (hlls != null) {
+        hlls = resizer.resize(hlls, null);
+      }
     }
 
     @Override
     protected void collectValues(int doc, int slot) throws IOException {
+      if (hlls != null && hlls[slot] != null) {
+        scratch.clear();
+        collectValues(doc, scratch);
+        LongIterator iter = scratch.iterator();
+        while (iter.hasNext()) {
+          hlls[slot].addRaw(Hash.fmix64(iter.next()));
+        }
+        return;
+      }
       LongSet set = sets[slot];
       if (set == null) {
         set = sets[slot] = new LongSet(16);
       }
       collectValues(doc, set);
+      if (maxExact > 0 && set.cardinality() > maxExact) {
+        hlls[slot] = toHLL(set);
+        sets[slot] = null;
+      }
+    }
+
+    /** Values are hashed the same way on every shard, so that the HLLs of shards can be merged. */
+    private static HLL toHLL(LongSet set) {
+      HLL hll = new HLLAgg.HLLFactory().getHLL();
+      if (set != null) {
+        LongIterator iter = set.iterator();
+        while (iter.hasNext()) {
+          hll.addRaw(Hash.fmix64(iter.next()));
+        }
+      }
+      return hll;
     }
 
     protected abstract void collectValues(int doc, LongSet set) throws IOException;
@@ -174,6 +263,9 @@ public class UniqueAgg extends StrAggValueSource {
      * If value doesn't exist for slot then returns 0
      */
     private int getCardinality(int slot) {
+      if (hlls != null && hlls[slot] != null) {
+        return (int) Math.min(hlls[slot].cardinality(), Integer.MAX_VALUE);
+      }
       LongSet set = sets[slot];
       return set == null ? 0 : set.cardinality();
     }
@@ -186,7 +278,15 @@ public class UniqueAgg extends StrAggValueSource {
       SimpleOrderedMap map = new SimpleOrderedMap();
       map.add(UNIQUE, unique);
 
-      int maxExplicit=100;
+      int maxExplicit=UniqueSlotAcc.MAX_EXPLICIT;
+      if (maxExact > 0 && unique > 0) {
+        // values may be on several shards, so the merger unions the HLLs of shards unless all of them list their values
+        map.add(HLL_BYTES, (hlls[slot] != null ? hlls[slot] : toHLL(set)).toBytes());
+        if (hlls[slot] != null || unique > maxExplicit) {
+          return map;
+        }
+      }
+
       // TODO: make configurable
       // TODO: share values across buckets
       if (unique <= maxExplicit) {
@@ -214,8 +314,8 @@ public class UniqueAgg extends StrAggValueSource {
   static class NumericAcc extends BaseNumericAcc {
     NumericDocValues values;
 
-    public NumericAcc(FacetContext fcontext, String field, int numSlots) throws IOException {
-      super(fcontext, field, numSlots);
+    public NumericAcc(FacetContext fcontext, String field, int numSlots, int maxExact) throws IOException {
+      super(fcontext, field, numSlots, maxExact);
     }
 
     @Override
@@ -237,8 +337,8 @@ public class UniqueAgg extends StrAggValueSource {
   static class SortedNumericAcc extends BaseNumericAcc {
     SortedNumericDocValues values;
 
-    public SortedNumericAcc(FacetContext fcontext, String field, int numSlots) throws IOException {
-      super(fcontext, field, numSlots);
+    public SortedNumericAcc(FacetContext fcontext, String field, int numSlots, int maxExact) throws IOException {
+      super(fcontext, field, numSlots, maxExact);
     }
 
     @Override
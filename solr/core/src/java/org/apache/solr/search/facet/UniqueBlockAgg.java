@@ -29,7 +29,7 @@ public abstract class UniqueBlockAgg extends UniqueAgg {
 
     protected UniqueBlockSlotAcc(FacetContext fcontext, SchemaField field, int numSlots)
         throws IOException { //
-      super(fcontext, field, /*numSlots suppressing inherited accumulator */0, null);
+      super(fcontext, field, /*numSlots suppressing inherited accumulator */0, null, 0);
       counts = new int[numSlots];
       lastSeenValuesPerSlot = new int[numSlots];
       Arrays.fill(lastSeenValuesPerSlot, Integer.MIN_VALUE);
@@ -25,7 +25,6 @@ import org.apache.lucene.index.MultiDocValues;
 import org.apache.lucene.index.OrdinalMap;
 import org.apache.lucene.index.SortedSetDocValues;
 import org.apache.lucene.util.BytesRef;
-import org.apache.lucene.util.FixedBitSet;
 import org.apache.lucene.util.LongValues;
 import org.apache.solr.schema.SchemaField;
 
@@ -36,8 +35,8 @@ class UniqueMultiDvSlotAcc extends UniqueSlotAcc {
   LongValues toGlobal;
   SortedSetDocValues subDv;
 
-  public UniqueMultiDvSlotAcc(FacetContext fcontext, SchemaField field, int numSlots, HLLAgg.HLLFactory factory) throws IOException {
-    super(fcontext, field, numSlots, factory);
+  public UniqueMultiDvSlotAcc(FacetContext fcontext, SchemaField field, int numSlots, HLLAgg.HLLFactory factory, int maxExact) throws IOException {
+    super(fcontext, field, numSlots, factory, maxExact);
   }
 
   @Override
@@ -76,16 +75,10 @@ class UniqueMultiDvSlotAcc extends UniqueSlotAcc {
 
       int segOrd = (int) subDv.nextOrd();
       assert segOrd >= 0;
-      
-      FixedBitSet bits = arr[slotNum];
-      if (bits == null) {
-        bits = new FixedBitSet(nTerms);
-        arr[slotNum] = bits;
-      }
 
       do {
         int ord = toGlobal == null ? segOrd : (int) toGlobal.get(segOrd);
-        bits.set(ord);
+        collectOrdToSlot(slotNum, ord);
         segOrd = (int) subDv.nextOrd();
       } while (segOrd >= 0);
     }
@@ -21,7 +21,7 @@ import java.io.IOException;
 import java.util.function.IntFunction;
 
 import org.apache.lucene.util.BytesRef;
-import org.apache.lucene.util.FixedBitSet;
+import org.apache.solr.common.SolrException;
 import org.apache.solr.schema.SchemaField;
 import org.apache.solr.search.SolrIndexSearcher;
 
@@ -29,8 +29,8 @@ class UniqueMultivaluedSlotAcc extends UniqueSlotAcc implements UnInvertedField.
   private UnInvertedField uif;
   private UnInvertedField.DocToTerm docToTerm;
 
-  public UniqueMultivaluedSlotAcc(FacetContext fcontext, SchemaField field, int numSlots, HLLAgg.HLLFactory factory) throws IOException {
-    super(fcontext, field, numSlots, factory);
+  public UniqueMultivaluedSlotAcc(FacetContext fcontext, SchemaField field, int numSlots, HLLAgg.HLLFactory factory, int maxExact) throws IOException {
+    super(fcontext, field, numSlots, factory, maxExact);
     SolrIndexSearcher searcher = fcontext.qcontext.searcher();
     uif = UnInvertedField.getUnInvertedField(field.getName(), searcher);
     docToTerm = uif.new DocToTerm();
@@ -43,20 +43,20 @@ class UniqueMultivaluedSlotAcc extends UniqueSlotAcc implements UnInvertedField.
     return docToTerm.lookupOrd(ord);
   }
 
-  private FixedBitSet bits;  // bits for the current slot, only set for the callback
+  private int slot;  // the current slot, only set for the callback
 
   @Override
   public void call(int termNum) {
-    bits.set(termNum);
+    try {
+      collectOrdToSlot(slot, termNum);
+    } catch (IOException e) {
+      throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, e);
+    }
   }
 
   @Override
   public void collect(int doc, int slotNum, IntFunction<SlotContext> slotContext) throws IOException {
-    bits = arr[slotNum];
-    if (bits == null) {
-      bits = new FixedBitSet(nTerms);
-      arr[slotNum] = bits;
-    }
+    slot = slotNum;
     docToTerm.getBigTerms(doc + currentDocBase, this);  // this will call back to our Callback.call(int termNum)
     docToTerm.getSmallTerms(doc + currentDocBase, this);
   }
@@ -18,8 +18,11 @@ package org.apache.solr.search.facet;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+import com.carrotsearch.hppc.IntHashSet;
+import com.carrotsearch.hppc.cursors.IntCursor;
 import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.FixedBitSet;
@@ -28,17 +31,50 @@ import org.apache.solr.common.util.SimpleOrderedMap;
 import org.apache.solr.schema.SchemaField;
 import org.apache.solr.util.hll.HLL;
 
+/**
+ * Counts the distinct ords of each slot. A slot starts with a hash set of its ords. Once it has too many of them,
+ * it either switches to a bitset over all ords, which keeps the count exact, or, if <code>maxExact</code> is set,
+ * to a {@link HLL} past <code>maxExact</code> ords, which bounds the memory of the slot but makes the count an
+ * estimate.
+ */
 abstract class UniqueSlotAcc extends SlotAcc {
+  /** Slots with fewer ords than this keep them in a hash set, even if a bitset would be smaller. */
+  private static final int MIN_SPARSE_SIZE = 16;
+  /** Number of values listed in shard responses of unique(). */
+  static final int MAX_EXPLICIT = 100;
+
   HLLAgg.HLLFactory factory;
   SchemaField field;
   FixedBitSet[] arr;
   int[] counts;  // populated with the cardinality once
   int nTerms;
 
-  public UniqueSlotAcc(FacetContext fcontext, SchemaField field, int numSlots, HLLAgg.HLLFactory factory) throws IOException {
+  /** The ords of slots that have few of them. */
+  IntHashSet[] sparse;
+  /** Slots that have more than {@link #maxExact} ords. */
+  HLL[] hlls;
+  /** The number of distinct ords past which a slot is only estimated, or 0 to always count them exactly. */
+  final int maxExact;
+
+  // a small cache of the hashes of the values of ords, see termHash
+  private int[] hashedOrds;
+  private long[] hashes;
+  private final Hash.LongPair hashResult = new Hash.LongPair();
+
+  /**
+   * @param factory creates the HLLs that shards return, or null to return the values of slots
+   * @param maxExact the number of distinct values past which the values of a slot are only estimated, 0 to count
+   *                 them exactly
+   */
+  public UniqueSlotAcc(FacetContext fcontext, SchemaField field, int numSlots, HLLAgg.HLLFactory factory, int maxExact) throws IOException {
     super(fcontext);
     this.factory = factory;
+    this.maxExact = maxExact;
     arr = new FixedBitSet[numSlots];
+    sparse = new IntHashSet[numSlots];
+    if (maxExact > 0) {
+      hlls = new HLL[numSlots];
+    }
     this.field = field;
   }
 
@@ -49,6 +85,85 @@ abstract class UniqueSlotAcc extends SlotAcc {
       if (bits == null) continue;
       bits.clear(0, bits.length());
     }
+    for (IntHashSet set : sparse) {
+      if (set == null) continue;
+      set.clear();
+    }
+    if (hlls != null) {
+      Arrays.fill(hlls, null);
+    }
+  }
+
+  protected void collectOrdToSlot(int slotNum, int ord) throws IOException {
+    if (hlls != null && hlls[slotNum] != null) {
+      hlls[slotNum].addRaw(hash(ord));
+      return;
+    }
+    FixedBitSet bits = arr[slotNum];
+    if (bits != null) {
+      bits.set(ord);
+      return;
+    }
+    IntHashSet set = sparse[slotNum];
+    if (set == null) {
+      set = sparse[slotNum] = new IntHashSet();
+    }
+    if (set.add(ord) == false) {
+      return;
+    }
+    if (maxExact > 0) {
+      // the threshold may be below MIN_SPARSE_SIZE
+      if (set.size() > maxExact) {
+        toHLL(slotNum, set);
+      }
+    } else if (set.size() > MIN_SPARSE_SIZE && set.size() > nTerms >>> 7) {
+      // the hash set uses more memory than a bitset from here on
+      bits = arr[slotNum] = new FixedBitSet(nTerms);
+      for (IntCursor cursor : set) {
+        bits.set(cursor.value);
+      }
+      sparse[slotNum] = null;
+    }
+  }
+
+  private void toHLL(int slotNum, IntHashSet set) throws IOException {
+    HLL hll = newHLL();
+    for (IntCursor cursor : set) {
+      hll.addRaw(hash(cursor.value));
+    }
+    hlls[slotNum] = hll;
+    sparse[slotNum] = null;
+  }
+
+  private HLL newHLL() {
+    return (factory == null ? new HLLAgg.HLLFactory() : factory).getHLL();
+  }
+
+  /** The hash of an ord that is added to the HLL of a slot. */
+  private long hash(int ord) throws IOException {
+    if (fcontext.isShard() == false) {
+      // only this request counts the values, so their ords identify them
+      return Hash.fmix64(ord);
+    }
+    // HLLs of shards are merged, so they need the hashes of the values, which are the same on every shard
+    return termHash(ord);
+  }
+
+  private long termHash(int ord) throws IOException {
+    if (hashes == null) {
+      int size = Math.max(1, Integer.highestOneBit(Math.min(nTerms, 1 << 16)));
+      hashedOrds = new int[size];
+      Arrays.fill(hashedOrds, -1);
+      hashes = new long[size];
+    }
+    final int i = ord & (hashes.length - 1);
+    if (hashedOrds[i] != ord) {
+      BytesRef val = lookupOrd(ord);
+      Hash.murmurhash3_x64_128(val.bytes, val.offset, val.length, 0, hashResult);
+      hashedOrds[i] = ord;
+      hashes[i] = hashResult.val1;
+    }
+    return hashes[i];
   }
 
   @Override
@@ -68,69 +183,100 @@ abstract class UniqueSlotAcc extends SlotAcc {
     if (counts != null) {  // will only be pre-populated if this was used for sorting.
       res = counts[slot];
     } else {
-      FixedBitSet bs = arr[slot];
-      res = bs == null ? 0 : bs.cardinality();
+      res = getCardinality(slot);
     }
     return res;
   }
 
-  @SuppressWarnings({"unchecked", "rawtypes"})
-  private Object getShardHLL(int slot) throws IOException {
+  private int getCardinality(int slot) {
+    if (hlls != null && hlls[slot] != null) {
+      return (int) Math.min(hlls[slot].cardinality(), Integer.MAX_VALUE);
+    }
+    FixedBitSet bs = arr[slot];
+    if (bs != null) {
+      return bs.cardinality();
+    }
+    IntHashSet set = sparse[slot];
+    return set == null ? 0 : set.size();
+  }
+
+  /** Returns the ords of a slot in increasing order, at most max of them. The slot must not be in {@link #hlls}. */
+  private int[] getOrds(int slot, int max) {
+    assert hlls == null || hlls[slot] == null;
     FixedBitSet ords = arr[slot];
-    if (ords == null) return HLLAgg.NO_VALUES;
-
-    HLL hll = factory.getHLL();
-    long maxOrd = ords.length();
-    Hash.LongPair hashResult = new Hash.LongPair();
-    for(int ord=-1; ++ord < maxOrd;) {
-      ord = ords.nextSetBit(ord);
-      if (ord == DocIdSetIterator.NO_MORE_DOCS) break;
-      BytesRef val = lookupOrd(ord);
-      // way to avoid recomputing hash across slots?  Prob not worth space
-      Hash.murmurhash3_x64_128(val.bytes, val.offset, val.length, 0, hashResult);
+    if (ords != null) {
+      int[] res = new int[Math.min(ords.cardinality(), max)];
+      int maxOrd = ords.length();
+      for (int i = 0, ord = 0; i < res.length && ord < maxOrd; ++i, ++ord) {
+        ord = ords.nextSetBit(ord);
+        if (ord == DocIdSetIterator.NO_MORE_DOCS) break;
+        res[i] = ord;
+      }
+      return res;
+    }
+    IntHashSet set = sparse[slot];
+    if (set == null) {
+      return new int[0];
+    }
+    int[] res = set.toArray();
+    Arrays.sort(res);
+    return res.length <= max ? res : Arrays.copyOf(res, max);
+  }
+
+  /** Returns the HLL of the values of a slot, hashed the same way on every shard so that shard HLLs can be merged. */
+  private HLL getSlotHLL(int slot) throws IOException {
+    HLL hll = hlls == null ? null : hlls[slot];
+    if (hll == null) {
+      hll = newHLL();
       // idea: if the set is small enough, just send the hashes?  We can add at the top
       // level or even just do a hash table at the top level.
-      hll.addRaw(hashResult.val1);
+      for (int ord : getOrds(slot, Integer.MAX_VALUE)) {
+        hll.addRaw(termHash(ord));
+      }
     }
+    return hll;
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private Object getShardHLL(int slot) throws IOException {
+    if (getCardinality(slot) == 0) return HLLAgg.NO_VALUES;
 
     SimpleOrderedMap map = new SimpleOrderedMap();
-    map.add("hll", hll.toBytes());
+    map.add("hll", getSlotHLL(slot).toBytes());
     return map;
   }
 
   @SuppressWarnings({"unchecked", "rawtypes"})
   private Object getShardValue(int slot) throws IOException {
     if (factory != null) return getShardHLL(slot);
-    FixedBitSet ords = arr[slot];
     int unique;
     if (counts != null) {
       unique = counts[slot];
     } else {
-      unique = ords==null ? 0 : ords.cardinality();
+      unique = getCardinality(slot);
     }
 
     SimpleOrderedMap map = new SimpleOrderedMap();
     map.add("unique", unique);
     map.add("nTerms", nTerms);
 
-    int maxExplicit=100;
     // TODO: make configurable
     // TODO: share values across buckets
     if (unique > 0) {
-
-      List lst = new ArrayList( Math.min(unique, maxExplicit) );
-
-      int maxOrd = ords.length();
-      if (maxOrd > 0) {
-        for (int ord=0; lst.size() < maxExplicit;) {
-          ord = ords.nextSetBit(ord);
-          if (ord == DocIdSetIterator.NO_MORE_DOCS) break;
-          BytesRef val = lookupOrd(ord);
-          Object o = field.getType().toObject(field, val);
-          lst.add(o);
-          if (++ord >= maxOrd) break;
+      if (maxExact > 0) {
+        // values may be on several shards, so the merger unions the HLLs of shards unless all of them list their values
+        map.add(UniqueAgg.HLL_BYTES, getSlotHLL(slot).toBytes());
+        if (hlls[slot] != null || unique > MAX_EXPLICIT) {
+          return map;
         }
       }
+      int[] ords = getOrds(slot, MAX_EXPLICIT);
+      List lst = new ArrayList(ords.length);
+      for (int ord : ords) {
+        BytesRef val = lookupOrd(ord);
+        Object o = field.getType().toObject(field, val);
+        lst.add(o);
+      }
 
       map.add("vals", lst);
     }
@@ -144,8 +290,7 @@ abstract class UniqueSlotAcc extends SlotAcc {
   public void calcCounts() {
     counts = new int[arr.length];
     for (int i=0; i<arr.length; i++) {
-      FixedBitSet bs = arr[i];
-      counts[i] = bs == null ? 0 : bs.cardinality();
+      counts[i] = getCardinality(i);
     }
   }
 
@@ -160,8 +305,12 @@ abstract class UniqueSlotAcc extends SlotAcc {
   @Override
   public void resize(Resizer resizer) {
     arr = resizer.resize(arr, null);
+    sparse = resizer.resize(sparse, null);
+    if (hlls != null) {
+      hlls = resizer.resize(hlls, null);
+    }
     if (counts != null) {
       counts = resizer.resize(counts, 0);
     }
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search.join;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Objects;
+
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.search.ConstantScoreScorer;
+import org.apache.lucene.search.ConstantScoreWeight;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.QueryVisitor;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.TwoPhaseIterator;
+import org.apache.lucene.search.Weight;
+
+/**
+ * Matches documents whose value in a single-valued string field might be in a {@link JoinKeyBloomFilter}.
+ * <br>Used by the cross collection join to only fetch the join keys that may exist in the local collection.
+ */
+public class BloomFilterQuery extends Query {
+
+  protected final String field;
+  protected final JoinKeyBloomFilter filter;
+
+  public BloomFilterQuery(String field, JoinKeyBloomFilter filter) {
+    this.field = field;
+    this.filter = filter;
+  }
+
+  @Override
+  public Weight createWeight(IndexSearcher searcher, ScoreMode scoreMode, float boost) throws IOException {
+    return new ConstantScoreWeight(this, boost) {
+
+      @Override
+      public boolean isCacheable(LeafReaderContext context) {
+        return DocValues.isCacheable(context, field);
+      }
+
+      @Override
+      public Scorer scorer(LeafReaderContext context) throws IOException {
+        SortedDocValues docValues = DocValues.getSorted(context.reader(), field);
+        // each distinct value only needs to be tested once
+        byte[] ordMatches = new byte[docValues.getValueCount()];
+
+        TwoPhaseIterator iterator = new TwoPhaseIterator(docValues) {
+          @Override
+          public boolean matches() throws IOException {
+            int ord = docValues.ordValue();
+            if (ordMatches[ord] == 0) {
+              ordMatches[ord] = (byte) (filter.mightContain(docValues.lookupOrd(ord)) ? 1 : 2);
+            }
+            return ordMatches[ord] == 1;
+          }
+
+          @Override
+          public float matchCost() {
+            return 10 + filter.getNumHashes();
+          }
+        };
+
+        return new ConstantScoreScorer(this, boost, scoreMode, iterator);
+      }
+    };
+  }
+
+  @Override
+  public void visit(QueryVisitor visitor) {
+    visitor.visitLeaf(this);
+  }
+
+  @Override
+  public String toString(String field) {
+    return String.format(Locale.ROOT, "{!bloom_filter f=%s k=%d}%s", this.field, filter.getNumHashes(), filter.toBase64());
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    return sameClassAs(other) &&
+            equalsTo(getClass().cast(other));
+  }
+
+  private boolean equalsTo(BloomFilterQuery other) {
+    return Objects.equals(field, other.field) &&
+            Objects.equals(filter, other.filter);
+  }
+
+  @Override
+  public int hashCode() {
+    final int prime = 31;
+    int result = classHash();
+    result = prime * result + Objects.hashCode(field);
+    result = prime * result + Objects.hashCode(filter);
+    return result;
+  }
+}
@@ -39,12 +39,17 @@ public class CrossCollectionJoinQParser extends QParser {
   public static final String FROM = "from";
   public static final String TO = "to";
   public static final String ROUTED_BY_JOIN_KEY = "routed";
+  public static final String BLOOM_FILTER = "bloomFilter";
+  public static final String BLOOM_FILTER_MAX_KB = "bloomFilterMaxKB";
   public static final String TTL = "ttl";
 
   public static final int TTL_DEFAULT = 60 * 60; // in seconds
+  // the filter is sent base64 encoded, which must stay below the default formdataUploadLimitInKB of 2048
+  public static final int BLOOM_FILTER_MAX_KB_DEFAULT = 1024;
 
   private static final Set<String> OWN_PARAMS = new HashSet<>(Arrays.asList(
-          QueryParsing.TYPE, QueryParsing.V, ZK_HOST, SOLR_URL, FROM_INDEX, FROM, TO, ROUTED_BY_JOIN_KEY, TTL));
+          QueryParsing.TYPE, QueryParsing.V, ZK_HOST, SOLR_URL, FROM_INDEX, FROM, TO, ROUTED_BY_JOIN_KEY, BLOOM_FILTER,
+          BLOOM_FILTER_MAX_KB, TTL));
 
   private final String routerField;
   private final Set<String> allowSolrUrls;
@@ -77,6 +82,8 @@ public class CrossCollectionJoinQParser extends QParser {
     String toField = localParams.get(TO);
 
     boolean routedByJoinKey = localParams.getBool(ROUTED_BY_JOIN_KEY, toField.equals(routerField));
+    boolean bloomFilter = localParams.getBool(BLOOM_FILTER, false);
+    int bloomFilterMaxKB = localParams.getInt(BLOOM_FILTER_MAX_KB, BLOOM_FILTER_MAX_KB_DEFAULT);
     int ttl = localParams.getInt(TTL, TTL_DEFAULT);
 
     ModifiableSolrParams otherParams = new ModifiableSolrParams();
@@ -87,6 +94,7 @@ public class CrossCollectionJoinQParser extends QParser {
       }
     }
 
-    return new CrossCollectionJoinQuery(query, zkHost, solrUrl, collection, fromField, toField, routedByJoinKey, ttl, otherParams);
+    return new CrossCollectionJoinQuery(query, zkHost, solrUrl, collection, fromField, toField, routedByJoinKey, bloomFilter,
+        bloomFilterMaxKB, ttl, otherParams);
   }
 }
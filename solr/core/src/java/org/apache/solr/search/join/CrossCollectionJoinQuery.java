@@ -21,8 +21,10 @@ import java.io.IOException;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.PostingsEnum;
 import org.apache.lucene.index.Terms;
@@ -37,6 +39,7 @@ import org.apache.lucene.search.QueryVisitor;
 import org.apache.lucene.search.ScoreMode;
 import org.apache.lucene.search.Scorer;
 import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.BytesRefBuilder;
 import org.apache.lucene.util.FixedBitSet;
 import org.apache.solr.client.solrj.io.SolrClientCache;
@@ -58,6 +61,7 @@ import org.apache.solr.common.params.CommonParams;
 import org.apache.solr.common.params.ModifiableSolrParams;
 import org.apache.solr.common.params.SolrParams;
 import org.apache.solr.schema.FieldType;
+import org.apache.solr.schema.StrField;
 import org.apache.solr.search.BitDocSet;
 import org.apache.solr.search.DocSet;
 import org.apache.solr.search.DocSetUtil;
@@ -66,6 +70,9 @@ import org.apache.solr.search.SolrIndexSearcher;
 
 public class CrossCollectionJoinQuery extends Query {
 
+  /** Bloom filters of the values of the local to fields, by field name, for each open searcher's reader. */
+  private static final Map<IndexReader.CacheKey, Map<String, JoinKeyBloomFilter>> BLOOM_FILTERS = new ConcurrentHashMap<>();
+
   protected final String query;
   protected final String zkHost;
   protected final String solrUrl;
@@ -73,6 +80,8 @@ public class CrossCollectionJoinQuery extends Query {
   protected final String fromField;
   protected final String toField;
   protected final boolean routedByJoinKey;
+  protected final boolean bloomFilter;
+  protected final int bloomFilterMaxKB;
 
   protected final long timestamp;
   protected final int ttl;
@@ -83,6 +92,18 @@ public class CrossCollectionJoinQuery extends Query {
   public CrossCollectionJoinQuery(String query, String zkHost, String solrUrl,
                                   String collection, String fromField, String toField,
                                   boolean routedByJoinKey, int ttl, SolrParams otherParams) {
+    this(query, zkHost, solrUrl, collection, fromField, toField, routedByJoinKey, false,
+        CrossCollectionJoinQParser.BLOOM_FILTER_MAX_KB_DEFAULT, ttl, otherParams);
+  }
+
+  /**
+   * @param bloomFilter whether to send a bloom filter of the local values of the to field along with the request
+   * @param bloomFilterMaxKB the size in KB past which the bloom filter isn't sent, and all join keys are fetched
+   */
+  public CrossCollectionJoinQuery(String query, String zkHost, String solrUrl,
+                                  String collection, String fromField, String toField,
+                                  boolean routedByJoinKey, boolean bloomFilter, int bloomFilterMaxKB, int ttl,
+                                  SolrParams otherParams) {
 
     this.query = query;
     this.zkHost = zkHost;
@@ -91,6 +112,8 @@ public class CrossCollectionJoinQuery extends Query {
     this.fromField = fromField;
     this.toField = toField;
     this.routedByJoinKey = routedByJoinKey;
+    this.bloomFilter = bloomFilter;
+    this.bloomFilterMaxKB = bloomFilterMaxKB;
 
     this.timestamp = System.nanoTime();
     this.ttl = ttl;
@@ -102,6 +125,61 @@ public class CrossCollectionJoinQuery extends Query {
     }
   }
 
+  /**
+   * Returns the bloom filter of the terms of the given field, built on the first request that needs it for the
+   * searcher. Building it reads every term of the field in every segment, so it is kept until the searcher is closed
+   * rather than rebuilt by each request.
+   */
+  private static JoinKeyBloomFilter getBloomFilter(SolrIndexSearcher searcher, String field, long numTerms) throws IOException {
+    IndexReader.CacheHelper cacheHelper = searcher.getIndexReader().getReaderCacheHelper();
+    if (cacheHelper == null) {
+      return createBloomFilter(searcher, field, numTerms);
+    }
+    Map<String, JoinKeyBloomFilter> filters = BLOOM_FILTERS.get(cacheHelper.getKey());
+    if (filters == null) {
+      filters = new ConcurrentHashMap<>();
+      Map<String, JoinKeyBloomFilter> existing = BLOOM_FILTERS.putIfAbsent(cacheHelper.getKey(), filters);
+      if (existing == null) {
+        cacheHelper.addClosedListener(BLOOM_FILTERS::remove);
+      } else {
+        filters = existing;
+      }
+    }
+    JoinKeyBloomFilter filter = filters.get(field);
+    if (filter == null) {
+      // concurrent requests may build the same filter, the last one wins
+      filter = createBloomFilter(searcher, field, numTerms);
+      filters.put(field, filter);
+    }
+    return filter;
+  }
+
+  /** Counts the terms of each segment, deleted or duplicated ones only add false positives to the filter. */
+  private static long countTerms(SolrIndexSearcher searcher, String field) throws IOException {
+    long numTerms = 0;
+    for (LeafReaderContext leaf : searcher.getTopReaderContext().leaves()) {
+      Terms terms = leaf.reader().terms(field);
+      if (terms != null) {
+        numTerms += Math.max(0, terms.size());
+      }
+    }
+    return numTerms;
+  }
+
+  private static JoinKeyBloomFilter createBloomFilter(SolrIndexSearcher searcher, String field, long numTerms) throws IOException {
+    JoinKeyBloomFilter filter = JoinKeyBloomFilter.create(numTerms, JoinKeyBloomFilter.DEFAULT_FPP);
+    for (LeafReaderContext leaf : searcher.getTopReaderContext().leaves()) {
+      Terms terms = leaf.reader().terms(field);
+      if (terms != null) {
+        TermsEnum termsEnum = terms.iterator();
+        for (BytesRef term = termsEnum.next(); term != null; term = termsEnum.next()) {
+          filter.add(term);
+        }
+      }
+    }
+    return filter;
+  }
+
   private interface JoinKeyCollector {
     void collect(Object value) throws IOException;
     DocSet getDocSet() throws IOException;
@@ -116,6 +194,11 @@ public class CrossCollectionJoinQuery extends Query {
     BytesRefBuilder bytes;
     PostingsEnum postingsEnum;
 
+    // the last key looked up; termsEnum is positioned on the first term after it, unless exhausted
+    BytesRefBuilder lastKey;
+    boolean positioned;
+    boolean exhausted;
+
     FixedBitSet bitSet;
 
     public TermsJoinKeyCollector(FieldType fieldType, Terms terms, SolrIndexSearcher searcher) throws IOException {
@@ -124,19 +207,57 @@ public class CrossCollectionJoinQuery extends Query {
 
       termsEnum = terms.iterator();
       bytes = new BytesRefBuilder();
+      lastKey = new BytesRefBuilder();
 
       bitSet = new FixedBitSet(searcher.maxDoc());
     }
 
+    /**
+     * The keys are exported in sorted order, so they are merged with the terms of the local index: a key that falls
+     * between the last key and the term the enum is positioned on can't exist locally, and the next key to match is
+     * usually the next term, so most keys are resolved without seeking.
+     */
     @Override
     public void collect(Object value) throws IOException {
       fieldType.readableToIndexed((String) value, bytes);
-      if (termsEnum.seekExact(bytes.get())) {
-        postingsEnum = termsEnum.postings(postingsEnum, PostingsEnum.NONE);
-        bitSet.or(postingsEnum);
+      BytesRef key = bytes.get();
+      if (positioned && key.compareTo(lastKey.get()) >= 0) {
+        if (exhausted) {
+          return;
+        }
+        int cmp = key.compareTo(termsEnum.term());
+        if (cmp > 0) {
+          // try the next term before seeking
+          BytesRef next = termsEnum.next();
+          if (next == null) {
+            exhausted = true;
+            return;
+          }
+          cmp = key.compareTo(next);
+        }
+        if (cmp <= 0) {
+          lastKey.copyBytes(key);
+          if (cmp == 0) {
+            collectPostings();
+          }
+          return;
+        }
+      }
+
+      TermsEnum.SeekStatus status = termsEnum.seekCeil(key);
+      positioned = true;
+      exhausted = status == TermsEnum.SeekStatus.END;
+      lastKey.copyBytes(key);
+      if (status == TermsEnum.SeekStatus.FOUND) {
+        collectPostings();
       }
     }
 
+    private void collectPostings() throws IOException {
+      postingsEnum = termsEnum.postings(postingsEnum, PostingsEnum.NONE);
+      bitSet.or(postingsEnum);
+    }
+
     @Override
     public DocSet getDocSet() throws IOException {
       if (searcher.getIndexReader().hasDeletions()) {
@@ -203,6 +324,23 @@ public class CrossCollectionJoinQuery extends Query {
       }
     }
 
+    private String createBloomFilterFq() throws IOException {
+      if (!bloomFilter || !(searcher.getSchema().getFieldType(toField) instanceof StrField)) {
+        return null;
+      }
+
+      // past the limit the request could be rejected, fetch all join keys instead
+      long numTerms = countTerms(searcher, toField);
+      if (JoinKeyBloomFilter.sizeInBytes(numTerms, JoinKeyBloomFilter.DEFAULT_FPP) > bloomFilterMaxKB * 1024L) {
+        return null;
+      }
+
+      JoinKeyBloomFilter filter = getBloomFilter(searcher, toField, numTerms);
+      // the filter is different for every shard and searcher, there's no point caching it on the remote side
+      return String.format(Locale.ROOT, "{!bloom_filter cache=false f=%s k=%d}%s",
+          fromField, filter.getNumHashes(), filter.toBase64());
+    }
+
     private TupleStream createCloudSolrStream(SolrClientCache solrClientCache) throws IOException {
       String streamZkHost;
       if (zkHost != null) {
@@ -217,6 +355,10 @@ public class CrossCollectionJoinQuery extends Query {
       if (fq != null) {
         params.add(CommonParams.FQ, fq);
       }
+      String bloomFq = createBloomFilterFq();
+      if (bloomFq != null) {
+        params.add(CommonParams.FQ, bloomFq);
+      }
       params.set(CommonParams.FL, fromField);
       params.set(CommonParams.SORT, fromField + " asc");
       params.set(CommonParams.QT, "/export");
@@ -231,7 +373,7 @@ public class CrossCollectionJoinQuery extends Query {
       return uniqueStream;
     }
 
-    private TupleStream createSolrStream() {
+    private TupleStream createSolrStream() throws IOException {
       StreamExpression searchExpr = new StreamExpression("search")
               .withParameter(collection)
               .withParameter(new StreamExpressionNamedParameter(CommonParams.Q, query));
@@ -239,6 +381,10 @@ public class CrossCollectionJoinQuery extends Query {
       if (fq != null) {
         searchExpr.withParameter(new StreamExpressionNamedParameter(CommonParams.FQ, fq));
       }
+      String bloomFq = createBloomFilterFq();
+      if (bloomFq != null) {
+        searchExpr.withParameter(new StreamExpressionNamedParameter(CommonParams.FQ, bloomFq));
+      }
       searchExpr.withParameter(new StreamExpressionNamedParameter(CommonParams.FL, fromField))
               .withParameter(new StreamExpressionNamedParameter(CommonParams.SORT, fromField + " asc"))
               .withParameter(new StreamExpressionNamedParameter(CommonParams.QT, "/export"));
@@ -349,6 +495,7 @@ public class CrossCollectionJoinQuery extends Query {
     result = prime * result + Objects.hashCode(fromField);
     result = prime * result + Objects.hashCode(toField);
     result = prime * result + Objects.hashCode(routedByJoinKey);
+    result = prime * result + Objects.hashCode(bloomFilter);
     result = prime * result + Objects.hashCode(otherParamsString);
     // timestamp and ttl should not be included in hash code
     return result;
@@ -368,13 +515,14 @@ public class CrossCollectionJoinQuery extends Query {
             Objects.equals(fromField, other.fromField) &&
             Objects.equals(toField, other.toField) &&
             Objects.equals(routedByJoinKey, other.routedByJoinKey) &&
+            Objects.equals(bloomFilter, other.bloomFilter) &&
             Objects.equals(otherParamsString, other.otherParamsString) &&
             TimeUnit.SECONDS.convert(Math.abs(timestamp - other.timestamp), TimeUnit.NANOSECONDS) < Math.min(ttl, other.ttl);
   }
 
   @Override
   public String toString(String field) {
-    return String.format(Locale.ROOT, "{!xcjf collection=%s from=%s to=%s routed=%b ttl=%d}%s",
-            collection, fromField, toField, routedByJoinKey, ttl, query.toString());
+    return String.format(Locale.ROOT, "{!xcjf collection=%s from=%s to=%s routed=%b bloomFilter=%b ttl=%d}%s",
+            collection, fromField, toField, routedByJoinKey, bloomFilter, ttl, query.toString());
   }
 }
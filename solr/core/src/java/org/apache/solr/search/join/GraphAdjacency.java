@@ -0,0 +1,291 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search.join;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.MultiDocValues;
+import org.apache.lucene.index.OrdinalMap;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.apache.lucene.util.packed.PackedInts;
+import org.apache.lucene.util.packed.PackedLongValues;
+import org.apache.solr.search.CacheRegenerator;
+import org.apache.solr.search.SolrCache;
+import org.apache.solr.search.SolrIndexSearcher;
+
+/**
+ * Per-segment adjacency lists of a graph, built from the docValues of string fields and stored in packed arrays.
+ * <p>
+ * For a given field, {@link EdgeOrds} lists the ordinals of the values of each document, and {@link NodeDocs} lists
+ * the documents of each ordinal. Graph traversals use the former on the field holding the edges they follow and the
+ * latter on the field those edges point to, so a hop is a walk over arrays instead of a search.
+ * <p>
+ * Both are cached per segment core and field in the {@value #CACHE_NAME} user cache of the searcher, if it is declared
+ * in solrconfig.xml, otherwise they are built again for each hop. The lists of the segments that a new searcher still
+ * uses are carried over to its cache by {@link Regenerator}. They include deleted documents, which callers filter out
+ * with the live docs of the segment.
+ *
+ * @lucene.internal
+ */
+public final class GraphAdjacency {
+
+  /** Name of the user cache of the adjacency lists. */
+  public static final String CACHE_NAME = "graphAdjacency";
+
+  private GraphAdjacency() {}
+
+  private static final class Key implements Accountable {
+    private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(Key.class);
+
+    final IndexReader.CacheKey coreKey;
+    final String field;
+    final boolean nodeDocs;
+
+    Key(IndexReader.CacheKey coreKey, String field, boolean nodeDocs) {
+      this.coreKey = coreKey;
+      this.field = field;
+      this.nodeDocs = nodeDocs;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (obj instanceof Key == false) {
+        return false;
+      }
+      final Key other = (Key) obj;
+      return coreKey == other.coreKey && field.equals(other.field) && nodeDocs == other.nodeDocs;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * (31 * System.identityHashCode(coreKey) + field.hashCode()) + Boolean.hashCode(nodeDocs);
+    }
+
+    @Override
+    public long ramBytesUsed() {
+      return BASE_RAM_BYTES_USED;
+    }
+
+    @Override
+    public String toString() {
+      return (nodeDocs ? "nodeDocs(" : "edgeOrds(") + field + ")";
+    }
+  }
+
+  /**
+   * Copies the adjacency lists of the segments that the new searcher still uses into its cache, and drops the others.
+   * Declare it as the regenerator of the {@value #CACHE_NAME} cache so that the lists survive commits.
+   */
+  public static class Regenerator implements CacheRegenerator {
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    @Override
+    public boolean regenerateItem(SolrIndexSearcher newSearcher, SolrCache newCache, SolrCache oldCache, Object oldKey, Object oldVal) {
+      final IndexReader.CacheKey coreKey = ((Key) oldKey).coreKey;
+      for (LeafReaderContext leaf : newSearcher.getTopReaderContext().leaves()) {
+        final IndexReader.CacheHelper cacheHelper = leaf.reader().getCoreCacheHelper();
+        if (cacheHelper != null && cacheHelper.getKey() == coreKey) {
+          newCache.put(oldKey, oldVal);
+          break;
+        }
+      }
+      return true;
+    }
+  }
+
+  private interface ListBuilder {
+    Accountable build(LeafReader reader, String field) throws IOException;
+  }
+
+  private static Accountable get(SolrIndexSearcher searcher, LeafReader reader, String field, boolean nodeDocs,
+                                 ListBuilder builder) throws IOException {
+    @SuppressWarnings({"unchecked"})
+    final SolrCache<Key, Accountable> cache = searcher.getCache(CACHE_NAME);
+    final IndexReader.CacheHelper cacheHelper = reader.getCoreCacheHelper();
+    if (cache == null || cacheHelper == null) {
+      return builder.build(reader, field);
+    }
+    try {
+      return cache.computeIfAbsent(new Key(cacheHelper.getKey(), field, nodeDocs), k -> {
+        try {
+          return builder.build(reader, field);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  /** Returns the ordinals of the values of each document of the given segment of the searcher in the given field. */
+  public static EdgeOrds getEdgeOrds(SolrIndexSearcher searcher, LeafReader reader, String field) throws IOException {
+    return (EdgeOrds) get(searcher, reader, field, false, EdgeOrds::build);
+  }
+
+  /** Returns the documents of the given segment of the searcher that have each ordinal of the given field. */
+  public static NodeDocs getNodeDocs(SolrIndexSearcher searcher, LeafReader reader, String field) throws IOException {
+    return (NodeDocs) get(searcher, reader, field, true, NodeDocs::build);
+  }
+
+  /** Returns the map from segment to global ordinals of the given top-level doc values, or null if there is a single segment. */
+  static OrdinalMap getOrdinalMap(SortedSetDocValues topLevelValues) {
+    if (topLevelValues instanceof MultiDocValues.MultiSortedSetDocValues) {
+      return ((MultiDocValues.MultiSortedSetDocValues) topLevelValues).mapping;
+    }
+    final SortedDocValues singleValues = DocValues.unwrapSingleton(topLevelValues);
+    if (singleValues instanceof MultiDocValues.MultiSortedDocValues) {
+      return ((MultiDocValues.MultiSortedDocValues) singleValues).mapping;
+    }
+    return null;
+  }
+
+  /**
+   * The segment ordinals of the values of each document, with the ones of doc {@code d} stored at positions
+   * {@code start(d)} (inclusive) to {@code start(d+1)} (exclusive).
+   */
+  public static final class EdgeOrds implements Accountable {
+    private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(EdgeOrds.class);
+
+    private final PackedLongValues starts;
+    private final PackedLongValues ords;
+
+    private EdgeOrds(PackedLongValues starts, PackedLongValues ords) {
+      this.starts = starts;
+      this.ords = ords;
+    }
+
+    static EdgeOrds build(LeafReader reader, String field) throws IOException {
+      final SortedSetDocValues values = DocValues.getSortedSet(reader, field);
+      final PackedLongValues.Builder starts = PackedLongValues.monotonicBuilder(PackedInts.COMPACT);
+      final PackedLongValues.Builder ords = PackedLongValues.packedBuilder(PackedInts.COMPACT);
+      final int maxDoc = reader.maxDoc();
+      long count = 0;
+      for (int doc = 0; doc < maxDoc; doc++) {
+        starts.add(count);
+        if (values.advanceExact(doc)) {
+          for (long ord = values.nextOrd(); ord != SortedSetDocValues.NO_MORE_ORDS; ord = values.nextOrd()) {
+            ords.add(ord);
+            count++;
+          }
+        }
+      }
+      starts.add(count);
+      return new EdgeOrds(starts.build(), ords.build());
+    }
+
+    /** Position of the first ordinal of the given doc. */
+    public long start(int doc) {
+      return starts.get(doc);
+    }
+
+    /** Position after the last ordinal of the given doc. */
+    public long end(int doc) {
+      return starts.get(doc + 1);
+    }
+
+    public long ord(long index) {
+      return ords.get(index);
+    }
+
+    @Override
+    public long ramBytesUsed() {
+      return BASE_RAM_BYTES_USED + starts.ramBytesUsed() + ords.ramBytesUsed();
+    }
+  }
+
+  /**
+   * The documents that have each segment ordinal, with the ones of ordinal {@code o} stored at positions
+   * {@code start(o)} (inclusive) to {@code start(o+1)} (exclusive), in increasing order.
+   */
+  public static final class NodeDocs implements Accountable {
+    private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(NodeDocs.class);
+
+    private final PackedLongValues starts;
+    private final PackedInts.Reader docs;
+
+    private NodeDocs(PackedLongValues starts, PackedInts.Reader docs) {
+      this.starts = starts;
+      this.docs = docs;
+    }
+
+    static NodeDocs build(LeafReader reader, String field) throws IOException {
+      final int maxDoc = reader.maxDoc();
+      final long valueCount = DocValues.getSortedSet(reader, field).getValueCount();
+      if (valueCount > ArrayUtil.MAX_ARRAY_LENGTH - 1) {
+        throw new IllegalArgumentException("Too many values in field " + field + " to build its adjacency lists: " + valueCount);
+      }
+
+      // first count the docs of each ord, then place them
+      final int[] offsets = new int[(int) valueCount + 1];
+      SortedSetDocValues values = DocValues.getSortedSet(reader, field);
+      long total = 0;
+      for (int doc = values.nextDoc(); doc != SortedSetDocValues.NO_MORE_DOCS; doc = values.nextDoc()) {
+        for (long ord = values.nextOrd(); ord != SortedSetDocValues.NO_MORE_ORDS; ord = values.nextOrd()) {
+          offsets[(int) ord + 1]++;
+          total++;
+        }
+      }
+      if (total > ArrayUtil.MAX_ARRAY_LENGTH) {
+        throw new IllegalArgumentException("Too many values in field " + field + " to build its adjacency lists: " + total);
+      }
+      for (int i = 1; i < offsets.length; i++) {
+        offsets[i] += offsets[i - 1];
+      }
+
+      final PackedLongValues.Builder starts = PackedLongValues.monotonicBuilder(PackedInts.COMPACT);
+      for (int offset : offsets) {
+        starts.add(offset);
+      }
+      final PackedInts.Mutable docs = PackedInts.getMutable((int) total, PackedInts.bitsRequired(Math.max(0, maxDoc - 1)), PackedInts.COMPACT);
+      values = DocValues.getSortedSet(reader, field);
+      for (int doc = values.nextDoc(); doc != SortedSetDocValues.NO_MORE_DOCS; doc = values.nextDoc()) {
+        for (long ord = values.nextOrd(); ord != SortedSetDocValues.NO_MORE_ORDS; ord = values.nextOrd()) {
+          docs.set(offsets[(int) ord]++, doc);
+        }
+      }
+      return new NodeDocs(starts.build(), docs);
+    }
+
+    /** Position of the first doc of the given ordinal. */
+    public long start(long ord) {
+      return starts.get(ord);
+    }
+
+    /** Position after the last doc of the given ordinal. */
+    public long end(long ord) {
+      return starts.get(ord + 1);
+    }
+
+    public int doc(long index) {
+      return (int) docs.get((int) index);
+    }
+
+    @Override
+    public long ramBytesUsed() {
+      return BASE_RAM_BYTES_USED + starts.ramBytesUsed() + docs.ramBytesUsed();
+    }
+  }
+}
@@ -22,8 +22,12 @@ import java.util.List;
 import java.util.Objects;
 import java.util.TreeSet;
 
+import org.apache.lucene.index.DocValues;
 import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.OrdinalMap;
+import org.apache.lucene.index.SortedSetDocValues;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.BooleanQuery;
@@ -38,9 +42,12 @@ import org.apache.lucene.search.ScoreMode;
 import org.apache.lucene.search.Scorer;
 import org.apache.lucene.search.Weight;
 import org.apache.lucene.search.WildcardQuery;
+import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.BytesRefHash;
 import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.LongBitSet;
+import org.apache.lucene.util.LongValues;
 import org.apache.lucene.util.automaton.Automaton;
 import org.apache.lucene.util.automaton.DaciukMihovAutomatonBuilder;
 import org.apache.solr.schema.SchemaField;
@@ -59,6 +66,9 @@ import org.apache.solr.search.SolrIndexSearcher;
  * maxDepth = the max depth to traverse.  (start nodes is depth=1)
  * onlyLeafNodes = only return documents that have no edge id values.
  * returnRoot = if false, the documents matching the initial query will not be returned.
+ * targetQuery = if set, only the documents matching this query at the shortest distance from the start nodes are
+ *   returned, and the graph is searched from both ends.
+ * cacheAdjacency = follow edges using per-segment adjacency lists built from docValues, see {@link GraphAdjacency}.
  *
  * @lucene.experimental
  */
@@ -84,6 +94,12 @@ public class GraphQuery extends Query {
   
   /** False if documents matching the start query for the graph will be excluded from the final result set.  */
   private boolean returnRoot = true;
+
+  /** If set, the nodes to find paths to from the start nodes. */
+  private Query targetQuery;
+
+  /** Follow edges with the cached adjacency lists of each segment instead of running a query for each hop. */
+  private boolean cacheAdjacency = false;
   
   /**
    * Create a graph query 
@@ -126,6 +142,10 @@ public class GraphQuery extends Query {
     sb.append("[returnRoot=").append(returnRoot).append(']');
     sb.append("[onlyLeafNodes=").append(onlyLeafNodes).append(']');
     sb.append("[useAutn=").append(useAutn).append(']');
+    if (targetQuery != null) {
+      sb.append(" [Target: ").append(targetQuery.toString()).append(']');
+    }
+    sb.append("[cacheAdjacency=").append(cacheAdjacency).append(']');
     return sb.toString();
   }
   
@@ -171,6 +191,11 @@ public class GraphQuery extends Query {
      * @throws IOException - if a sub search fails... maybe other cases too! :)
      */
     private DocSet getDocSet() throws IOException {
+      if (targetQuery != null) {
+        return getTargetDocSet();
+      } else if (cacheAdjacency) {
+        return getAdjacencyDocSet();
+      }
       // Size that the bit set needs to be.
       int capacity = fromSearcher.getRawReader().maxDoc();
       // The bit set to contain the results that match the query.
@@ -243,6 +268,224 @@ public class GraphQuery extends Query {
       }
     }
     
+    /**
+     * Same traversal as {@link #getDocSet()}, but following edges with {@link #hop}.
+     */
+    private DocSet getAdjacencyDocSet() throws IOException {
+      final FixedBitSet rootBits = getBits(q);
+      final FixedBitSet allowedBits = getAllowedBits();
+      final FixedBitSet resultBits = rootBits.clone();
+      FixedBitSet frontier = rootBits;
+      for (int depth = 0; frontier != null && (maxDepth == -1 || depth < maxDepth); depth++) {
+        frontier = hop(frontier, resultBits, allowedBits, true);
+        if (frontier != null) {
+          resultBits.or(frontier);
+        }
+      }
+      return finishDocSet(resultBits, rootBits);
+    }
+
+    /**
+     * Searches the graph from the start nodes and backward from the target nodes at the same time, expanding the
+     * smaller frontier at each step, until both searches meet.  The target nodes at the shortest distance from the
+     * start nodes are then found by walking forward from where they met, through the nodes one hop closer to the
+     * targets each time.
+     */
+    private DocSet getTargetDocSet() throws IOException {
+      final FixedBitSet rootBits = getBits(q);
+      final FixedBitSet targetBits = getBits(targetQuery);
+      final FixedBitSet allowedBits = getAllowedBits();
+
+      final FixedBitSet rootTargets = rootBits.clone();
+      rootTargets.and(targetBits);
+      if (rootTargets.scanIsEmpty() == false) {
+        return finishDocSet(rootTargets, rootBits);
+      }
+
+      // only the start nodes don't need to match the traversal filter
+      FixedBitSet backwardAllowedBits = null;
+      if (allowedBits != null) {
+        targetBits.and(allowedBits);
+        backwardAllowedBits = allowedBits.clone();
+        backwardAllowedBits.or(rootBits);
+      }
+
+      // the nodes at each distance from the start nodes, and to the target nodes
+      final List<FixedBitSet> forwardLevels = new ArrayList<>();
+      final List<FixedBitSet> backwardLevels = new ArrayList<>();
+      forwardLevels.add(rootBits);
+      backwardLevels.add(targetBits);
+      final FixedBitSet forwardVisited = rootBits.clone();
+      final FixedBitSet backwardVisited = targetBits.clone();
+
+      FixedBitSet middle = null; // the nodes where both searches met, all at the same distance to the targets
+      int middleLevel = -1;
+      while (middle == null && (maxDepth == -1 || forwardLevels.size() + backwardLevels.size() - 2 < maxDepth)) {
+        final FixedBitSet forwardFrontier = forwardLevels.get(forwardLevels.size() - 1);
+        final FixedBitSet backwardFrontier = backwardLevels.get(backwardLevels.size() - 1);
+        if (forwardFrontier.cardinality() <= backwardFrontier.cardinality()) {
+          final FixedBitSet next = hop(forwardFrontier, forwardVisited, allowedBits, true);
+          if (next == null) {
+            break;
+          }
+          forwardLevels.add(next);
+          forwardVisited.or(next);
+          for (int level = 0; level < backwardLevels.size() && middle == null; level++) {
+            if (next.intersects(backwardLevels.get(level))) {
+              middle = next.clone();
+              middle.and(backwardLevels.get(level));
+              middleLevel = level;
+            }
+          }
+        } else {
+          final FixedBitSet next = hop(backwardFrontier, backwardVisited, backwardAllowedBits, false);
+          if (next == null) {
+            break;
+          }
+          backwardLevels.add(next);
+          backwardVisited.or(next);
+          for (int level = 0; level < forwardLevels.size() && middle == null; level++) {
+            if (next.intersects(forwardLevels.get(level))) {
+              middle = next.clone();
+              middle.and(forwardLevels.get(level));
+              middleLevel = backwardLevels.size() - 1;
+            }
+          }
+        }
+      }
+      if (middle == null) {
+        return DocSet.empty();
+      }
+
+      FixedBitSet current = middle;
+      for (int level = middleLevel - 1; level >= 0 && current != null; level--) {
+        current = hop(current, new FixedBitSet(current.length()), backwardLevels.get(level), true);
+      }
+      return current == null ? DocSet.empty() : finishDocSet(current, rootBits);
+    }
+
+    private DocSet finishDocSet(FixedBitSet resultBits, FixedBitSet rootBits) throws IOException {
+      if (!returnRoot) {
+        resultBits.andNot(rootBits);
+      }
+      BitDocSet resultSet = new BitDocSet(resultBits);
+      if (onlyLeafNodes) {
+        return resultSet.intersection(resolveLeafNodes());
+      } else {
+        return resultSet;
+      }
+    }
+
+    /** Returns the docs matching the given query, as bits that may be modified. */
+    private FixedBitSet getBits(Query query) throws IOException {
+      return fromSearcher.getDocSetBits(query).getBits().clone();
+    }
+
+    /** Returns the docs that the traversal filter allows to be reached, or null if there is no filter. */
+    private FixedBitSet getAllowedBits() throws IOException {
+      return traversalFilter == null ? null : fromSearcher.getDocSetBits(traversalFilter).getBits();
+    }
+
+    /**
+     * Follows the edges of the docs of the frontier, forward from the edge ids to the node ids or backward, and
+     * returns the docs that are reached, not visited yet and allowed, or null if there are none.
+     */
+    private FixedBitSet hop(FixedBitSet frontier, FixedBitSet visited, FixedBitSet allowed, boolean forward) throws IOException {
+      final SchemaField edgeField = forward ? collectSchemaField : matchSchemaField;
+      final SchemaField nodeField = forward ? matchSchemaField : collectSchemaField;
+      final FixedBitSet next;
+      if (cacheAdjacency) {
+        next = hopWithAdjacency(frontier, visited, edgeField.getName(), nodeField.getName());
+      } else {
+        GraphEdgeCollector collector = edgeField.getType().isPointField()
+            ? new GraphPointsCollector(edgeField, null, null)
+            : new GraphEdgeCollector.GraphTermsCollector(edgeField, null, null);
+        fromSearcher.search(new BitDocSet(frontier).getTopFilter(), collector);
+        Query nodeQuery = collector.getResultQuery(nodeField, isUseAutn());
+        next = nodeQuery == null ? null : getBits(nodeQuery);
+        if (next != null) {
+          next.andNot(visited);
+        }
+      }
+      if (next != null && allowed != null) {
+        next.and(allowed);
+      }
+      return next == null || next.scanIsEmpty() ? null : next;
+    }
+
+    private FixedBitSet hopWithAdjacency(FixedBitSet frontier, FixedBitSet visited, String edgeField, String nodeField) throws IOException {
+      final List<LeafReaderContext> leaves = fromSearcher.getTopReaderContext().leaves();
+      final SortedSetDocValues edgeValues = DocValues.getSortedSet(fromSearcher.getSlowAtomicReader(), edgeField);
+      if (edgeValues.getValueCount() == 0) {
+        return null;
+      }
+      final OrdinalMap ordinalMap = GraphAdjacency.getOrdinalMap(edgeValues);
+
+      // the global ords of the edges of the frontier
+      final LongBitSet edgeOrds = new LongBitSet(edgeValues.getValueCount());
+      boolean hasEdges = false;
+      for (LeafReaderContext leaf : leaves) {
+        final int docBase = leaf.docBase;
+        final int end = docBase + leaf.reader().maxDoc();
+        int doc = docBase < frontier.length() ? frontier.nextSetBit(docBase) : DocIdSetIterator.NO_MORE_DOCS;
+        if (doc >= end) {
+          continue;
+        }
+        final GraphAdjacency.EdgeOrds segmentEdgeOrds = GraphAdjacency.getEdgeOrds(fromSearcher, leaf.reader(), edgeField);
+        final LongValues toGlobal = ordinalMap == null ? LongValues.IDENTITY : ordinalMap.getGlobalOrds(leaf.ord);
+        while (doc < end) {
+          for (long i = segmentEdgeOrds.start(doc - docBase), last = segmentEdgeOrds.end(doc - docBase); i < last; i++) {
+            edgeOrds.set(toGlobal.get(segmentEdgeOrds.ord(i)));
+            hasEdges = true;
+          }
+          doc = doc + 1 < frontier.length() ? frontier.nextSetBit(doc + 1) : DocIdSetIterator.NO_MORE_DOCS;
+        }
+      }
+      if (!hasEdges) {
+        return null;
+      }
+
+      // the docs of each segment that have one of these values as node id, found by walking the values of both
+      // fields in order and leaping over the runs of values that only one side has
+      final FixedBitSet next = new FixedBitSet(visited.length());
+      final TermsEnum edgeTerms = edgeValues.termsEnum();
+      final long numEdgeOrds = edgeOrds.length();
+      for (LeafReaderContext leaf : leaves) {
+        final SortedSetDocValues nodeValues = DocValues.getSortedSet(leaf.reader(), nodeField);
+        if (nodeValues.getValueCount() == 0) {
+          continue;
+        }
+        final GraphAdjacency.NodeDocs nodeDocs = GraphAdjacency.getNodeDocs(fromSearcher, leaf.reader(), nodeField);
+        final TermsEnum nodeTerms = nodeValues.termsEnum();
+        final Bits liveDocs = leaf.reader().getLiveDocs();
+        final int docBase = leaf.docBase;
+        long ord = edgeOrds.nextSetBit(0);
+        while (ord >= 0) {
+          edgeTerms.seekExact(ord);
+          final TermsEnum.SeekStatus status = nodeTerms.seekCeil(edgeTerms.term());
+          if (status == TermsEnum.SeekStatus.END) {
+            break;
+          } else if (status == TermsEnum.SeekStatus.FOUND) {
+            final long nodeOrd = nodeTerms.ord();
+            for (long i = nodeDocs.start(nodeOrd), last = nodeDocs.end(nodeOrd); i < last; i++) {
+              final int doc = nodeDocs.doc(i);
+              if ((liveDocs == null || liveDocs.get(doc)) && !visited.get(docBase + doc)) {
+                next.set(docBase + doc);
+              }
+            }
+            ord++;
+          } else {
+            if (edgeTerms.seekCeil(nodeTerms.term()) == TermsEnum.SeekStatus.END) {
+              break;
+            }
+            ord = edgeTerms.ord();
+          }
+          ord = ord < numEdgeOrds ? edgeOrds.nextSetBit(ord) : -1L;
+        }
+      }
+      return next;
+    }
+
     private DocSet resolveLeafNodes() throws IOException {
       String field = collectSchemaField.getName();
       BooleanQuery.Builder leafNodeQuery = new BooleanQuery.Builder();
@@ -279,7 +522,8 @@ public class GraphQuery extends Query {
 
     @Override
     public boolean isCacheable(LeafReaderContext ctx) {
-      return true;
+      // the traversal runs over the whole index, so the matches of a segment depend on the other segments too
+      return false;
     }
     
   }
@@ -404,6 +648,28 @@ public class GraphQuery extends Query {
   public void setReturnRoot(boolean returnRoot) {
     this.returnRoot = returnRoot;
   }
+
+  /**
+   * @return the query of the nodes to find paths to, or null to return every node reached.
+   */
+  public Query getTargetQuery() {
+    return targetQuery;
+  }
+
+  public void setTargetQuery(Query targetQuery) {
+    this.targetQuery = targetQuery;
+  }
+
+  /**
+   * @return if true, edges are followed with the cached adjacency lists of each segment.
+   */
+  public boolean isCacheAdjacency() {
+    return cacheAdjacency;
+  }
+
+  public void setCacheAdjacency(boolean cacheAdjacency) {
+    this.cacheAdjacency = cacheAdjacency;
+  }
   
   @Override
   public int hashCode() {
@@ -417,6 +683,8 @@ public class GraphQuery extends Query {
     result = prime * result + Objects.hashCode(toField);
     result = prime * result + Objects.hashCode(traversalFilter);
     result = prime * result + (useAutn ? 1231 : 1237);
+    result = prime * result + Objects.hashCode(targetQuery);
+    result = prime * result + (cacheAdjacency ? 1231 : 1237);
     return result;
   }
 
@@ -434,7 +702,9 @@ public class GraphQuery extends Query {
            useAutn == other.useAutn &&
            Objects.equals(q, other.q) &&
            Objects.equals(toField, other.toField) &&
-           Objects.equals(traversalFilter, other.traversalFilter);
+           Objects.equals(traversalFilter, other.traversalFilter) &&
+           Objects.equals(targetQuery, other.targetQuery) &&
+           cacheAdjacency == other.cacheAdjacency;
   }
 
   @Override
@@ -19,6 +19,7 @@ package org.apache.solr.search.join;
 import org.apache.lucene.search.Query;
 import org.apache.solr.common.params.SolrParams;
 import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.schema.SchemaField;
 import org.apache.solr.schema.StrField;
 import org.apache.solr.search.QParser;
 import org.apache.solr.search.QueryParsing;
@@ -41,6 +42,9 @@ public class GraphQueryParser extends QParser {
     Query rootNodeQuery = subQuery(localParams.get(QueryParsing.V), null).getQuery();
     String traversalFilterS = localParams.get("traversalFilter");
     Query traversalFilter = traversalFilterS == null ? null : subQuery(traversalFilterS, null).getQuery();
+    // if set, only the matching nodes at the shortest distance from the root nodes are returned.
+    String targetS = localParams.get("target");
+    Query targetQuery = targetS == null ? null : subQuery(targetS, null).getQuery();
 
     // NOTE: the from/to are reversed from {!join}
     String fromField = localParams.get("from", "node_id");
@@ -58,6 +62,12 @@ public class GraphQueryParser extends QParser {
     // if true, an automaton will be compiled to issue the next graph hop
     // this avoid having a large number of boolean clauses. (and it's faster too!)
     boolean useAutn = localParams.getBool("useAutn", false);
+    // if true, the edges are followed with adjacency lists built from the docValues of each segment and cached.
+    boolean cacheAdjacency = localParams.getBool("cacheAdjacency", false);
+    if (cacheAdjacency) {
+      validateAdjacencyField(fromField);
+      validateAdjacencyField(toField);
+    }
 
     // Construct a graph query object based on parameters passed in.
     GraphQuery gq = new GraphQuery(rootNodeQuery, fromField, toField, traversalFilter);
@@ -66,6 +76,8 @@ public class GraphQueryParser extends QParser {
     gq.setOnlyLeafNodes(onlyLeafNodes);
     gq.setReturnRoot(returnRootNodes);
     gq.setUseAutn(useAutn);
+    gq.setTargetQuery(targetQuery);
+    gq.setCacheAdjacency(cacheAdjacency);
     // return the parsed graph query.
     return gq;
   }
@@ -95,5 +107,12 @@ public class GraphQueryParser extends QParser {
     throw new SyntaxError("FieldType for field=" + field + " not supported");
 
   }
+
+  public void validateAdjacencyField(String field) throws SyntaxError {
+    SchemaField schemaField = req.getSchema().getField(field);
+    if (!(schemaField.getType() instanceof StrField) || !schemaField.hasDocValues()) {
+      throw new SyntaxError("cacheAdjacency requires field " + field + " to be a string field with docValues=true");
+    }
+  }
   
 }
@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search.join;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.solr.common.util.Base64;
+import org.apache.solr.common.util.Hash;
+
+/**
+ * A bloom filter over join keys, compact enough to be sent along with a request to another collection.
+ * <br>Keys are hashed with MurmurHash3_x64_128, and the two halves of the hash are combined to derive the
+ * positions of the bits of each key.
+ */
+public class JoinKeyBloomFilter {
+
+  public static final double DEFAULT_FPP = 0.01;
+
+  private final long[] bits;
+  private final int numHashes;
+
+  private JoinKeyBloomFilter(long[] bits, int numHashes) {
+    this.bits = bits;
+    this.numHashes = numHashes;
+  }
+
+  /** Creates an empty filter sized for the given number of keys and false positive probability. */
+  public static JoinKeyBloomFilter create(long expectedKeys, double fpp) {
+    expectedKeys = Math.max(1, expectedKeys);
+    long numWords = numWords(expectedKeys, fpp);
+    int numHashes = (int) Math.round((double) (numWords << 6) / expectedKeys * Math.log(2));
+    return new JoinKeyBloomFilter(new long[(int) numWords], Math.max(1, Math.min(numHashes, 16)));
+  }
+
+  /** Returns the size of the bits of a filter created with {@link #create(long, double)}, before base64 encoding. */
+  public static long sizeInBytes(long expectedKeys, double fpp) {
+    return numWords(Math.max(1, expectedKeys), fpp) * Long.BYTES;
+  }
+
+  private static long numWords(long expectedKeys, double fpp) {
+    long numBits = (long) Math.ceil(-expectedKeys * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+    return Math.min((numBits + 63) >>> 6, ArrayUtil.MAX_ARRAY_LENGTH);
+  }
+
+  /** Reads a filter written with {@link #toBase64()}. */
+  public static JoinKeyBloomFilter fromBase64(String str, int numHashes) {
+    ByteBuffer buffer = ByteBuffer.wrap(Base64.base64ToByteArray(str));
+    if (buffer.remaining() == 0 || buffer.remaining() % Long.BYTES != 0 || numHashes < 1) {
+      throw new IllegalArgumentException("Invalid bloom filter");
+    }
+    long[] bits = new long[buffer.remaining() / Long.BYTES];
+    buffer.asLongBuffer().get(bits);
+    return new JoinKeyBloomFilter(bits, numHashes);
+  }
+
+  public String toBase64() {
+    ByteBuffer buffer = ByteBuffer.allocate(bits.length * Long.BYTES);
+    buffer.asLongBuffer().put(bits);
+    return Base64.byteArrayToBase64(buffer.array());
+  }
+
+  public int getNumHashes() {
+    return numHashes;
+  }
+
+  public void add(BytesRef key) {
+    Hash.LongPair hash = new Hash.LongPair();
+    Hash.murmurhash3_x64_128(key.bytes, key.offset, key.length, 0, hash);
+    long combined = hash.val1;
+    for (int i = 0; i < numHashes; i++) {
+      long index = (combined & Long.MAX_VALUE) % ((long) bits.length << 6);
+      bits[(int) (index >>> 6)] |= 1L << index;
+      combined += hash.val2;
+    }
+  }
+
+  /** Returns false if the key was definitely not added to this filter. */
+  public boolean mightContain(BytesRef key) {
+    Hash.LongPair hash = new Hash.LongPair();
+    Hash.murmurhash3_x64_128(key.bytes, key.offset, key.length, 0, hash);
+    long combined = hash.val1;
+    for (int i = 0; i < numHashes; i++) {
+      long index = (combined & Long.MAX_VALUE) % ((long) bits.length << 6);
+      if ((bits[(int) (index >>> 6)] & (1L << index)) == 0) {
+        return false;
+      }
+      combined += hash.val2;
+    }
+    return true;
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (!(other instanceof JoinKeyBloomFilter)) {
+      return false;
+    }
+    JoinKeyBloomFilter that = (JoinKeyBloomFilter) other;
+    return numHashes == that.numHashes && Arrays.equals(bits, that.bits);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * Arrays.hashCode(bits) + numHashes;
+  }
+}
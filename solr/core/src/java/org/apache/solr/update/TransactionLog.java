@@ -77,6 +77,10 @@ public class TransactionLog implements Closeable {
   FileChannel channel;
   OutputStream os;
   FastOutputStream fos;    // all accesses to this stream should be synchronized on "this" (The TransactionLog)
+  // Group commit: only one thread fsyncs at a time, and everything that was appended before that fsync
+  // started is covered by it, so threads waiting on syncLock can usually return without syncing themselves.
+  private final Object syncLock = new Object();
+  private volatile long syncedPosition;  // the log is known to be durable up to this position
   int numRecords;
   boolean isBuffer;
 
@@ -567,22 +571,44 @@ public class TransactionLog implements Closeable {
   public void finish(UpdateLog.SyncLevel syncLevel) {
     if (syncLevel == UpdateLog.SyncLevel.NONE) return;
     try {
-      synchronized (this) {
-        fos.flushBuffer();
-      }
-
       if (syncLevel == UpdateLog.SyncLevel.FSYNC) {
-        // Since fsync is outside of synchronized block, we can end up with a partial
-        // last record on power failure (which is OK, and does not represent an error...
-        // we just need to be aware of it when reading).
-        raf.getFD().sync();
+        long target;
+        synchronized (this) {
+          target = fos.size();
+        }
+        sync(target);
+      } else {
+        synchronized (this) {
+          fos.flushBuffer();
+        }
       }
-
     } catch (IOException e) {
       throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, e);
     }
   }
 
+  /**
+   * Makes sure that everything written up to <code>target</code> is durable. Concurrent callers are
+   * batched: the first one to get the sync lock flushes and fsyncs everything appended so far, and the
+   * callers that were waiting behind it return as soon as that fsync covers their records.
+   */
+  private void sync(long target) throws IOException {
+    if (syncedPosition >= target) return;
+    synchronized (syncLock) {
+      if (syncedPosition >= target) return;  // check again, a previous sync may have covered us
+      long pos;
+      synchronized (this) {
+        fos.flushBuffer();
+        pos = fos.size();
+      }
+      // Since fsync is outside of the synchronized(this) block, we can end up with a partial
+      // last record on power failure (which is OK, and does not represent an error...
+      // we just need to be aware of it when reading).
+      raf.getFD().sync();
+      syncedPosition = pos;
+    }
+  }
+
   public void close() {
     try {
       if (debug) {
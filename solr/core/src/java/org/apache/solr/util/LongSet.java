@@ -18,6 +18,7 @@
 package org.apache.solr.util;
 
 
+import java.util.Arrays;
 import java.util.NoSuchElementException;
 
 /** Collects long values in a hash set (closed hashing on power-of-two sized long[])
@@ -96,6 +97,13 @@ public class LongSet {
     }
   }
 
+  /** Removes all values from the set, keeping its capacity */
+  public void clear() {
+    Arrays.fill(vals, 0L);
+    cardinality = 0;
+    zeroCount = 0;
+  }
+
   /** The number of values in the set */
   public int cardinality() {
     return cardinality + zeroCount;
@@ -969,6 +969,27 @@ public class TestGroupingSearch extends SolrTestCaseJ4 {
     
   }
 
+  @Test
+  public void testGroupingCacheWithScoreSort() throws Exception {
+    // the first pass may skip non-competitive hits, but not when it is cached and replayed as the second pass
+    final int NUM_DOCS = 300;
+    for (int i = 0; i < NUM_DOCS; i++) {
+      assertU(adoc("id", String.valueOf(i), "id_i", String.valueOf(i), FOO_STRING_FIELD, "author" + (i % 3),
+          "title", i % 50 == 0 ? "a book title" : "title"));
+    }
+    assertU(commit());
+
+    for (String cachePercent : new String[] {"0", "100"}) {
+      // group.sort doesn't need scores, so the cache doesn't keep them
+      assertQ(req("q", "title:book title:title", "sort", "score desc", "group", "true", "group.field", FOO_STRING_FIELD,
+          "group.sort", "id_i asc", "group.cache.percent", cachePercent, "rows", "1", "fl", "id")
+          ,"//lst[@name='grouped']/lst[@name='" + FOO_STRING_FIELD + "']/int[@name='matches'][.='" + NUM_DOCS + "']"
+          ,"*[count(//arr[@name='groups']/lst) = 1]"
+          ,"//arr[@name='groups']/lst[1]/result[@numFound='" + (NUM_DOCS / 3) + "']"
+      );
+    }
+  }
+
   public static Object buildGroupedResult(IndexSchema schema, List<Grp> sortedGroups, int start, int rows, int group_offset, int group_limit, boolean includeNGroups) {
     Map<String,Object> result = new LinkedHashMap<>();
 
@@ -157,6 +157,46 @@ public class TestJoin extends SolrTestCaseJ4 {
     });
   }
 
+  /*
+   * Exercises behavior specific to method=segmentDV join queries
+   */
+  @Test
+  public void testSegmentDVJoin() throws Exception {
+    indexEmployeeDocs();
+    ModifiableSolrParams p = params("sort","id asc");
+
+    // "from" field missing docValues
+    expectThrows(SolrException.class, () -> {
+      h.query(req(p, "q", "{!join from=nodocvalues_s to=dept_ss_dv method=segmentDV}*:*", "fl","id"));
+    });
+
+    // "to" field missing docValues
+    expectThrows(SolrException.class, () -> {
+      h.query(req(p, "q", "{!join from=dept_ss_dv to=nodocvalues_s method=segmentDV}*:*", "fl","id"));
+    });
+
+    // numeric docValues have no ordinals to join on
+    SolrException e = expectThrows(SolrException.class, () -> {
+      h.query(req(p, "q", "{!join from=dept_ss_dv to=val_i_dv method=segmentDV}*:*", "fl","id"));
+    });
+    assertEquals(SolrException.ErrorCode.BAD_REQUEST.code, e.code());
+
+    // a second segment, whose ordinals of the "to" field differ from the first one
+    assertU(add(doc("id","14", DEPT_ID_FIELD, "Sales", "text","These guys sell more stuff")));
+    assertU(commit());
+
+    assertJQ(req(p, "q", "{!join from=" + DEPT_FIELD + " to=" + DEPT_ID_FIELD + " method=segmentDV}title:MTS", "fl","id")
+        ,"/response=={'numFound':4,'start':0,'numFoundExact':true,'docs':[{'id':'10'},{'id':'12'},{'id':'13'},{'id':'14'}]}"
+    );
+    assertJQ(req(p, "q", "{!join from=" + DEPT_ID_FIELD + " to=" + PRIMARY_DEPT_FIELD + " method=segmentDV}text:sell", "fl","id")
+        ,"/response=={'numFound':1,'start':0,'numFoundExact':true,'docs':[{'id':'3'}]}"
+    );
+
+    // other tests share the employee docs
+    assertU(delI("14"));
+    assertU(commit());
+  }
+
 
   @Test
   public void testIndexJoin() throws Exception {
@@ -330,7 +370,7 @@ public class TestJoin extends SolrTestCaseJ4 {
     final String optionalParamsJoined = (otherLocalParams != null && otherLocalParams.length > 0) ? String.join(" ", otherLocalParams) : " ";
     final String allProvidedParams = baseJoinParams + " " + optionalParamsJoined;
 
-    final int joinMethod = random().nextInt(4);
+    final int joinMethod = random().nextInt(5);
     switch (joinMethod) {
       case 0: // No explicit method specified
         return "{!join " + allProvidedParams + " }";
@@ -338,6 +378,8 @@ public class TestJoin extends SolrTestCaseJ4 {
         return "{!join " + allProvidedParams + " method=index}";
       case 2: // method=score
         return "{!join " + allProvidedParams + " method=dvWithScore score=none}";
+      case 3: // method=segmentDV
+        return "{!join " + allProvidedParams + " method=segmentDV}";
      default: // method=toplevel
         return "{!join " + allProvidedParams + " method=topLevelDV}";
     }
@@ -24,6 +24,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.solr.SolrTestCaseJ4;
 import org.apache.solr.client.solrj.impl.LBSolrClient;
@@ -113,6 +114,26 @@ public class TestHttpShardHandlerFactory extends SolrTestCaseJ4 {
     }
   }
 
+  @Test
+  public void testHedgeParametersOfAnyType() throws Exception {
+    final Path home = Paths.get(TEST_HOME());
+    CoreContainer cc = null;
+    ShardHandlerFactory factory = null;
+    try {
+      // hedgePercentile is an <int>, hedgeMinDelay a <str>
+      cc = CoreContainer.createAndLoad(home, home.resolve("solr-shardhandler-hedge.xml"));
+      factory = cc.getShardHandlerFactory();
+      assertTrue(factory instanceof HttpShardHandlerFactory);
+      final ShardRequestHedger hedger = ((HttpShardHandlerFactory) factory).getShardRequestHedger();
+      assertNotNull(hedger);
+      assertEquals(0.95, hedger.quantile, 0.0001);
+      assertEquals(TimeUnit.MILLISECONDS.toNanos(5), hedger.minDelayNanos);
+    } finally {
+      if (factory != null) factory.close();
+      if (cc != null) cc.shutdown();
+    }
+  }
+
   @Test
   public void getShardsWhitelist() throws Exception {
     System.setProperty(SHARDS_WHITELIST, "http://abc:8983/,http://def:8984/,");
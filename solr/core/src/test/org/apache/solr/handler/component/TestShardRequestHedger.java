@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.handler.component;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.solr.SolrTestCase;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.impl.LBSolrClient;
+import org.apache.solr.client.solrj.request.QueryRequest;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestShardRequestHedger extends SolrTestCase {
+
+  private final CountDownLatch slowInterrupted = new CountDownLatch(1);
+  private ShardRequestHedger hedger;
+
+  /**
+   * Answers right away, but waits until interrupted for urls that contain "slow", answers after 200ms for "late"
+   * ones and fails for "bad" ones.
+   */
+  private final HttpShardHandlerFactory factory = new HttpShardHandlerFactory() {
+    @Override
+    public LBSolrClient.Rsp makeLoadBalancedRequest(QueryRequest req, List<String> urls) throws SolrServerException, IOException {
+      String url = urls.get(0);
+      if (url.contains("slow")) {
+        try {
+          Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+        } catch (InterruptedException e) {
+          slowInterrupted.countDown();
+          throw new RuntimeException(e);
+        }
+      } else if (url.contains("late")) {
+        try {
+          Thread.sleep(200);
+        } catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+      } else if (url.contains("bad")) {
+        throw new SolrServerException("bad replica " + url);
+      }
+      return new LBSolrClient.Rsp() {
+        {
+          server = url;
+        }
+      };
+    }
+  };
+
+  @Before
+  public void createHedger() {
+    hedger = new ShardRequestHedger(factory, 90f, 1);
+  }
+
+  @After
+  public void closeHedger() {
+    hedger.close();
+  }
+
+  private LBSolrClient.Rsp request(String... urls) throws Exception {
+    QueryRequest req = new QueryRequest(new ModifiableSolrParams());
+    return hedger.request(req, new QueryRequest(new ModifiableSolrParams()), Arrays.asList(urls));
+  }
+
+  private void warmUp() throws Exception {
+    for (int i = 0; i < ShardRequestHedger.MIN_SAMPLES; i++) {
+      assertEquals("http://fast1/solr/core", request("http://fast1/solr/core", "http://fast2/solr/core").getServer());
+    }
+  }
+
+  @Test
+  public void testNoHedgingWithoutLatencies() {
+    assertEquals(Long.MAX_VALUE, hedger.getDelayNanos());
+  }
+
+  @Test
+  public void testHedgeSlowReplica() throws Exception {
+    warmUp();
+    assertEquals(0, hedger.hedged.getCount());
+    assertTrue(hedger.getDelayNanos() >= TimeUnit.MILLISECONDS.toNanos(1));
+
+    assertEquals("http://fast2/solr/core", request("http://slow/solr/core", "http://fast2/solr/core").getServer());
+    assertEquals(ShardRequestHedger.MIN_SAMPLES + 1, hedger.requests.getCount());
+    assertEquals(1, hedger.hedged.getCount());
+    assertEquals(1, hedger.hedgeWins.getCount());
+    // the slow request was cancelled
+    assertTrue(slowInterrupted.await(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testFailedHedge() throws Exception {
+    warmUp();
+    // the hedge fails, the response of the first request is still used
+    assertEquals("http://late/solr/core", request("http://late/solr/core", "http://bad/solr/core").getServer());
+    assertEquals(1, hedger.hedged.getCount());
+    assertEquals(0, hedger.hedgeWins.getCount());
+  }
+
+  @Test
+  public void testFailureWithoutHedge() throws Exception {
+    warmUp();
+    SolrServerException e = expectThrows(SolrServerException.class, () -> request("http://bad/solr/core", "http://fast1/solr/core"));
+    assertTrue(e.getMessage().contains("bad replica"));
+    assertEquals(0, hedger.hedged.getCount());
+  }
+}
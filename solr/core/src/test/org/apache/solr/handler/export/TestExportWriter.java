@@ -709,6 +709,43 @@ public class TestExportWriter extends SolrTestCaseJ4 {
     validateSort(numDocs);
   }
 
+  @Test
+  public void testSortThreads() throws Exception {
+    assertU(delQ("*:*"));
+    assertU(commit());
+
+    // few distinct values so that ties are broken by index order across segments
+    int numDocs = atLeast(500);
+    int numSegments = TestUtil.nextInt(random(), 3, 8);
+    for (int i = 0; i < numDocs; i++) {
+      assertU(adoc("id", String.valueOf(i),
+          "intdv", String.valueOf(random().nextInt(20)),
+          "longdv", String.valueOf(random().nextLong()),
+          "stringdv", TestUtil.randomSimpleString(random(), 1, 2)));
+      if (random().nextInt(50) == 0) {
+        assertU(delI(String.valueOf(random().nextInt(i + 1))));
+      }
+      if ((i + 1) % (numDocs / numSegments) == 0) {
+        assertU(commit());
+      }
+    }
+    assertU(commit());
+
+    for (String sort : new String[] {"intdv asc", "intdv desc,stringdv asc", "stringdv desc,intdv asc,longdv desc", "longdv asc"}) {
+      for (String q : new String[] {"*:*", "intdv:[0 TO 4]", "id:DOES_NOT_EXIST"}) {
+        String batchSize = String.valueOf(TestUtil.nextInt(random(), 1, 100));
+        String expected = h.query(req("q", q, "qt", "/export", "fl", "id,intdv", "sort", sort,
+            "batchSize", batchSize));
+        for (String sortThreads : new String[] {"2", "4", "16"}) {
+          String actual = h.query(req("q", q, "qt", "/export", "fl", "id,intdv", "sort", sort,
+              "batchSize", batchSize, "sortThreads", sortThreads));
+          assertEquals("sort=" + sort + ", q=" + q + ", batchSize=" + batchSize + ", sortThreads=" + sortThreads,
+              expected, actual);
+        }
+      }
+    }
+  }
+
   private void createLargeIndex() throws Exception {
     int BATCH_SIZE = 5000;
     int NUM_BATCHES = 20;
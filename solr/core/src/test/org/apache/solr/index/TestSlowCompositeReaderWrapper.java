@@ -19,6 +19,7 @@ package org.apache.solr.index;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.lucene.document.Document;
@@ -34,6 +35,8 @@ import org.apache.lucene.index.MultiDocValues.MultiSortedSetDocValues;
 import org.apache.lucene.index.MultiTerms;
 import org.apache.lucene.index.NoMergePolicy;
 import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.index.SortedSetDocValues;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.TestUtil;
@@ -124,6 +127,67 @@ public class TestSlowCompositeReaderWrapper extends SolrTestCase {
     dir.close();
   }
 
+  public void testOrdMapsAreReused() throws Exception {
+    Directory dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir, newIndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE));
+    // enough terms in the first segments for the maps to be built incrementally after a small segment is added
+    for (int segment = 0; segment < 2; segment++) {
+      for (int i = 0; i < 50; i++) {
+        addSortedDoc(w, String.format(Locale.ROOT, "%03d", i * 2 + segment), String.format(Locale.ROOT, "%03d", i * 3));
+      }
+      w.getReader().close();
+    }
+    IndexReader reader = w.getReader();
+    SlowCompositeReaderWrapper slowWrapper = (SlowCompositeReaderWrapper) SlowCompositeReaderWrapper.wrap(reader);
+    slowWrapper.getSortedDocValues("sorted");
+    slowWrapper.getSortedSetDocValues("sorted_set");
+
+    // new terms before, between and after the known ones, and known ones
+    addSortedDoc(w, "!", "0005");
+    addSortedDoc(w, "0505", "999");
+    addSortedDoc(w, "042", "042");
+    IndexReader newReader = w.getReader();
+    assertEquals(3, newReader.leaves().size());
+    SlowCompositeReaderWrapper newSlowWrapper = (SlowCompositeReaderWrapper) SlowCompositeReaderWrapper.wrap(newReader);
+    newSlowWrapper.reuseOrdinalMaps(slowWrapper);
+    assertEquals(2, newSlowWrapper.previousOrdMaps.size());
+    SortedDocValues sorted = newSlowWrapper.getSortedDocValues("sorted");
+    SortedSetDocValues sortedSet = newSlowWrapper.getSortedSetDocValues("sorted_set");
+    assertEquals(0, newSlowWrapper.previousOrdMaps.size());
+    assertEquals(2, newSlowWrapper.cachedOrdMaps.size());
+
+    LeafReader expected = SlowCompositeReaderWrapper.wrap(newReader);
+    SortedDocValues expectedSorted = expected.getSortedDocValues("sorted");
+    SortedSetDocValues expectedSortedSet = expected.getSortedSetDocValues("sorted_set");
+    assertEquals(expectedSorted.getValueCount(), sorted.getValueCount());
+    assertEquals(expectedSortedSet.getValueCount(), sortedSet.getValueCount());
+    for (int doc = 0; doc < newReader.maxDoc(); doc++) {
+      assertTrue(sorted.advanceExact(doc));
+      assertTrue(expectedSorted.advanceExact(doc));
+      assertEquals(expectedSorted.ordValue(), sorted.ordValue());
+      assertEquals(expectedSorted.lookupOrd(expectedSorted.ordValue()), sorted.lookupOrd(sorted.ordValue()));
+      assertTrue(sortedSet.advanceExact(doc));
+      assertTrue(expectedSortedSet.advanceExact(doc));
+      for (long ord = expectedSortedSet.nextOrd(); ord != SortedSetDocValues.NO_MORE_ORDS; ord = expectedSortedSet.nextOrd()) {
+        assertEquals(ord, sortedSet.nextOrd());
+        assertEquals(expectedSortedSet.lookupOrd(ord), sortedSet.lookupOrd(ord));
+      }
+      assertEquals(SortedSetDocValues.NO_MORE_ORDS, sortedSet.nextOrd());
+    }
+    reader.close();
+    newReader.close();
+    w.close();
+    dir.close();
+  }
+
+  private static void addSortedDoc(RandomIndexWriter w, String sorted, String sortedSet) throws IOException {
+    Document doc = new Document();
+    doc.add(new SortedDocValuesField("sorted", new BytesRef(sorted)));
+    doc.add(new SortedSetDocValuesField("sorted_set", new BytesRef(sortedSet)));
+    doc.add(new SortedSetDocValuesField("sorted_set", new BytesRef(sortedSet + "x")));
+    w.addDocument(doc);
+  }
+
   public void testTermsAreCached() throws IOException {
     Directory dir = newDirectory();
     RandomIndexWriter w = new RandomIndexWriter(random(), dir, newIndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE));
@@ -119,6 +119,92 @@ public class TestBinaryResponseWriter extends SolrTestCaseJ4 {
     req.close();
   }
 
+  /**
+   * Documents that are written straight from the index must be encoded exactly like the SolrDocuments that
+   * codecs with a custom writeSolrDocument get.
+   */
+  public void testDocsWrittenFromIndex() throws Exception {
+    for (int i = 0; i < 10; i++) {
+      assertU(adoc("id", Integer.toString(200 + i), "name", "name " + i, "subject", "solr",
+          "weight", Float.toString(i * 1.5f), "bday", "2020-01-0" + (1 + i % 9) + "T00:00:00Z", "bsto", "true",
+          "uuid", UUID.randomUUID().toString(),
+          "a_is", Integer.toString(i), "a_is", Integer.toString(-i), "a_ls", Long.toString(Long.MAX_VALUE - i),
+          "a_fs", "1.25", "a_ds", Double.toString(i / 3d), "a_dts", "2000-01-01T00:00:00Z", "a_s", "v" + i,
+          "a_s1", "single", "a_sdv", "dv" + i, "a_bdv", Boolean.toString(i % 2 == 0), "a_pi", Integer.toString(i),
+          "a_ss_dv", "b", "a_ss_dv", "a"));
+    }
+    assertU(commit());
+
+    for (String fl : new String[] {"*", "*,score", "id,name,a_is,a_sdv", "score,a_*", "id,bday,weight,uuid,a_pi",
+        "a_s1", "id,a_sdv,a_bdv"}) {
+      LocalSolrQueryRequest req = lrf.makeRequest("q", "subject:solr", "fl", fl, "rows", "10");
+      SolrQueryResponse rsp = h.queryAndResponse(req.getParams().get(CommonParams.QT), req);
+
+      ByteArrayOutputStream expected = new ByteArrayOutputStream();
+      Resolver resolver = new Resolver(req, rsp.getReturnFields());
+      try (JavaBinCodec jbc = new JavaBinCodec(resolver) {}) {
+        jbc.setWritableDocFields(resolver).marshal(rsp.getValues(), expected);
+      }
+      ByteArrayOutputStream actual = new ByteArrayOutputStream();
+      resolver = new Resolver(req, rsp.getReturnFields());
+      try (JavaBinCodec jbc = new JavaBinCodec(resolver)) {
+        jbc.setWritableDocFields(resolver).marshal(rsp.getValues(), actual);
+      }
+      assertArrayEquals("fl=" + fl, expected.toByteArray(), actual.toByteArray());
+
+      @SuppressWarnings({"rawtypes"})
+      NamedList res;
+      try (JavaBinCodec jbc = new JavaBinCodec()) {
+        res = (NamedList) jbc.unmarshal(new ByteArrayInputStream(actual.toByteArray()));
+      }
+      SolrDocumentList docs = (SolrDocumentList) res.get("response");
+      assertEquals(10, docs.size());
+      req.close();
+    }
+
+    // testUUID checks all documents
+    assertU(delQ("subject:solr"));
+    assertU(commit());
+  }
+
+  /**
+   * Documents are fetched in index order in batches, but must still be written in the order of the doc list, over
+   * several batches and segments.
+   */
+  public void testDocsWrittenFromIndexInBatches() throws Exception {
+    int numDocs = DocsStreamer.FETCH_BATCH_SIZE * 2 + 10;
+    for (int i = 0; i < numDocs; i++) {
+      assertU(adoc("id", Integer.toString(1000 + i), "subject", "batch", "a_is", Integer.toString(i),
+          "a_sdv", "dv" + i, "a_ss_dv", "v" + (i % 7)));
+      if (random().nextInt(100) == 0) {
+        assertU(commit());
+      }
+    }
+    assertU(commit());
+
+    for (String fl : new String[] {"*", "id,a_is,score", "a_sdv,a_ss_dv"}) {
+      LocalSolrQueryRequest req = lrf.makeRequest("q", "subject:batch", "fl", fl, "sort", "id desc",
+          "rows", Integer.toString(numDocs));
+      SolrQueryResponse rsp = h.queryAndResponse(req.getParams().get(CommonParams.QT), req);
+
+      ByteArrayOutputStream expected = new ByteArrayOutputStream();
+      Resolver resolver = new Resolver(req, rsp.getReturnFields());
+      try (JavaBinCodec jbc = new JavaBinCodec(resolver) {}) {
+        jbc.setWritableDocFields(resolver).marshal(rsp.getValues(), expected);
+      }
+      ByteArrayOutputStream actual = new ByteArrayOutputStream();
+      resolver = new Resolver(req, rsp.getReturnFields());
+      try (JavaBinCodec jbc = new JavaBinCodec(resolver)) {
+        jbc.setWritableDocFields(resolver).marshal(rsp.getValues(), actual);
+      }
+      assertArrayEquals("fl=" + fl, expected.toByteArray(), actual.toByteArray());
+      req.close();
+    }
+
+    assertU(delQ("subject:batch"));
+    assertU(commit());
+  }
+
   public void testResolverSolrDocumentPartialFields() throws Exception {
     LocalSolrQueryRequest req = lrf.makeRequest("q", "*:*",
                                                 "fl", "id,xxx,ddd_s"); 
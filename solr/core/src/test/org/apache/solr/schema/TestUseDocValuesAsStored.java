@@ -265,6 +265,36 @@ public class TestUseDocValuesAsStored extends AbstractBadConfigTestBase {
             + "]");
   }
   
+  @Test
+  public void testSearchResultsOutOfIndexOrder() throws Exception {
+    // documents spread over several segments, returned in reverse index order
+    assertU(adoc("id", "myid1", "test_is_dvo", "101", "test_is_dvo", "102", "test_s_dvo", "one"));
+    assertU(adoc("id", "myid2", "test_is_dvo", "201"));
+    assertU(commit());
+    assertU(adoc("id", "myid3", "test_s_dvo", "three"));
+    assertU(adoc("id", "myid4", "test_is_dvo", "401", "test_is_dvo", "402", "test_s_dvo", "four"));
+    assertU(commit());
+    assertU(adoc("id", "myid5", "test_is_dvo", "501"));
+    assertU(commit());
+
+    assertJQ(req("q", "id:myid*", "fl", "*", "sort", "id desc"),
+        "/response/docs==["
+            + "{'id':'myid5','test_is_dvo':[501]},"
+            + "{'id':'myid4','test_s_dvo':'four','test_is_dvo':[401,402]},"
+            + "{'id':'myid3','test_s_dvo':'three'},"
+            + "{'id':'myid2','test_is_dvo':[201]},"
+            + "{'id':'myid1','test_s_dvo':'one','test_is_dvo':[101,102]}"
+            + "]");
+    assertJQ(req("q", "id:myid*", "fl", "test_is_dvo", "sort", "id desc"),
+        "/response/docs==["
+            + "{'test_is_dvo':[501]},"
+            + "{'test_is_dvo':[401,402]},"
+            + "{},"
+            + "{'test_is_dvo':[201]},"
+            + "{'test_is_dvo':[101,102]}"
+            + "]");
+  }
+
   @Test
   public void testUseDocValuesAsStoredFalse() throws Exception {
     SchemaField sf = h.getCore().getLatestSchema().getField("nonstored_dv_str");
@@ -1311,6 +1311,12 @@ public class QueryEqualityTest extends SolrTestCaseJ4 {
         "{!hash_range l='107347968' u='214695935' f='x_id'}");
   }
 
+  public void testBloomFilterQuery() throws Exception {
+    assertQueryEquals("bloom_filter",
+        "{!bloom_filter f=x_id k=3}AAAAAAAAAAE=",
+        "{!bloom_filter k='3' f='x_id' v='AAAAAAAAAAE='}");
+  }
+
   // Override req to add df param
   public static SolrQueryRequest req(String... q) {
     return SolrTestCaseJ4.req(q, "df", "text");
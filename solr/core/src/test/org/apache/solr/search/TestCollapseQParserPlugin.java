@@ -27,6 +27,7 @@ import org.apache.solr.SolrTestCaseJ4;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.common.params.ModifiableSolrParams;
 import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.Utils;
 import org.apache.solr.search.CollapsingQParserPlugin.GroupHeadSelector;
 import org.apache.solr.search.CollapsingQParserPlugin.GroupHeadSelectorType;
 import org.junit.Before;
@@ -280,6 +281,32 @@ public class TestCollapseQParserPlugin extends SolrTestCaseJ4 {
     assertQ(req(params)); // fails *second* time!
   }
 
+  @Test
+  public void testTopGroups() throws Exception {
+    // term frequencies vary, so that a disjunction can skip documents that don't compete with the top groups
+    for (int i = 0; i < 300; i++) {
+      String text = "a" + " b".repeat(i % 7) + " c".repeat(i % 11) + " x".repeat(i % 5);
+      assertU(adoc("id", "" + i, "group_s", "g" + (i % 41), "group_i", "" + (i % 41), "text_t", text));
+      if (i % 100 == 99) {
+        assertU(commit());
+      }
+    }
+    assertU(commit());
+
+    for (String group : Arrays.asList("group_s", "group_i")) {
+      for (String q : Arrays.asList("text_t:b text_t:c", "text_t:a text_t:b text_t:c")) {
+        ModifiableSolrParams params = params("q", q, "fl", "id,score", "start", "3", "rows", "7");
+        String expected = JQ(req(params, "fq", "{!collapse field=" + group + "}"));
+        List<?> expectedDocs = (List<?>) Utils.getObjectByPath(Utils.fromJSONString(expected), false, "response/docs");
+        assertEquals(7, expectedDocs.size());
+
+        String actual = JQ(req(params, "fq", "{!collapse field=" + group + " topGroups=true}"));
+        assertEquals(expectedDocs, Utils.getObjectByPath(Utils.fromJSONString(actual), false, "response/docs"));
+        assertEquals(10L, Utils.getObjectByPath(Utils.fromJSONString(actual), false, "response/numFound"));
+      }
+    }
+  }
+
   @Test
   public void testMergeBoost() throws Exception {
 
@@ -1000,6 +1027,12 @@ public class TestCollapseQParserPlugin extends SolrTestCaseJ4 {
     assertQEx("Should Fail with Bad Request", "Collapsing not supported on multivalued fields",
         req("q","*:*", "fq","{!collapse field=test_ii}"), SolrException.ErrorCode.BAD_REQUEST);
 
+    // keeping the top groups only works if they rank like their group heads
+    assertQEx("Should Fail with Bad Request", "topGroups is only supported when the group head is selected by score",
+        req("q","*:*", "fq","{!collapse field=term_s max=test_l topGroups=true}"), SolrException.ErrorCode.BAD_REQUEST);
+    assertQEx("Should Fail with Bad Request", "topGroups is only supported when results are sorted by score",
+        req("q","*:*", "sort","test_l desc", "fq","{!collapse field=term_s topGroups=true}"), SolrException.ErrorCode.BAD_REQUEST);
+
     // collapsing on unknown field
     assertQEx("Should Fail with Bad Request", "org.apache.solr.search.SyntaxError: undefined field: \"bleh\"",
         req("q","*:*", "fq","{!collapse field=bleh}"), SolrException.ErrorCode.BAD_REQUEST);
@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.TestUtil;
+import org.apache.solr.SolrTestCase;
+import org.apache.solr.metrics.SolrMetricManager;
+import org.apache.solr.metrics.SolrMetricsContext;
+import org.junit.Test;
+
+/**
+ * Test for {@link OffHeapFilterCache}.
+ */
+public class TestOffHeapFilterCache extends SolrTestCase {
+
+  SolrMetricManager metricManager = new SolrMetricManager();
+  String registry = TestUtil.randomSimpleString(random(), 2, 10);
+  String scope = TestUtil.randomSimpleString(random(), 2, 10);
+
+  private static DocSet randomDocSet(int maxDoc) {
+    FixedBitSet bits = new FixedBitSet(maxDoc);
+    int numDocs = random().nextInt(maxDoc);
+    for (int i = 0; i < numDocs; i++) {
+      bits.set(random().nextInt(maxDoc));
+    }
+    BitDocSet bitDocSet = new BitDocSet(bits);
+    if (random().nextBoolean()) {
+      return bitDocSet;
+    }
+    int[] docs = new int[bitDocSet.size()];
+    DocIterator it = bitDocSet.iterator();
+    for (int i = 0; i < docs.length; i++) {
+      docs[i] = it.nextDoc();
+    }
+    return new SortedIntDocSet(docs);
+  }
+
+  private static void assertSameDocs(DocSet expected, DocSet actual) {
+    assertEquals(expected.size(), actual.size());
+    DocIterator expectedIt = expected.iterator();
+    DocIterator actualIt = actual.iterator();
+    while (expectedIt.hasNext()) {
+      assertTrue(actualIt.hasNext());
+      assertEquals(expectedIt.nextDoc(), actualIt.nextDoc());
+    }
+    assertFalse(actualIt.hasNext());
+  }
+
+  @Test
+  public void testSimple() throws Exception {
+    OffHeapFilterCache<Integer> cache = new OffHeapFilterCache<>();
+    cache.initializeMetrics(new SolrMetricsContext(metricManager, registry, "foo"), scope);
+    Map<String, String> params = new HashMap<>();
+    params.put("size", "10");
+    cache.init(params, null, new NoOpRegenerator());
+    cache.setState(SolrCache.State.LIVE);
+
+    int maxDoc = TestUtil.nextInt(random(), 1, 10000);
+    DocSet[] sets = new DocSet[10];
+    for (int i = 0; i < sets.length; i++) {
+      sets[i] = randomDocSet(maxDoc);
+      assertNull(cache.put(i, sets[i]));
+    }
+    for (int i = 0; i < sets.length; i++) {
+      DocSet cached = cache.get(i);
+      assertNotSame(sets[i], cached);
+      assertSameDocs(sets[i], cached);
+      // hits are read in place, not copied back to the heap
+      assertSame(cached, cache.get(i));
+    }
+    assertNull(cache.get(sets.length));
+
+    DocSet computed = randomDocSet(maxDoc);
+    assertSame(computed, cache.computeIfAbsent(42, k -> computed));
+    assertSameDocs(computed, cache.computeIfAbsent(42, k -> {
+      throw new AssertionError("should have been cached");
+    }));
+    Map<String, Object> metrics = cache.getCache().getMetricsMap().getValue();
+    assertEquals(11L, metrics.get("inserts"));
+    assertNull(cache.computeIfAbsent(43, k -> null));
+
+    assertSameDocs(sets[0], cache.remove(0));
+    assertNull(cache.get(0));
+    cache.close();
+  }
+
+  @Test
+  public void testSetOperations() throws Exception {
+    OffHeapFilterCache<Integer> cache = new OffHeapFilterCache<>();
+    Map<String, String> params = new HashMap<>();
+    params.put("size", "10");
+    cache.init(params, null, new NoOpRegenerator());
+
+    int maxDoc = TestUtil.nextInt(random(), 1, 10000);
+    for (int iter = 0; iter < 20; iter++) {
+      DocSet a = randomDocSet(maxDoc);
+      DocSet b = randomDocSet(maxDoc);
+      cache.put(0, a);
+      cache.put(1, b);
+      DocSet cachedA = cache.get(0);
+      DocSet cachedB = random().nextBoolean() ? cache.get(1) : b;
+
+      for (int doc = 0; doc < maxDoc; doc++) {
+        assertEquals(a.exists(doc), cachedA.exists(doc));
+        assertEquals(a.getBits().get(doc), cachedA.getBits().get(doc));
+      }
+      assertSameDocs(a.intersection(b), cachedA.intersection(cachedB));
+      assertSameDocs(a.intersection(b), b.intersection(cachedA));
+      assertSameDocs(a.union(b), cachedA.union(cachedB));
+      assertSameDocs(a.union(b), b.union(cachedA));
+      assertSameDocs(a.andNot(b), cachedA.andNot(cachedB));
+      assertSameDocs(b.andNot(a), b.andNot(cachedA));
+      assertEquals(a.intersectionSize(b), cachedA.intersectionSize(cachedB));
+      assertEquals(a.intersectionSize(b), b.intersectionSize(cachedA));
+      assertEquals(a.intersects(b), cachedA.intersects(cachedB));
+      assertEquals(a.intersects(b), b.intersects(cachedA));
+      FixedBitSet expectedBits = new FixedBitSet(maxDoc);
+      FixedBitSet actualBits = new FixedBitSet(maxDoc);
+      a.addAllTo(expectedBits);
+      cachedA.addAllTo(actualBits);
+      assertEquals(expectedBits, actualBits);
+      assertSameDocs(a, cachedA.clone());
+    }
+    cache.close();
+  }
+
+  @Test
+  public void testWarmFromOtherCacheClass() throws Exception {
+    CaffeineCache<Integer, DocSet> old = new CaffeineCache<>();
+    Map<String, String> params = new HashMap<>();
+    params.put("size", "10");
+    params.put("autowarmCount", "10");
+    old.init(params, null, new NoOpRegenerator());
+    old.put(0, randomDocSet(TestUtil.nextInt(random(), 1, 10000)));
+
+    OffHeapFilterCache<Integer> cache = new OffHeapFilterCache<>();
+    cache.init(params, null, new NoOpRegenerator());
+    // e.g. the filterCache class was changed before a core reload
+    cache.warm(null, old);
+    assertEquals(0, cache.size());
+    cache.close();
+    old.close();
+  }
+
+  @Test
+  public void testMaxRamSize() throws Exception {
+    OffHeapFilterCache<Integer> cache = new OffHeapFilterCache<>();
+    Map<String, String> params = new HashMap<>();
+    params.put("maxRamMB", "1");
+    cache.init(params, null, new NoOpRegenerator());
+
+    // 256k bits per set, so only a handful of sets fit into 1MB
+    int maxDoc = 256 * 1024;
+    for (int i = 0; i < 100; i++) {
+      FixedBitSet bits = new FixedBitSet(maxDoc);
+      bits.set(i);
+      cache.put(i, new BitDocSet(bits));
+    }
+    assertTrue(cache.size() < 100);
+    assertTrue(cache.ramBytesUsed() < 2 * 1024 * 1024);
+    cache.close();
+  }
+}
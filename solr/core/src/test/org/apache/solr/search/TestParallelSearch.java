@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.common.params.CursorMarkParams;
+import org.apache.solr.index.NoMergePolicyFactory;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.util.RefCounted;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests that requests return the same results when the segments of the index are searched concurrently.
+ */
+public class TestParallelSearch extends SolrTestCaseJ4 {
+
+  private static final int NUM_SEGMENTS = 4;
+  private static final int DOCS_PER_SEGMENT = 10;
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    // keep the segments of each commit apart, each of them is searched in its own slice
+    systemSetPropertySolrTestsMergePolicyFactory(NoMergePolicyFactory.class.getName());
+    initCore("solrconfig-parallel-search.xml", "schema.xml");
+
+    int id = 0;
+    for (int i = 0; i < NUM_SEGMENTS; i++) {
+      for (int j = 0; j < DOCS_PER_SEGMENT; j++, id++) {
+        // interleave the values of the segments so that the top docs come from all of them
+        int val = j * NUM_SEGMENTS + (NUM_SEGMENTS - 1 - i);
+        assertU(adoc("id", Integer.toString(id), "val_idv", Integer.toString(val),
+            "text", id % 3 == 0 ? "solr solr" : "solr", "cat_s", "cat" + (id % 2),
+            "tag_mfacet", "t" + (id % 3), "tag_mfacet", "u" + (id % 4)));
+      }
+      assertU(commit());
+    }
+  }
+
+  @Test
+  public void testSearchIsParallel() throws Exception {
+    assertNotNull(h.getCore().getParallelSearchExecutor());
+    RefCounted<SolrIndexSearcher> searcher = h.getCore().getSearcher();
+    try {
+      assertEquals(NUM_SEGMENTS, searcher.get().getTopReaderContext().leaves().size());
+    } finally {
+      searcher.decref();
+    }
+  }
+
+  @Test
+  public void testSort() throws Exception {
+    assertQ(req("q", "*:*", "fq", "val_idv:[5 TO *]", "sort", "val_idv asc", "rows", "4", "fl", "val_idv"),
+        "//*[@numFound='35']",
+        "//result/doc[1]/int[@name='val_idv'][.='5']",
+        "//result/doc[2]/int[@name='val_idv'][.='6']",
+        "//result/doc[3]/int[@name='val_idv'][.='7']",
+        "//result/doc[4]/int[@name='val_idv'][.='8']");
+
+    assertQ(req("q", "*:*", "sort", "val_idv desc", "start", "2", "rows", "2", "fl", "val_idv,score"),
+        "//*[@numFound='40']",
+        "//result/doc[1]/int[@name='val_idv'][.='37']",
+        "//result/doc[2]/int[@name='val_idv'][.='36']");
+  }
+
+  @Test
+  public void testScore() throws Exception {
+    assertQ(req("q", "{!func}val_idv", "fq", "text:solr", "rows", "3", "fl", "val_idv,score"),
+        "//*[@numFound='40']",
+        "//result[@maxScore='39.0']",
+        "//result/doc[1]/float[@name='score'][.='39.0']",
+        "//result/doc[2]/float[@name='score'][.='38.0']",
+        "//result/doc[3]/float[@name='score'][.='37.0']");
+  }
+
+  @Test
+  public void testDocSet() throws Exception {
+    // faceting needs the DocSet of the query, with and without top docs
+    for (String rows : new String[] {"0", "3"}) {
+      assertQ(req("q", "*:*", "fq", "val_idv:[0 TO 19]", "rows", rows, "facet", "true", "facet.field", "cat_s"),
+          "//*[@numFound='20']",
+          "//lst[@name='cat_s']/int[@name='cat0'][.='12']",
+          "//lst[@name='cat_s']/int[@name='cat1'][.='8']");
+    }
+  }
+
+  @Test
+  public void testJsonFacetPerSegment() throws Exception {
+    // per-segment counts of the segments are calculated concurrently, and then mapped to global ords
+    for (String perSeg : new String[] {"true", "false"}) {
+      assertJQ(req("q", "*:*", "fq", "val_idv:[0 TO 19]", "rows", "0", "json.facet",
+          "{cat:{type:terms, field:cat_s, method:dv, perSeg:" + perSeg + "}," +
+          " tag:{type:terms, field:tag_mfacet, method:dv, perSeg:" + perSeg + ", limit:3}}"),
+          "facets=={count:20, cat:{buckets:[{val:cat0, count:12}, {val:cat1, count:8}]}," +
+              " tag:{buckets:[{val:t0, count:7}, {val:t1, count:7}, {val:t2, count:6}]}}");
+    }
+  }
+
+  @Test
+  public void testCursor() throws Exception {
+    String cursorMark = CursorMarkParams.CURSOR_MARK_START;
+    int expected = 0;
+    while (true) {
+      SolrQueryRequest req = req("q", "*:*", "sort", "val_idv asc, id asc", "rows", "7", "fl", "val_idv",
+          CursorMarkParams.CURSOR_MARK_PARAM, cursorMark);
+      String response = h.query(req);
+      req.close();
+      String next = response.replaceAll("(?s).*<str name=\"nextCursorMark\">([^<]*)</str>.*", "$1");
+      if (next.equals(cursorMark)) {
+        break;
+      }
+      for (int i = 0; i < 7 && expected < NUM_SEGMENTS * DOCS_PER_SEGMENT; i++, expected++) {
+        assertTrue(response, response.contains("<int name=\"val_idv\">" + expected + "</int>"));
+      }
+      cursorMark = next;
+    }
+    assertEquals(NUM_SEGMENTS * DOCS_PER_SEGMENT, expected);
+  }
+}
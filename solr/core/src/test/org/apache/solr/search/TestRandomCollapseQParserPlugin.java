@@ -205,6 +205,40 @@ public class TestRandomCollapseQParserPlugin extends SolrTestCaseJ4 {
     }
   }
 
+  public void testRandomTopGroups() throws Exception {
+
+    final int numMainQueriesPerCollapseField = atLeast(5);
+
+    for (String collapseField : ALL_COLLAPSE_FIELD_NAMES) {
+      for (int i = 0; i < numMainQueriesPerCollapseField; i++) {
+
+        final String q = random().nextBoolean() ? "*:*" : CursorPagingTest.buildRandomQuery();
+        final String nullPs = " nullPolicy=" + randomNullPolicy();
+        final int start = TestUtil.nextInt(random(), 0, 20);
+        final int rows = TestUtil.nextInt(random(), 0, 50);
+
+        final SolrParams mainP = params("q", q, "fl", "id,score", "start", "" + start, "rows", "" + rows);
+        final SolrParams collapseP = params("fq", "{!collapse" + nullPs + " field=" + collapseField + "}");
+        final SolrParams topGroupsP = params("fq", "{!collapse" + nullPs + " field=" + collapseField + " topGroups=true}");
+
+        try {
+          final QueryResponse expected = SOLR.query(SolrParams.wrapDefaults(collapseP, mainP));
+          final QueryResponse actual = SOLR.query(SolrParams.wrapDefaults(topGroupsP, mainP));
+
+          // only the groups up to the requested page are counted
+          assertEquals(Math.min(expected.getResults().getNumFound(), start + rows), actual.getResults().getNumFound());
+          assertEquals(expected.getResults().size(), actual.getResults().size());
+          for (int j = 0; j < expected.getResults().size(); j++) {
+            assertEquals(expected.getResults().get(j).getFieldValue("id"), actual.getResults().get(j).getFieldValue("id"));
+            assertEquals(expected.getResults().get(j).getFieldValue("score"), actual.getResults().get(j).getFieldValue("score"));
+          }
+        } catch (Exception e) {
+          throw new RuntimeException("BUG using params: " + topGroupsP + " + " + mainP, e);
+        }
+      }
+    }
+  }
+
   private String randomNullPolicy() {
     return NULL_POLICIES[ TestUtil.nextInt(random(), 0, NULL_POLICIES.length-1) ];
   }
@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import org.apache.lucene.search.LRUQueryCache;
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.index.NoMergePolicyFactory;
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests that the per-segment filter cache is shared between searchers, so that filters only need to be
+ * computed again on the segments that changed since the last commit.
+ */
+public class TestSegmentFilterCache extends SolrTestCaseJ4 {
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    // keep the segments of each commit apart
+    systemSetPropertySolrTestsMergePolicyFactory(NoMergePolicyFactory.class.getName());
+    initCore("solrconfig-segment-filtercache.xml", "schema.xml");
+  }
+
+  @After
+  public void cleanup() throws Exception {
+    assertU(delQ("*:*"));
+    assertU(commit());
+  }
+
+  @Test
+  public void testCacheSurvivesCommit() throws Exception {
+    LRUQueryCache segmentCache = h.getCore().getSegmentFilterCache();
+    assertNotNull(segmentCache);
+    segmentCache.clear();
+
+    for (int i = 0; i < 10; i++) {
+      assertU(adoc("id", Integer.toString(i), "val_i", Integer.toString(i)));
+    }
+    assertU(commit());
+
+    assertQ(req("q", "*:*", "fq", "val_i:[2 TO 15]"), "//*[@numFound='8']");
+    assertEquals(1, segmentCache.getCacheCount());
+    long misses = segmentCache.getMissCount();
+
+    // a second segment, the filter is regenerated on it when the new searcher is warmed
+    for (int i = 10; i < 20; i++) {
+      assertU(adoc("id", Integer.toString(i), "val_i", Integer.toString(i)));
+    }
+    assertU(commit());
+
+    assertEquals(2, segmentCache.getCacheCount());
+    assertEquals(misses + 1, segmentCache.getMissCount());
+    assertTrue(segmentCache.getHitCount() > 0);
+    assertQ(req("q", "*:*", "fq", "val_i:[2 TO 15]"), "//*[@numFound='14']");
+
+    // deletes in a cached segment must still be applied
+    assertU(delI("3"));
+    assertU(commit());
+    assertQ(req("q", "*:*", "fq", "val_i:[2 TO 15]"), "//*[@numFound='13']");
+  }
+
+  @Test
+  public void testUncachedQuery() throws Exception {
+    LRUQueryCache segmentCache = h.getCore().getSegmentFilterCache();
+    segmentCache.clear();
+
+    for (int i = 0; i < 10; i++) {
+      assertU(adoc("id", Integer.toString(i), "val_i", Integer.toString(i)));
+    }
+    assertU(commit());
+
+    assertQ(req("q", "*:*", "fq", "{!cache=false}val_i:[2 TO 15]"), "//*[@numFound='8']");
+    assertEquals(0, segmentCache.getCacheCount());
+  }
+
+  @Test
+  public void testSameCoreJoinNotCached() throws Exception {
+    LRUQueryCache segmentCache = h.getCore().getSegmentFilterCache();
+    segmentCache.clear();
+
+    assertU(adoc("id", "10", "type_s", "to", "ref_s_not_uninvert_dv", "a"));
+    assertU(adoc("id", "11", "type_s", "to", "ref_s_not_uninvert_dv", "b"));
+    assertU(adoc("id", "1", "type_s", "from", "key_s_not_uninvert_dv", "a"));
+    assertU(commit());
+
+    // naming this core as the "from" index doesn't pin down the "from" searcher
+    final String join = "{!join from=key_s_not_uninvert_dv to=ref_s_not_uninvert_dv fromIndex=" + h.getCore().getName()
+        + " method=segmentDV}type_s:from";
+    assertQ(req("q", "*:*", "fq", join), "//*[@numFound='1']");
+    assertEquals(0, segmentCache.getCacheCount());
+
+    // a new "from" doc changes the matches of the "to" docs in the first segment
+    assertU(adoc("id", "2", "type_s", "from", "key_s_not_uninvert_dv", "b"));
+    assertU(commit());
+    assertQ(req("q", "*:*", "fq", join), "//*[@numFound='2']");
+  }
+}
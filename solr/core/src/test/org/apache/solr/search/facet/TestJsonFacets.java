@@ -37,6 +37,7 @@ import org.apache.solr.common.SolrException;
 import org.apache.solr.common.SolrInputDocument;
 import org.apache.solr.common.params.ModifiableSolrParams;
 import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.Utils;
 import org.apache.solr.request.SolrQueryRequest;
 import org.apache.solr.request.macro.MacroExpander;
 import org.apache.solr.util.hll.HLL;
@@ -272,6 +273,33 @@ public class TestJsonFacets extends SolrTestCaseHS {
              );
   }
 
+  public void testUIFPerSegment() throws Exception {
+    Client client = Client.localClient();
+    client.deleteByQuery("*:*", null);
+    client.add(sdoc("id", "1", "cat_ss", "A", "cat_ss", "B"), null);
+    client.add(sdoc("id", "2", "cat_ss", "B"), null);
+    client.commit();
+    client.add(sdoc("id", "3", "cat_ss", "B", "cat_ss", "C"), null);
+    client.commit();
+
+    for (String perSeg : new String[] {"true", "false"}) {
+      assertJQ(req("rows", "0", "q", "*:*", "json.facet",
+          "{ f : { type: terms, field: cat_ss, method: uif, perSeg: " + perSeg + " } }")
+          , "facets=={count:3, f:{buckets:[{val:B, count:3}, {val:A, count:1}, {val:C, count:1}]}}"
+      );
+    }
+
+    // the segments that did not change are reused by the new searcher
+    client.add(sdoc("id", "4", "cat_ss", "C", "cat_ss", "D"), null);
+    client.commit();
+    for (String perSeg : new String[] {"true", "false"}) {
+      assertJQ(req("rows", "0", "q", "id:[2 TO 4]", "json.facet",
+          "{ f : { type: terms, field: cat_ss, method: uif, perSeg: " + perSeg + " } }")
+          , "facets=={count:3, f:{buckets:[{val:B, count:2}, {val:C, count:2}, {val:D, count:1}]}}"
+      );
+    }
+  }
+
   public void testBehaviorEquivilenceOfUninvertibleFalse() throws Exception {
     Client client = Client.localClient();
     indexSimple(client);
@@ -3044,6 +3072,78 @@ public class TestJsonFacets extends SolrTestCaseHS {
     }
   }
 
+  public void testUniqueMaxExact() throws Exception {
+    Client client = Client.localClient();
+    client.deleteByQuery("*:*", null);
+
+    // cat A has a distinct value per doc, cat B only a few
+    int ndocs = 3000;
+    for (int i = 0; i < ndocs; i++) {
+      String cat = i % 10 == 0 ? "B" : "A";
+      String where = cat.equals("B") ? "w" + (i % 7) : "w" + i;
+      client.add(sdoc("id", getId(i), "cat_s", cat, "where_s", where, "where_ss", where, "num_i", cat.equals("B") ? i % 7 : i), null);
+      if (i % 500 == 0) {
+        client.commit();
+      }
+    }
+    client.commit();
+    int numA = ndocs - ndocs / 10;
+
+    for (String field : Arrays.asList("where_s", "where_ss", "num_i")) {
+      // exact by default, and as long as a bucket has no more values than asked for
+      client.testJQ(params("q", "*:*", "rows", "0", "field", field
+          , "json.facet", "{f:{type:terms, field:cat_s, facet:{u:'unique(${field})', u100:'unique(${field},100)', h:'hll(${field})'}}}"
+          )
+          , "facets/f/buckets/[0]/u==" + numA
+          , "facets/f/buckets/[1]=={val:B, count:" + (ndocs - numA) + ", u:7, u100:7, h:7}"
+      );
+
+      // estimated past it
+      String response = h.query(req("q", "cat_s:A", "rows", "0", "wt", "json"
+          , "json.facet", "{u100:'unique(" + field + ",100)', h:'hll(" + field + ")'}"));
+      Map<?,?> facets = (Map<?,?>) ((Map<?,?>) Utils.fromJSONString(response)).get("facets");
+      for (String key : Arrays.asList("u100", "h")) {
+        long estimate = ((Number) facets.get(key)).longValue();
+        assertTrue(key + "(" + field + ")=" + estimate, Math.abs(estimate - numA) < numA / 20);
+      }
+    }
+  }
+
+  public void testUniqueMaxExactDistrib() throws Exception {
+    initServers();
+    Client client = servers.getClient(random().nextInt());
+    client.queryDefaults().set("shards", servers.getShards());
+    client.deleteByQuery("*:*", null);
+
+    // every value of cat A is in 3 docs, which are spread across shards; cat B only has a few values
+    int ndocs = 3000;
+    int numValuesA = 1000;
+    for (int i = 0; i < ndocs; i++) {
+      String cat = i % 10 == 0 ? "B" : "A";
+      int val = cat.equals("B") ? i % 7 : i % numValuesA;
+      client.add(sdoc("id", getId(i), "cat_s", cat, "where_s", "w" + val, "where_ss", "w" + val, "num_i", val), null);
+    }
+    client.commit();
+
+    for (String field : Arrays.asList("where_s", "where_ss", "num_i")) {
+      // values that are listed by every shard are counted exactly
+      client.testJQ(params("q", "cat_s:B", "rows", "0", "field", field
+          , "json.facet", "{u100:'unique(${field},100)'}"
+          )
+          , "facets=={count:" + (ndocs / 10) + ", u100:7}"
+      );
+
+      // values of shards overlap, they must not be counted once per shard
+      String response = getJSON(client.getClientProvider().client(null, null), params("shards", servers.getShards()
+          , "q", "cat_s:A", "rows", "0", "json.facet", "{u100:'unique(" + field + ",100)', h:'hll(" + field + ")'}"));
+      Map<?,?> facets = (Map<?,?>) ((Map<?,?>) Utils.fromJSONString(response)).get("facets");
+      for (String key : Arrays.asList("u100", "h")) {
+        long estimate = ((Number) facets.get(key)).longValue();
+        assertTrue(key + "(" + field + ")=" + estimate, Math.abs(estimate - numValuesA) < numValuesA / 20);
+      }
+    }
+  }
+
   public void testTolerant() throws Exception {
     initServers();
     Client client = servers.getClient(random().nextInt());
@@ -169,6 +169,17 @@ public class CrossCollectionJoinQueryTest extends SolrCloudTestCase {
           cluster.getSolrClient().getZkHost()),
           true);
 
+      // only the keys that pass the bloom filter of the local terms are fetched
+      testCcJoinQuery("{!join method=crossCollection fromIndex=products from=product_id_s to=product_id_s bloomFilter=true}size_s:M",
+          true);
+      testCcJoinQuery(String.format(Locale.ROOT,
+          "{!join method=crossCollection solrUrl=\"%s\" fromIndex=products from=product_id_s to=product_id_s bloomFilter=true}size_s:M",
+          getSolrUrl()),
+          true);
+      // a filter larger than bloomFilterMaxKB isn't sent, all keys are fetched
+      testCcJoinQuery("{!join method=crossCollection fromIndex=products from=product_id_s to=product_id_s bloomFilter=true bloomFilterMaxKB=0}size_s:M",
+          true);
+
       // Test the ability to set other parameters on crossCollection join and have them passed through
       assertResultCount("parts",
           "{!join method=crossCollection fromIndex=products from=product_id_s to=product_id_s fq=product_id_s:1}size_s:M",
@@ -196,6 +207,8 @@ public class CrossCollectionJoinQueryTest extends SolrCloudTestCase {
     // Now if we set routed=false we should get a complete set of results.
     testCcJoinQuery("{!join method=crossCollection fromIndex=products from=product_id_s to=product_id_s routed=false}size_s:M",
         true);
+    testCcJoinQuery("{!join method=crossCollection fromIndex=products from=product_id_s to=product_id_s routed=false bloomFilter=true}size_s:M",
+        true);
     // The join_nonrouted query parser doesn't assume that the collection was routed on product_id,
     // so we should get the full set of results.
     testCcJoinQuery("{!join_nonrouted method=crossCollection fromIndex=products from=product_id_s to=product_id_s}size_s:M",
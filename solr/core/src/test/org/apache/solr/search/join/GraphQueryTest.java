@@ -16,9 +16,12 @@
  */
 package org.apache.solr.search.join;
 
+import java.util.Map;
+
 import org.apache.solr.SolrTestCaseJ4;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.search.SolrCache;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
@@ -121,6 +124,67 @@ public class GraphQueryTest extends SolrTestCaseJ4 {
     );
   }
   
+  @Test
+  public void testGraphAdjacencyAndTarget() throws Exception {
+    SolrParams p = params("node_id","node_sd", "edge_id","edge_sds");
+    doGraph(p);
+    doGraphTarget(p, "");
+    doGraphTarget(p, " cacheAdjacency=true");
+
+    assertJQ(req(p, "q","{!graph from=${node_id} to=${edge_id} cacheAdjacency=true}id:doc_1")
+        , "/response/numFound==7"
+    );
+    assertJQ(req(p, "q","{!graph from=${edge_id} to=${node_id} maxDepth=1 cacheAdjacency=true}id:doc_1")
+        , "/response/numFound==3"
+    );
+    assertJQ(req(p, "q","{!graph from=${node_id} to=${edge_id} returnRoot=true traversalFilter='text:foo11' cacheAdjacency=true}id:doc_8")
+        , "/response/numFound==2"
+    );
+    assertJQ(req(p, "q","{!graph from=${node_id} to=${edge_id} returnRoot=false returnOnlyLeaf=true maxDepth=2 cacheAdjacency=true}id:doc_8")
+        , "/response/numFound==1"
+    );
+    // the lists are cached in the user cache of the searcher, and reused by the next traversals
+    @SuppressWarnings({"rawtypes"})
+    final SolrCache cache = h.getCore().withSearcher(searcher -> searcher.getCache(GraphAdjacency.CACHE_NAME));
+    assertNotNull(cache);
+    assertTrue(cache.size() > 0);
+    long hits = -1;
+    for (Map.Entry<String,Object> entry : cache.getSolrMetricsContext().getMetricsSnapshot().entrySet()) {
+      if (entry.getKey().endsWith(".hits")) {
+        hits = ((Number) entry.getValue()).longValue();
+      }
+    }
+    assertTrue(hits > 0);
+
+    // the adjacency lists are built from docValues
+    assertQEx("cacheAdjacency requires field node_s to be a string field with docValues=true",
+        req("q","{!graph from=node_s to=edge_sds cacheAdjacency=true}id:doc_1"), SolrException.ErrorCode.BAD_REQUEST.code);
+  }
+
+  private void doGraphTarget(SolrParams p, String extra) throws Exception {
+    // 8->(1,-2)->(3,9)->(4,5)->7
+    assertJQ(req(p, "q","{!graph from=${node_id} to=${edge_id} target='id:doc_3'" + extra + "}id:doc_8", "fl","id")
+        , "/response/docs==[{'id':'doc_3'}]"
+    );
+    // only the nearest targets are returned
+    assertJQ(req(p, "q","{!graph from=${node_id} to=${edge_id} target='id:(doc_4 doc_7)'" + extra + "}id:doc_8", "fl","id")
+        , "/response/docs==[{'id':'doc_4'}]"
+    );
+    assertJQ(req(p, "q","{!graph from=${node_id} to=${edge_id} target='id:(doc_4 doc_7)' maxDepth=2" + extra + "}id:doc_8")
+        , "/response/numFound==0"
+    );
+    assertJQ(req(p, "q","{!graph from=${node_id} to=${edge_id} target='id:(doc_4 doc_8)'" + extra + "}id:doc_8", "fl","id")
+        , "/response/docs==[{'id':'doc_8'}]"
+    );
+    assertJQ(req(p, "q","{!graph from=${node_id} to=${edge_id} target='id:doc_12'" + extra + "}id:doc_8")
+        , "/response/numFound==0"
+    );
+    // doc_3 is only reachable through doc_2
+    assertJQ(req(p, "q","{!graph from=${node_id} to=${edge_id} target='id:doc_3' traversalFilter='text:foo'" + extra + "}id:doc_8")
+        , "/response/numFound==0"
+    );
+  }
+
   @Test
   public void testGraphQueryParserValidation() throws Exception {
     // from schema field existence
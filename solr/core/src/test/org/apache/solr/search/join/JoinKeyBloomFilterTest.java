@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search.join;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.TestUtil;
+import org.apache.solr.SolrTestCase;
+import org.apache.solr.common.util.Base64;
+
+public class JoinKeyBloomFilterTest extends SolrTestCase {
+
+  public void testNoFalseNegatives() {
+    int numKeys = atLeast(1000);
+    Set<String> keys = new HashSet<>();
+    while (keys.size() < numKeys) {
+      keys.add(TestUtil.randomUnicodeString(random()));
+    }
+
+    JoinKeyBloomFilter filter = JoinKeyBloomFilter.create(numKeys, JoinKeyBloomFilter.DEFAULT_FPP);
+    for (String key : keys) {
+      filter.add(new BytesRef(key));
+    }
+    String base64 = filter.toBase64();
+    assertEquals(JoinKeyBloomFilter.sizeInBytes(numKeys, JoinKeyBloomFilter.DEFAULT_FPP),
+        Base64.base64ToByteArray(base64).length);
+    JoinKeyBloomFilter copy = JoinKeyBloomFilter.fromBase64(base64, filter.getNumHashes());
+    assertEquals(filter, copy);
+
+    int falsePositives = 0;
+    for (String key : keys) {
+      assertTrue(copy.mightContain(new BytesRef(key)));
+      String other = key + "_other";
+      if (!keys.contains(other) && copy.mightContain(new BytesRef(other))) {
+        falsePositives++;
+      }
+    }
+    // expected 1%, leave plenty of room for randomness
+    assertTrue("too many false positives: " + falsePositives, falsePositives < numKeys / 10);
+  }
+
+  public void testInvalidFilter() {
+    expectThrows(IllegalArgumentException.class, () -> JoinKeyBloomFilter.fromBase64("AAAA", 3));
+    expectThrows(IllegalArgumentException.class, () -> JoinKeyBloomFilter.fromBase64("AAAAAAAAAAE=", 0));
+  }
+}
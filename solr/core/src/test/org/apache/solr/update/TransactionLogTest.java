@@ -24,6 +24,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
 
 import org.apache.solr.SolrTestCase;
 import org.apache.solr.common.SolrInputDocument;
@@ -72,4 +73,54 @@ public class TransactionLogTest extends SolrTestCase {
       assertEquals(uuid, (UUID) doc.getFieldValue("uuid"));
     }
   }
+
+  @Test
+  public void testConcurrentFsync() throws Exception {
+    String tlogFileName = String.format(Locale.ROOT, UpdateLog.LOG_FILENAME_PATTERN, UpdateLog.TLOG_NAME,
+        Long.MAX_VALUE);
+    Path path = createTempDir();
+    File logFile = new File(path.toFile(), tlogFileName);
+    final int numThreads = atLeast(4);
+    final int docsPerThread = atLeast(20);
+    try (TransactionLog tlog = new TransactionLog(logFile, new ArrayList<>())) {
+      tlog.deleteOnClose = false;
+      CountDownLatch start = new CountDownLatch(1);
+      List<Thread> threads = new ArrayList<>();
+      for (int t = 0; t < numThreads; t++) {
+        final int threadId = t;
+        Thread thread = new Thread(() -> {
+          try {
+            start.await();
+            for (int i = 0; i < docsPerThread; i++) {
+              AddUpdateCommand updateCommand = new AddUpdateCommand(null);
+              SolrInputDocument doc = new SolrInputDocument();
+              doc.addField("id", threadId + "_" + i);
+              updateCommand.solrDoc = doc;
+              long pos = tlog.write(updateCommand);
+              tlog.finish(UpdateLog.SyncLevel.FSYNC);
+              // the record must be readable from disk once finish returns
+              assertTrue(logFile.length() > pos);
+            }
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        });
+        threads.add(thread);
+        thread.start();
+      }
+      start.countDown();
+      for (Thread thread : threads) {
+        thread.join();
+      }
+    }
+
+    try (TransactionLog tlog = new TransactionLog(logFile, new ArrayList<>(), true)) {
+      LogReader reader = tlog.getReader(0);
+      int count = 0;
+      while (reader.next() != null) {
+        count++;
+      }
+      assertEquals(numThreads * docsPerThread, count);
+    }
+  }
 }
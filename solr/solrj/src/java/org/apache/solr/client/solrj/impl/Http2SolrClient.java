@@ -410,6 +410,8 @@ public class Http2SolrClient extends SolrClient {
         }
         return processErrorsAndResponse(response, parser, is, mimeType, encoding, isV2ApiRequest(solrRequest));
       } catch (InterruptedException e) {
+        // don't leave the exchange running, it would hold a connection until it completes or times out
+        req.abort(e);
         Thread.currentThread().interrupt();
         throw new RuntimeException(e);
       } catch (TimeoutException e) {
@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.client.solrj.routing;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Random;
+
+/**
+ * Orders replicas by the rank that {@link AdaptiveReplicaListTransformerFactory} computes from their recent
+ * latencies, errors and requests in flight, best first. Replicas with the same rank are shuffled, so that requests
+ * are spread evenly over replicas that have no statistics yet.
+ */
+public class AdaptiveReplicaListTransformer implements ReplicaListTransformer {
+
+  private final AdaptiveReplicaListTransformerFactory factory;
+  private final Random random;
+
+  AdaptiveReplicaListTransformer(AdaptiveReplicaListTransformerFactory factory, Random random) {
+    this.factory = factory;
+    this.random = random;
+  }
+
+  @Override
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  public void transform(List<?> choices) {
+    int size = choices.size();
+    if (size > 1) {
+      Collections.shuffle(choices, random);
+      RankedChoice[] rankedChoices = new RankedChoice[size];
+      int i = 0;
+      for (Object o : choices) {
+        rankedChoices[i++] = new RankedChoice(o, factory.rank(o));
+      }
+      // stable, so equal ranks keep their shuffled order
+      Arrays.sort(rankedChoices, RANKED_CHOICE_COMPARATOR);
+      ListIterator iter = choices.listIterator();
+      for (RankedChoice rankedChoice : rankedChoices) {
+        iter.next();
+        iter.set(rankedChoice.choice);
+      }
+    }
+  }
+
+  private static final class RankedChoice {
+
+    private final Object choice;
+    private final double rank;
+
+    private RankedChoice(Object choice, double rank) {
+      this.choice = choice;
+      this.rank = rank;
+    }
+
+  }
+
+  private static final Comparator<RankedChoice> RANKED_CHOICE_COMPARATOR = Comparator.comparingDouble(o -> o.rank);
+}
@@ -0,0 +1,217 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.client.solrj.routing;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.solr.common.cloud.Replica;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.TimeSource;
+import org.apache.solr.common.util.URLUtil;
+
+/**
+ * Factory for {@link AdaptiveReplicaListTransformer}s, which prefer the replicas that answered fastest recently.
+ *
+ * The factory keeps statistics for every replica that requests were sent to, which must be reported with
+ * {@link #requestStarted(String)} and {@link #requestFinished(String, long, boolean)}: an exponentially weighted
+ * moving average (EWMA) of the latency of successful requests, the EWMA of the error rate, and the number of
+ * requests in flight. The rank of a replica is its average latency, multiplied by the cube of one plus the requests
+ * in flight, like in the C3 algorithm, and divided by its success rate. Lower ranks are preferred.
+ *
+ * The average latency of a replica that no request was sent to decays with the configured half-life, so that a
+ * replica that was slow at some point gets requests again once it had time to recover. Replicas without statistics
+ * are preferred over all others, so that every replica is tried at least once. The statistics of a replica that
+ * received no request for {@link #EXPIRE_HALF_LIVES} half-lives are dropped, since they barely count anymore, so that
+ * replicas that were moved or deleted don't leak.
+ */
+public class AdaptiveReplicaListTransformerFactory implements ReplicaListTransformerFactory {
+
+  /** configure the weight of new samples in the moving averages, between 0 and 1 */
+  public static final String ALPHA = "alpha";
+  /** configure the half-life, in milliseconds, of the average latency of replicas that receive no requests */
+  public static final String IDLE_HALF_LIFE_MS = "idleHalfLifeMs";
+
+  static final double DEFAULT_ALPHA = 0.3;
+  static final long DEFAULT_IDLE_HALF_LIFE_MS = 10000;
+  /** lower bound of the success rate, so that the rank of a replica that only fails stays finite */
+  private static final double MIN_SUCCESS_RATE = 0.01;
+  /** number of half-lives after which the statistics of an idle replica are dropped */
+  static final int EXPIRE_HALF_LIVES = 10;
+
+  private final double alpha;
+  private final long idleHalfLifeNanos;
+  private final TimeSource timeSource;
+  private final Random random;
+  private final Map<String, ReplicaStats> stats = new ConcurrentHashMap<>();
+  private final AtomicLong nextExpireNanos;
+
+  public AdaptiveReplicaListTransformerFactory() {
+    this(DEFAULT_ALPHA, DEFAULT_IDLE_HALF_LIFE_MS, TimeSource.NANO_TIME, new Random());
+  }
+
+  public AdaptiveReplicaListTransformerFactory(NamedList<?> c) {
+    this(getDouble(c, ALPHA, DEFAULT_ALPHA), getLong(c, IDLE_HALF_LIFE_MS, DEFAULT_IDLE_HALF_LIFE_MS),
+        TimeSource.NANO_TIME, new Random());
+  }
+
+  AdaptiveReplicaListTransformerFactory(double alpha, long idleHalfLifeMs, TimeSource timeSource, Random random) {
+    if (alpha <= 0 || alpha > 1) {
+      throw new IllegalArgumentException(ALPHA + " must be in (0, 1], got " + alpha);
+    }
+    if (idleHalfLifeMs <= 0) {
+      throw new IllegalArgumentException(IDLE_HALF_LIFE_MS + " must be positive, got " + idleHalfLifeMs);
+    }
+    this.alpha = alpha;
+    this.idleHalfLifeNanos = TimeUnit.MILLISECONDS.toNanos(idleHalfLifeMs);
+    this.timeSource = timeSource;
+    this.random = random;
+    this.nextExpireNanos = new AtomicLong(timeSource.getTimeNs() + idleHalfLifeNanos);
+  }
+
+  private static double getDouble(NamedList<?> c, String name, double defaultValue) {
+    Object o = c.get(name);
+    return o == null ? defaultValue : Double.parseDouble(o.toString());
+  }
+
+  private static long getLong(NamedList<?> c, String name, long defaultValue) {
+    Object o = c.get(name);
+    return o == null ? defaultValue : Long.parseLong(o.toString());
+  }
+
+  @Override
+  public ReplicaListTransformer getInstance(String configSpec, SolrParams requestParams, ReplicaListTransformerFactory fallback) {
+    if (configSpec != null) {
+      throw new IllegalArgumentException("Invalid routing spec: \"" + configSpec + '"');
+    }
+    return new AdaptiveReplicaListTransformer(this, random);
+  }
+
+  /** Must be called when a request is sent to the replica with the given core URL. */
+  public void requestStarted(String url) {
+    // in the same atomic operation as the lookup, so that the stats aren't dropped before the request is counted
+    stats.compute(key(url), (k, replicaStats) -> {
+      if (replicaStats == null) {
+        replicaStats = new ReplicaStats();
+      }
+      replicaStats.inFlight.incrementAndGet();
+      return replicaStats;
+    });
+  }
+
+  /**
+   * Must be called when a request that was reported to {@link #requestStarted(String)} completes.
+   *
+   * @param url the core URL of the replica
+   * @param elapsedNanos how long the request took
+   * @param failed whether the request failed because of the replica, the latency of failed requests is ignored
+   */
+  public void requestFinished(String url, long elapsedNanos, boolean failed) {
+    ReplicaStats replicaStats = getStats(url);
+    replicaStats.inFlight.decrementAndGet();
+    long nowNanos = timeSource.getTimeNs();
+    replicaStats.add(elapsedNanos, failed, alpha, nowNanos);
+    expireIdleStats(nowNanos);
+  }
+
+  /** Drops the statistics of idle replicas, at most once per half-life. */
+  private void expireIdleStats(long nowNanos) {
+    long next = nextExpireNanos.get();
+    if (nowNanos - next < 0 || nextExpireNanos.compareAndSet(next, nowNanos + idleHalfLifeNanos) == false) {
+      return;
+    }
+    long maxIdleNanos = EXPIRE_HALF_LIVES * idleHalfLifeNanos;
+    for (String key : stats.keySet()) {
+      stats.computeIfPresent(key, (k, replicaStats) -> replicaStats.isIdle(nowNanos, maxIdleNanos) ? null : replicaStats);
+    }
+  }
+
+  /** Returns the number of replicas that statistics are kept for. */
+  int numReplicaStats() {
+    return stats.size();
+  }
+
+  /** Returns the rank of the given replica or URL, replicas with lower ranks are preferred. */
+  double rank(Object choice) {
+    String url;
+    if (choice instanceof Replica) {
+      url = ((Replica) choice).getCoreUrl();
+    } else if (choice instanceof String) {
+      url = (String) choice;
+    } else {
+      throw new IllegalArgumentException("can't handle type " + choice.getClass());
+    }
+    ReplicaStats replicaStats = stats.get(key(url));
+    return replicaStats == null ? 0 : replicaStats.rank(timeSource.getTimeNs(), idleHalfLifeNanos);
+  }
+
+  private ReplicaStats getStats(String url) {
+    return stats.computeIfAbsent(key(url), k -> new ReplicaStats());
+  }
+
+  /** URLs may differ by their scheme and trailing slash depending on where they come from. */
+  private static String key(String url) {
+    String key = URLUtil.hasScheme(url) ? URLUtil.removeScheme(url) : url;
+    return key.endsWith("/") ? key.substring(0, key.length() - 1) : key;
+  }
+
+  private static final class ReplicaStats {
+    /** latency of replicas that didn't answer successfully yet, so that errors and requests in flight count */
+    private static final double NOMINAL_LATENCY_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    final AtomicInteger inFlight = new AtomicInteger();
+    // guarded by this
+    private int samples;
+    private boolean hasLatency;
+    private double latencyNanos;
+    private double errorRate;
+    private long lastUpdateNanos;
+
+    synchronized void add(long elapsedNanos, boolean failed, double alpha, long nowNanos) {
+      if (failed == false) {
+        // the average isn't decayed here: a recovering replica gets back its rank only if it is fast again
+        latencyNanos = hasLatency ? alpha * elapsedNanos + (1 - alpha) * latencyNanos : elapsedNanos;
+        hasLatency = true;
+      }
+      errorRate = alpha * (failed ? 1 : 0) + (1 - alpha) * errorRate;
+      lastUpdateNanos = nowNanos;
+      samples++;
+    }
+
+    synchronized boolean isIdle(long nowNanos, long maxIdleNanos) {
+      return inFlight.get() == 0 && (samples == 0 || nowNanos - lastUpdateNanos > maxIdleNanos);
+    }
+
+    synchronized double rank(long nowNanos, long idleHalfLifeNanos) {
+      int inFlight = this.inFlight.get();
+      if (samples == 0 && inFlight == 0) {
+        return 0;
+      }
+      double latency = hasLatency ? latencyNanos : NOMINAL_LATENCY_NANOS;
+      if (samples > 0) {
+        latency *= Math.pow(0.5, (double) (nowNanos - lastUpdateNanos) / idleHalfLifeNanos);
+      }
+      double queue = 1 + inFlight;
+      return latency * queue * queue * queue / Math.max(1 - errorRate, MIN_SUCCESS_RATE);
+    }
+  }
+}
@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.client.solrj.routing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.solr.SolrTestCase;
+import org.apache.solr.common.cloud.Replica;
+import org.apache.solr.common.util.TimeSource;
+import org.junit.Test;
+
+public class AdaptiveReplicaListTransformerTest extends SolrTestCase {
+
+  private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private final ManualTimeSource timeSource = new ManualTimeSource();
+  private final AdaptiveReplicaListTransformerFactory factory =
+      new AdaptiveReplicaListTransformerFactory(0.3, 1000, timeSource, random());
+
+  private List<String> transform(String... urls) {
+    List<String> choices = new ArrayList<>(Arrays.asList(urls));
+    factory.getInstance(null, null, null).transform(choices);
+    return choices;
+  }
+
+  private void request(String url, long elapsedNanos, boolean failed) {
+    factory.requestStarted(url);
+    factory.requestFinished(url, elapsedNanos, failed);
+  }
+
+  @Test
+  public void testPrefersFastestReplica() {
+    for (int i = 0; i < 10; i++) {
+      request("http://host1:8983/solr/core1/", 50 * MS, false);
+      request("http://host2:8983/solr/core2/", 5 * MS, false);
+      request("http://host3:8983/solr/core3/", 20 * MS, false);
+    }
+    assertEquals(Arrays.asList("http://host2:8983/solr/core2/", "http://host3:8983/solr/core3/", "http://host1:8983/solr/core1/"),
+        transform("http://host1:8983/solr/core1/", "http://host2:8983/solr/core2/", "http://host3:8983/solr/core3/"));
+    // statistics don't depend on the scheme or trailing slash of urls
+    assertEquals(Arrays.asList("https://host2:8983/solr/core2", "https://host1:8983/solr/core1"),
+        transform("https://host1:8983/solr/core1", "https://host2:8983/solr/core2"));
+  }
+
+  @Test
+  public void testReplicas() {
+    List<Replica> replicas = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      Map<String, Object> propMap = new HashMap<>();
+      propMap.put("base_url", "http://host" + i + ":8983/solr");
+      propMap.put("core", "core" + i);
+      propMap.put("type", "NRT");
+      propMap.put("node_name", "host" + i + ":8983_solr");
+      replicas.add(new Replica("replica" + i, propMap, "c1", "s1"));
+      request(replicas.get(i).getCoreUrl(), (3 - i) * MS, false);
+    }
+    factory.getInstance(null, null, null).transform(replicas);
+    assertEquals("replica2", replicas.get(0).getName());
+    assertEquals("replica1", replicas.get(1).getName());
+    assertEquals("replica0", replicas.get(2).getName());
+  }
+
+  @Test
+  public void testUnknownReplicasFirst() {
+    request("http://host1:8983/solr/core1", MS, false);
+    assertEquals("http://host2:8983/solr/core2", transform("http://host1:8983/solr/core1", "http://host2:8983/solr/core2").get(0));
+  }
+
+  @Test
+  public void testRequestsInFlight() {
+    request("http://host1:8983/solr/core1", 10 * MS, false);
+    request("http://host2:8983/solr/core2", 15 * MS, false);
+    assertEquals("http://host1:8983/solr/core1", transform("http://host1:8983/solr/core1", "http://host2:8983/solr/core2").get(0));
+    // 10 * 2^3 > 15
+    factory.requestStarted("http://host1:8983/solr/core1");
+    assertEquals("http://host2:8983/solr/core2", transform("http://host1:8983/solr/core1", "http://host2:8983/solr/core2").get(0));
+    factory.requestFinished("http://host1:8983/solr/core1", 10 * MS, false);
+    assertEquals("http://host1:8983/solr/core1", transform("http://host1:8983/solr/core1", "http://host2:8983/solr/core2").get(0));
+  }
+
+  @Test
+  public void testErrors() {
+    request("http://host1:8983/solr/core1", 10 * MS, false);
+    request("http://host2:8983/solr/core2", 15 * MS, false);
+    for (int i = 0; i < 3; i++) {
+      request("http://host1:8983/solr/core1", MS, true);
+    }
+    assertEquals("http://host2:8983/solr/core2", transform("http://host1:8983/solr/core1", "http://host2:8983/solr/core2").get(0));
+    for (int i = 0; i < 10; i++) {
+      request("http://host1:8983/solr/core1", 10 * MS, false);
+    }
+    assertEquals("http://host1:8983/solr/core1", transform("http://host1:8983/solr/core1", "http://host2:8983/solr/core2").get(0));
+  }
+
+  @Test
+  public void testIdleReplicaRecovers() {
+    request("http://host1:8983/solr/core1", 1000 * MS, false);
+    timeSource.advance(100 * MS);
+    request("http://host2:8983/solr/core2", 10 * MS, false);
+    assertEquals("http://host2:8983/solr/core2", transform("http://host1:8983/solr/core1", "http://host2:8983/solr/core2").get(0));
+    // 7 half-lives: 1000ms decays below 10ms, while host2 keeps getting requests
+    for (int i = 0; i < 70; i++) {
+      timeSource.advance(100 * MS);
+      request("http://host2:8983/solr/core2", 10 * MS, false);
+    }
+    assertEquals("http://host1:8983/solr/core1", transform("http://host1:8983/solr/core1", "http://host2:8983/solr/core2").get(0));
+    // slow again: back to the end of the list
+    request("http://host1:8983/solr/core1", 1000 * MS, false);
+    assertEquals("http://host2:8983/solr/core2", transform("http://host1:8983/solr/core1", "http://host2:8983/solr/core2").get(0));
+  }
+
+  @Test
+  public void testIdleReplicaStatsExpire() {
+    request("http://host1:8983/solr/core1", 10 * MS, false);
+    factory.requestStarted("http://host3:8983/solr/core3");
+    request("http://host2:8983/solr/core2", 10 * MS, false);
+    assertEquals(3, factory.numReplicaStats());
+    for (int i = 0; i <= AdaptiveReplicaListTransformerFactory.EXPIRE_HALF_LIVES; i++) {
+      timeSource.advance(1100 * MS);
+      request("http://host2:8983/solr/core2", 10 * MS, false);
+    }
+    // host1 is dropped, but not host3, which still has a request in flight
+    assertEquals(2, factory.numReplicaStats());
+    assertEquals("http://host1:8983/solr/core1", transform("http://host2:8983/solr/core2", "http://host1:8983/solr/core1").get(0));
+    factory.requestFinished("http://host3:8983/solr/core3", 10 * MS, false);
+  }
+
+  @Test
+  public void testInvalidConfig() {
+    expectThrows(IllegalArgumentException.class, () -> new AdaptiveReplicaListTransformerFactory(0, 1000, timeSource, random()));
+    expectThrows(IllegalArgumentException.class, () -> new AdaptiveReplicaListTransformerFactory(0.5, 0, timeSource, random()));
+    expectThrows(IllegalArgumentException.class, () -> factory.getInstance("foo", null, null));
+  }
+
+  private static class ManualTimeSource extends TimeSource {
+    private long nanos;
+
+    void advance(long nanos) {
+      this.nanos += nanos;
+    }
+
+    @Override
+    public long getTimeNs() {
+      return nanos;
+    }
+
+    @Override
+    public long getEpochTimeNs() {
+      return nanos;
+    }
+
+    @Override
+    public long[] getTimeAndEpochNs() {
+      return new long[] {nanos, nanos};
+    }
+
+    @Override
+    public void sleep(long ms) {
+      advance(TimeUnit.MILLISECONDS.toNanos(ms));
+    }
+
+    @Override
+    public long convertDelay(TimeUnit fromUnit, long value, TimeUnit toUnit) {
+      return toUnit.convert(value, fromUnit);
+    }
+  }
+}